@@ -1,9 +1,16 @@
+import ca.brock.cs.lambda.CombinatorTranslator;
+import ca.brock.cs.lambda.abstractmachine.PeepholeOptimizer;
 import ca.brock.cs.lambda.abstractmachine.X86Emitter;
 import ca.brock.cs.lambda.abstractmachine.X86Program;
 import ca.brock.cs.lambda.combinators.*;
+import ca.brock.cs.lambda.intermediate.IntermediateTerm;
+import ca.brock.cs.lambda.parser.GlobalRecursion;
 import ca.brock.cs.lambda.parser.ProgParser;
 import ca.brock.cs.lambda.parser.ScottEncoding;
+import ca.brock.cs.lambda.parser.StrictnessAnalysis;
 import ca.brock.cs.lambda.parser.Term;
+import ca.brock.cs.lambda.supercombinators.LambdaLifter;
+import ca.brock.cs.lambda.supercombinators.Supercombinator;
 import ca.brock.cs.lambda.types.DefinedValue;
 import ca.brock.cs.lambda.types.FunctionDefinition;
 import ca.brock.cs.lambda.types.Type;
@@ -12,11 +19,15 @@ import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Main {
-    enum Pipeline { NAIVE, OPTIMIZED }
+    enum Pipeline { NAIVE, OPTIMIZED, SUPERCOMBINATOR }
+
+    enum Translation { SKI, BC, KISELYOV }
 
     static class Options {
         String sourceCode;
@@ -24,11 +35,32 @@ public class Main {
         String outputName = "program";
         Pipeline pipeline = Pipeline.OPTIMIZED;
         String optLevel = "all";
-        boolean useBC = true;
+        Translation translation = Translation.BC;
         boolean stats = false;
         boolean compileExecutable = false;
         boolean keepAsm = true;
         boolean printStages = false;
+        boolean updateRedexes = true;
+        boolean staticGraphs = true;
+        boolean shareSubterms = true;
+        boolean knownCalls = true;
+        boolean registerArguments = true;
+        boolean peephole = true;
+        boolean countReductions = false;
+        boolean generationalGc = false;
+        long heapSize = X86Emitter.DEFAULT_HEAP_SIZE;
+        long heapMax = 0;
+        long stackSize = X86Emitter.DEFAULT_STACK_SIZE;
+        boolean hugePages = false;
+        boolean nativeConstructors = true;
+        int inlineGrowth = CombinatorInliner.DEFAULT_GROWTH_PERCENT;
+        CombinatorSaturator.Cost saturationCost = CombinatorSaturator.Cost.SIZE;
+        int saturationNodes = CombinatorSaturator.DEFAULT_NODE_LIMIT;
+        String passes;
+        CombinatorPassManager.Schedule schedule;
+        long passTimeMillis = new CombinatorPassManager.Options().passTimeMillis;
+        String superinstructions = "default";
+        Path profileFragments;
 
         boolean compileTime = false;
     }
@@ -51,70 +83,100 @@ public class Main {
             printTypesStage(options, "Type Checking Result", types);
 
             Map<String, DefinedValue> symbolMap =
-                options.pipeline == Pipeline.OPTIMIZED && shouldRun(options, "cse")
+                options.pipeline != Pipeline.NAIVE && shouldRun(options, "cse")
                     ? LambdaCompiler.optimizeTerms(parsed.symbolMap)
                     : parsed.symbolMap;
 
             printDefinedValuesStage(options, "After CSE", symbolMap);
 
             Map<String, DefinedValue> scottEncoded =
-                ScottEncoding.desugarProgram(symbolMap);
-
-            printDefinedValuesStage(options, "After Scott Encoding", scottEncoded);
-
-            Map<String, Combinator> rawCombinators =
-                translate(scottEncoded, options.useBC);
+                ScottEncoding.desugarProgram(symbolMap, options.nativeConstructors);
 
-            printCombinatorStage(
+            printDefinedValuesStage(
                 options,
-                options.useBC
-                    ? "Raw Combinators with B/C Translation"
-                    : "Raw Naive SKI Combinators",
-                rawCombinators
+                options.nativeConstructors
+                    ? "After Native Constructor Lowering"
+                    : "After Scott Encoding",
+                scottEncoded
             );
 
-            if (options.stats) {
-                printCombinatorStats(
-                    options.useBC
-                        ? "Raw Combinators with B/C Translation"
-                        : "Raw Naive SKI Combinators",
-                    rawCombinators
-                );
+            if (options.pipeline != Pipeline.NAIVE && shouldRun(options, "strictness")) {
+                scottEncoded = StrictnessAnalysis.transformProgram(scottEncoded);
+
+                printDefinedValuesStage(options, "After Strictness Analysis", scottEncoded);
             }
 
+            Map<String, Combinator> rawCombinators = new HashMap<>();
             Map<String, Combinator> finalCombinators = rawCombinators;
+            List<Supercombinator> supercombinators = null;
 
-            if (options.pipeline == Pipeline.OPTIMIZED) {
-                if (shouldRun(options, "inline")) {
-                    finalCombinators =
-                        CombinatorInliner.inlineAll(finalCombinators);
+            if (options.pipeline == Pipeline.SUPERCOMBINATOR) {
+                supercombinators = LambdaLifter.liftProgram(scottEncoded);
 
-                    printCombinatorStage(options, "After Inlining", finalCombinators);
+                printSupercombinatorStage(options, "Lambda-Lifted Supercombinators", supercombinators);
+            } else {
+                if (options.pipeline != Pipeline.NAIVE && shouldRun(options, "global-rec")) {
+                    scottEncoded = GlobalRecursion.transformProgram(scottEncoded);
 
-                    if (options.stats) {
-                        printCombinatorStats("After Inlining", finalCombinators);
-                    }
+                    printDefinedValuesStage(options, "After Global Recursion", scottEncoded);
                 }
 
-                if (shouldRun(options, "combinator-opt")) {
-                    finalCombinators =
-                        CombinatorInliner.optimizeAfterInlining(finalCombinators);
+                long translationStart = System.nanoTime();
 
-                    printCombinatorStage(options, "After Combinator Optimization", finalCombinators);
+                rawCombinators =
+                    translate(scottEncoded, options.translation);
 
-                    if (options.stats) {
-                        printCombinatorStats("After Combinator Optimization", finalCombinators);
-                    }
+                if (options.compileTime) {
+                    System.out.printf(
+                        "Translation time: %.3f ms%n",
+                        (System.nanoTime() - translationStart) / 1_000_000.0
+                    );
                 }
 
-                if (shouldRun(options, "partial-eval")) {
-                    finalCombinators =
-                        CombinatorPartialEvaluator.partialEvaluateAll(finalCombinators);
+                printCombinatorStage(options, translationTitle(options.translation), rawCombinators);
+
+                if (options.stats) {
+                    printCombinatorStats(translationTitle(options.translation), rawCombinators);
+                }
+
+                finalCombinators = rawCombinators;
+
+                if (options.pipeline == Pipeline.OPTIMIZED) {
+                    CombinatorPassManager.Options passOptions = new CombinatorPassManager.Options();
+                    passOptions.inlineGrowth = options.inlineGrowth;
+                    passOptions.saturationCost = options.saturationCost;
+                    passOptions.saturationNodes = options.saturationNodes;
+                    passOptions.passTimeMillis = options.passTimeMillis;
+                    passOptions.superinstructions = loadSuperinstructions(options);
 
-                    printCombinatorStage(options, "After Partial Evaluation", finalCombinators);
+                    CombinatorPassManager passManager = new CombinatorPassManager(types, passOptions);
+                    passManager.setListener((pass, round, globals) -> {
+                        String title = passTitle(pass) + (round > 1 ? " (round " + round + ")" : "");
+
+                        printCombinatorStage(options, title, globals);
+
+                        if (options.stats) {
+                            printCombinatorStats(title, globals);
+                        }
+                    });
+
+                    finalCombinators = passManager.run(options.schedule, finalCombinators);
 
                     if (options.stats) {
-                        printCombinatorStats("After Partial Evaluation", finalCombinators);
+                        if (options.schedule.includes("inline")) {
+                            printInliningDecisions(passManager.getDecisions());
+                        }
+                        if (passManager.getSaturationReport() != null) {
+                            printSaturationReport(passManager.getSaturationReport());
+                        }
+                        if (options.schedule.includes("fuse")) {
+                            printSuperinstructions(passOptions.superinstructions);
+                        }
+                        printPassTimings(options, passManager);
+                    }
+
+                    if (options.profileFragments != null) {
+                        saveFragmentProfile(options.profileFragments, finalCombinators);
                     }
                 }
             }
@@ -124,10 +186,27 @@ public class Main {
                     ? parsed.mainFunction.getName()
                     : "main";
 
-            X86Emitter emitter = new X86Emitter();
+            X86Emitter.Options emitterOptions = new X86Emitter.Options();
+            emitterOptions.updateRedexes = options.updateRedexes;
+            emitterOptions.staticGraphs = options.staticGraphs;
+            emitterOptions.shareSubterms = options.shareSubterms;
+            emitterOptions.knownCalls = options.knownCalls;
+            emitterOptions.registerArguments = options.registerArguments;
+            emitterOptions.peephole = options.peephole;
+            emitterOptions.countReductions = options.countReductions;
+            emitterOptions.generationalGc = options.generationalGc;
+            emitterOptions.heapSize = options.heapSize;
+            emitterOptions.heapMax = options.heapMax;
+            emitterOptions.stackSize = options.stackSize;
+            emitterOptions.hugePages = options.hugePages;
+            emitterOptions.nativeConstructors = options.nativeConstructors;
+
+            X86Emitter emitter = new X86Emitter(emitterOptions);
 
             X86Program x86Program =
-                emitter.compile(finalCombinators, types, entryPoint);
+                supercombinators != null
+                    ? emitter.compileSupercombinators(supercombinators, types, entryPoint)
+                    : emitter.compile(finalCombinators, types, entryPoint);
 
             String asm = x86Program.emit();
 
@@ -174,12 +253,25 @@ public class Main {
                 System.out.println("Run with:     ./run_kv.sh " + options.outputName);
             }
 
+            if (options.stats && x86Program.getPeepholeOptimizer() != null) {
+                printPeepholeReport(x86Program.getPeepholeOptimizer());
+            }
+
             if (options.stats) {
                 System.out.println();
                 System.out.println("========== Summary Metrics ==========");
-                System.out.println("Raw combinator size: " + sizeOfMap(rawCombinators));
-                System.out.println("Final combinator size: " + sizeOfMap(finalCombinators));
-                System.out.println("Reduction steps: not instrumented");
+                if (supercombinators != null) {
+                    System.out.println("Supercombinators: " + supercombinators.size());
+                } else {
+                    System.out.println("Translation: " + options.translation.name().toLowerCase());
+                    System.out.println("Raw combinator size: " + sizeOfMap(rawCombinators));
+                    System.out.println("Final combinator size: " + sizeOfMap(finalCombinators));
+                }
+                System.out.println(
+                    options.countReductions
+                        ? "Reduction steps: reported on stderr by the executable"
+                        : "Reduction steps: not instrumented (use --count-reductions)"
+                );
                 System.out.println(
                     "Generated assembly size: "
                         + asm.getBytes(StandardCharsets.UTF_8).length
@@ -202,7 +294,7 @@ public class Main {
 
     private static Map<String, Combinator> translate(
         Map<String, DefinedValue> symbolMap,
-        boolean useBC
+        Translation translation
     ) {
         Map<String, Combinator> rawCombinators =
             new HashMap<String, Combinator>();
@@ -215,11 +307,13 @@ public class Main {
                 Term scottEncodedTerm =
                     ScottEncoding.desugar(funcDef.getTerm());
 
+                IntermediateTerm intermediate =
+                    scottEncodedTerm.toIntermediateTerm();
+
                 Combinator combinator =
-                    scottEncodedTerm
-                        .toIntermediateTerm()
-                        .methodT(useBC)
-                        .toCombinatorTerm();
+                    translation == Translation.KISELYOV
+                        ? CombinatorTranslator.translateKiselyov(intermediate).toCombinatorTerm()
+                        : intermediate.methodT(translation == Translation.BC).toCombinatorTerm();
 
                 rawCombinators.put(entry.getKey(), combinator);
             }
@@ -228,56 +322,48 @@ public class Main {
         return rawCombinators;
     }
 
-    private static boolean shouldRun(Options options, String pass) {
-        if ("all".equalsIgnoreCase(options.optLevel)) {
-            return true;
-        }
-
-        if ("0".equals(options.optLevel)) {
-            return false;
-        }
-
-        if ("1".equals(options.optLevel)) {
-            return "cse".equals(pass);
+    private static String translationTitle(Translation translation) {
+        switch (translation) {
+            case SKI:
+                return "Raw Naive SKI Combinators";
+            case KISELYOV:
+                return "Raw Combinators with Kiselyov Translation";
+            default:
+                return "Raw Combinators with B/C Translation";
         }
+    }
 
-        if ("2".equals(options.optLevel)) {
-            return "cse".equals(pass)
-                || "inline".equals(pass)
-                || "combinator-opt".equals(pass);
-        }
+    private static boolean shouldRun(Options options, String pass) {
+        return options.schedule.includes(pass);
+    }
 
-        if ("3".equals(options.optLevel)) {
-            return true;
+    private static String passTitle(String pass) {
+        switch (pass) {
+            case "inline":
+                return "After Inlining";
+            case "combinator-opt":
+                return "After Combinator Optimization";
+            case "saturate":
+                return "After Equality Saturation";
+            case "partial-eval":
+                return "After Partial Evaluation";
+            case "fuse":
+                return "After Superinstruction Fusion";
+            default:
+                return "After Specialization";
         }
-
-        throw new IllegalArgumentException(
-            "Unknown optimization level: " + options.optLevel);
     }
 
-    private static int sizeOfMap(Map<String, Combinator> combinators) {
-        int total = 0;
+    private static long sizeOfMap(Map<String, Combinator> combinators) {
+        long total = 0;
 
         for (Combinator combinator : combinators.values()) {
-            total += sizeOf(combinator);
+            total = Combinator.addSizes(total, combinator.size());
         }
 
         return total;
     }
 
-    private static int sizeOf(Combinator combinator) {
-        if (combinator instanceof CombinatorApplication) {
-            CombinatorApplication app =
-                (CombinatorApplication) combinator;
-
-            return 1
-                + sizeOf(app.getFunction())
-                + sizeOf(app.getArgument());
-        }
-
-        return 1;
-    }
-
     private static void printCombinatorStats(
         String title,
         Map<String, Combinator> combinators
@@ -288,11 +374,135 @@ public class Main {
 
         for (Map.Entry<String, Combinator> entry : combinators.entrySet()) {
             System.out.println();
-            System.out.println(entry.getKey() + " size: " + sizeOf(entry.getValue()));
+            System.out.println(entry.getKey() + " size: " + entry.getValue().size());
             System.out.println(entry.getKey() + " = " + entry.getValue());
         }
     }
 
+    private static void printInliningDecisions(List<CombinatorInliner.Decision> decisions) {
+        int inlined = 0;
+        for (CombinatorInliner.Decision decision : decisions) {
+            if (decision.isInlined()) {
+                inlined++;
+            }
+        }
+
+        System.out.println();
+        System.out.println("========== Inlining Decisions ==========");
+        System.out.println("Call sites inlined: " + inlined + " of " + decisions.size());
+
+        for (CombinatorInliner.Decision decision : decisions) {
+            System.out.println(decision);
+        }
+    }
+
+    private static void printSaturationReport(CombinatorSaturator.Report report) {
+        long saved = report.getGreedySize() - report.getSaturatedSize();
+
+        System.out.println();
+        System.out.println("========== Equality Saturation ==========");
+        System.out.println("Size after greedy rules: " + report.getGreedySize());
+        System.out.println(
+            "Size after saturation: "
+                + report.getSaturatedSize()
+                + " ("
+                + saved
+                + " smaller)"
+        );
+        System.out.println("E-nodes: " + report.getNodes() + " in " + report.getIterations() + " iterations");
+        System.out.println("Globals saturated within budget: " + report.getSaturated() + " of " + report.getGlobals());
+    }
+
+    private static void printPeepholeReport(PeepholeOptimizer optimizer) {
+        int removed = optimizer.getInstructionsBefore() - optimizer.getInstructionsAfter();
+
+        System.out.println();
+        System.out.println("========== Peephole Optimization ==========");
+        System.out.println(
+            "Instructions: "
+                + optimizer.getInstructionsBefore()
+                + " -> "
+                + optimizer.getInstructionsAfter()
+                + " ("
+                + removed
+                + " fewer)"
+        );
+        for (Map.Entry<String, Integer> entry : optimizer.getCounts().entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+        }
+        System.out.println("Rounds: " + optimizer.getRounds());
+    }
+
+    private static Superinstructions loadSuperinstructions(Options options) throws Exception {
+        // A profile is taken of the unfused program
+        if (options.profileFragments != null || "none".equals(options.superinstructions)) {
+            return Superinstructions.none();
+        }
+        if ("default".equals(options.superinstructions)) {
+            return Superinstructions.standard();
+        }
+        FragmentProfile profile = FragmentProfile.load(Path.of(options.superinstructions));
+        return Superinstructions.fromProfile(profile, Superinstructions.DEFAULT_SIZE);
+    }
+
+    // Adds this program's fragment counts to the profile file, creating it if needed
+    private static void saveFragmentProfile(Path file, Map<String, Combinator> combinators) throws Exception {
+        FragmentProfile profile =
+            Files.exists(file)
+                ? FragmentProfile.load(file)
+                : new FragmentProfile();
+
+        profile.merge(FragmentProfile.of(combinators.values()));
+        profile.save(file);
+    }
+
+    private static void printSuperinstructions(Superinstructions superinstructions) {
+        System.out.println();
+        System.out.println("========== Superinstructions ==========");
+        System.out.println("Table: " + superinstructions.getTable().size() + " fused combinators");
+
+        for (FusedCombinator fused : superinstructions.getTable()) {
+            Integer uses = superinstructions.getUses().get(fused);
+
+            System.out.printf(
+                "%-28s arity %d  reductions %d  uses %d%n",
+                fused,
+                fused.getArity(),
+                fused.getReductions(),
+                uses != null ? uses : 0
+            );
+        }
+    }
+
+    private static void printPassTimings(Options options, CombinatorPassManager passManager) {
+        System.out.println();
+        System.out.println("========== Pass Timings ==========");
+        System.out.println("Schedule: " + options.schedule);
+
+        for (CombinatorPassManager.Run run : passManager.getRuns()) {
+            System.out.println(run);
+        }
+
+        System.out.println();
+        System.out.println("Per function (pass, function, runs, time, size change):");
+
+        for (CombinatorPassManager.Record record : passManager.getRecords()) {
+            String time =
+                record.getNanos() < 0
+                    ? "whole program"
+                    : String.format("%.3f ms", record.getNanos() / 1_000_000.0);
+
+            System.out.printf(
+                "%-15s %-24s %3d  %14s  %+d%n",
+                record.getPass(),
+                record.getFunction(),
+                record.getRuns(),
+                time,
+                record.getSizeDelta()
+            );
+        }
+    }
+
     private static void printStage(
         Options options,
         String title,
@@ -341,6 +551,23 @@ public class Main {
         }
     }
 
+    private static void printSupercombinatorStage(
+        Options options,
+        String title,
+        List<Supercombinator> supercombinators
+    ) {
+        if (!options.printStages) {
+            return;
+        }
+
+        System.out.println();
+        System.out.println("========== " + title + " ==========");
+
+        for (Supercombinator supercombinator : supercombinators) {
+            System.out.println(supercombinator);
+        }
+    }
+
     private static void printCombinatorStage(
         Options options,
         String title,
@@ -409,23 +636,148 @@ public class Main {
                     options.pipeline = Pipeline.NAIVE;
                 } else if ("optimized".equals(value)) {
                     options.pipeline = Pipeline.OPTIMIZED;
+                } else if ("supercombinator".equals(value)) {
+                    options.pipeline = Pipeline.SUPERCOMBINATOR;
                 } else {
                     throw new IllegalArgumentException(
-                        "--pipeline must be naive or optimized");
+                        "--pipeline must be naive, optimized or supercombinator");
                 }
 
             } else if ("--opt-level".equals(arg)) {
                 options.optLevel = requireValue(args, ++i, arg);
 
+            } else if ("--passes".equals(arg)) {
+                options.passes = requireValue(args, ++i, arg);
+
+            } else if ("--pass-time".equals(arg)) {
+                String value = requireValue(args, ++i, arg);
+                try {
+                    options.passTimeMillis = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    options.passTimeMillis = 0;
+                }
+                if (options.passTimeMillis <= 0) {
+                    throw new IllegalArgumentException(
+                        "--pass-time expects milliseconds such as 10000");
+                }
+
+            } else if ("--superinstructions".equals(arg)) {
+                options.superinstructions = requireValue(args, ++i, arg);
+
+            } else if ("--profile-fragments".equals(arg)) {
+                options.profileFragments = Path.of(requireValue(args, ++i, arg));
+
             } else if ("--bc".equals(arg)) {
-                options.useBC = true;
+                options.translation = Translation.BC;
 
             } else if ("--no-bc".equals(arg)) {
-                options.useBC = false;
+                options.translation = Translation.SKI;
+
+            } else if ("--kiselyov".equals(arg)) {
+                options.translation = Translation.KISELYOV;
 
             } else if ("--stats".equals(arg)) {
                 options.stats = true;
 
+            } else if ("--no-update".equals(arg)) {
+                options.updateRedexes = false;
+
+            } else if ("--no-static-graphs".equals(arg)) {
+                options.staticGraphs = false;
+
+            } else if ("--no-share-subterms".equals(arg)) {
+                options.shareSubterms = false;
+
+            } else if ("--no-known-calls".equals(arg)) {
+                options.knownCalls = false;
+
+            } else if ("--no-register-arguments".equals(arg)) {
+                options.registerArguments = false;
+
+            } else if ("--no-peephole".equals(arg)) {
+                options.peephole = false;
+
+            } else if ("--count-reductions".equals(arg)) {
+                options.countReductions = true;
+
+            } else if ("--gc".equals(arg)) {
+                String value =
+                    requireValue(args, ++i, arg).toLowerCase();
+
+                if ("generational".equals(value)) {
+                    options.generationalGc = true;
+                } else if ("none".equals(value)) {
+                    options.generationalGc = false;
+                } else {
+                    throw new IllegalArgumentException(
+                        "--gc must be generational or none");
+                }
+
+            } else if ("--heap-size".equals(arg)) {
+                options.heapSize =
+                    parseSize(requireValue(args, ++i, arg), arg);
+
+            } else if ("--heap-max".equals(arg)) {
+                options.heapMax =
+                    parseSize(requireValue(args, ++i, arg), arg);
+
+            } else if ("--inline-growth".equals(arg)) {
+                String value = requireValue(args, ++i, arg);
+                try {
+                    options.inlineGrowth = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    options.inlineGrowth = -1;
+                }
+                if (options.inlineGrowth < 0) {
+                    throw new IllegalArgumentException(
+                        "--inline-growth expects a percentage such as 100");
+                }
+
+            } else if ("--egraph-cost".equals(arg)) {
+                String value =
+                    requireValue(args, ++i, arg).toLowerCase();
+
+                if ("size".equals(value)) {
+                    options.saturationCost = CombinatorSaturator.Cost.SIZE;
+                } else if ("steps".equals(value)) {
+                    options.saturationCost = CombinatorSaturator.Cost.STEPS;
+                } else {
+                    throw new IllegalArgumentException(
+                        "--egraph-cost must be size or steps");
+                }
+
+            } else if ("--egraph-nodes".equals(arg)) {
+                String value = requireValue(args, ++i, arg);
+                try {
+                    options.saturationNodes = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    options.saturationNodes = 0;
+                }
+                if (options.saturationNodes <= 0) {
+                    throw new IllegalArgumentException(
+                        "--egraph-nodes expects a node count such as 20000");
+                }
+
+            } else if ("--stack-size".equals(arg)) {
+                options.stackSize =
+                    parseSize(requireValue(args, ++i, arg), arg);
+
+            } else if ("--huge-pages".equals(arg)) {
+                options.hugePages = true;
+
+            } else if ("--adt".equals(arg)) {
+                String value =
+                    requireValue(args, ++i, arg).toLowerCase();
+
+                if ("native".equals(value)) {
+                    options.nativeConstructors = true;
+                } else if ("scott".equals(value)) {
+                    options.nativeConstructors = false;
+                } else {
+                    throw new IllegalArgumentException(
+                        "--adt must be native or scott");
+                }
+
             } else if ("--compile-time".equals(arg)) {
                 options.compileTime = true;
             } else if ("--stages".equals(arg)
@@ -455,6 +807,11 @@ public class Main {
                 "Use either --code or --file, not both");
         }
 
+        options.schedule =
+            options.passes != null
+                ? CombinatorPassManager.Schedule.parse(options.passes)
+                : CombinatorPassManager.Schedule.forLevel(options.optLevel);
+
         if (!options.compileExecutable && !options.keepAsm) {
             throw new IllegalArgumentException(
                 "--no-keep-asm can only be used with --exe");
@@ -476,6 +833,34 @@ public class Main {
         return args[index];
     }
 
+    private static long parseSize(String value, String optionName) {
+        String digits = value.trim().toLowerCase();
+        int shift = 0;
+
+        if (digits.endsWith("k")) {
+            shift = 10;
+        } else if (digits.endsWith("m")) {
+            shift = 20;
+        } else if (digits.endsWith("g")) {
+            shift = 30;
+        }
+
+        if (shift != 0) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+
+        try {
+            long size = Long.parseLong(digits) << shift;
+            if (size <= 0) {
+                throw new NumberFormatException();
+            }
+            return size;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                optionName + " expects a byte count such as 64M or 1G");
+        }
+    }
+
     private static void printUsageAndExit() {
         System.out.println(
             "Ka-Vah compiler CLI\n\n" +
@@ -483,11 +868,32 @@ public class Main {
                 "  --file program.kv\n" +
                 "  --code \"main = 42;\"\n\n" +
                 "Options:\n" +
-                "  --pipeline naive|optimized\n" +
+                "  --pipeline naive|optimized|supercombinator\n" +
                 "  --opt-level 0|1|2|3|all\n" +
+                "  --passes cse,strictness,global-rec,(inline,combinator-opt,partial-eval)*,...\n" +
+                "  --pass-time milliseconds\n" +
+                "  --superinstructions default|none|profile-file\n" +
+                "  --profile-fragments profile-file\n" +
                 "  --bc\n" +
                 "  --no-bc\n" +
+                "  --kiselyov\n" +
                 "  --stats\n" +
+                "  --no-update\n" +
+                "  --no-static-graphs\n" +
+                "  --no-share-subterms\n" +
+                "  --no-known-calls\n" +
+                "  --no-register-arguments\n" +
+                "  --no-peephole\n" +
+                "  --count-reductions\n" +
+                "  --gc generational|none\n" +
+                "  --heap-size bytes[K|M|G]\n" +
+                "  --heap-max bytes[K|M|G]\n" +
+                "  --stack-size bytes[K|M|G]\n" +
+                "  --inline-growth percent\n" +
+                "  --egraph-cost size|steps\n" +
+                "  --egraph-nodes count\n" +
+                "  --huge-pages\n" +
+                "  --adt native|scott\n" +
                 "  --compile-time\n" +
                 "  --stages\n" +
                 "  --print-stages\n" +
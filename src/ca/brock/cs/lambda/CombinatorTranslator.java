@@ -1,6 +1,8 @@
 package ca.brock.cs.lambda;
 
+import ca.brock.cs.lambda.combinators.BulkCombinator;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
+import ca.brock.cs.lambda.intermediate.IntermediateBulkCombinator;
 import ca.brock.cs.lambda.intermediate.IntermediateAbstraction;
 import ca.brock.cs.lambda.intermediate.IntermediateTerm;
 import ca.brock.cs.lambda.intermediate.IntermediateVariable;
@@ -10,7 +12,16 @@ import ca.brock.cs.lambda.intermediate.IntermediateKCombinator;
 import ca.brock.cs.lambda.intermediate.IntermediateSCombinator;
 import ca.brock.cs.lambda.intermediate.IntermediateBCombinator;
 import ca.brock.cs.lambda.intermediate.IntermediateCCombinator;
+import ca.brock.cs.lambda.intermediate.IntermediateBStarCombinator;
+import ca.brock.cs.lambda.intermediate.IntermediateCPrimeCombinator;
+import ca.brock.cs.lambda.intermediate.IntermediateRecursion;
+import ca.brock.cs.lambda.intermediate.IntermediateSPrimeCombinator;
+import ca.brock.cs.lambda.intermediate.IntermediateWCombinator;
+import ca.brock.cs.lambda.intermediate.IntermediateYCombinator;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 
@@ -32,6 +43,9 @@ public class CombinatorTranslator {
      * 4. T[λx.(E1 E2)] ⇒ (C T[λx.E1] T[E2]) (if x is free in E1 but not E2) - OPTIMIZED
      * 5. T[λx.(E1 E2)] ⇒ (B T[E1] T[λx.E2]) (if x is free in E2 but not E1) - OPTIMIZED
      *
+     * When optimizing, S (B c p) g, C (B c p) g and B f (B p q) become Turner's
+     * S' c p g, C' c p g and B* f p q (see {@link #sApplication}).
+     *
      * @param parameter The variable being abstracted (x).
      * @param body The body of the abstraction (E), which has already had its inner lambdas eliminated by methodT().
      * @param optimize A flag indicating whether to apply optimizations (e.g., B and C combinators).
@@ -65,21 +79,15 @@ public class CombinatorTranslator {
             if (optimize) {
                 // Rule 4: T[λx.(E1 E2)] ⇒ (C T[λx.E1] T[E2]) (if x is free in E1 but not E2)
                 if (xFreeInE1 && !xFreeInE2) {
-                    IntermediateTerm transformedE1 = new IntermediateAbstraction(parameter, E1).methodT(optimize); // Pass optimize
+                    IntermediateTerm transformedE1 = transformAbstraction(parameter, E1, optimize); // E1 is already lambda-free
                     IntermediateTerm transformedE2 = E2; // E2 is already T[E2] from the recursive methodT call
-                    return new IntermediateApplication(
-                        new IntermediateApplication(new IntermediateCCombinator(), transformedE1),
-                        transformedE2
-                    );
+                    return cApplication(transformedE1, transformedE2);
                 }
                 // Rule 5: T[λx.(E1 E2)] ⇒ (B T[E1] T[λx.E2]) (if x is free in E2 but not E1)
                 else if (!xFreeInE1 && xFreeInE2) {
                     IntermediateTerm transformedE1 = E1; // E1 is already T[E1] from the recursive methodT call
-                    IntermediateTerm transformedE2 = new IntermediateAbstraction(parameter, E2).methodT(optimize); // Pass optimize
-                    return new IntermediateApplication(
-                        new IntermediateApplication(new IntermediateBCombinator(), transformedE1),
-                        transformedE2
-                    );
+                    IntermediateTerm transformedE2 = transformAbstraction(parameter, E2, optimize); // E2 is already lambda-free
+                    return bApplication(transformedE1, transformedE2);
                 }
             }
 
@@ -89,8 +97,11 @@ public class CombinatorTranslator {
             // However, to be safe, if we're in an Application and Rule 2 wasn't hit, S is the general fallback.
             // This condition ensures we only apply S if 'x' is relevant to the application (i.e., free in E1 or E2).
             if (xFreeInE1 || xFreeInE2) {
-                IntermediateTerm transformedE1 = new IntermediateAbstraction(parameter, E1).methodT(optimize); // Pass optimize
-                IntermediateTerm transformedE2 = new IntermediateAbstraction(parameter, E2).methodT(optimize); // Pass optimize
+                IntermediateTerm transformedE1 = transformAbstraction(parameter, E1, optimize); // E1 is already lambda-free
+                IntermediateTerm transformedE2 = transformAbstraction(parameter, E2, optimize); // E2 is already lambda-free
+                if (optimize) {
+                    return sApplication(transformedE1, transformedE2);
+                }
                 return new IntermediateApplication(
                     new IntermediateApplication(new IntermediateSCombinator(), transformedE1),
                     transformedE2
@@ -102,4 +113,200 @@ public class CombinatorTranslator {
         // If it is reached, it indicates a term structure that doesn't fit the specified lambda elimination rules.
         throw new IllegalStateException("Unhandled abstraction transformation case for parameter '" + parameter + "' and body '" + body + "'. This indicates a missing rule or logic error.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds {@code S f g}, or Turner's {@code S' c p g} when {@code f} is {@code B c p}.
+     * S (B c p) g x = c (p x) (g x) = S' c p g x, in one reduction instead of two.
+     */
+    public static IntermediateTerm sApplication(IntermediateTerm f, IntermediateTerm g) {
+        IntermediateTerm[] bArgs = bApplicationArguments(f);
+        if (bArgs != null) {
+            return apply3(new IntermediateSPrimeCombinator(), bArgs[0], bArgs[1], g);
+        }
+        return new IntermediateApplication(new IntermediateApplication(new IntermediateSCombinator(), f), g);
+    }
+
+    /**
+     * Builds {@code C f g}, or Turner's {@code C' c p g} when {@code f} is {@code B c p}.
+     * C (B c p) g x = c (p x) g = C' c p g x.
+     */
+    public static IntermediateTerm cApplication(IntermediateTerm f, IntermediateTerm g) {
+        IntermediateTerm[] bArgs = bApplicationArguments(f);
+        if (bArgs != null) {
+            return apply3(new IntermediateCPrimeCombinator(), bArgs[0], bArgs[1], g);
+        }
+        return new IntermediateApplication(new IntermediateApplication(new IntermediateCCombinator(), f), g);
+    }
+
+    /**
+     * Builds {@code B f g}, or Turner's {@code B* f p q} when {@code g} is {@code B p q}.
+     * B f (B p q) x = f (p (q x)) = B* f p q x.
+     */
+    public static IntermediateTerm bApplication(IntermediateTerm f, IntermediateTerm g) {
+        IntermediateTerm[] bArgs = bApplicationArguments(g);
+        if (bArgs != null) {
+            return apply3(new IntermediateBStarCombinator(), f, bArgs[0], bArgs[1]);
+        }
+        return new IntermediateApplication(new IntermediateApplication(new IntermediateBCombinator(), f), g);
+    }
+
+    // p and q when term is B p q, else null. B p I is left alone so the optimizer can shrink it to p.
+    private static IntermediateTerm[] bApplicationArguments(IntermediateTerm term) {
+        if (term instanceof IntermediateApplication) {
+            IntermediateApplication outer = (IntermediateApplication) term;
+            if (outer.getFunction() instanceof IntermediateApplication && !(outer.getArgument() instanceof IntermediateICombinator)) {
+                IntermediateApplication inner = (IntermediateApplication) outer.getFunction();
+                if (inner.getFunction() instanceof IntermediateBCombinator) {
+                    return new IntermediateTerm[] { inner.getArgument(), outer.getArgument() };
+                }
+            }
+        }
+        return null;
+    }
+
+    private static IntermediateTerm apply3(IntermediateTerm function, IntermediateTerm first, IntermediateTerm second, IntermediateTerm third) {
+        return new IntermediateApplication(apply(function, first, second), third);
+    }
+
+    /**
+     * A translated term together with the number of innermost bound variables it still expects.
+     * {@code (n, d)} stands for {@code d v(n-1) .. v0}, where v0 is the innermost variable in scope.
+     */
+    private static final class Kiselyov {
+        final int arity;
+        final IntermediateTerm term;
+
+        Kiselyov(int arity, IntermediateTerm term) {
+            this.arity = arity;
+            this.term = term;
+        }
+    }
+
+    /**
+     * Eliminates every abstraction in {@code term} with Kiselyov's algorithm
+     * ("λ to SKI, Semantically", FLOPS 2018), using bulk combinators and eta-reduction.
+     *
+     * Unlike the T[] rules, which re-abstract an already translated body once per enclosing
+     * binder, each node is translated once and every application costs a constant number of
+     * combinators, so the output is linear in the size of the de Bruijn term instead of
+     * growing quadratically with the number of parameters.
+     *
+     * @param term An IntermediateTerm that may still contain abstractions and recursions.
+     * @return An equivalent, abstraction-free IntermediateTerm.
+     */
+    public static IntermediateTerm translateKiselyov(IntermediateTerm term) {
+        Kiselyov result = kiselyov(term, new ArrayList<>());
+        if (result.arity != 0) {
+            throw new IllegalStateException("Kiselyov translation left " + result.arity + " variables unbound in " + term);
+        }
+        return result.term;
+    }
+
+    private static Kiselyov kiselyov(IntermediateTerm term, List<String> scope) {
+        if (term instanceof IntermediateVariable) {
+            int index = scope.lastIndexOf(((IntermediateVariable) term).getName());
+            if (index < 0) {
+                return new Kiselyov(0, term); // A global
+            }
+            return variable(scope.size() - 1 - index);
+        }
+
+        if (term instanceof IntermediateAbstraction) {
+            IntermediateAbstraction abs = (IntermediateAbstraction) term;
+            scope.add(abs.getParameter());
+            Kiselyov body = kiselyov(abs.getBody(), scope);
+            scope.remove(scope.size() - 1);
+
+            if (body.arity == 0) {
+                return new Kiselyov(0, new IntermediateApplication(new IntermediateKCombinator(), body.term));
+            }
+            return new Kiselyov(body.arity - 1, body.term);
+        }
+
+        if (term instanceof IntermediateApplication) {
+            IntermediateApplication app = (IntermediateApplication) term;
+            Kiselyov function = kiselyov(app.getFunction(), scope);
+            Kiselyov argument = kiselyov(app.getArgument(), scope);
+
+            // Eta: λx. d x = d
+            if (function.arity == 0 && argument.arity == 1 && argument.term instanceof IntermediateICombinator) {
+                return new Kiselyov(1, function.term);
+            }
+            return new Kiselyov(Math.max(function.arity, argument.arity), combine(function, argument));
+        }
+
+        if (term instanceof IntermediateRecursion) {
+            // rec f. M = Y (λf. M)
+            IntermediateRecursion rec = (IntermediateRecursion) term;
+            Kiselyov generator = kiselyov(new IntermediateAbstraction(rec.getName(), rec.getBody()), scope);
+            Kiselyov fix = new Kiselyov(0, new IntermediateYCombinator());
+            return new Kiselyov(generator.arity, combine(fix, generator));
+        }
+
+        // Constants, literals and combinators; nothing else survives toIntermediateTerm()
+        if (!Collections.disjoint(term.getFreeVariables(), scope)) {
+            throw new IllegalStateException("Unhandled term in Kiselyov translation: " + term);
+        }
+        return new Kiselyov(0, term);
+    }
+
+    /**
+     * de Bruijn index k selects the first of k+1 arguments: I for k = 0, and the bulk
+     * weakening Kk, which drops the k arguments after it, otherwise. Every variable is then
+     * one combinator, however deep its binder.
+     */
+    private static Kiselyov variable(int index) {
+        if (index == 0) {
+            return new Kiselyov(1, new IntermediateICombinator());
+        }
+        return new Kiselyov(index + 1, bulk(BulkCombinator.Kind.K, index));
+    }
+
+    // Builds the combinator for "apply function to argument" under the variables both still expect
+    private static IntermediateTerm combine(Kiselyov function, Kiselyov argument) {
+        int n = function.arity;
+        int m = argument.arity;
+        IntermediateTerm x = function.term;
+        IntermediateTerm y = argument.term;
+
+        if (n == 0 && m == 0) {
+            return new IntermediateApplication(x, y);
+        }
+        if (n == 0) {
+            return apply(bulk(BulkCombinator.Kind.B, m), x, y);
+        }
+        if (m == 0) {
+            return apply(bulk(BulkCombinator.Kind.C, n), x, y);
+        }
+        if (n == 1 && m == 1 && y instanceof IntermediateICombinator) {
+            return new IntermediateApplication(new IntermediateWCombinator(), x); // S d I = W d
+        }
+        if (n == m) {
+            return apply(bulk(BulkCombinator.Kind.S, n), x, y);
+        }
+        if (n < m) {
+            return apply(bulk(BulkCombinator.Kind.B, m - n), new IntermediateApplication(bulk(BulkCombinator.Kind.S, n), x), y);
+        }
+        return apply(bulk(BulkCombinator.Kind.C, n - m), apply(bulk(BulkCombinator.Kind.B, n - m), bulk(BulkCombinator.Kind.S, m), x), y);
+    }
+
+    private static IntermediateTerm bulk(BulkCombinator.Kind kind, int count) {
+        if (count > 1) {
+            return new IntermediateBulkCombinator(kind, count);
+        }
+        switch (kind) {
+            case B:
+                return new IntermediateBCombinator();
+            case C:
+                return new IntermediateCCombinator();
+            case K:
+                return new IntermediateKCombinator();
+            default:
+                return new IntermediateSCombinator();
+        }
+    }
+
+    private static IntermediateTerm apply(IntermediateTerm function, IntermediateTerm first, IntermediateTerm second) {
+        return new IntermediateApplication(new IntermediateApplication(function, first), second);
+    }
+}
@@ -0,0 +1,163 @@
+package ca.brock.cs.lambda.abstractmachine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A straight run of instructions: entered only at the top, through one of its labels or by
+ * falling through from the block before it, and left only at the bottom.
+ *
+ * Blocks are cut before every label and after every jump and ret. A call does not end a block;
+ * it returns to the next instruction.
+ */
+public class BasicBlock {
+    private final List<X86Instruction> labels = new ArrayList<>();
+    private final List<X86Instruction> instructions = new ArrayList<>();
+    private final List<BasicBlock> successors = new ArrayList<>();
+    // Control can leave to code no block describes: ret, an indirect jump, an unknown label
+    private boolean exits;
+    private long liveOut;
+
+    /**
+     * Splits straight-line code into blocks, in order.
+     */
+    public static List<BasicBlock> partition(List<X86Instruction> code) {
+        List<BasicBlock> blocks = new ArrayList<>();
+        BasicBlock current = new BasicBlock();
+        blocks.add(current);
+        for (X86Instruction instruction : code) {
+            if (instruction.isLabel()) {
+                if (!current.instructions.isEmpty()) {
+                    current = new BasicBlock();
+                    blocks.add(current);
+                }
+                current.labels.add(instruction);
+                continue;
+            }
+            current.instructions.add(instruction);
+            if (endsBlock(instruction.getOpCode())) {
+                current = new BasicBlock();
+                blocks.add(current);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * The blocks laid out again as code.
+     */
+    public static List<X86Instruction> flatten(List<BasicBlock> blocks) {
+        List<X86Instruction> code = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            code.addAll(block.labels);
+            code.addAll(block.instructions);
+        }
+        return code;
+    }
+
+    /**
+     * Works out the successors of every block from the jump that ends it.
+     */
+    public static void link(List<BasicBlock> blocks) {
+        Map<String, BasicBlock> byLabel = labelMap(blocks);
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            BasicBlock next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+            block.successors.clear();
+            block.exits = false;
+
+            X86Instruction last = block.last();
+            if (last != null && (last.getOpCode() == OpCodes.JMP || isConditionalJump(last.getOpCode()))) {
+                BasicBlock target = last.getOperand(0) instanceof LabelOperand
+                    ? byLabel.get(((LabelOperand) last.getOperand(0)).getName())
+                    : null;
+                if (target != null) {
+                    block.successors.add(target);
+                } else {
+                    block.exits = true;
+                }
+            } else if (last != null && last.getOpCode() == OpCodes.RET) {
+                block.exits = true;
+            }
+            if (block.fallsThrough()) {
+                if (next != null) {
+                    block.successors.add(next);
+                } else {
+                    block.exits = true;
+                }
+            }
+        }
+    }
+
+    public static Map<String, BasicBlock> labelMap(List<BasicBlock> blocks) {
+        Map<String, BasicBlock> byLabel = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            for (X86Instruction label : block.labels) {
+                byLabel.put(label.getLabel(), block);
+            }
+        }
+        return byLabel;
+    }
+
+    static boolean endsBlock(OpCodes opCode) {
+        return opCode == OpCodes.JMP || opCode == OpCodes.RET || isConditionalJump(opCode);
+    }
+
+    public static boolean isConditionalJump(OpCodes opCode) {
+        switch (opCode) {
+            case JNE: case JE: case JL: case JG: case JLE: case JGE: case JNZ:
+            case JAE: case JB: case JA: case JBE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public List<X86Instruction> getLabels() {
+        return labels;
+    }
+
+    public List<X86Instruction> getInstructions() {
+        return instructions;
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        return successors;
+    }
+
+    public boolean exits() {
+        return exits;
+    }
+
+    public long getLiveOut() {
+        return liveOut;
+    }
+
+    public void setLiveOut(long liveOut) {
+        this.liveOut = liveOut;
+    }
+
+    /**
+     * Whether code may fall into this block from the one before it: no label puts data, such as
+     * a routine's arity word, in between.
+     */
+    public boolean canFallInto() {
+        for (X86Instruction label : labels) {
+            if (label.getDirectives() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean fallsThrough() {
+        X86Instruction last = last();
+        return last == null || (last.getOpCode() != OpCodes.JMP && last.getOpCode() != OpCodes.RET);
+    }
+
+    public X86Instruction last() {
+        return instructions.isEmpty() ? null : instructions.get(instructions.size() - 1);
+    }
+}
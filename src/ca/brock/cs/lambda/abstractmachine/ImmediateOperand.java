@@ -0,0 +1,71 @@
+package ca.brock.cs.lambda.abstractmachine;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A constant: a decimal or hexadecimal number, or a character such as '0'. The text is kept so
+ * the operand prints the way it was written.
+ */
+public class ImmediateOperand extends Operand {
+    private final long value;
+    private final String text;
+
+    public ImmediateOperand(long value) {
+        this(value, Long.toString(value));
+    }
+
+    private ImmediateOperand(long value, String text) {
+        this.value = value;
+        this.text = text;
+    }
+
+    /**
+     * The immediate this text denotes, or null if it is not one.
+     */
+    public static ImmediateOperand parse(String text) {
+        if (text.matches("-?[0-9]+")) {
+            return new ImmediateOperand(Long.parseLong(text), text);
+        }
+        if (text.matches("-?0[xX][0-9a-fA-F]+")) {
+            boolean negative = text.startsWith("-");
+            long magnitude = Long.parseUnsignedLong(text.substring(negative ? 3 : 2), 16);
+            return new ImmediateOperand(negative ? -magnitude : magnitude, text);
+        }
+        if (text.length() == 3 && text.charAt(0) == '\'' && text.charAt(2) == '\'') {
+            return new ImmediateOperand(text.charAt(1), text);
+        }
+        return null;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Whether an instruction other than "mov r64, imm" can encode it: a sign-extended 32-bit value.
+     */
+    public static boolean fitsInt32(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Set<Registers> getRegisters() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ImmediateOperand && ((ImmediateOperand) other).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,39 @@
+package ca.brock.cs.lambda.abstractmachine;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A code label, the target of a jump or call.
+ */
+public class LabelOperand extends Operand {
+    private final String name;
+
+    public LabelOperand(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<Registers> getRegisters() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LabelOperand && ((LabelOperand) other).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
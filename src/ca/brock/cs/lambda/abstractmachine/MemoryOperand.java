@@ -0,0 +1,204 @@
+package ca.brock.cs.lambda.abstractmachine;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A memory reference, [symbol + base + index*scale + displacement] with any of the parts left
+ * out, optionally with a size such as "qword ptr" when the other operand does not imply one.
+ */
+public class MemoryOperand extends Operand {
+    private final String size;
+    private final String symbol;
+    private final Registers base;
+    private final Registers index;
+    private final int scale;
+    private final long displacement;
+
+    public MemoryOperand(String size, String symbol, Registers base, Registers index, int scale, long displacement) {
+        this.size = size;
+        this.symbol = symbol;
+        this.base = base;
+        this.index = index;
+        this.scale = index == null ? 1 : scale;
+        this.displacement = displacement;
+    }
+
+    /**
+     * [base+displacement]
+     */
+    public static MemoryOperand at(Registers base, long displacement) {
+        return new MemoryOperand(null, null, base, null, 1, displacement);
+    }
+
+    public static MemoryOperand parse(String text) {
+        String size = null;
+        int open = text.indexOf('[');
+        int close = text.lastIndexOf(']');
+        if (close < open) {
+            throw new IllegalArgumentException("Malformed memory operand: " + text);
+        }
+        String prefix = text.substring(0, open).trim();
+        if (!prefix.isEmpty()) {
+            size = prefix.replaceAll("(?i)\\s*ptr$", "").trim().toLowerCase();
+        }
+
+        String symbol = null;
+        Registers base = null;
+        Registers index = null;
+        int scale = 1;
+        long displacement = 0;
+
+        String address = text.substring(open + 1, close).replace(" ", "");
+        int start = 0;
+        while (start < address.length()) {
+            int end = start + 1;
+            while (end < address.length() && address.charAt(end) != '+' && address.charAt(end) != '-') {
+                end++;
+            }
+            String term = address.substring(start, end);
+            boolean negative = term.startsWith("-");
+            if (term.startsWith("+") || negative) {
+                term = term.substring(1);
+            }
+            start = end;
+
+            ImmediateOperand number = ImmediateOperand.parse(term);
+            if (number != null) {
+                displacement += negative ? -number.getValue() : number.getValue();
+                continue;
+            }
+            int star = term.indexOf('*');
+            RegisterOperand register = RegisterOperand.named(star < 0 ? term : term.substring(0, star));
+            if (register != null && register.isFull() && !negative) {
+                if (star >= 0 || base != null) {
+                    if (index != null) {
+                        throw new IllegalArgumentException("Malformed memory operand: " + text);
+                    }
+                    index = register.getRegister();
+                    scale = star < 0 ? 1 : Integer.parseInt(term.substring(star + 1));
+                } else {
+                    base = register.getRegister();
+                }
+            } else if (symbol == null && !negative && star < 0 && register == null) {
+                symbol = term;
+            } else {
+                throw new IllegalArgumentException("Malformed memory operand: " + text);
+            }
+        }
+        return new MemoryOperand(size, symbol, base, index, scale, displacement);
+    }
+
+    public String getSize() {
+        return size;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Registers getBase() {
+        return base;
+    }
+
+    public Registers getIndex() {
+        return index;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public long getDisplacement() {
+        return displacement;
+    }
+
+    public MemoryOperand withSize(String size) {
+        return new MemoryOperand(size, symbol, base, index, scale, displacement);
+    }
+
+    /**
+     * The same address with register replaced by another one, or by its known value
+     * (replacement null) folded into the displacement.
+     */
+    public MemoryOperand substitute(Registers register, Registers replacement, long value) {
+        Registers newBase = base;
+        Registers newIndex = index;
+        long newDisplacement = displacement;
+        if (base == register) {
+            newBase = replacement;
+            if (replacement == null) {
+                newDisplacement += value;
+            }
+        }
+        if (index == register) {
+            newIndex = replacement;
+            if (replacement == null) {
+                newDisplacement += value * scale;
+            }
+        }
+        if (newBase == null && newIndex != null && scale == 1) {
+            newBase = newIndex;
+            newIndex = null;
+        }
+        return new MemoryOperand(size, symbol, newBase, newIndex, scale, newDisplacement);
+    }
+
+    @Override
+    public Set<Registers> getRegisters() {
+        Set<Registers> registers = EnumSet.noneOf(Registers.class);
+        if (base != null) {
+            registers.add(base);
+        }
+        if (index != null) {
+            registers.add(index);
+        }
+        return registers;
+    }
+
+    /**
+     * The address alone, without the size, for comparing what two operands refer to.
+     */
+    public String getAddress() {
+        StringBuilder sb = new StringBuilder();
+        if (symbol != null) {
+            sb.append(symbol);
+        }
+        if (base != null) {
+            sb.append(sb.length() > 0 ? "+" : "").append(base);
+        }
+        if (index != null) {
+            sb.append(sb.length() > 0 ? "+" : "").append(index);
+            if (scale != 1) {
+                sb.append("*").append(scale);
+            }
+        }
+        if (displacement != 0 || sb.length() == 0) {
+            if (displacement >= 0 && sb.length() > 0) {
+                sb.append("+");
+            }
+            sb.append(displacement);
+        }
+        return "[" + sb + "]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof MemoryOperand)) {
+            return false;
+        }
+        MemoryOperand that = (MemoryOperand) other;
+        return Objects.equals(size, that.size) && getAddress().equals(that.getAddress());
+    }
+
+    @Override
+    public int hashCode() {
+        return getAddress().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return size == null ? getAddress() : size + " ptr " + getAddress();
+    }
+}
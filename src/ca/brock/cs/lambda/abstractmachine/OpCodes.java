@@ -27,9 +27,11 @@ package ca.brock.cs.lambda.abstractmachine;
  * Defines the supported x86-64 instruction mnemonics for the abstract machine.
  */
 public enum OpCodes {
-    MOV, PUSH, POP, LEA,
+    MOV, PUSH, POP, LEA, XCHG,
     ADD, SUB, IMUL, IDIV,  CQO, INC, DEC, DIV,
     XOR, OR, AND, SHL,SHR, SAR, TEST,       // Bitwise operations for Tagging
     CALL, RET, SYSCALL, JMP,
-    CMP, JNE, JE, JL, JG, JLE, JGE, JNZ // Branching logic
+    CMP, JNE, JE, JL, JG, JLE, JGE, JNZ, // Branching logic
+    JAE, JB, JA, JBE, // Unsigned branching for pointer bounds
+    MOVZX // Byte loads for parsing runtime options
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package ca.brock.cs.lambda.abstractmachine;
+
+import java.util.Set;
+
+/**
+ * An operand of an x86 instruction: a register, a memory reference, an immediate or a label.
+ */
+public abstract class Operand {
+    /**
+     * The registers this operand reads when the instruction uses it: the register itself, or
+     * the base and index of an address. A written register is not counted.
+     */
+    public abstract Set<Registers> getRegisters();
+
+    /**
+     * Reads an operand as the emitter writes it, in Intel syntax.
+     */
+    public static Operand parse(String text) {
+        String trimmed = text.trim();
+        if (trimmed.indexOf('[') >= 0) {
+            return MemoryOperand.parse(trimmed);
+        }
+        RegisterOperand register = RegisterOperand.named(trimmed);
+        if (register != null) {
+            return register;
+        }
+        ImmediateOperand immediate = ImmediateOperand.parse(trimmed);
+        if (immediate != null) {
+            return immediate;
+        }
+        return new LabelOperand(trimmed);
+    }
+}
@@ -0,0 +1,1271 @@
+package ca.brock.cs.lambda.abstractmachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cleans up the text section of an X86Program after emission. The emitter writes each routine
+ * and each global from templates, so the seams between templates are full of values pushed
+ * only to be popped, registers copied only to be read once, constants loaded into registers
+ * and tag tests on values whose tag is already known.
+ *
+ * The code is split into basic blocks and every round runs, in turn:
+ * <ul>
+ *   <li>jump threading: jumps to a jump go straight to its target, a conditional jump over
+ *   an unconditional one is inverted, jumps to the next instruction are dropped and code after
+ *   an unconditional jump that no label leads to is removed;</li>
+ *   <li>a forward pass over each block (carried into the next one when that can only be
+ *   entered by falling through) that knows which registers are copies of which, which bits
+ *   of each register are known, which registers hold the value of which memory cells and what
+ *   the flags are. It replaces registers by their copies and constants, folds constant
+ *   arithmetic, drops moves that do not change anything and decides conditional jumps whose
+ *   test it can evaluate;</li>
+ *   <li>push X .. pop Y in one block, with nothing in between touching the stack or X,
+ *   becomes mov Y, X (or nothing when X is Y), and an instruction writing Y followed by
+ *   mov Z, Y writes Z directly when Y is dead;</li>
+ *   <li>dead store elimination: an instruction that only writes registers and flags nobody
+ *   reads is removed, by liveness over the whole control flow graph.</li>
+ * </ul>
+ * Rounds repeat until nothing changes. Labels are never removed: data tables and other
+ * routines may refer to them. A call is assumed to read and clobber every register, and a
+ * ret or an indirect jump to read every register, unless the emitter declared otherwise
+ * (see {@link #declareCall} and {@link #setRoutineResult}).
+ */
+public class PeepholeOptimizer {
+    private static final int MAX_ROUNDS = 16;
+    private static final int MAX_THREADING = 8;
+    private static final int REGISTERS = Registers.values().length;
+    // Liveness sets are bit masks: one bit per register, then one for the flags
+    static final long FLAGS = 1L << REGISTERS;
+    static final long ALL = (FLAGS << 1) - 1;
+
+    private static final Map<OpCodes, OpCodes> INVERSE = new HashMap<>();
+
+    static {
+        INVERSE.put(OpCodes.JE, OpCodes.JNE);
+        INVERSE.put(OpCodes.JNE, OpCodes.JE);
+        INVERSE.put(OpCodes.JNZ, OpCodes.JE);
+        INVERSE.put(OpCodes.JL, OpCodes.JGE);
+        INVERSE.put(OpCodes.JGE, OpCodes.JL);
+        INVERSE.put(OpCodes.JG, OpCodes.JLE);
+        INVERSE.put(OpCodes.JLE, OpCodes.JG);
+        INVERSE.put(OpCodes.JB, OpCodes.JAE);
+        INVERSE.put(OpCodes.JAE, OpCodes.JB);
+        INVERSE.put(OpCodes.JA, OpCodes.JBE);
+        INVERSE.put(OpCodes.JBE, OpCodes.JA);
+    }
+
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private final Map<String, Long> callReads = new HashMap<>();
+    private final Map<String, Long> callClobbers = new HashMap<>();
+    // Live at the ret of a routine headed by an arity word
+    private long routineResult = ALL;
+    private int instructionsBefore;
+    private int instructionsAfter;
+    private int rounds;
+
+    public PeepholeOptimizer() {
+        for (String name : Arrays.asList("push/pop pairs", "copies propagated", "constants folded",
+            "redundant moves", "tag tests folded", "dead stores", "jumps threaded", "unreachable")) {
+            counts.put(name, 0);
+        }
+    }
+
+    /**
+     * Declares what a call to label reads and which registers it may change; a call to anything
+     * undeclared is assumed to read and change every register.
+     */
+    public void declareCall(String label, Collection<Registers> reads, Collection<Registers> clobbers) {
+        callReads.put(label, mask(reads));
+        callClobbers.put(label, mask(clobbers));
+    }
+
+    /**
+     * Declares the registers callers may still read when a routine headed by an arity word
+     * (a ".quad" directive in front of its label) returns.
+     */
+    public void setRoutineResult(Collection<Registers> live) {
+        routineResult = mask(live);
+    }
+
+    private static long mask(Collection<Registers> registers) {
+        long mask = 0;
+        for (Registers register : registers) {
+            mask |= bit(register);
+        }
+        return mask;
+    }
+
+    public List<X86Instruction> optimize(List<X86Instruction> code) {
+        instructionsBefore = countInstructions(code);
+        List<BasicBlock> blocks = BasicBlock.partition(code);
+
+        boolean changed = true;
+        while (changed && rounds < MAX_ROUNDS) {
+            rounds++;
+            changed = threadJumps(blocks);
+            changed |= removeUnreachable(blocks);
+
+            analyze(blocks);
+            changed |= propagate(blocks);
+
+            analyze(blocks);
+            for (BasicBlock block : blocks) {
+                changed |= pairPushes(block);
+                changed |= coalesceCopies(block);
+            }
+
+            analyze(blocks);
+            for (BasicBlock block : blocks) {
+                changed |= removeDeadStores(block);
+            }
+        }
+
+        List<X86Instruction> result = BasicBlock.flatten(blocks);
+        instructionsAfter = countInstructions(result);
+        return result;
+    }
+
+    public int getInstructionsBefore() {
+        return instructionsBefore;
+    }
+
+    public int getInstructionsAfter() {
+        return instructionsAfter;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * How often each rewrite fired, by name, in a fixed order.
+     */
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+
+    private void count(String name) {
+        counts.merge(name, 1, Integer::sum);
+    }
+
+    private static int countInstructions(List<X86Instruction> code) {
+        int n = 0;
+        for (X86Instruction instruction : code) {
+            if (!instruction.isLabel()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // ---- Jumps ----
+
+    private boolean threadJumps(List<BasicBlock> blocks) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            for (X86Instruction label : blocks.get(i).getLabels()) {
+                index.put(label.getLabel(), i);
+            }
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            X86Instruction last = block.last();
+            if (last == null || !(last.getOperand(0) instanceof LabelOperand)
+                || (last.getOpCode() != OpCodes.JMP && !BasicBlock.isConditionalJump(last.getOpCode()))) {
+                continue;
+            }
+            List<X86Instruction> code = block.getInstructions();
+            String target = ((LabelOperand) last.getOperand(0)).getName();
+
+            String threaded = finalTarget(blocks, index, target);
+            if (!threaded.equals(target)) {
+                last = new X86Instruction(last.getOpCode(), new LabelOperand(threaded));
+                code.set(code.size() - 1, last);
+                target = threaded;
+                count("jumps threaded");
+                changed = true;
+            }
+
+            if (reachesByFallingThrough(blocks, i + 1, target)) {
+                code.remove(code.size() - 1);
+                count("jumps threaded");
+                changed = true;
+                continue;
+            }
+
+            // jcc L1; jmp L2; L1: becomes jncc L2; L1:
+            if (BasicBlock.isConditionalJump(last.getOpCode()) && i + 1 < blocks.size()) {
+                BasicBlock next = blocks.get(i + 1);
+                List<X86Instruction> nextCode = next.getInstructions();
+                if (next.getLabels().isEmpty() && nextCode.size() == 1
+                    && nextCode.get(0).getOpCode() == OpCodes.JMP
+                    && nextCode.get(0).getOperand(0) instanceof LabelOperand
+                    && reachesByFallingThrough(blocks, i + 2, target)) {
+                    code.set(code.size() - 1, new X86Instruction(INVERSE.get(last.getOpCode()), nextCode.get(0).getOperand(0)));
+                    nextCode.clear();
+                    count("jumps threaded");
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Where a jump to label ends up once jumps to jumps are followed
+    private static String finalTarget(List<BasicBlock> blocks, Map<String, Integer> index, String label) {
+        for (int hops = 0; hops < MAX_THREADING; hops++) {
+            Integer at = index.get(label);
+            if (at == null) {
+                return label;
+            }
+            int i = at;
+            while (blocks.get(i).getInstructions().isEmpty() && i + 1 < blocks.size() && blocks.get(i + 1).canFallInto()) {
+                i++;
+            }
+            List<X86Instruction> code = blocks.get(i).getInstructions();
+            if (code.isEmpty() || code.get(0).getOpCode() != OpCodes.JMP || !(code.get(0).getOperand(0) instanceof LabelOperand)) {
+                return label;
+            }
+            String next = ((LabelOperand) code.get(0).getOperand(0)).getName();
+            if (next.equals(label) || !index.containsKey(next)) {
+                return label;
+            }
+            label = next;
+        }
+        return label;
+    }
+
+    // Whether falling through from block i - 1 reaches label before any instruction
+    private static boolean reachesByFallingThrough(List<BasicBlock> blocks, int i, String label) {
+        for (; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            if (!block.canFallInto()) {
+                return false;
+            }
+            for (X86Instruction candidate : block.getLabels()) {
+                if (candidate.getLabel().equals(label)) {
+                    return true;
+                }
+            }
+            if (!block.getInstructions().isEmpty()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeUnreachable(List<BasicBlock> blocks) {
+        boolean changed = false;
+        boolean reachable = true;
+        for (BasicBlock block : blocks) {
+            reachable = reachable || !block.getLabels().isEmpty();
+            if (!reachable && !block.getInstructions().isEmpty()) {
+                for (int k = 0; k < block.getInstructions().size(); k++) {
+                    count("unreachable");
+                }
+                block.getInstructions().clear();
+                changed = true;
+            }
+            reachable = reachable && block.fallsThrough();
+        }
+        return changed;
+    }
+
+    // ---- Liveness ----
+
+    private void analyze(List<BasicBlock> blocks) {
+        BasicBlock.link(blocks);
+        long[] exitLive = new long[blocks.size()];
+        boolean inRoutine = false;
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            for (X86Instruction label : block.getLabels()) {
+                if (label.getDirectives() != null) {
+                    inRoutine = label.getDirectives().contains(".quad");
+                }
+            }
+            X86Instruction last = block.last();
+            exitLive[i] = inRoutine && last != null && last.getOpCode() == OpCodes.RET ? routineResult : ALL;
+        }
+
+        Map<BasicBlock, Long> liveIn = new IdentityHashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                BasicBlock block = blocks.get(i);
+                long out = block.exits() ? exitLive[i] : 0;
+                for (BasicBlock successor : block.getSuccessors()) {
+                    out |= liveIn.getOrDefault(successor, 0L);
+                }
+                block.setLiveOut(out);
+                long in = out;
+                List<X86Instruction> code = block.getInstructions();
+                for (int k = code.size() - 1; k >= 0; k--) {
+                    in = (in & ~defs(code.get(k))) | uses(code.get(k));
+                }
+                Long old = liveIn.put(block, in);
+                if (old == null || old != in) {
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // What is live after each instruction of a block
+    private long[] liveAfter(BasicBlock block) {
+        List<X86Instruction> code = block.getInstructions();
+        long[] after = new long[code.size()];
+        long live = block.getLiveOut();
+        for (int k = code.size() - 1; k >= 0; k--) {
+            after[k] = live;
+            live = (live & ~defs(code.get(k))) | uses(code.get(k));
+        }
+        return after;
+    }
+
+    static long bit(Registers register) {
+        return 1L << register.ordinal();
+    }
+
+    // The registers an operand reads when it is a source
+    private static long reads(Operand operand) {
+        long mask = 0;
+        if (operand != null) {
+            for (Registers register : operand.getRegisters()) {
+                mask |= bit(register);
+            }
+        }
+        return mask;
+    }
+
+    // The registers a destination operand reads: an address, or the rest of a partial register
+    private static long destinationReads(Operand operand) {
+        if (operand instanceof RegisterOperand) {
+            return ((RegisterOperand) operand).isPartial() ? reads(operand) : 0;
+        }
+        return reads(operand);
+    }
+
+    // The register a destination operand replaces entirely, as a mask
+    private static long destinationWrites(Operand operand) {
+        if (operand instanceof RegisterOperand && !((RegisterOperand) operand).isPartial()) {
+            return bit(((RegisterOperand) operand).getRegister());
+        }
+        return 0;
+    }
+
+    private static boolean isArithmetic(OpCodes opCode) {
+        switch (opCode) {
+            case ADD: case SUB: case AND: case OR: case XOR: case SHL: case SHR: case SAR: case IMUL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // xor r, r and sub r, r do not depend on r
+    private static boolean isZeroIdiom(X86Instruction instruction) {
+        return (instruction.getOpCode() == OpCodes.XOR || instruction.getOpCode() == OpCodes.SUB)
+            && instruction.getOperand(0) instanceof RegisterOperand
+            && instruction.getOperand(0).equals(instruction.getOperand(1));
+    }
+
+    /**
+     * The registers (and FLAGS) an instruction may read.
+     */
+    long uses(X86Instruction instruction) {
+        Operand a = instruction.getOperand(0);
+        Operand b = instruction.getOperand(1);
+        OpCodes opCode = instruction.getOpCode();
+        if (BasicBlock.isConditionalJump(opCode)) {
+            return FLAGS;
+        }
+        if (isZeroIdiom(instruction)) {
+            return 0;
+        }
+        if (isArithmetic(opCode)) {
+            return reads(a) | reads(b);
+        }
+        switch (opCode) {
+            case MOV: case MOVZX: case LEA:
+                return destinationReads(a) | reads(b);
+            case INC: case DEC:
+                return reads(a);
+            case CMP: case TEST: case XCHG:
+                return reads(a) | reads(b);
+            case CQO:
+                return bit(Registers.RAX);
+            case DIV: case IDIV:
+                return bit(Registers.RAX) | bit(Registers.RDX) | reads(a);
+            case PUSH:
+                return reads(a) | bit(Registers.RSP);
+            case POP:
+                return destinationReads(a) | bit(Registers.RSP);
+            case JMP:
+                return a instanceof LabelOperand ? 0 : ALL;
+            case CALL:
+                return a instanceof LabelOperand && callReads.containsKey(((LabelOperand) a).getName())
+                    ? callReads.get(((LabelOperand) a).getName())
+                    : ALL;
+            default:
+                // ret, syscall
+                return ALL;
+        }
+    }
+
+    /**
+     * The registers (and FLAGS) an instruction certainly replaces. Liveness only kills these.
+     */
+    long defs(X86Instruction instruction) {
+        Operand a = instruction.getOperand(0);
+        OpCodes opCode = instruction.getOpCode();
+        if (isArithmetic(opCode)) {
+            return destinationWrites(a) | FLAGS;
+        }
+        switch (opCode) {
+            case MOV: case MOVZX: case LEA:
+                return destinationWrites(a);
+            case INC: case DEC:
+                return destinationWrites(a) | FLAGS;
+            case CMP: case TEST:
+                return FLAGS;
+            case CQO:
+                return bit(Registers.RDX);
+            case DIV: case IDIV:
+                return bit(Registers.RAX) | bit(Registers.RDX) | FLAGS;
+            case XCHG:
+                return destinationWrites(a) | destinationWrites(instruction.getOperand(1));
+            case POP:
+                return destinationWrites(a);
+            case CALL:
+                return a instanceof LabelOperand && callClobbers.containsKey(((LabelOperand) a).getName())
+                    ? callClobbers.get(((LabelOperand) a).getName()) | FLAGS
+                    : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * The registers (and FLAGS) whose value an instruction may change.
+     */
+    static long clobbers(X86Instruction instruction) {
+        Operand a = instruction.getOperand(0);
+        OpCodes opCode = instruction.getOpCode();
+        long destination = a instanceof RegisterOperand ? reads(a) : 0;
+        if (isArithmetic(opCode)) {
+            return destination | FLAGS;
+        }
+        switch (opCode) {
+            case MOV: case MOVZX: case LEA:
+                return destination;
+            case INC: case DEC:
+                return destination | FLAGS;
+            case CMP: case TEST:
+                return FLAGS;
+            case CQO:
+                return bit(Registers.RDX);
+            case DIV: case IDIV:
+                return bit(Registers.RAX) | bit(Registers.RDX) | FLAGS;
+            case XCHG:
+                return destination | (instruction.getOperand(1) instanceof RegisterOperand ? reads(instruction.getOperand(1)) : 0);
+            case PUSH:
+                return bit(Registers.RSP);
+            case POP:
+                return destination | bit(Registers.RSP);
+            case JMP: case RET:
+                return 0;
+            default:
+                return BasicBlock.isConditionalJump(opCode) ? 0 : ALL;
+        }
+    }
+
+    // Whether the instruction writes memory other than through push
+    private static boolean writesMemory(X86Instruction instruction) {
+        OpCodes opCode = instruction.getOpCode();
+        if (opCode == OpCodes.CALL || opCode == OpCodes.SYSCALL || opCode == OpCodes.PUSH) {
+            return true;
+        }
+        if (opCode == OpCodes.XCHG && instruction.getOperand(1) instanceof MemoryOperand) {
+            return true;
+        }
+        return instruction.getOperand(0) instanceof MemoryOperand
+            && opCode != OpCodes.CMP && opCode != OpCodes.TEST && opCode != OpCodes.PUSH
+            && opCode != OpCodes.JMP && opCode != OpCodes.DIV && opCode != OpCodes.IDIV;
+    }
+
+    // Instructions with no effect but on the registers and flags they define
+    private static boolean isPure(X86Instruction instruction) {
+        OpCodes opCode = instruction.getOpCode();
+        if (opCode == OpCodes.CMP || opCode == OpCodes.TEST || opCode == OpCodes.CQO) {
+            return true;
+        }
+        if (!isArithmetic(opCode) && opCode != OpCodes.MOV && opCode != OpCodes.MOVZX && opCode != OpCodes.LEA
+            && opCode != OpCodes.INC && opCode != OpCodes.DEC) {
+            return false;
+        }
+        Operand a = instruction.getOperand(0);
+        return a instanceof RegisterOperand && !((RegisterOperand) a).isPartial()
+            && ((RegisterOperand) a).getRegister() != Registers.RSP;
+    }
+
+    // ---- Forward propagation ----
+
+    /**
+     * What is known at a point of a block. Bits of a register are known when ones or zeros has
+     * them set; copy[r] is a register holding the same value as r, or -1; symbol[r] is the
+     * static address, such as [comb_B+2], that r holds; memory maps an address to a register
+     * holding the quadword stored there; the flags are null when unknown.
+     */
+    private static final class State {
+        final long[] ones = new long[REGISTERS];
+        final long[] zeros = new long[REGISTERS];
+        final int[] copy = new int[REGISTERS];
+        final String[] symbol = new String[REGISTERS];
+        final Map<String, Registers> memory = new HashMap<>();
+        final Map<String, MemoryOperand> addresses = new HashMap<>();
+        Boolean zero;
+        Boolean sign;
+        Boolean carry;
+        Boolean overflow;
+
+        State() {
+            Arrays.fill(copy, -1);
+        }
+
+        boolean isConstant(Registers register) {
+            return (ones[register.ordinal()] | zeros[register.ordinal()]) == -1L;
+        }
+
+        long constant(Registers register) {
+            return ones[register.ordinal()];
+        }
+
+        int root(Registers register) {
+            int copied = copy[register.ordinal()];
+            return copied >= 0 ? copied : register.ordinal();
+        }
+
+        // The register (or part) may have changed: forget what was known about it
+        void forget(Registers register) {
+            int r = register.ordinal();
+            ones[r] = 0;
+            zeros[r] = 0;
+            copy[r] = -1;
+            symbol[r] = null;
+            for (int other = 0; other < REGISTERS; other++) {
+                if (copy[other] == r) {
+                    copy[other] = -1;
+                }
+            }
+            Iterator<Map.Entry<String, Registers>> entries = memory.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Registers> entry = entries.next();
+                if (entry.getValue() == register || addresses.get(entry.getKey()).getRegisters().contains(register)) {
+                    addresses.remove(entry.getKey());
+                    entries.remove();
+                }
+            }
+        }
+
+        // A store to target: forget the cells it may overlap
+        void store(MemoryOperand target) {
+            Iterator<Map.Entry<String, Registers>> entries = memory.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Registers> entry = entries.next();
+                if (mayOverlap(addresses.get(entry.getKey()), target)) {
+                    addresses.remove(entry.getKey());
+                    entries.remove();
+                }
+            }
+        }
+
+        void forgetMemory() {
+            memory.clear();
+            addresses.clear();
+        }
+
+        void forgetFlags() {
+            zero = null;
+            sign = null;
+            carry = null;
+            overflow = null;
+        }
+
+        void remember(MemoryOperand cell, Registers register) {
+            memory.put(cell.getAddress(), register);
+            addresses.put(cell.getAddress(), cell);
+        }
+    }
+
+    // Two quadword cells at different offsets from the same registers or symbol do not overlap
+    private static boolean mayOverlap(MemoryOperand a, MemoryOperand b) {
+        boolean sameBase = a.getBase() == b.getBase() && a.getIndex() == b.getIndex() && a.getScale() == b.getScale()
+            && (a.getSymbol() == null ? b.getSymbol() == null : a.getSymbol().equals(b.getSymbol()));
+        if (sameBase) {
+            return Math.abs(a.getDisplacement() - b.getDisplacement()) < 8;
+        }
+        // Distinct symbols with no registers are distinct variables
+        boolean bothStatic = a.getBase() == null && a.getIndex() == null && b.getBase() == null && b.getIndex() == null
+            && a.getSymbol() != null && b.getSymbol() != null;
+        return !bothStatic;
+    }
+
+    private boolean propagate(List<BasicBlock> blocks) {
+        boolean changed = false;
+        State state = new State();
+        for (int b = 0; b < blocks.size(); b++) {
+            BasicBlock block = blocks.get(b);
+            if (b == 0 || !block.getLabels().isEmpty() || !blocks.get(b - 1).fallsThrough()) {
+                state = new State();
+            }
+            long[] liveAfter = liveAfter(block);
+            List<X86Instruction> code = block.getInstructions();
+            List<X86Instruction> rewritten = new ArrayList<>();
+            for (int k = 0; k < code.size(); k++) {
+                X86Instruction instruction = code.get(k);
+                X86Instruction substituted = substitute(instruction, state);
+                X86Instruction simplified = simplify(substituted, state, liveAfter[k]);
+                if (simplified != instruction) {
+                    changed = true;
+                }
+                if (simplified != null) {
+                    step(simplified, state);
+                    rewritten.add(simplified);
+                }
+            }
+            code.clear();
+            code.addAll(rewritten);
+        }
+        return changed;
+    }
+
+    // Replaces source registers by the register they copy or by their constant value
+    private X86Instruction substitute(X86Instruction instruction, State state) {
+        OpCodes opCode = instruction.getOpCode();
+        Operand a = instruction.getOperand(0);
+        Operand b = instruction.getOperand(1);
+        Operand newA = a;
+        Operand newB = b;
+        switch (opCode) {
+            case MOV:
+                newA = address(a, state);
+                newB = source(b, state, a instanceof RegisterOperand ? ((RegisterOperand) a).getBits() : 32);
+                if (newB instanceof ImmediateOperand && a instanceof RegisterOperand && !((RegisterOperand) a).isFull()) {
+                    newB = b;
+                }
+                break;
+            case LEA: case MOVZX:
+                newB = address(b, state);
+                break;
+            case ADD: case SUB: case AND: case OR: case XOR: case IMUL: case CMP: case TEST:
+                if (a.equals(b)) {
+                    break;
+                }
+                newA = opCode == OpCodes.CMP || opCode == OpCodes.TEST ? source(a, state, 0) : address(a, state);
+                newB = source(b, state, 32);
+                break;
+            case SHL: case SHR: case SAR: case INC: case DEC: case POP:
+                newA = address(a, state);
+                break;
+            case PUSH:
+                newA = source(a, state, 32);
+                break;
+            default:
+                return instruction;
+        }
+        if (newA == a && newB == b) {
+            return instruction;
+        }
+        // An immediate does not say how wide a memory operand is
+        if (newB instanceof ImmediateOperand && newA instanceof MemoryOperand && ((MemoryOperand) newA).getSize() == null) {
+            newA = ((MemoryOperand) newA).withSize("qword");
+        }
+        if (newB instanceof ImmediateOperand && !(b instanceof ImmediateOperand)
+            || newA instanceof ImmediateOperand && !(a instanceof ImmediateOperand)) {
+            count("constants folded");
+        } else {
+            count("copies propagated");
+        }
+        List<Operand> operands = new ArrayList<>(instruction.getOperands());
+        operands.set(0, newA);
+        if (operands.size() > 1) {
+            operands.set(1, newB);
+        }
+        return new X86Instruction(opCode, operands);
+    }
+
+    // A register source as its constant (if an immediate of width bits may hold it; 0: never)
+    // or as the register it copies; the address of a memory source likewise
+    private static Operand source(Operand operand, State state, int bits) {
+        Registers register = fullRegister(operand);
+        if (register == null || register == Registers.RSP || register == Registers.RBP) {
+            return address(operand, state);
+        }
+        if (bits > 0 && state.isConstant(register)) {
+            long value = state.constant(register);
+            if (bits == 64 || ImmediateOperand.fitsInt32(value)) {
+                return new ImmediateOperand(value);
+            }
+        }
+        int root = state.root(register);
+        return root != register.ordinal() ? RegisterOperand.of(Registers.values()[root]) : operand;
+    }
+
+    private static Operand address(Operand operand, State state) {
+        if (!(operand instanceof MemoryOperand)) {
+            return operand;
+        }
+        MemoryOperand memory = (MemoryOperand) operand;
+        for (Registers register : memory.getRegisters()) {
+            if (register == Registers.RSP || register == Registers.RBP) {
+                continue;
+            }
+            if (state.isConstant(register)) {
+                MemoryOperand folded = memory.substitute(register, null, state.constant(register));
+                if (ImmediateOperand.fitsInt32(folded.getDisplacement())) {
+                    memory = folded;
+                    continue;
+                }
+            }
+            int root = state.root(register);
+            if (root != register.ordinal() && root != Registers.RSP.ordinal()) {
+                memory = memory.substitute(register, Registers.values()[root], 0);
+            }
+        }
+        return memory.equals(operand) ? operand : memory;
+    }
+
+    // Drops moves that change nothing, folds constant arithmetic and decided branches.
+    // Returns null to delete the instruction.
+    private X86Instruction simplify(X86Instruction instruction, State state, long liveAfter) {
+        OpCodes opCode = instruction.getOpCode();
+        Operand a = instruction.getOperand(0);
+        Operand b = instruction.getOperand(1);
+        Registers target = fullRegister(a);
+        boolean flagsDead = (liveAfter & FLAGS) == 0;
+
+        if (opCode == OpCodes.LEA) {
+            MemoryOperand address = (MemoryOperand) b;
+            if (target != null && address.getAddress().equals(state.symbol[target.ordinal()])) {
+                count("redundant moves");
+                return null;
+            }
+            if (target != null && address.getSymbol() == null && address.getIndex() == null
+                && (address.getBase() == null || address.getDisplacement() == 0)) {
+                Operand value = address.getBase() == null
+                    ? new ImmediateOperand(address.getDisplacement())
+                    : RegisterOperand.of(address.getBase());
+                count("constants folded");
+                return simplify(new X86Instruction(OpCodes.MOV, a, value), state, liveAfter);
+            }
+            return instruction;
+        }
+
+        if (opCode == OpCodes.MOV) {
+            if (target != null && (a.equals(b) || sameValue(target, b, state))) {
+                count("redundant moves");
+                return null;
+            }
+            Registers from = fullRegister(b);
+            if (a instanceof MemoryOperand && from != null && isQuadword((MemoryOperand) a)) {
+                Registers held = state.memory.get(((MemoryOperand) a).getAddress());
+                if (held != null && state.root(held) == state.root(from)) {
+                    count("redundant moves");
+                    return null;
+                }
+            }
+            return instruction;
+        }
+
+        if (target != null && target != Registers.RSP && flagsDead && state.isConstant(target)) {
+            long value = state.constant(target);
+            Long result = null;
+            long operand = 0;
+            boolean known = true;
+            if (b instanceof ImmediateOperand) {
+                operand = ((ImmediateOperand) b).getValue();
+            } else if (fullRegister(b) != null && state.isConstant(fullRegister(b))) {
+                operand = state.constant(fullRegister(b));
+            } else {
+                known = b == null;
+            }
+            if (known) {
+                result = fold(opCode, value, operand);
+            }
+            if (result != null) {
+                count("constants folded");
+                X86Instruction move = new X86Instruction(OpCodes.MOV, a, new ImmediateOperand(result));
+                return result == value ? null : move;
+            }
+        }
+
+        if (BasicBlock.isConditionalJump(opCode)) {
+            Boolean taken = taken(opCode, state);
+            if (taken != null) {
+                count("tag tests folded");
+                return taken ? new X86Instruction(OpCodes.JMP, a) : null;
+            }
+        }
+        return instruction;
+    }
+
+    private static boolean isQuadword(MemoryOperand memory) {
+        return memory.getSize() == null || memory.getSize().equals("qword");
+    }
+
+    // Whether register already holds the value of source
+    private static boolean sameValue(Registers register, Operand source, State state) {
+        if (source instanceof ImmediateOperand) {
+            return state.isConstant(register) && state.constant(register) == ((ImmediateOperand) source).getValue();
+        }
+        Registers from = fullRegister(source);
+        if (from != null) {
+            String symbol = state.symbol[register.ordinal()];
+            return state.root(register) == state.root(from) || (symbol != null && symbol.equals(state.symbol[from.ordinal()]))
+                || (state.isConstant(register) && state.isConstant(from) && state.constant(register) == state.constant(from));
+        }
+        if (source instanceof MemoryOperand && isQuadword((MemoryOperand) source)) {
+            Registers held = state.memory.get(((MemoryOperand) source).getAddress());
+            return held != null && state.root(held) == state.root(register);
+        }
+        return false;
+    }
+
+    // The result of a 64-bit operation on constants, or null if it is not one to fold
+    private static Long fold(OpCodes opCode, long value, long operand) {
+        switch (opCode) {
+            case ADD: return value + operand;
+            case SUB: return value - operand;
+            case AND: return value & operand;
+            case OR: return value | operand;
+            case XOR: return value ^ operand;
+            case IMUL: return value * operand;
+            case SHL: return value << operand;
+            case SHR: return value >>> operand;
+            case SAR: return value >> operand;
+            case INC: return value + 1;
+            case DEC: return value - 1;
+            default: return null;
+        }
+    }
+
+    // Whether a conditional jump is taken given the known flags, null if not known
+    private static Boolean taken(OpCodes opCode, State state) {
+        switch (opCode) {
+            case JE: return state.zero;
+            case JNE: case JNZ: return not(state.zero);
+            case JB: return state.carry;
+            case JAE: return not(state.carry);
+            case JBE: return or(state.carry, state.zero);
+            case JA: return not(or(state.carry, state.zero));
+            case JL: return notEqual(state.sign, state.overflow);
+            case JGE: return not(notEqual(state.sign, state.overflow));
+            case JLE: return or(state.zero, notEqual(state.sign, state.overflow));
+            case JG: return not(or(state.zero, notEqual(state.sign, state.overflow)));
+            default: return null;
+        }
+    }
+
+    private static Boolean not(Boolean a) {
+        return a == null ? null : !a;
+    }
+
+    private static Boolean or(Boolean a, Boolean b) {
+        if (Boolean.TRUE.equals(a) || Boolean.TRUE.equals(b)) {
+            return true;
+        }
+        return a == null || b == null ? null : false;
+    }
+
+    private static Boolean notEqual(Boolean a, Boolean b) {
+        return a == null || b == null ? null : a.booleanValue() != b.booleanValue();
+    }
+
+    // ---- Known bits ----
+
+    // The bits of an operand as { ones, zeros }, zero-extended from its width
+    private static long[] bits(Operand operand, State state) {
+        if (operand instanceof ImmediateOperand) {
+            long value = ((ImmediateOperand) operand).getValue();
+            return new long[] { value, ~value };
+        }
+        if (operand instanceof RegisterOperand) {
+            RegisterOperand register = (RegisterOperand) operand;
+            int r = register.getRegister().ordinal();
+            long mask = widthMask(register.getBits());
+            return new long[] { state.ones[r] & mask, state.zeros[r] | ~mask };
+        }
+        return new long[] { 0, 0 };
+    }
+
+    private static long widthMask(int bits) {
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+
+    // How many of the lowest bits are known
+    private static int knownLow(long[] x) {
+        return Long.numberOfTrailingZeros(~(x[0] | x[1]));
+    }
+
+    // The low bits of a + b, a - b or a * b that the known low bits of both decide
+    private static long[] lowBits(OpCodes opCode, long[] x, long[] y) {
+        int known = Math.min(knownLow(x), knownLow(y));
+        long mask = widthMask(known);
+        long result;
+        switch (opCode) {
+            case ADD: result = x[0] + y[0]; break;
+            case SUB: result = x[0] - y[0]; break;
+            default: result = x[0] * y[0]; break;
+        }
+        return new long[] { result & mask, ~result & mask };
+    }
+
+    private static long[] shifted(long[] x, long scale) {
+        int shift = Long.numberOfTrailingZeros(scale);
+        return new long[] { x[0] << shift, (x[1] << shift) | widthMask(shift) };
+    }
+
+    // The bits of the address an lea computes
+    private static long[] addressBits(MemoryOperand address, State state) {
+        if (address.getSymbol() != null) {
+            return new long[] { 0, 0 };
+        }
+        long[] sum = bits(new ImmediateOperand(address.getDisplacement()), state);
+        if (address.getBase() != null) {
+            sum = lowBits(OpCodes.ADD, sum, bits(RegisterOperand.of(address.getBase()), state));
+        }
+        if (address.getIndex() != null) {
+            long[] index = shifted(bits(RegisterOperand.of(address.getIndex()), state), address.getScale());
+            sum = lowBits(OpCodes.ADD, sum, index);
+        }
+        return sum;
+    }
+
+    // The bits the instruction writes to its destination register, before it is written
+    private static long[] result(X86Instruction instruction, State state) {
+        OpCodes opCode = instruction.getOpCode();
+        Operand a = instruction.getOperand(0);
+        Operand b = instruction.getOperand(1);
+        long[] unknown = { 0, 0 };
+        if (opCode == OpCodes.MOV) {
+            return bits(b, state);
+        }
+        if (opCode == OpCodes.MOVZX) {
+            if (b instanceof MemoryOperand) {
+                String size = ((MemoryOperand) b).getSize();
+                return "byte".equals(size) ? new long[] { 0, ~0xFFL } : "word".equals(size) ? new long[] { 0, ~0xFFFFL } : unknown;
+            }
+            return bits(b, state);
+        }
+        if (opCode == OpCodes.LEA) {
+            return addressBits((MemoryOperand) b, state);
+        }
+        if (!(a instanceof RegisterOperand) || !((RegisterOperand) a).isFull()) {
+            return unknown;
+        }
+        if (isZeroIdiom(instruction)) {
+            return new long[] { 0, -1L };
+        }
+        long[] x = bits(a, state);
+        long[] y = b == null ? null : bits(b, state);
+        switch (opCode) {
+            case ADD: case SUB: case IMUL:
+                return lowBits(opCode, x, y);
+            case INC:
+                return lowBits(OpCodes.ADD, x, new long[] { 1, ~1L });
+            case DEC:
+                return lowBits(OpCodes.SUB, x, new long[] { 1, ~1L });
+            case AND:
+                return new long[] { x[0] & y[0], x[1] | y[1] };
+            case OR:
+                return new long[] { x[0] | y[0], x[1] & y[1] };
+            case XOR: {
+                long known = (x[0] | x[1]) & (y[0] | y[1]);
+                long value = x[0] ^ y[0];
+                return new long[] { value & known, ~value & known };
+            }
+            case SHL: case SHR: case SAR: {
+                if (!(b instanceof ImmediateOperand)) {
+                    return unknown;
+                }
+                int shift = (int) (((ImmediateOperand) b).getValue() & 63);
+                if (opCode == OpCodes.SHL) {
+                    return new long[] { x[0] << shift, (x[1] << shift) | widthMask(shift) };
+                }
+                if (opCode == OpCodes.SHR) {
+                    return new long[] { x[0] >>> shift, (x[1] >>> shift) | ~(-1L >>> shift) };
+                }
+                return new long[] { x[0] >> shift, x[1] >> shift };
+            }
+            default:
+                return unknown;
+        }
+    }
+
+    // Sets the flags a test or cmp computes from what is known of its operands
+    private static void compare(X86Instruction instruction, State state) {
+        Operand a = instruction.getOperand(0);
+        Operand b = instruction.getOperand(1);
+        state.forgetFlags();
+        int width = a instanceof RegisterOperand ? ((RegisterOperand) a).getBits()
+            : b instanceof RegisterOperand ? ((RegisterOperand) b).getBits() : 0;
+        if (width == 0) {
+            return;
+        }
+        long mask = widthMask(width);
+        long top = 1L << (width - 1);
+        long[] x = bits(a, state);
+        long[] y = bits(b, state);
+
+        if (instruction.getOpCode() == OpCodes.TEST) {
+            long ones = x[0] & y[0] & mask;
+            long zeros = (x[1] | y[1]) | ~mask;
+            state.zero = ones != 0 ? Boolean.FALSE : zeros == -1L ? Boolean.TRUE : null;
+            state.sign = (ones & top) != 0 ? Boolean.TRUE : (zeros & top) != 0 ? Boolean.FALSE : null;
+            state.carry = false;
+            state.overflow = false;
+            return;
+        }
+
+        if (((x[0] | x[1]) & mask) != mask || ((y[0] | y[1]) & mask) != mask) {
+            return;
+        }
+        long left = x[0] & mask;
+        long right = y[0] & mask;
+        long difference = (left - right) & mask;
+        state.zero = difference == 0;
+        state.sign = (difference & top) != 0;
+        state.carry = Long.compareUnsigned(left, right) < 0;
+        // Signed overflow: the operands differ in sign and the result has the sign of right
+        state.overflow = ((left ^ right) & (left ^ difference) & top) != 0;
+    }
+
+    // Moves the state past an instruction
+    private static void step(X86Instruction instruction, State state) {
+        OpCodes opCode = instruction.getOpCode();
+        Operand a = instruction.getOperand(0);
+        Operand b = instruction.getOperand(1);
+
+        long[] written = result(instruction, state);
+        Registers target = a instanceof RegisterOperand ? ((RegisterOperand) a).getRegister() : null;
+        int targetBits = a instanceof RegisterOperand ? ((RegisterOperand) a).getBits() : 0;
+        Registers copied = opCode == OpCodes.MOV && targetBits == 64 ? fullRegister(b) : null;
+        String symbol = copied != null ? state.symbol[copied.ordinal()] : null;
+        if (opCode == OpCodes.LEA && targetBits == 64 && ((MemoryOperand) b).getSymbol() != null
+            && b.getRegisters().isEmpty()) {
+            symbol = ((MemoryOperand) b).getAddress();
+        }
+        if (copied != null) {
+            copied = Registers.values()[state.root(copied)];
+        }
+
+        if (writesMemory(instruction)) {
+            if (opCode == OpCodes.CALL || opCode == OpCodes.SYSCALL || !(a instanceof MemoryOperand)) {
+                state.forgetMemory();
+            } else {
+                state.store((MemoryOperand) a);
+            }
+        }
+        long clobbered = clobbers(instruction);
+        for (Registers register : Registers.values()) {
+            if ((clobbered & bit(register)) != 0) {
+                state.forget(register);
+            }
+        }
+        if ((clobbered & FLAGS) != 0) {
+            state.forgetFlags();
+        }
+        if ((clobbered & bit(Registers.RSP)) != 0) {
+            state.forgetMemory();
+        }
+
+        boolean writesTarget = target != null && (clobbered & bit(target)) != 0
+            && opCode != OpCodes.POP && opCode != OpCodes.XCHG && opCode != OpCodes.CQO
+            && opCode != OpCodes.DIV && opCode != OpCodes.IDIV;
+        if (writesTarget && targetBits >= 32) {
+            long mask = widthMask(targetBits);
+            state.ones[target.ordinal()] = written[0] & mask;
+            state.zeros[target.ordinal()] = written[1] | ~mask;
+        }
+        if (symbol != null && target != Registers.RSP) {
+            state.symbol[target.ordinal()] = symbol;
+        }
+        if (copied != null && copied != target && target != Registers.RSP && target != Registers.RBP
+            && copied != Registers.RSP && copied != Registers.RBP) {
+            state.copy[target.ordinal()] = copied.ordinal();
+        }
+        if (opCode == OpCodes.MOV && targetBits == 64 && b instanceof MemoryOperand && isQuadword((MemoryOperand) b)
+            && !b.getRegisters().contains(target)) {
+            state.remember((MemoryOperand) b, target);
+        }
+        if (opCode == OpCodes.MOV && a instanceof MemoryOperand && isQuadword((MemoryOperand) a) && fullRegister(b) != null) {
+            state.remember((MemoryOperand) a, fullRegister(b));
+        }
+        if (opCode == OpCodes.CQO && state.isConstant(Registers.RAX)) {
+            long sign = state.constant(Registers.RAX) >> 63;
+            state.ones[Registers.RDX.ordinal()] = sign;
+            state.zeros[Registers.RDX.ordinal()] = ~sign;
+        }
+        if (opCode == OpCodes.TEST || opCode == OpCodes.CMP) {
+            compare(instruction, state);
+        }
+    }
+
+    // ---- Dead stores and copies ----
+
+    private boolean removeDeadStores(BasicBlock block) {
+        boolean changed = false;
+        List<X86Instruction> code = block.getInstructions();
+        long live = block.getLiveOut();
+        for (int k = code.size() - 1; k >= 0; k--) {
+            X86Instruction instruction = code.get(k);
+            long defs = defs(instruction);
+            if (isPure(instruction) && defs != 0 && (defs & live) == 0) {
+                code.remove(k);
+                count("dead stores");
+                changed = true;
+                continue;
+            }
+            live = (live & ~defs) | uses(instruction);
+        }
+        return changed;
+    }
+
+    // pop rbx; mov rax, rbx with rbx dead becomes pop rax (likewise mov, lea), and
+    // mov rax, [rsp+16]; push rax with rax dead becomes push qword ptr [rsp+16]
+    private boolean coalesceCopies(BasicBlock block) {
+        boolean changed = false;
+        List<X86Instruction> code = block.getInstructions();
+        long[] liveAfter = liveAfter(block);
+        for (int k = code.size() - 1; k >= 1; k--) {
+            X86Instruction copy = code.get(k);
+            if (copy.getOpCode() == OpCodes.PUSH && pushSource(code.get(k - 1), copy, liveAfter[k]) != null) {
+                code.set(k - 1, new X86Instruction(OpCodes.PUSH, pushSource(code.get(k - 1), copy, liveAfter[k])));
+                code.remove(k);
+                count("redundant moves");
+                changed = true;
+                k--;
+                continue;
+            }
+            Registers from = fullRegister(copy.getOperand(1));
+            Registers to = fullRegister(copy.getOperand(0));
+            if (copy.getOpCode() != OpCodes.MOV || from == null || to == null || from == to
+                || from == Registers.RSP || to == Registers.RSP || (liveAfter[k] & bit(from)) != 0) {
+                continue;
+            }
+            X86Instruction previous = code.get(k - 1);
+            OpCodes opCode = previous.getOpCode();
+            if ((opCode != OpCodes.POP && opCode != OpCodes.MOV && opCode != OpCodes.LEA)
+                || fullRegister(previous.getOperand(0)) != from) {
+                continue;
+            }
+            List<Operand> operands = new ArrayList<>(previous.getOperands());
+            operands.set(0, RegisterOperand.of(to));
+            code.set(k - 1, new X86Instruction(opCode, operands));
+            code.remove(k);
+            count("redundant moves");
+            changed = true;
+            k--;
+        }
+        return changed;
+    }
+
+    // What push can take directly instead of the register load just loaded, or null
+    private static Operand pushSource(X86Instruction load, X86Instruction push, long liveAfter) {
+        Registers register = fullRegister(push.getOperand(0));
+        if (load.getOpCode() != OpCodes.MOV || register == null || register == Registers.RSP
+            || fullRegister(load.getOperand(0)) != register || (liveAfter & bit(register)) != 0) {
+            return null;
+        }
+        Operand source = load.getOperand(1);
+        if (source instanceof MemoryOperand && isQuadword((MemoryOperand) source)) {
+            return ((MemoryOperand) source).withSize("qword");
+        }
+        if (source instanceof ImmediateOperand && ImmediateOperand.fitsInt32(((ImmediateOperand) source).getValue())) {
+            return source;
+        }
+        return null;
+    }
+
+    private static Registers fullRegister(Operand operand) {
+        if (operand instanceof RegisterOperand && ((RegisterOperand) operand).isFull()) {
+            return ((RegisterOperand) operand).getRegister();
+        }
+        return null;
+    }
+
+    // ---- Push and pop ----
+
+    private boolean pairPushes(BasicBlock block) {
+        boolean changed = false;
+        List<X86Instruction> code = block.getInstructions();
+        for (int j = 0; j < code.size(); j++) {
+            if (code.get(j).getOpCode() != OpCodes.POP) {
+                continue;
+            }
+            int i = matchingPush(code, j);
+            if (i < 0) {
+                continue;
+            }
+            Operand source = code.get(i).getOperand(0);
+            Operand target = code.get(j).getOperand(0);
+            // pop computes its address after moving rsp
+            if (source instanceof MemoryOperand && target instanceof MemoryOperand
+                || (reads(target) & bit(Registers.RSP)) != 0) {
+                continue;
+            }
+            if (target instanceof MemoryOperand && ((MemoryOperand) target).getSize() == null
+                && !(source instanceof RegisterOperand)) {
+                target = ((MemoryOperand) target).withSize("qword");
+            }
+            if (source.equals(target)) {
+                code.remove(j);
+                j--;
+            } else {
+                code.set(j, new X86Instruction(OpCodes.MOV, target, source));
+            }
+            code.remove(i);
+            j--;
+            count("push/pop pairs");
+            changed = true;
+        }
+        return changed;
+    }
+
+    // The push whose value the pop at j takes, if nothing in between moves the stack, changes
+    // the pushed value or could read the slot it went to
+    private int matchingPush(List<X86Instruction> code, int j) {
+        long stack = bit(Registers.RSP) | bit(Registers.RBP);
+        for (int i = j - 1; i >= 0; i--) {
+            X86Instruction instruction = code.get(i);
+            if (instruction.getOpCode() != OpCodes.PUSH) {
+                if (((uses(instruction) | clobbers(instruction)) & stack) != 0) {
+                    return -1;
+                }
+                continue;
+            }
+            Operand source = instruction.getOperand(0);
+            for (int k = i + 1; k < j; k++) {
+                X86Instruction between = code.get(k);
+                if ((clobbers(between) & reads(source)) != 0
+                    || (source instanceof MemoryOperand && writesMemory(between))) {
+                    return -1;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
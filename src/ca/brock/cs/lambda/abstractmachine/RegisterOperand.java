@@ -0,0 +1,98 @@
+package ca.brock.cs.lambda.abstractmachine;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A general purpose register, whole (rax) or one of its low parts (eax, ax, al).
+ */
+public class RegisterOperand extends Operand {
+    private static final Map<String, RegisterOperand> BY_NAME = new HashMap<>();
+    private static final Map<Registers, RegisterOperand> FULL = new HashMap<>();
+
+    static {
+        String[][] legacy = {
+            { "eax", "ax", "al" }, { "ebx", "bx", "bl" }, { "ecx", "cx", "cl" }, { "edx", "dx", "dl" },
+            { "esi", "si", "sil" }, { "edi", "di", "dil" }, { "ebp", "bp", "bpl" }, { "esp", "sp", "spl" }
+        };
+        for (Registers register : Registers.values()) {
+            String name = register.toString();
+            String[] parts = register.ordinal() < legacy.length
+                ? legacy[register.ordinal()]
+                : new String[] { name + "d", name + "w", name + "b" };
+            RegisterOperand full = new RegisterOperand(register, 64, name);
+            FULL.put(register, full);
+            BY_NAME.put(name, full);
+            BY_NAME.put(parts[0], new RegisterOperand(register, 32, parts[0]));
+            BY_NAME.put(parts[1], new RegisterOperand(register, 16, parts[1]));
+            BY_NAME.put(parts[2], new RegisterOperand(register, 8, parts[2]));
+        }
+    }
+
+    private final Registers register;
+    private final int bits;
+    private final String name;
+
+    private RegisterOperand(Registers register, int bits, String name) {
+        this.register = register;
+        this.bits = bits;
+        this.name = name;
+    }
+
+    /**
+     * The whole 64-bit register.
+     */
+    public static RegisterOperand of(Registers register) {
+        return FULL.get(register);
+    }
+
+    /**
+     * The register with this name, or null if it is not one.
+     */
+    public static RegisterOperand named(String name) {
+        return BY_NAME.get(name.toLowerCase());
+    }
+
+    public Registers getRegister() {
+        return register;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Writing a 64- or 32-bit register replaces all of it (32-bit writes zero the upper half);
+     * writing ax or al merges into the old value.
+     */
+    public boolean isPartial() {
+        return bits < 32;
+    }
+
+    public boolean isFull() {
+        return bits == 64;
+    }
+
+    @Override
+    public Set<Registers> getRegisters() {
+        return Collections.unmodifiableSet(EnumSet.of(register));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RegisterOperand && ((RegisterOperand) other).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -7,12 +7,39 @@ import ca.brock.cs.lambda.types.Constant;
 import ca.brock.cs.lambda.types.TApp;
 import ca.brock.cs.lambda.types.AlgebraicDataType;
 import ca.brock.cs.lambda.parser.ConstructorRegistry;
-
+import ca.brock.cs.lambda.parser.ScottEncoding;
+import ca.brock.cs.lambda.parser.Abstraction;
+import ca.brock.cs.lambda.parser.Addition;
+import ca.brock.cs.lambda.parser.And;
+import ca.brock.cs.lambda.parser.Application;
+import ca.brock.cs.lambda.parser.BooleanLiteral;
+import ca.brock.cs.lambda.parser.Conditional;
+import ca.brock.cs.lambda.parser.Division;
+import ca.brock.cs.lambda.parser.Equal;
+import ca.brock.cs.lambda.parser.IntegerLiteral;
+import ca.brock.cs.lambda.parser.LEqual;
+import ca.brock.cs.lambda.parser.Multiplication;
+import ca.brock.cs.lambda.parser.Not;
+import ca.brock.cs.lambda.parser.Or;
+import ca.brock.cs.lambda.parser.StrictnessAnalysis;
+import ca.brock.cs.lambda.parser.Subtraction;
+import ca.brock.cs.lambda.parser.Term;
+import ca.brock.cs.lambda.parser.Variable;
+import ca.brock.cs.lambda.supercombinators.LambdaLifter;
+import ca.brock.cs.lambda.supercombinators.Supercombinator;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Compiles a combinator tree into x86-64 assembly using Graph Reduction.
@@ -20,18 +47,145 @@ import java.util.Set;
  */
 public class X86Emitter {
 
+    /**
+     * Code generation switches for the emitted runtime.
+     */
+    public static class Options {
+        // Overwrite each reduced redex root with an indirection to its result (call-by-need).
+        public boolean updateRedexes = true;
+        // Count every combinator/primitive/global entry and report the total on stderr at exit.
+        public boolean countReductions = false;
+        // Collect the heap with a generational copying collector instead of bump-only allocation.
+        public boolean generationalGc = false;
+        // Initial heap size (and growth chunk) when neither KV_HEAP_SIZE nor --heap-size= is given.
+        public long heapSize = DEFAULT_HEAP_SIZE;
+        // Limit on all heap mappings together when neither KV_HEAP_MAX nor --heap-max= is given;
+        // 0 leaves it to the runtime, which takes half of physical memory.
+        public long heapMax = 0;
+        // Ask the kernel for transparent huge pages on every heap mapping.
+        public boolean hugePages = false;
+        // ADT values are tagged constructor cells (see ScottEncoding) rather than Scott-encoded functions.
+        public boolean nativeConstructors = false;
+        // Reserved size of the evaluator stack, the spine node stack and the dump (each, in bytes)
+        public long stackSize = DEFAULT_STACK_SIZE;
+        // Lay out the closed partial applications of each global's graph once in .data instead
+        // of allocating them on every entry
+        public boolean staticGraphs = true;
+        // Terms are interned, so equal subterms of a global's graph are one object: build it
+        // once per batch and point every use at it. Off, each occurrence gets its own node.
+        public boolean shareSubterms = true;
+        // Call a supercombinator applied to all its arguments directly instead of building the
+        // application and handing it to the evaluator; in the combinator pipeline, point a
+        // reference to a global straight at its static graph or its cached graph or value
+        public boolean knownCalls = true;
+        // The evaluator passes the first arguments of a routine in ARGUMENT_REGISTERS as well as
+        // on the stack; combinators and primitives read them from there and drop them with "ret 8n"
+        public boolean registerArguments = true;
+        // Clean up the emitted text section with the PeepholeOptimizer
+        public boolean peephole = true;
+    }
+
     private final X86Program program;
     private final Set<String> definedFunctions;
     private final Set<String> externalVariables;
+    private final Set<String> usedConstructors;
+    private final Set<String> usedMatchTypes;
+    private final Map<String, LiteralSection> usedLiteralSections;
+    private final Map<String, BulkCombinator> usedBulkCombinators;
+    private final Map<String, FusedCombinator> usedFusedCombinators;
+    // The arity of every supercombinator, for known calls
+    private final Map<String, Integer> supercombinatorArities;
+    // .data cells holding the shared graph of a recursive global or the value of a CAF,
+    // scanned as collector roots
+    private final List<String> globalCells;
+    // Closed partial applications already laid out in .data, by term identity
+    private final Map<Combinator, String> staticNodes;
+    private final List<CombinatorApplication> pendingStaticNodes;
+    // Where the graph of a global of the combinator pipeline can be found without entering its
+    // routine: the static node of a wholly static graph, or the cell holding its graph or value
+    private final Map<String, String> staticGlobalGraphs;
+    private final Map<String, String> globalCellNames;
+    // The recursive global whose graph is being built in one batch rooted at rdx, if any
+    private String knotGlobal;
+    private final Options options;
     private Map<String, Type> currentTypeMap;
 
 //    private static final long HEAP_SIZE = 512L * 1024 * 1024; // 512 MB
-    private static final long HEAP_SIZE = 1L * 1024 * 1024 * 1024; // 1 GB
+    public static final long DEFAULT_HEAP_SIZE = 1L * 1024 * 1024 * 1024; // 1 GB
+    private static final long MIN_HEAP_SIZE = 1L * 1024 * 1024; // 1 MB
+    private static final int SYSINFO_SIZE = 112; // sizeof(struct sysinfo)
+    public static final long DEFAULT_STACK_SIZE = 512L * 1024 * 1024; // 512 MB
+    private static final long MIN_STACK_SIZE = 64L * 1024; // 64 KB
+    private static final long SIGNAL_STACK_SIZE = 64L * 1024;
+    // An evaluator frame on the dump: continuation, caller's RBP, caller's spine_ptr
+    private static final int DUMP_FRAME_SIZE = 24;
+    private static final int PAGE_SIZE = 4096;
+
+    // The generational collector maps its nursery and each old semi-space separately
+    private static final long NURSERY_SIZE = 8L * 1024 * 1024; // 8 MB
+    private static final long REMEMBERED_SET_SIZE = 64L * 1024; // entries
+
+    // Allocation registers: r12 is the next free heap byte, r13 the end of the current region.
+    // [heap_ptr]/[heap_limit] are only synchronised around the refill slow path.
+    private static final String HEAP_POINTER = "r12";
+    private static final String HEAP_LIMIT = "r13";
+    // Largest application tree emitTerm reserves in one go (keeps a reservation far below a nursery)
+    private static final int MAX_BATCH_NODES = 64;
+    // The first arguments of a routine, in order, when Options.registerArguments is set. The
+    // routine is entered with all its arguments still above the return address.
+    private static final List<String> ARGUMENT_REGISTERS = List.of("rbx", "rcx", "rdx", "rsi");
+    // Registers emitTerm keeps the pieces of a split graph in. The batch builder uses rax, rcx
+    // and rdx; r12 and r13 are the allocation registers.
+    private static final List<String> TERM_REGISTERS = List.of("rbx", "rsi", "rdi", "r8", "r9", "r10", "r11", "r14", "r15");
+
+    // Native constructor values. Low four bits: ints xxx1, code pointers xx10, application nodes
+    // 0000, constructor cells 1000 (pointer to the first field, header at [ptr-8]) and nullary
+    // constructors 1100 with the constructor index above them. A cell header holds
+    // (index << 16) | (arity << 4) | 1110; fields are padded to a 16-byte multiple. A cell of
+    // 32 bytes or more has 16-byte-aligned interior words the collector cannot tell from node
+    // starts, so roots are precise (see the collector): only values are ever scanned.
+    private static final int CELL_POINTER_TAG = 8;
+    private static final int NULLARY_CONSTRUCTOR_TAG = 12;
+    private static final int CELL_HEADER_TAG = 14;
+
+    // Operators whose section with an integer literal, (op k) or (C op k), gets its own
+    // one-argument routine. Literals are bounded so the tagged value fits an imm32.
+    private static final Set<String> LITERAL_SECTION_OPERATORS = Set.of("+", "-", "*", "<=", "=");
+    private static final long MAX_SECTION_LITERAL = 1L << 29;
+    // Primitives with a two-argument routine, so that a single argument is a partial application
+    private static final Set<String> STATIC_BINARY_OPERATORS =
+        Set.of("+", "-", "*", "/", "=", "<=", StrictnessAnalysis.STRICT_APPLY);
+
+    // mmap / madvise arguments
+    private static final int PROT_READ_WRITE = 0x3;
+    private static final int MAP_PRIVATE_ANONYMOUS_NORESERVE = 0x4022;
+    private static final int MADV_HUGEPAGE = 14;
+    private static final int SIGSEGV = 11;
+    // SA_SIGINFO | SA_RESTORER | SA_ONSTACK | SA_RESETHAND
+    private static final long STACK_FAULT_FLAGS = 0x4L | 0x04000000L | 0x08000000L | 0x80000000L;
+    private static final int STACK_EXHAUSTED_EXIT_CODE = 2;
 
     public X86Emitter() {
+        this(new Options());
+    }
+
+    public X86Emitter(Options options) {
         this.program = new X86Program();
+        this.program.setPeephole(options.peephole);
         this.definedFunctions = new HashSet<>();
         this.externalVariables = new HashSet<>();
+        this.usedConstructors = new TreeSet<>();
+        this.usedMatchTypes = new TreeSet<>();
+        this.usedLiteralSections = new TreeMap<>();
+        this.usedBulkCombinators = new TreeMap<>();
+        this.usedFusedCombinators = new TreeMap<>();
+        this.supercombinatorArities = new HashMap<>();
+        this.globalCells = new ArrayList<>();
+        this.staticNodes = new IdentityHashMap<>();
+        this.pendingStaticNodes = new ArrayList<>();
+        this.staticGlobalGraphs = new HashMap<>();
+        this.globalCellNames = new HashMap<>();
+        this.options = options;
     }
 
     public X86Program compile(Map<String, Combinator> globals,Map<String, Type> typeMap, String entryPointName) {
@@ -41,13 +195,141 @@ public class X86Emitter {
             definedFunctions.add(sanitizeLabel(key));
         }
 
+        emitStartup(typeMap, entryPointName);
+
+        // A recursive global reaches itself through its own label rather than a Y knot, so its
+        // graph is built on the first entry and shared by every later call, as the knot was
+        Set<String> recursiveGlobals = CombinatorInliner.recursiveGlobals(globals);
+
+        // Static graphs and cells are settled for every global first, so that a reference to a
+        // global compiled later can already point at them (emitKnownGlobal)
+        for (Map.Entry<String, Combinator> entry : globals.entrySet()) {
+            String label = sanitizeLabel(entry.getKey());
+            int arity = getTopLevelArity(typeMap.get(entry.getKey()));
+            boolean staticRoot = options.staticGraphs && layOutStaticNodes(entry.getValue());
+            // A constant applicative form (arity 0) is evaluated on its first entry and the
+            // value cached, so a shared table or list is built and reduced only once
+            if (arity == 0 && options.updateRedexes) {
+                globalCellNames.put(entry.getKey(), "value_" + label);
+            } else if (recursiveGlobals.contains(entry.getKey()) && !staticRoot) {
+                globalCellNames.put(entry.getKey(), "graph_" + label);
+            } else if (staticRoot && staticNodes.containsKey(entry.getValue())) {
+                staticGlobalGraphs.put(entry.getKey(), staticNodes.get(entry.getValue()));
+            }
+        }
+        emitStaticNodes();
+
+        for (Map.Entry<String, Combinator> entry : globals.entrySet()) {
+            String label = sanitizeLabel(entry.getKey());
+            // User-defined globals act as thunks (arity 0).
+//            program.addInstruction(new X86Instruction(".p2align 3\n.quad 0\n" + label));
+            int arity = getTopLevelArity(typeMap.get(entry.getKey()));
+            // The arguments are left to the evaluator, so nothing but the return address is on
+            // the stack and the body returns with a plain ret
+            program.addInstruction(new X86Instruction(".p2align 3\n.quad " + arity + "\n" + label));
+
+            boolean caf = arity == 0 && options.updateRedexes;
+            String cell = globalCellNames.get(entry.getKey());
+            if (cell != null) {
+                emitCellLookup(cell);
+            }
+
+            // A recursive global built in one batch refers to itself through the root it is
+            // building: the knot, without the cell lookup or the routine
+            Combinator body = entry.getValue();
+            boolean knot = !caf && cell != null && isHeapNode(body) && countApplications(body) <= MAX_BATCH_NODES;
+            knotGlobal = knot ? entry.getKey() : null;
+            emitTerm(body, Registers.RAX.toString(), new ArrayDeque<>(TERM_REGISTERS));
+            knotGlobal = null;
+
+            if (caf) {
+                emitEvaluate();
+            }
+            if (cell != null) {
+                emitCellStore(cell);
+            }
+            program.addInstruction(new X86Instruction(OpCodes.RET));
+        }
+
+        emitRuntime();
+
+        return program;
+    }
+
+    /**
+     * Compiles lambda-lifted supercombinators instead of combinator graphs. Startup, the
+     * evaluator, the collector and the printing routines are the same as for {@link #compile}.
+     */
+    public X86Program compileSupercombinators(List<Supercombinator> supercombinators, Map<String, Type> typeMap, String entryPointName) {
+        this.currentTypeMap = typeMap;
+
+        for (Supercombinator supercombinator : supercombinators) {
+            definedFunctions.add(sanitizeLabel(supercombinator.getName()));
+            supercombinatorArities.put(supercombinator.getName(), supercombinator.getArity());
+        }
+
+        emitStartup(typeMap, entryPointName);
+
+        for (Supercombinator supercombinator : supercombinators) {
+            emitSupercombinator(supercombinator);
+        }
+
+        emitRuntime();
+
+        return program;
+    }
+
+    // RAX = the cached graph or value, jumping past the code that computes it once the cell is set
+    private void emitCellLookup(String cell) {
+        globalCells.add(cell);
+        program.addData(cell, ".quad", "0");
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[" + cell + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.JNZ, "." + cell + "_ready"));
+    }
+
+    private void emitCellStore(String cell) {
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[" + cell + "]", "rax"));
+        program.addInstruction(new X86Instruction("." + cell + "_ready"));
+    }
+
+    // _start: heap and stack setup, evaluation and printing of the entry point, exit
+    private void emitStartup(Map<String, Type> typeMap, String entryPointName) {
         program.addInstruction(new X86Instruction(".p2align 3\n_start"));
 
         // ---------------------------------------------------------
         // INITIALIZE THE HEAP POINTER
         // ---------------------------------------------------------
-        program.addInstruction(new X86Instruction(OpCodes.LEA, "rax", "[HEAP]"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_ptr]", "rax"));
+        program.addData("heap_size", ".quad", String.valueOf(options.heapSize));
+        program.addData("heap_env_prefix", ".asciz", "\"KV_HEAP_SIZE=\"");
+        program.addData("heap_arg_prefix", ".asciz", "\"--heap-size=\"");
+        program.addData("heap_max", ".quad", String.valueOf(options.heapMax));
+        program.addData("heap_mapped", ".quad", "0");
+        program.addData("heap_max_env_prefix", ".asciz", "\"KV_HEAP_MAX=\"");
+        program.addData("heap_max_arg_prefix", ".asciz", "\"--heap-max=\"");
+
+        // RBX -> argc, argv..., NULL, envp..., NULL as laid out by the kernel
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rsp"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_configure_heap"));
+
+        // Everything from here on runs on the mapped evaluator stack
+        program.addData("stack_size", ".quad", String.valueOf(options.stackSize));
+        program.addData("stack_env_prefix", ".asciz", "\"KV_STACK_SIZE=\"");
+        program.addData("stack_arg_prefix", ".asciz", "\"--stack-size=\"");
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_configure_stack"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_stack_setup"));
+
+        if (options.generationalGc) {
+            emitGcHeapInitialization();
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "[heap_size]"));
+            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_heap_map"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_ptr]", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rsi"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_limit]", "rax"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.MOV, HEAP_POINTER, "[heap_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, HEAP_LIMIT, "[heap_limit]"));
 
         program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.RBP.toString()));
         program.addInstruction(new X86Instruction(OpCodes.MOV, Registers.RBP.toString(), Registers.RSP.toString()));
@@ -77,108 +359,413 @@ public class X86Emitter {
 
         emitPrintDispatch(mainType, "main");
 
+        if (options.countReductions) {
+            emitPrintStringLiteral(2, "reductions: ");
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[reduction_count]"));
+            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_print_count"));
+
+            if (options.generationalGc) {
+                emitPrintStringLiteral(2, "minor collections: ");
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[gc_minor_count]"));
+                program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_print_count"));
+                emitPrintStringLiteral(2, "major collections: ");
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[gc_major_count]"));
+                program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_print_count"));
+            }
+        }
 
         program.addInstruction(new X86Instruction(OpCodes.MOV, Registers.RAX.toString(), "60")); // sys_exit
         program.addInstruction(new X86Instruction(OpCodes.MOV, Registers.RDI.toString(), "0"));
         program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+    }
 
-        for (Map.Entry<String, Combinator> entry : globals.entrySet()) {
-            String label = sanitizeLabel(entry.getKey());
-            // User-defined globals act as thunks (arity 0).
-//            program.addInstruction(new X86Instruction(".p2align 3\n.quad 0\n" + label));
-            int arity = getTopLevelArity(typeMap.get(entry.getKey()));
-            program.addInstruction(new X86Instruction(".p2align 3\n.quad " + arity + "\n" + label));
-            program.addInstruction(new X86Instruction(OpCodes.POP, Registers.R15.toString()));
-
-            emitTerm(entry.getValue());
-
-            program.addInstruction(new X86Instruction(OpCodes.POP, Registers.RAX.toString()));
-            program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.R15.toString()));
-            program.addInstruction(new X86Instruction(OpCodes.RET));
-        }
-
+    private void emitRuntime() {
         emitCombinatorRuntime();
+        // Fused routines may refer to bulk combinators, so they come first
+        emitFusedCombinatorRoutines();
+        emitBulkCombinatorRoutines();
         emitNativeOperators();
         emitPrintIntRoutine();
+        emitPrintCountRoutine();
         emitPrintBoolRoutine();
         emitPrintListRoutine();
+        emitNativeConstructorRoutines();
+        emitLiteralSectionRoutines();
 //        emitDataSections();
+    }
 
-        return program;
+    /**
+     * Builds term into {@code target}. A graph too big for one batch is split at its root: the
+     * argument and the function are built into registers taken from {@code free}, which they
+     * hold across the allocation of the root, and are only pushed once free runs out. A
+     * register leaves free only once it holds its part, so the registers missing from free are
+     * exactly the values every allocation on the way must declare live.
+     */
+    private void emitTerm(Combinator term, String target, Deque<String> free) {
+        if (!isHeapNode(term)) {
+            emitAtom(term, target);
+            return;
+        }
+        CombinatorApplication app = (CombinatorApplication) term;
+
+        if (countApplications(app) <= MAX_BATCH_NODES) {
+            emitApplicationGraph(app, heldTermRegisters(free));
+        } else {
+            String argument = emitTermPart(app.getArgument(), free);
+            String function = emitTermPart(app.getFunction(), free);
+            // Spilled parts come back off the stack in reverse order
+            if (function == null) {
+                function = "rcx";
+                program.addInstruction(new X86Instruction(OpCodes.POP, function));
+            }
+            if (argument == null) {
+                argument = "rdx";
+                program.addInstruction(new X86Instruction(OpCodes.POP, argument));
+            }
+
+            // GRAPH REDUCTION: Allocate a heap node [Function, Argument]
+            List<String> live = heldTermRegisters(free);
+            for (String part : List.of(function, argument)) {
+                if (!live.contains(part)) {
+                    live.add(part);
+                }
+            }
+            emitAllocate(1, live);
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", function));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", argument));
+            releaseTermRegister(function, free);
+            releaseTermRegister(argument, free);
+        }
+        if (!Registers.RAX.toString().equals(target)) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, target, Registers.RAX.toString()));
+        }
+    }
+
+    // Builds part into a free register and returns it, or pushes it and returns null. The
+    // register is taken once the part is built, so no allocation inside sees it as live.
+    private String emitTermPart(Combinator part, Deque<String> free) {
+        if (!isHeapNode(part)) {
+            String reg = free.pollFirst();
+            if (reg != null) {
+                emitAtom(part, reg);
+                return reg;
+            }
+        }
+        emitTerm(part, Registers.RAX.toString(), free);
+        String reg = free.pollFirst();
+        if (reg != null) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, reg, Registers.RAX.toString()));
+            return reg;
+        }
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.RAX.toString()));
+        return null;
+    }
+
+    // The term registers holding parts built so far
+    private static List<String> heldTermRegisters(Deque<String> free) {
+        List<String> held = new ArrayList<>();
+        for (String reg : TERM_REGISTERS) {
+            if (!free.contains(reg)) {
+                held.add(reg);
+            }
+        }
+        return held;
+    }
+
+    private static void releaseTermRegister(String reg, Deque<String> free) {
+        if (TERM_REGISTERS.contains(reg)) {
+            free.addFirst(reg);
+        }
+    }
+
+    /**
+     * Lays out the closed partial applications of a global's graph as pre-built nodes in .data,
+     * recording their labels in {@link #staticNodes}; returns whether the whole term is static.
+     *
+     * A node is static when its head receives fewer arguments than its arity and both children
+     * are static or atoms. Such a node is already a value: the evaluator only ever overwrites the
+     * root of a saturated redex, so a static node is never updated and can be shared by every
+     * entry without keeping the results of earlier calls alive. Saturated or unknown applications
+     * are still built on the heap, around the static nodes they refer to. The nodes are written
+     * out by {@link #emitStaticNodes} once every global's graph is known.
+     */
+    private boolean layOutStaticNodes(Combinator term) {
+        if (!(term instanceof CombinatorApplication) || literalSection(term) != null) {
+            return true;
+        }
+        if (staticNodes.containsKey(term)) {
+            return true;
+        }
+        CombinatorApplication app = (CombinatorApplication) term;
+        boolean staticFunction = layOutStaticNodes(app.getFunction());
+        boolean staticArgument = layOutStaticNodes(app.getArgument());
+        if (!staticFunction || !staticArgument || !isPartialApplication(app)) {
+            return false;
+        }
+        staticNodes.put(term, "static_node_" + staticNodes.size());
+        pendingStaticNodes.add(app);
+        return true;
+    }
+
+    /**
+     * Writes out the static nodes laid out so far. An argument that names a global with a
+     * static graph points at that graph, so a recursive global's graph refers to itself as the
+     * knot would. A function field keeps the code pointer: the node must stay a partial
+     * application, and the graph may take fewer arguments than the global's type says.
+     */
+    private void emitStaticNodes() {
+        for (CombinatorApplication app : pendingStaticNodes) {
+            Combinator argument = app.getArgument();
+            String graph = options.knownCalls && argument instanceof CombinatorVariable
+                ? staticGlobalGraphs.get(((CombinatorVariable) argument).getName())
+                : null;
+            program.addStaticNode(staticNodes.get(app), atomOperand(app.getFunction()),
+                graph != null ? graph : atomOperand(argument));
+        }
+        pendingStaticNodes.clear();
+    }
+
+    private boolean isPartialApplication(CombinatorApplication app) {
+        int argCount = 0;
+        Combinator head = app;
+        while (head instanceof CombinatorApplication && literalSection(head) == null) {
+            argCount++;
+            head = ((CombinatorApplication) head).getFunction();
+        }
+        return argCount < atomArity(head);
+    }
+
+    // Arguments the routine behind an atom consumes, or 0 when unknown (never treated as partial)
+    private int atomArity(Combinator head) {
+        if (literalSection(head) != null) {
+            return 1;
+        }
+        if (head instanceof BulkCombinator) {
+            return ((BulkCombinator) head).getArity();
+        }
+        if (head instanceof FusedCombinator) {
+            return ((FusedCombinator) head).getArity();
+        }
+        if (head instanceof ICombinator || head instanceof YCombinator) {
+            return 1;
+        }
+        if (head instanceof KCombinator || head instanceof WCombinator || head instanceof CStarCombinator) {
+            return 2;
+        }
+        if (head instanceof SCombinator || head instanceof BCombinator || head instanceof CCombinator) {
+            return 3;
+        }
+        if (head instanceof SPrimeCombinator || head instanceof BStarCombinator || head instanceof CPrimeCombinator) {
+            return 4;
+        }
+        if (head instanceof CombinatorVariable) {
+            Type type = currentTypeMap.get(((CombinatorVariable) head).getName());
+            return type == null ? 0 : getTopLevelArity(type);
+        }
+        if (head instanceof CombinatorConstant && integerLiteral(head) == null) {
+            Object val = ((CombinatorConstant) head).getValue();
+            if (isNativeConstant(val, ScottEncoding.NATIVE_CONSTRUCTOR_PREFIX)) {
+                return ConstructorRegistry.getConstructorInfo(
+                    ((String) val).substring(ScottEncoding.NATIVE_CONSTRUCTOR_PREFIX.length())).getArity();
+            }
+            if (isNativeConstant(val, ScottEncoding.NATIVE_MATCH_PREFIX)) {
+                return ConstructorRegistry.getConstructorsForType(
+                    ((String) val).substring(ScottEncoding.NATIVE_MATCH_PREFIX.length())).size() + 1;
+            }
+            String name = String.valueOf(val);
+            if ("IF".equals(name)) {
+                return 3;
+            }
+            if (STATIC_BINARY_OPERATORS.contains(name)) {
+                return 2;
+            }
+        }
+        return 0;
+    }
+
+    // An application emitTerm allocates, as opposed to an atom, a literal section or a static node
+    private boolean isHeapNode(Combinator term) {
+        return term instanceof CombinatorApplication && literalSection(term) == null && !staticNodes.containsKey(term);
+    }
+
+    /**
+     * Builds a whole application graph with one heap reservation: the i-th node of the
+     * pre-order walk lives at [rdx + 16*i], so the root is the base address itself. Terms are
+     * interned, so equal subterms are one node; with {@link Options#shareSubterms}, met again,
+     * it is referenced rather than rebuilt. Graphs too big for one batch are split by
+     * emitTerm, and a node shared across batches is then built once per batch.
+     */
+    private void emitApplicationGraph(CombinatorApplication root, List<String> live) {
+        emitAllocate(countApplications(root), live);
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "rax"));
+        emitGraphNode(root, new IdentityHashMap<>(), new int[] {0});
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rdx"));
+    }
+
+    // placed maps each shared node already written to its index in the reservation
+    private int emitGraphNode(CombinatorApplication app, Map<Combinator, Integer> placed, int[] next) {
+        int index = next[0]++;
+        if (options.shareSubterms) {
+            placed.put(app, index);
+        }
+        emitGraphField(app.getFunction(), "[rdx+" + (16 * index) + "]", placed, next);
+        emitGraphField(app.getArgument(), "[rdx+" + (16 * index + 8) + "]", placed, next);
+        return index;
+    }
+
+    private void emitGraphField(Combinator child, String field, Map<Combinator, Integer> placed, int[] next) {
+        if (isHeapNode(child)) {
+            Integer index = placed.get(child);
+            if (index == null) {
+                index = emitGraphNode((CombinatorApplication) child, placed, next);
+            }
+            program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[rdx+" + (16 * index) + "]"));
+        } else if (!emitKnownGlobal(child)) {
+            emitAtom(child, "rcx");
+        }
+        program.addInstruction(new X86Instruction(OpCodes.MOV, field, "rcx"));
+    }
+
+    /**
+     * Loads into rcx the graph a reference to a global stands for, when it is known without
+     * entering the routine: the root being built for the global itself, its static graph, or
+     * what its cell holds once the first entry has filled it. Otherwise the evaluator would
+     * check the arity and call the routine only to be handed that graph. The graph denotes the
+     * same function, so this holds whatever the reference is applied to; it returns false to
+     * leave the reference a code pointer.
+     */
+    private boolean emitKnownGlobal(Combinator term) {
+        if (!options.knownCalls || !(term instanceof CombinatorVariable)) {
+            return false;
+        }
+        String name = ((CombinatorVariable) term).getName();
+        String graph = staticGlobalGraphs.get(name);
+        String cell = globalCellNames.get(name);
+        if (graph == null && cell == null) {
+            return false;
+        }
+        if (name.equals(knotGlobal)) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rdx"));
+        } else if (graph != null) {
+            program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[" + graph + "]"));
+        } else {
+            String ready = freshLocalLabel("known_ready");
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[" + cell + "]"));
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "rcx", "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, ready));
+            emitAtom(term, "rcx");
+            program.addInstruction(new X86Instruction(ready));
+        }
+        return true;
+    }
+
+    // Heap nodes emitApplicationGraph builds for term, or some count above MAX_BATCH_NODES
+    private int countApplications(Combinator term) {
+        if (!options.shareSubterms) {
+            return countOccurrences(term, 0);
+        }
+        return countApplications(term, new IdentityHashMap<>());
+    }
+
+    private int countOccurrences(Combinator term, int count) {
+        while (isHeapNode(term) && count <= MAX_BATCH_NODES) {
+            count = countOccurrences(((CombinatorApplication) term).getArgument(), count + 1);
+            term = ((CombinatorApplication) term).getFunction();
+        }
+        return count;
+    }
+
+    private int countApplications(Combinator term, Map<Combinator, Boolean> counted) {
+        while (isHeapNode(term) && counted.put(term, Boolean.TRUE) == null) {
+            if (counted.size() > MAX_BATCH_NODES) {
+                break;
+            }
+            countApplications(((CombinatorApplication) term).getArgument(), counted);
+            term = ((CombinatorApplication) term).getFunction();
+        }
+        return counted.size();
+    }
+
+    /**
+     * Loads a non-application term (tagged integer, boolean or code pointer) into {@code reg}.
+     * Literal sections count as atoms: they load the address of their specialised routine.
+     */
+    private void emitAtom(Combinator term, String reg) {
+        String operand = atomOperand(term);
+        if (isImmediate(operand)) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, reg, operand));
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.LEA, reg, "[" + operand + "]"));
+        }
     }
 
-    private void emitTerm(Combinator term) {
+    /**
+     * The tagged value of an atom as an assembler expression: an immediate for integers,
+     * booleans and nullary constructors, the label of a static node, otherwise a code label
+     * plus the function tag 2.
+     */
+    private String atomOperand(Combinator term) {
+        String staticNode = staticNodes.get(term);
+        if (staticNode != null) {
+            return staticNode;
+        }
+
+        LiteralSection section = literalSection(term);
+        if (section != null) {
+            usedLiteralSections.put(section.label(), section);
+            return section.label() + "+2";
+        }
+
         if (term instanceof CombinatorConstant) {
             CombinatorConstant constant = (CombinatorConstant) term;
             Object val = constant.getValue();
 
-            // AGGRESSIVE TAGGING: Catch Integers even if they are stored as Strings
-            boolean isNumber = false;
-            long numVal = 0;
-
             if (val instanceof Boolean) {
-                program.addInstruction(new X86Instruction(
-                    OpCodes.MOV,
-                    Registers.RAX.toString(),
-                    ((Boolean) val) ? "3" : "1"
-                ));
-                program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.RAX.toString()));
-                return;
+                return ((Boolean) val) ? "3" : "1";
             }
 
-            if (val instanceof Integer || val instanceof Long) {
-                isNumber = true;
-                numVal = ((Number) val).longValue();
-            } else {
-                try {
-                    numVal = Long.parseLong(String.valueOf(val));
-                    isNumber = true;
-                } catch (NumberFormatException e) {
-                    // It's a constructor or uninterpreted function string, not a number
-                }
-            }
+            Long numVal = integerLiteral(constant);
 
-            if (isNumber) {
+            if (numVal != null) {
                 // TAGGING: Shift left 1, OR with 1. (e.g. 0 -> 1, 1 -> 3, 42 -> 85)
-                long taggedVal = (numVal << 1) | 1;
-                program.addInstruction(new X86Instruction(OpCodes.MOV, Registers.RAX.toString(), String.valueOf(taggedVal)));
+                return String.valueOf((numVal << 1) | 1);
+            } else if (isNativeConstant(val, ScottEncoding.NATIVE_CONSTRUCTOR_PREFIX)) {
+                ConstructorRegistry.ConstructorInfo info = ConstructorRegistry.getConstructorInfo(
+                    ((String) val).substring(ScottEncoding.NATIVE_CONSTRUCTOR_PREFIX.length()));
+                if (info.getArity() == 0) {
+                    return String.valueOf(((long) info.getIndex() << 4) | NULLARY_CONSTRUCTOR_TAG);
+                }
+                usedConstructors.add(info.getConstructorName());
+                return constructorLabel(info.getConstructorName()) + "+2";
+            } else if (isNativeConstant(val, ScottEncoding.NATIVE_MATCH_PREFIX)) {
+                String typeName = ((String) val).substring(ScottEncoding.NATIVE_MATCH_PREFIX.length());
+                usedMatchTypes.add(typeName);
+                return matchLabel(typeName) + "+2";
             } else {
                 String label = sanitizeLabel(String.valueOf(val));
                 externalVariables.add(label);
-                program.addInstruction(new X86Instruction(OpCodes.LEA, Registers.RAX.toString(), "[" + label + "]"));
-                program.addInstruction(new X86Instruction(OpCodes.OR, Registers.RAX.toString(), "2")); // Tag as function
+                return label + "+2";
             }
-            program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.RAX.toString()));
         }
         else if (term instanceof CombinatorVariable) {
-            CombinatorVariable var = (CombinatorVariable) term;
-            String label = sanitizeLabel(var.getName());
-            program.addInstruction(new X86Instruction(OpCodes.LEA, Registers.RAX.toString(), "[" + label + "]"));
-            program.addInstruction(new X86Instruction(OpCodes.OR, Registers.RAX.toString(), "2")); // Tag as function
-            program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.RAX.toString()));
-        }
-        else if (term instanceof CombinatorApplication) {
-            CombinatorApplication app = (CombinatorApplication) term;
-
-            emitTerm(app.getArgument());
-            emitTerm(app.getFunction());
-
-            // GRAPH REDUCTION: Allocate a heap node [Function, Argument]
-            program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-            program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
-            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
-            program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.RAX.toString()));
+            return sanitizeLabel(((CombinatorVariable) term).getName()) + "+2";
         }
         else {
             String label = getCombinatorLabel(term);
-            program.addInstruction(new X86Instruction(OpCodes.LEA, Registers.RAX.toString(), "[" + label + "]"));
-            program.addInstruction(new X86Instruction(OpCodes.OR, Registers.RAX.toString(), "2")); // Tag as function
-            program.addInstruction(new X86Instruction(OpCodes.PUSH, Registers.RAX.toString()));
+            if (term instanceof BulkCombinator) {
+                usedBulkCombinators.put(label, (BulkCombinator) term);
+            } else if (term instanceof FusedCombinator) {
+                usedFusedCombinators.put(label, (FusedCombinator) term);
+            }
+            return label + "+2";
         }
     }
 
+    private static boolean isImmediate(String operand) {
+        char first = operand.charAt(0);
+        return first == '-' || Character.isDigit(first);
+    }
+
 //    private String sanitizeLabel(String name) {
 //        if (name == null) return "lbl_user_null";
 //        String sanitized = name
@@ -189,6 +776,25 @@ public class X86Emitter {
 //            .replaceAll("[^a-zA-Z0-9_]", "_");
 //        return "lbl_" + sanitized;
 //    }
+    // AGGRESSIVE TAGGING: Catch Integers even if they are stored as Strings
+    private static Long integerLiteral(Combinator term) {
+        if (!(term instanceof CombinatorConstant)) {
+            return null;
+        }
+        Object val = ((CombinatorConstant) term).getValue();
+        if (val instanceof Integer || val instanceof Long) {
+            return ((Number) val).longValue();
+        }
+        if (val instanceof Boolean) {
+            return null;
+        }
+        try {
+            return Long.parseLong(String.valueOf(val));
+        } catch (NumberFormatException e) {
+            return null; // It's a constructor or uninterpreted function string, not a number
+        }
+    }
+
     private String sanitizeLabel(String name) {
         if (name == null) return "lbl_user_null";
 
@@ -237,6 +843,9 @@ public class X86Emitter {
 
             case "IF":
                 return "lbl_IF";
+
+            case StrictnessAnalysis.STRICT_APPLY:
+                return "lbl_strict_apply";
         }
 
         String sanitized = name
@@ -259,6 +868,14 @@ public class X86Emitter {
         if (term instanceof WCombinator) return "comb_W";
         if (term instanceof YCombinator) return "comb_Y";
         if (term instanceof CStarCombinator) return "comb_CStar";
+        if (term instanceof SPrimeCombinator) return "comb_SPrime";
+        if (term instanceof BStarCombinator) return "comb_BStar";
+        if (term instanceof CPrimeCombinator) return "comb_CPrime";
+        if (term instanceof BulkCombinator) {
+            BulkCombinator bulk = (BulkCombinator) term;
+            return "comb_" + bulk.getKind() + bulk.getCount();
+        }
+        if (term instanceof FusedCombinator) return "comb_fused_" + ((FusedCombinator) term).getId();
         return "unknown_comb";
     }
 
@@ -272,6 +889,25 @@ public class X86Emitter {
         // UNTAG BEFORE PRINTING
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rax", "1"));
 
+        emitPrintDecimalBody("print_loop", 1);
+    }
+
+    /**
+     * Prints the raw (untagged) unsigned value in RAX to stderr. Used for runtime statistics.
+     */
+    private void emitPrintCountRoutine() {
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_print_count"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbp"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbp", "rsp"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r12"));
+
+        emitPrintDecimalBody("print_count_loop", 2);
+    }
+
+    private void emitPrintDecimalBody(String loopName, int fd) {
+        String loop = "." + loopName;
+
         program.addInstruction(new X86Instruction(OpCodes.SUB, "rsp", "32"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "0"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "10"));
@@ -281,7 +917,7 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(OpCodes.DEC, "r12"));
         program.addInstruction(new X86Instruction(OpCodes.INC, "rcx"));
 
-        program.addInstruction(new X86Instruction(".print_loop"));
+        program.addInstruction(new X86Instruction(loop));
         program.addInstruction(new X86Instruction(OpCodes.XOR, "rdx", "rdx"));
         program.addInstruction(new X86Instruction(OpCodes.DIV, "rbx"));
         program.addInstruction(new X86Instruction(OpCodes.ADD, "dl", "'0'"));
@@ -289,11 +925,11 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(OpCodes.DEC, "r12"));
         program.addInstruction(new X86Instruction(OpCodes.INC, "rcx"));
         program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "0"));
-        program.addInstruction(new X86Instruction(OpCodes.JNZ, ".print_loop"));
+        program.addInstruction(new X86Instruction(OpCodes.JNZ, loop));
 
         program.addInstruction(new X86Instruction(OpCodes.INC, "r12"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "1"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", String.valueOf(fd)));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "r12"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "rcx"));
         program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
@@ -309,9 +945,28 @@ public class X86Emitter {
         // -----------------------------------------------------------------
         // THE EVALUATOR UNWINDER
         // -----------------------------------------------------------------
+        // Entry (by a jump, see emitEvaluate): RAX = the graph to evaluate, RCX = the
+        // continuation. Exit: jumps to the continuation with RAX = its value; RSP, RBP and the
+        // heap registers are kept, everything else is clobbered by the routines it runs. Those
+        // are entered by "call r9" here or by a known call, and either way only RAX is read
+        // after they return.
+        //
+        // The evaluator does not nest on the machine stack: the continuation, the caller's
+        // frame and where its part of the spine-node stack begins go to a frame on the dump,
+        // so a primitive that needs its operand evaluated leaves nothing there but its own
+        // arguments.
+        program.declareRoutineResult(EnumSet.of(Registers.RAX, Registers.RSP, Registers.RBP, Registers.R12, Registers.R13));
         program.addInstruction(new X86Instruction(".p2align 3\nlbl_eval"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r11", "[dump_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[r11]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[r11+8]", "rbp"));
+        if (options.updateRedexes) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[spine_ptr]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[r11+16]", "rcx"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "r11", String.valueOf(DUMP_FRAME_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[dump_ptr]", "r11"));
         // Establish a local spine frame to calculate argument depth
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbp"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rbp", "rsp"));
 
         program.addInstruction(new X86Instruction(".eval_loop"));
@@ -320,17 +975,42 @@ public class X86Emitter {
 
         program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "2"));
         program.addInstruction(new X86Instruction(OpCodes.JNZ, ".eval_func")); // Func
+        if (options.nativeConstructors) {
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "12"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, ".eval_done")); // Constructor value
+        }
 
-        // It's a Heap Node. Unwind the spine: Push argument, evaluate function
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rax+8]"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rax]"));
-        program.addInstruction(new X86Instruction(OpCodes.JMP, ".eval_loop"));
+        if (options.updateRedexes) {
+            // It's a Heap Node. Indirections (I x) are skipped without growing the spine.
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rax]"));
+            program.addInstruction(new X86Instruction(OpCodes.LEA, "r11", "[comb_I+2]"));
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "r11"));
+            program.addInstruction(new X86Instruction(OpCodes.JE, ".eval_indirection"));
+
+            // Unwind the spine: record the node, push its argument, evaluate its function
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[spine_ptr]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rcx]", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rcx", "8"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[spine_ptr]", "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "qword ptr [rax+8]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.JMP, ".eval_loop"));
+
+            program.addInstruction(new X86Instruction(".eval_indirection"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rax+8]"));
+            program.addInstruction(new X86Instruction(OpCodes.JMP, ".eval_loop"));
+        } else {
+            // It's a Heap Node. Unwind the spine: Push argument, evaluate function
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rax+8]"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rax]"));
+            program.addInstruction(new X86Instruction(OpCodes.JMP, ".eval_loop"));
+        }
 
         program.addInstruction(new X86Instruction(".eval_func"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.AND, "rcx", "-3")); // Clear function tag bit
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "[rcx-8]")); // Read ARITY
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r9", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "r9", "-3")); // Clear function tag bit
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "[r9-8]")); // Read ARITY
 
         // Calculate pending arguments from the stack depth
         program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", "rbp"));
@@ -341,47 +1021,127 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(OpCodes.JL, ".partial_application"));
 
         // Sufficient arguments - execute!
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "rcx"));
+        if (options.countReductions) {
+            program.addInstruction(new X86Instruction(OpCodes.INC, "qword ptr [reduction_count]"));
+        }
+        if (options.registerArguments) {
+            // Slots past the arguments hold the frame or the spare slots above the stack: the
+            // routine ignores the registers they land in
+            for (int i = 0; i < ARGUMENT_REGISTERS.size(); i++) {
+                program.addInstruction(new X86Instruction(OpCodes.MOV, ARGUMENT_REGISTERS.get(i), "[rsp+" + (8 * i) + "]"));
+            }
+        }
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "r9"));
+
+        if (options.updateRedexes) {
+            // The callee consumed the innermost arguments; the outermost consumed spine
+            // node is the redex root. Its slot sits just above the arguments still pending.
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rbp"));
+            program.addInstruction(new X86Instruction(OpCodes.SUB, "rcx", "rsp"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "[dump_ptr]"));
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rcx", "[rdx-8]"));
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "rcx", "[spine_ptr]"));
+            program.addInstruction(new X86Instruction(OpCodes.JAE, ".eval_loop")); // Nothing consumed (thunk entry)
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rcx]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[spine_ptr]", "rcx"));
+
+            // Short-circuit a result that is itself an indirection
+            program.addInstruction(new X86Instruction(OpCodes.LEA, "r11", "[comb_I+2]"));
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "15"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, ".eval_update"));
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "[rax]", "r11"));
+            program.addInstruction(new X86Instruction(OpCodes.JNE, ".eval_update"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rax+8]"));
+
+            // Overwrite the redex root with (I result)
+            program.addInstruction(new X86Instruction(".eval_update"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rbx]", "r11"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rbx+8]", "rax"));
+
+            if (options.generationalGc) {
+                emitWriteBarrier("rbx", "rax", ".eval_loop");
+            }
+        }
         program.addInstruction(new X86Instruction(OpCodes.JMP, ".eval_loop")); // Evaluate resulting graph against remaining args
 
-        // Reconstruct partial application graph from stack
         program.addInstruction(new X86Instruction(".partial_application"));
         program.addInstruction(new X86Instruction(OpCodes.CMP, "rsp", "rbp"));
         program.addInstruction(new X86Instruction(OpCodes.JE, ".eval_done"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.JMP, ".partial_application"));
+        if (options.updateRedexes) {
+            // The outermost spine node already is the partial application graph
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[dump_ptr]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rcx-8]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rcx]"));
+        } else {
+            // Reconstruct partial application graph from stack
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
+            emitAllocate(1, List.of("rbx", "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.JMP, ".partial_application"));
+        }
 
         program.addInstruction(new X86Instruction(".eval_done"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rsp", "rbp"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbp"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r11", "[dump_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "r11", String.valueOf(DUMP_FRAME_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[dump_ptr]", "r11"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbp", "[r11+8]"));
+        if (options.updateRedexes) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[r11+16]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[spine_ptr]", "rcx"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "qword ptr [r11]"));
 
         // -----------------------------------------------------------------
-        // HEAP ALLOCATOR (With Overflow Checking)
+        // HEAP ALLOCATOR SLOW PATH (the fast path is inlined by emitAllocate)
         // -----------------------------------------------------------------
-        program.addInstruction(new X86Instruction(".p2align 3\nlbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[heap_ptr]"));
-        program.addInstruction(new X86Instruction(OpCodes.LEA, "r15", "[rax + 16]"));
-
-//        program.addInstruction(new X86Instruction(OpCodes.LEA, "r11", "[HEAP + 67108864]"));
-        program.addInstruction(
-            new X86Instruction(OpCodes.LEA, "r11", "[HEAP + " + HEAP_SIZE + "]")
-        );
-        program.addInstruction(new X86Instruction(OpCodes.CMP, "r15", "r11"));
-        // Newline trick safely inserts "jae" without requiring it in the OpCodes enum
-        program.addInstruction(new X86Instruction("\tjae lbl_heap_overflow\n.alloc_ok"));
-
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_ptr]", "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        // Entry: RAX = old heap pointer, r12 = RAX + requested bytes (past the limit).
+        // Exit: RAX = base of the reservation, r12 = its end. All other registers preserved.
+        // The collector reads no register: the values live across the call are the ones
+        // emitAllocate pushed for it.
+        program.declareCall("lbl_alloc_refill", EnumSet.of(Registers.RAX, Registers.RSP, Registers.R12, Registers.R13),
+            EnumSet.of(Registers.RAX, Registers.R12, Registers.R13));
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_alloc_refill"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, HEAP_POINTER, "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, HEAP_POINTER)); // Requested bytes
+        program.addInstruction(new X86Instruction(OpCodes.MOV, HEAP_POINTER, "rax"));
+        if (options.generationalGc) {
+            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_collect"));
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_heap_grow"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", HEAP_POINTER));
+        program.addInstruction(new X86Instruction(OpCodes.XCHG, "rax", HEAP_POINTER));
         program.addInstruction(new X86Instruction(OpCodes.RET));
 
-        // System crash sequence upon heap exhaustion
+        if (options.generationalGc) {
+            emitGarbageCollector();
+        } else {
+            // Bump allocation continues in a new chunk; nodes never move, so chunks need not be contiguous
+            program.addInstruction(new X86Instruction(".p2align 3\nlbl_heap_grow"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rsi"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "[heap_size]"));
+            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_heap_map"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, HEAP_POINTER, "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_ptr]", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rsi"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, HEAP_LIMIT, "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_limit]", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rsi"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.RET));
+        }
+
+        emitHeapMappingRoutines();
+        emitStackRoutines();
+
+        // System crash sequence upon heap exhaustion: past [heap_max], or the kernel refused a mapping
         program.addInstruction(new X86Instruction(".p2align 3\nlbl_heap_overflow"));
+        emitPrintStringLiteral(2, "heap exhausted (raise --heap-max or KV_HEAP_MAX)\n");
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "60")); // sys_exit
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "1"));  // error code 1
         program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
@@ -390,206 +1150,1953 @@ public class X86Emitter {
         // COMBINATORS
         // -----------------------------------------------------------------
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 1\ncomb_I"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        emitTakeArguments(1);
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+        emitRoutineReturn(1);
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\ncomb_K"));
+        emitTakeArguments(2);
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+        emitRoutineReturn(2);
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 3\ncomb_B"));
+        emitTakeArguments(3);
+        emitAllocate(2, takenArguments(3));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+16]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+24]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "16"));
+        emitRoutineReturn(3);
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 3\ncomb_C"));
+        emitTakeArguments(3);
+        emitAllocate(2, takenArguments(3));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+16]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+24]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "16"));
+        emitRoutineReturn(3);
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\ncomb_CStar"));
+        emitTakeArguments(2); // a, b
+        emitAllocate(1, takenArguments(2));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rbx"));
+        emitRoutineReturn(2);
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 3\ncomb_S"));
+        emitTakeArguments(3);
+        emitAllocate(3, takenArguments(3));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+16]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+24]", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[rax+16]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+32]", "r8"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+40]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "32"));
+        emitRoutineReturn(3);
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 1\ncomb_Y"));
+        emitTakeArguments(1);
+        emitAllocate(1, takenArguments(1));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rax")); // Cyclic graph
+        emitRoutineReturn(1);
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\ncomb_W"));
+        emitTakeArguments(2);
+        emitAllocate(2, takenArguments(2));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+16]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+24]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "16"));
+        emitRoutineReturn(2);
+
+        // S' c f g x = c (f x) (g x)
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 4\ncomb_SPrime"));
+        emitTakeArguments(4);
+        emitAllocate(4, takenArguments(4));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+16]", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+24]", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+32]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+40]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[rax+32]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+48]", "r8"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[rax+16]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+56]", "r8"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "48"));
+        emitRoutineReturn(4);
+
+        // B* c f g x = c (f (g x))
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 4\ncomb_BStar"));
+        emitTakeArguments(4);
+        emitAllocate(3, takenArguments(4));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+16]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+24]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+32]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[rax+16]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+40]", "r8"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "32"));
+        emitRoutineReturn(4);
+
+        // C' c f g x = c (f x) g
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 4\ncomb_CPrime"));
+        emitTakeArguments(4);
+        emitAllocate(3, takenArguments(4));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+16]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+24]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[rax+16]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+32]", "r8"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+40]", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "32"));
+        emitRoutineReturn(4);
+    }
+
+    /**
+     * The first count arguments of a routine in ARGUMENT_REGISTERS: already there when the
+     * evaluator passes them in registers, otherwise popped, with the return address into r15.
+     */
+    private void emitTakeArguments(int count) {
+        if (options.registerArguments) {
+            return;
+        }
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        for (int i = 0; i < count; i++) {
+            program.addInstruction(new X86Instruction(OpCodes.POP, ARGUMENT_REGISTERS.get(i)));
+        }
+    }
+
+    // Returns RAX from a routine that took its arguments with emitTakeArguments(arity)
+    private void emitRoutineReturn(int arity) {
+        if (options.registerArguments) {
+            program.addInstruction(new X86Instruction(OpCodes.RET, String.valueOf(8 * arity)));
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+            program.addInstruction(new X86Instruction(OpCodes.RET));
+        }
+    }
+
+    // Argument i (from 1) of a routine that leaves its arguments on the stack until it returns
+    private String argumentOperand(int i) {
+        if (options.registerArguments && i <= ARGUMENT_REGISTERS.size()) {
+            return ARGUMENT_REGISTERS.get(i - 1);
+        }
+        return "[rsp+" + (8 * i) + "]";
+    }
+
+    private void emitBulkCombinatorRoutines() {
+        for (Map.Entry<String, BulkCombinator> entry : usedBulkCombinators.entrySet()) {
+            emitBulkCombinatorRoutine(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@code Bn f g x1 .. xn}, {@code Cn f g x1 .. xn} or {@code Sn f g x1 .. xn} as one
+     * reduction. The arguments stay on the stack (and visible to the collector) while the
+     * result graph is allocated in a single batch, then the routine drops them all on return.
+     * {@code Kn f x1 .. xn} allocates nothing: it returns f and drops the rest.
+     */
+    private void emitBulkCombinatorRoutine(String label, BulkCombinator bulk) {
+        int n = bulk.getCount();
+        int top;
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad " + bulk.getArity() + "\n" + label));
+        if (bulk.getKind() == BulkCombinator.Kind.K) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", argumentOperand(1)));
+            program.addInstruction(new X86Instruction(OpCodes.RET, String.valueOf(8 * bulk.getArity())));
+            return;
+        }
+        switch (bulk.getKind()) {
+            case B:
+                // g x1 .. xn in nodes 0 .. n-1, then f (g x1 .. xn)
+                top = n;
+                emitAllocate(n + 1, registerArguments(bulk.getArity()));
+                emitArgumentChain(2, 0, n);
+                emitNodeField(top, 0, argumentOperand(1));
+                emitNodeLink(top, 8, n - 1);
+                break;
+            case C:
+                // f x1 .. xn in nodes 0 .. n-1, then (f x1 .. xn) g
+                top = n;
+                emitAllocate(n + 1, registerArguments(bulk.getArity()));
+                emitArgumentChain(1, 0, n);
+                emitNodeLink(top, 0, n - 1);
+                emitNodeField(top, 8, argumentOperand(2));
+                break;
+            default:
+                // g x1 .. xn in nodes 0 .. n-1, f x1 .. xn in nodes n .. 2n-1, then one applied to the other
+                top = 2 * n;
+                emitAllocate(2 * n + 1, registerArguments(bulk.getArity()));
+                emitArgumentChain(2, 0, n);
+                emitArgumentChain(1, n, n);
+                emitNodeLink(top, 0, 2 * n - 1);
+                emitNodeLink(top, 8, n - 1);
+                break;
+        }
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rax", "[rax+" + (16 * top) + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.RET, String.valueOf(8 * bulk.getArity())));
+    }
+
+    private void emitFusedCombinatorRoutines() {
+        for (Map.Entry<String, FusedCombinator> entry : usedFusedCombinators.entrySet()) {
+            if (entry.getValue().getKind() == FusedCombinator.Kind.BRANCH) {
+                emitFusedBranchRoutine(entry.getKey(), entry.getValue());
+            } else {
+                emitFusedGraphRoutine(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * A superinstruction that builds its reduct: the whole result graph in one reservation,
+     * laid out like {@link #emitApplicationGraph}, with the i-th argument read from its
+     * register or [rsp+8i]. As in the bulk routines the arguments stay on the stack until it is
+     * built.
+     */
+    private void emitFusedGraphRoutine(String label, FusedCombinator fused) {
+        Combinator reduct = fused.getReduct();
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad " + fused.getArity() + "\n" + label));
+        if (reduct instanceof CombinatorApplication) {
+            emitAllocate(countFusedNodes(reduct, new IdentityHashMap<>()), registerArguments(fused.getArity()));
+            emitFusedNode((CombinatorApplication) reduct, new IdentityHashMap<>());
+        } else {
+            emitFusedField(reduct, "rax", null);
+        }
+        program.addInstruction(new X86Instruction(OpCodes.RET, String.valueOf(8 * fused.getArity())));
+    }
+
+    private int countFusedNodes(Combinator term, Map<Combinator, Boolean> counted) {
+        if (term instanceof CombinatorApplication && counted.put(term, Boolean.TRUE) == null) {
+            countFusedNodes(((CombinatorApplication) term).getFunction(), counted);
+            countFusedNodes(((CombinatorApplication) term).getArgument(), counted);
+        }
+        return counted.size();
+    }
+
+    // Nodes are numbered in pre-order from the base in RAX, so the root is RAX itself
+    private int emitFusedNode(CombinatorApplication app, Map<Combinator, Integer> placed) {
+        int index = placed.size();
+        placed.put(app, index);
+        emitFusedField(app.getFunction(), "[rax+" + (16 * index) + "]", placed);
+        emitFusedField(app.getArgument(), "[rax+" + (16 * index + 8) + "]", placed);
+        return index;
+    }
+
+    private void emitFusedField(Combinator child, String field, Map<Combinator, Integer> placed) {
+        String reg = "rax".equals(field) ? "rax" : "r8";
+        if (child instanceof CombinatorApplication) {
+            Integer index = placed.get(child);
+            if (index == null) {
+                index = emitFusedNode((CombinatorApplication) child, placed);
+            }
+            program.addInstruction(new X86Instruction(OpCodes.LEA, reg, "[rax+" + (16 * index) + "]"));
+        } else if (child instanceof CombinatorVariable && ((CombinatorVariable) child).getName().startsWith("?")) {
+            int argument = Integer.parseInt(((CombinatorVariable) child).getName().substring(1));
+            String source = argumentOperand(argument);
+            if (!source.startsWith("[")) {
+                // Already in a register: stored as it is
+                reg = source;
+            }
+            if (!reg.equals(source)) {
+                program.addInstruction(new X86Instruction(OpCodes.MOV, reg, source));
+            }
+        } else {
+            emitAtom(child, reg);
+        }
+        if (!reg.equals(field)) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, field, reg));
+        }
+    }
+
+    /**
+     * {@code IF (op a b) x y} without the condition: evaluates a and b as the comparison
+     * routines do, then continues with x or y as IF does.
+     */
+    private void emitFusedBranchRoutine(String label, FusedCombinator fused) {
+        String taken = freshLocalLabel("branch_taken");
+        String done = freshLocalLabel("branch_done");
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad " + fused.getArity() + "\n" + label));
+        emitEvaluateOperands();
+        // POP and MOV leave the flags alone
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "rcx"));
+        if (options.registerArguments) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rsp+24]")); // true_branch
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rsp+32]")); // false_branch
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rbx")); // true_branch
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rcx")); // false_branch
+        }
+        program.addInstruction(new X86Instruction("=".equals(fused.getOperator()) ? OpCodes.JE : OpCodes.JLE, taken));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, done));
+        program.addInstruction(new X86Instruction(taken));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+        program.addInstruction(new X86Instruction(done));
+        emitRoutineReturn(4);
+    }
+
+    // Nodes first .. first+count-1 become head x1, (head x1) x2, .. with RAX at node 0; head is
+    // an argument number and x1 .. xn are the arguments from 3
+    private void emitArgumentChain(int head, int first, int count) {
+        emitNodeField(first, 0, argumentOperand(head));
+        emitNodeField(first, 8, argumentOperand(3));
+        for (int i = 1; i < count; i++) {
+            emitNodeLink(first + i, 0, first + i - 1);
+            emitNodeField(first + i, 8, argumentOperand(i + 3));
+        }
+    }
+
+    // Scratch is r8: the arguments may be in rbx, rcx, rdx and rsi
+    private void emitNodeField(int node, int offset, String source) {
+        String field = "[rax+" + (16 * node + offset) + "]";
+        if (source.startsWith("[")) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", source));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, field, "r8"));
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, field, source));
+        }
+    }
+
+    private void emitNodeLink(int node, int offset, int target) {
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[rax+" + (16 * target) + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+" + (16 * node + offset) + "]", "r8"));
+    }
+
+    /**
+     * Inline bump allocation of {@code nodes} consecutive 16-byte nodes: one bounds check for
+     * the whole batch, base address left in RAX. Only RAX and the heap pointer change.
+     *
+     * live names the registers holding values the code reads after the allocation. The slow
+     * path pushes them around the refill, so they are the only registers the collector sees
+     * and updates; any other register keeps its old contents and must not be read as a value.
+     */
+    private void emitAllocate(int nodes, List<String> live) {
+        String done = freshLocalLabel("alloc_done");
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", HEAP_POINTER));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, HEAP_POINTER, String.valueOf(16 * nodes)));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, HEAP_POINTER, HEAP_LIMIT));
+        program.addInstruction(new X86Instruction(OpCodes.JBE, done));
+        for (String reg : live) {
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, reg));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_refill"));
+        for (int i = live.size() - 1; i >= 0; i--) {
+            program.addInstruction(new X86Instruction(OpCodes.POP, live.get(i)));
+        }
+        program.addInstruction(new X86Instruction(done));
+    }
+
+    // The first count arguments of a routine that took them with emitTakeArguments
+    private static List<String> takenArguments(int count) {
+        return ARGUMENT_REGISTERS.subList(0, count);
+    }
+
+    // The arguments argumentOperand reads from registers in a routine of the given arity
+    private List<String> registerArguments(int arity) {
+        return options.registerArguments
+            ? ARGUMENT_REGISTERS.subList(0, Math.min(arity, ARGUMENT_REGISTERS.size()))
+            : List.of();
+    }
+
+    // -----------------------------------------------------------------
+    // HEAP MAPPING
+    //
+    // The heap is anonymous memory mapped at startup instead of a fixed BSS reservation. Its size
+    // comes from --heap-size=SIZE on the command line, else KV_HEAP_SIZE in the environment, else
+    // the size chosen at compile time; SIZE is a byte count with an optional K, M or G suffix.
+    // Mappings use MAP_NORESERVE, so pages are only committed once they are touched, which is
+    // why the heap also has a ceiling: all heap mappings together stay within --heap-max=SIZE,
+    // else KV_HEAP_MAX, else the compile-time limit, else half of physical memory. A run that
+    // needs more stops with "heap exhausted" instead of being killed by the OOM killer.
+    // -----------------------------------------------------------------
+    private void emitHeapMappingRoutines() {
+        // RBX -> initial process stack. Stores the requested size in [heap_size] and the limit in
+        // [heap_max]; the initial size never exceeds the limit.
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_configure_heap"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rbx]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdx", "[rbx + rcx*8 + 16]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[heap_env_prefix]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[heap_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_scan_size_option"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdx", "[rbx + 16]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[heap_arg_prefix]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_scan_size_option"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rbx]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdx", "[rbx + rcx*8 + 16]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[heap_max_env_prefix]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[heap_max]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_scan_size_option"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdx", "[rbx + 16]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[heap_max_arg_prefix]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_scan_size_option"));
+
+        // No limit given: half of physical memory (sysinfo: totalram at 32, mem_unit at 104),
+        // or none if the kernel does not say
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "qword ptr [heap_max]", "0"));
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".heap_max_round"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "rsp", String.valueOf(SYSINFO_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "99")); // sys_sysinfo
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "rsp"));
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsp+32]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "ecx", "[rsp+104]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rsp", "[rsp+" + SYSINFO_SIZE + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".heap_max_unlimited"));
+        program.addInstruction(new X86Instruction(OpCodes.IMUL, "rax", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.SHR, "rax", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".heap_max_store"));
+        program.addInstruction(new X86Instruction(".heap_max_unlimited"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "-1"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".heap_max_store"));
+        program.addInstruction(new X86Instruction(".heap_max_round"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[heap_max]"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "rax", "-4096"));
+        program.addInstruction(new X86Instruction(".heap_max_store"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_max]", "rax"));
+
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[heap_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", String.valueOf(MIN_HEAP_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".heap_size_round"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", String.valueOf(MIN_HEAP_SIZE)));
+        program.addInstruction(new X86Instruction(".heap_size_round"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "4095"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "rax", "-4096"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "[heap_max]"));
+        program.addInstruction(new X86Instruction(OpCodes.JBE, ".heap_size_store"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[heap_max]"));
+        program.addInstruction(new X86Instruction(".heap_size_store"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_size]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // RDX -> NULL-terminated string vector, RDI -> prefix, R8 -> size variable to set.
+        // The last matching entry wins.
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_scan_size_option"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "[rdx]"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "rsi", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".scan_option_done"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_match_prefix"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".scan_option_next"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_parse_size"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".scan_option_next"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[r8]", "rax"));
+        program.addInstruction(new X86Instruction(".scan_option_next"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rdx", "8"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "lbl_scan_size_option"));
+        program.addInstruction(new X86Instruction(".scan_option_done"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // RSI -> string, RDI -> NUL-terminated prefix. RAX = 1 and RSI past the prefix on a match.
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_match_prefix"));
+        program.addInstruction(new X86Instruction(OpCodes.MOVZX, "eax", "byte ptr [rdi]"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "eax", "eax"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".prefix_matched"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "al", "byte ptr [rsi]"));
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".prefix_failed"));
+        program.addInstruction(new X86Instruction(OpCodes.INC, "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.INC, "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "lbl_match_prefix"));
+        program.addInstruction(new X86Instruction(".prefix_matched"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+        program.addInstruction(new X86Instruction(".prefix_failed"));
+        program.addInstruction(new X86Instruction(OpCodes.XOR, "eax", "eax"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // RSI -> decimal digits with an optional K/M/G suffix. RAX = byte count (0 if none).
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_parse_size"));
+        program.addInstruction(new X86Instruction(OpCodes.XOR, "eax", "eax"));
+        program.addInstruction(new X86Instruction(".parse_size_digit"));
+        program.addInstruction(new X86Instruction(OpCodes.MOVZX, "ecx", "byte ptr [rsi]"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "ecx", "48"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "ecx", "9"));
+        program.addInstruction(new X86Instruction(OpCodes.JA, ".parse_size_suffix"));
+        program.addInstruction(new X86Instruction(OpCodes.IMUL, "rax", "10"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.INC, "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".parse_size_digit"));
+        program.addInstruction(new X86Instruction(".parse_size_suffix"));
+        program.addInstruction(new X86Instruction(OpCodes.MOVZX, "ecx", "byte ptr [rsi]"));
+        program.addInstruction(new X86Instruction(OpCodes.OR, "ecx", "32")); // Lower case
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "ecx", "107")); // 'k'
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".parse_size_mega"));
+        program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "10"));
+        program.addInstruction(new X86Instruction(".parse_size_mega"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "ecx", "109")); // 'm'
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".parse_size_giga"));
+        program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "20"));
+        program.addInstruction(new X86Instruction(".parse_size_giga"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "ecx", "103")); // 'g'
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".parse_size_done"));
+        program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "30"));
+        program.addInstruction(new X86Instruction(".parse_size_done"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // RSI = length. Returns the new mapping in RAX; only RAX is clobbered. lbl_heap_map counts
+        // the mapping in [heap_mapped] and stops the run past [heap_max]; lbl_map_pages, for the
+        // stacks, does not.
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_heap_map"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[heap_mapped]"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "[heap_max]"));
+        program.addInstruction(new X86Instruction(OpCodes.JA, "lbl_heap_overflow"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_mapped]", "rax"));
+        program.addInstruction(new X86Instruction("lbl_map_pages"));
+        for (String reg : MAPPING_SAVED_REGISTERS) {
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, reg));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "9")); // sys_mmap
+        program.addInstruction(new X86Instruction(OpCodes.XOR, "edi", "edi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "edx", String.valueOf(PROT_READ_WRITE)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r10d", String.valueOf(MAP_PRIVATE_ANONYMOUS_NORESERVE)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", "-1"));
+        program.addInstruction(new X86Instruction(OpCodes.XOR, "r9d", "r9d"));
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "-4096"));
+        program.addInstruction(new X86Instruction(OpCodes.JA, "lbl_heap_overflow")); // -errno
+        if (options.hugePages) {
+            // Best effort: a kernel without transparent huge pages just keeps 4K pages
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "28")); // sys_madvise
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "edx", String.valueOf(MADV_HUGEPAGE)));
+            program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rdi"));
+        }
+        for (int i = MAPPING_SAVED_REGISTERS.size() - 1; i >= 0; i--) {
+            program.addInstruction(new X86Instruction(OpCodes.POP, MAPPING_SAVED_REGISTERS.get(i)));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // RDI = address, RSI = length (nothing to do when zero)
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_heap_unmap"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "rsi", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".heap_unmap_done"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "[heap_mapped]", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r11"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "11")); // sys_munmap
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r11"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
+        program.addInstruction(new X86Instruction(".heap_unmap_done"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+    }
+
+    // -----------------------------------------------------------------
+    // EVALUATOR STACK, SPINE STACK AND DUMP
+    //
+    // Instead of the 8 MB process stack the program runs on a mapped region of [stack_size]
+    // bytes (--stack-size=SIZE, KV_STACK_SIZE), which holds the arguments and temporaries of the
+    // routines. The spine node stack and the dump, where lbl_eval keeps its frames and
+    // continuations, get a region of the same size each. All three are MAP_NORESERVE, so they
+    // grow page by page as they are touched, and each has a PROT_NONE guard page at the end it
+    // grows towards. A SIGSEGV in any guard page ends the run with a "stack exhausted" message.
+    // -----------------------------------------------------------------
+    private void emitStackRoutines() {
+        program.addData("stack_guard", ".quad", "0");
+        program.addData("spine_guard", ".quad", "0");
+        program.addData("dump_guard", ".quad", "0");
+        program.addData("signal_stack", ".quad", "SIGNAL_STACK, 0, " + SIGNAL_STACK_SIZE);
+        program.addData("stack_fault_action", ".quad", "lbl_stack_fault, " + STACK_FAULT_FLAGS + ", lbl_signal_return, 0");
+        program.addBss("SIGNAL_STACK", SIGNAL_STACK_SIZE);
+
+        // RBX -> initial process stack. Stores the requested size in [stack_size].
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_configure_stack"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rbx]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdx", "[rbx + rcx*8 + 16]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[stack_env_prefix]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r8", "[stack_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_scan_size_option"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdx", "[rbx + 16]"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[stack_arg_prefix]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_scan_size_option"));
+
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[stack_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", String.valueOf(MIN_STACK_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".stack_size_round"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", String.valueOf(MIN_STACK_SIZE)));
+        program.addInstruction(new X86Instruction(".stack_size_round"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", String.valueOf(PAGE_SIZE - 1)));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "rax", String.valueOf(-PAGE_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[stack_size]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // Maps the stacks and the dump, installs the guard handler and returns on the new evaluator stack
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_stack_setup"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "[stack_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rsi", String.valueOf(PAGE_SIZE)));
+
+        // Spine node stack grows upwards: guard page above it
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_map_pages"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[spine_base]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[spine_ptr]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[rax + rsi - " + PAGE_SIZE + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[spine_guard]", "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_guard_page"));
+
+        // So does the dump
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_map_pages"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[dump_ptr]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[rax + rsi - " + PAGE_SIZE + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[dump_guard]", "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_guard_page"));
+
+        // Evaluator stack grows downwards: guard page below it
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_map_pages"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[stack_guard]", "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_guard_page"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rsi"));
+
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "131")); // sys_sigaltstack
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[signal_stack]"));
+        program.addInstruction(new X86Instruction(OpCodes.XOR, "esi", "esi"));
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "13")); // sys_rt_sigaction
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "edi", String.valueOf(SIGSEGV)));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rsi", "[stack_fault_action]"));
+        program.addInstruction(new X86Instruction(OpCodes.XOR, "edx", "edx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r10d", "8")); // sizeof(sigset_t)
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
+
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx")); // Return address
+        // A few spare slots at the top, so that the evaluator may load all the argument
+        // registers even when fewer arguments are on the stack
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rsp", "[rax-" + (8 * ARGUMENT_REGISTERS.size()) + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "rcx"));
+
+        // RDI = page address; makes it inaccessible
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_guard_page"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r11"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "10")); // sys_mprotect
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "esi", String.valueOf(PAGE_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.XOR, "edx", "edx")); // PROT_NONE
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r11"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // SIGSEGV handler (RSI -> siginfo). Faults outside the guard pages return and, with the
+        // handler reset, hit the default action again.
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_stack_fault"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsi+16]")); // si_addr
+        for (String guard : List.of("stack_guard", "spine_guard", "dump_guard")) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.SUB, "rcx", "[" + guard + "]"));
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "rcx", String.valueOf(PAGE_SIZE)));
+            program.addInstruction(new X86Instruction(OpCodes.JB, ".stack_exhausted"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+        program.addInstruction(new X86Instruction(".stack_exhausted"));
+        emitPrintStringLiteral(2, "stack exhausted (raise --stack-size or KV_STACK_SIZE)\n");
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "60")); // sys_exit
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "edi", String.valueOf(STACK_EXHAUSTED_EXIT_CODE)));
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_signal_return"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "15")); // sys_rt_sigreturn
+        program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
+    }
+
+    private static final List<String> MAPPING_SAVED_REGISTERS = List.of(
+        "rcx", "rdx", "rdi", "r8", "r9", "r10", "r11"
+    );
+
+    // -----------------------------------------------------------------
+    // GENERATIONAL COPYING COLLECTOR
+    //
+    // New nodes are bump-allocated in a small nursery. When it fills up, every node reachable
+    // from the roots is evacuated Cheney-style into the current old semi-space (promotion on
+    // first survival). When the old space can no longer absorb a full nursery, a major
+    // collection copies nursery and old space into the other semi-space and the two swap.
+    //
+    // Roots: the native stack from the collector's caller up to stack_base, the spine node
+    // stack, the cells of globals, and the remembered set of old nodes that were overwritten to
+    // point into the nursery. Registers are not roots. Every allocation site names the
+    // registers it reads afterwards and the slow path pushes exactly those (emitAllocate), the
+    // write barrier pushes the value it keeps, and everything else on the stack is laid out by
+    // the routines: arguments and values they pushed, return addresses and the refill's byte
+    // count. Neither of the last two lies in from-space, so a word is a heap reference exactly
+    // when it does. The dump holds only continuations and stack and spine pointers, so it is
+    // not a root. An evacuated node keeps
+    // its forwarding address, tagged with 4, in its first field.
+    // -----------------------------------------------------------------
+    private void emitGcHeapInitialization() {
+        program.addData("nursery_start", ".quad", "0");
+        program.addData("nursery_end", ".quad", "0");
+        program.addData("old_start", ".quad", "0");
+        program.addData("old_ptr", ".quad", "0");
+        program.addData("old_limit", ".quad", "0");
+        program.addData("old_size", ".quad", "0");
+        program.addData("old_other", ".quad", "0");
+        program.addData("old_other_size", ".quad", "0");
+        program.addData("semi_space_size", ".quad", "0");
+        program.addData("stack_base", ".quad", "0");
+        program.addData("remset_ptr", ".quad", "REMEMBERED_SET");
+        program.addData("gc_to_ptr", ".quad", "0");
+        program.addData("gc_from_lo", ".quad", "0");
+        program.addData("gc_from_hi", ".quad", "0");
+        program.addData("gc_from2_lo", ".quad", "0");
+        program.addData("gc_from2_hi", ".quad", "0");
+        program.addData("gc_minor_count", ".quad", "0");
+        program.addData("gc_major_count", ".quad", "0");
+        program.addBss("REMEMBERED_SET", REMEMBERED_SET_SIZE * 8);
+
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[stack_base]", "rsp"));
+
+        // Half the heap goes to the first old semi-space; the second is mapped at the first major collection
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[heap_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.SHR, "rbx", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "rbx", "-4096"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", String.valueOf(2 * NURSERY_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_init_old"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", String.valueOf(2 * NURSERY_SIZE)));
+        program.addInstruction(new X86Instruction(".gc_init_old"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[semi_space_size]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_size]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_heap_map"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_start]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_ptr]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_limit]", "rax"));
+
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", String.valueOf(NURSERY_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_heap_map"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_ptr]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[nursery_start]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rsi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_limit]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[nursery_end]", "rax"));
+    }
+
+    /**
+     * Records an old node that now refers to a nursery node. Both operands are registers;
+     * the remembered set is flushed by a collection when it fills up.
+     */
+    private void emitWriteBarrier(String node, String value, String continueLabel) {
+        String record = freshLocalLabel("barrier_record");
+        // Tagged cell pointers count too; an integer that happens to fall in range only costs a slot
+        program.addInstruction(new X86Instruction(OpCodes.CMP, value, "[nursery_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, continueLabel));  // Old target
+        program.addInstruction(new X86Instruction(OpCodes.CMP, value, "[nursery_end]"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, continueLabel)); // Old target
+        program.addInstruction(new X86Instruction(OpCodes.CMP, node, "[nursery_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, record));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, node, "[nursery_end]"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, continueLabel));  // Young node
+        program.addInstruction(new X86Instruction(record));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[remset_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rcx]", node));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rcx", "8"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[remset_ptr]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdx", "[REMEMBERED_SET + " + (REMEMBERED_SET_SIZE * 8) + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rcx", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, continueLabel));
+        // The value is the one register live here; the stack slot makes it a root
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, value));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_collect"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, value));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, continueLabel));
+    }
+
+    private static final List<String> GC_SAVED_REGISTERS = List.of(
+        "rax", "rbx", "rcx", "rdx", "rsi", "rdi", "rbp",
+        "r8", "r9", "r10", "r11", "r12", "r13", "r14", "r15"
+    );
+
+    private void emitGarbageCollector() {
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_gc_collect"));
+        // Registers are saved for the caller but are not roots: the stack scan starts above
+        // them and the return address, where the caller pushed the values it keeps live
+        for (String reg : GC_SAVED_REGISTERS) {
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, reg));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r12", "[rsp+" + (8 * (GC_SAVED_REGISTERS.size() + 1)) + "]"));
+
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[old_limit]"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "rax", "[old_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", String.valueOf(NURSERY_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.JB, ".gc_major"));
+
+        // MINOR: evacuate the nursery into the free end of the old space
+        program.addInstruction(new X86Instruction(OpCodes.INC, "qword ptr [gc_minor_count]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[nursery_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_from_lo]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[nursery_end]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_from_hi]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "qword ptr [gc_from2_lo]", "0"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "qword ptr [gc_from2_hi]", "0"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r13", "[old_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_to_ptr]", "r13"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_scan_roots"));
+
+        // Old nodes recorded by the write barrier
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r14", "[REMEMBERED_SET]"));
+        program.addInstruction(new X86Instruction(".gc_remset_loop"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "r14", "[remset_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_remset_done"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "[r14]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate_fields"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "r14", "8"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".gc_remset_loop"));
+        program.addInstruction(new X86Instruction(".gc_remset_done"));
+
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_scan_copied"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[gc_to_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_ptr]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".gc_finish"));
+
+        // MAJOR: evacuate nursery and old space into the other semi-space. To-space must hold
+        // everything in from-space plus one more nursery, so it doubles until it does.
+        program.addInstruction(new X86Instruction(".gc_major"));
+        program.addInstruction(new X86Instruction(OpCodes.INC, "qword ptr [gc_major_count]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[old_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "rax", "[old_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", String.valueOf(2 * NURSERY_SIZE)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[semi_space_size]"));
+        program.addInstruction(new X86Instruction(".gc_size_loop"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_size_done"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rbx", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".gc_size_loop"));
+        program.addInstruction(new X86Instruction(".gc_size_done"));
+        // Past [heap_max] the new to-space is cut down to what is left, if that still suffices.
+        // The previous from-space is unmapped first, so its size is available.
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[heap_max]"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "rcx", "[heap_mapped]"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rcx", "[old_other_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "rcx", "-4096"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.JBE, ".gc_size_fits"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rcx", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, "lbl_heap_overflow"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rcx"));
+        program.addInstruction(new X86Instruction(".gc_size_fits"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[semi_space_size]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "[old_other_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".gc_to_space_ready"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "[old_other]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "[old_other_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_heap_unmap"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_heap_map"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_other]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_other_size]", "rbx"));
+        program.addInstruction(new X86Instruction(".gc_to_space_ready"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[nursery_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_from_lo]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[nursery_end]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_from_hi]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[old_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_from2_lo]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[old_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_from2_hi]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r13", "[old_other]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_to_ptr]", "r13"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_scan_roots"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_scan_copied"));
+
+        // Swap the semi-spaces
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[old_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[old_other]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_other]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_start]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[old_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[old_other_size]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_other_size]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_size]", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rbx", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_limit]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[gc_to_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[old_ptr]", "rax"));
+
+        // More than half the semi-space still live: the next to-space is mapped twice as large
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "rax", "[old_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.JBE, ".gc_finish"));
+        program.addInstruction(new X86Instruction(OpCodes.SHL, "qword ptr [semi_space_size]", "1"));
+
+        program.addInstruction(new X86Instruction(".gc_finish"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[nursery_start]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[heap_ptr]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rax", "[REMEMBERED_SET]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[remset_ptr]", "rax"));
+
+        for (int i = GC_SAVED_REGISTERS.size() - 1; i >= 0; i--) {
+            program.addInstruction(new X86Instruction(OpCodes.POP, GC_SAVED_REGISTERS.get(i)));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.MOV, HEAP_POINTER, "[heap_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, HEAP_LIMIT, "[heap_limit]"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // Roots: native stack from the collector's caller (r12) up to stack_base, the spine node stack,
+        // then the cells of recursive globals and CAFs; static nodes are never updated and only
+        // point at code or other static nodes, so they need no scanning
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_gc_scan_roots"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "r12"));
+        program.addInstruction(new X86Instruction(".gc_stack_loop"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rsi", "[stack_base]"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_stack_done"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsi]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsi]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rsi", "8"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".gc_stack_loop"));
+        program.addInstruction(new X86Instruction(".gc_stack_done"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "[spine_base]"));
+        program.addInstruction(new X86Instruction(".gc_spine_loop"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rsi", "[spine_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_spine_done"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsi]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsi]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rsi", "8"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".gc_spine_loop"));
+        program.addInstruction(new X86Instruction(".gc_spine_done"));
+        for (String cell : globalCells) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[" + cell + "]"));
+            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[" + cell + "]", "rax"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // Cheney scan over everything copied since r13: application nodes, or cells behind a header
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_gc_scan_copied"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "r13", "[gc_to_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_scan_done"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rsi", "r13"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "[r13]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "eax", "15"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "eax", String.valueOf(CELL_HEADER_TAG)));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".gc_scan_cell"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate_fields"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "r13", "16"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "lbl_gc_scan_copied"));
+        program.addInstruction(new X86Instruction(".gc_scan_cell"));
+        program.addInstruction(new X86Instruction(OpCodes.SHR, "rdi", "4"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "edi", "4095")); // Arity
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "r10", "[r13 + rdi*8 + 8]")); // End of fields
+        program.addInstruction(new X86Instruction(".gc_scan_cell_field"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rsi", "8"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rsi", "r10"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_scan_cell_done"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsi]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsi]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".gc_scan_cell_field"));
+        program.addInstruction(new X86Instruction(".gc_scan_cell_done"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "r10", "15"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "r10", "-16"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r13", "r10"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "lbl_gc_scan_copied"));
+        program.addInstruction(new X86Instruction(".gc_scan_done"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // Evacuates both fields of the node in RSI
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_gc_evacuate_fields"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsi]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsi]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsi+8]"));
+        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_gc_evacuate"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsi+8]", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        // Returns the to-space version of the value in RAX (unchanged if it is not in from-space).
+        // RCX keeps the pointer tag (0 for nodes, 8 for cells) while RAX holds the object base.
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_gc_evacuate"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "ecx", "eax"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "ecx", "15"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".gc_evac_object"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "ecx", String.valueOf(CELL_POINTER_TAG)));
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".gc_evac_keep"));
+        program.addInstruction(new X86Instruction(OpCodes.SUB, "rax", "rcx"));
+        program.addInstruction(new X86Instruction(".gc_evac_object"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "[gc_from_lo]"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, ".gc_evac_second"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "[gc_from_hi]"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, ".gc_evac_from"));
+        program.addInstruction(new X86Instruction(".gc_evac_second"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "[gc_from2_lo]"));
+        program.addInstruction(new X86Instruction(OpCodes.JB, ".gc_evac_retag"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "[gc_from2_hi]"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_evac_retag"));
+
+        program.addInstruction(new X86Instruction(".gc_evac_from"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rax]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "edx", "ebx"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "edx", "15"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "edx", "4"));
+        program.addInstruction(new X86Instruction(OpCodes.JNE, ".gc_evac_copy"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rax", "[rbx + rcx - 4]")); // Already forwarded
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+
+        program.addInstruction(new X86Instruction(".gc_evac_copy"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "[gc_to_ptr]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rdx]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "[rax+8]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rdx+8]", "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "edi", "16"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "ecx", "ecx"));
+        program.addInstruction(new X86Instruction(OpCodes.JE, ".gc_evac_copied"));
+        // Cell: header plus arity fields, rounded up to 16 bytes; the first 16 are already copied
+        program.addInstruction(new X86Instruction(OpCodes.SHR, "rbx", "4"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "ebx", "4095"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rbx", "[rbx*8 + 23]"));
+        program.addInstruction(new X86Instruction(OpCodes.AND, "rbx", "-16"));
+        program.addInstruction(new X86Instruction(".gc_evac_cell_word"));
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rdi", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.JAE, ".gc_evac_copied"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", "[rax + rdi]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rdx + rdi]", "r8"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rdi", "8"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, ".gc_evac_cell_word"));
+        program.addInstruction(new X86Instruction(".gc_evac_copied"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rdi", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[gc_to_ptr]", "rdi"));
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rdi", "[rdx+4]"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rdi")); // Leave forwarding address
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rax", "[rdx + rcx]"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+        program.addInstruction(new X86Instruction(".gc_evac_retag"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", "rcx"));
+        program.addInstruction(new X86Instruction(".gc_evac_keep"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+    }
+
+    // -----------------------------------------------------------------
+    // NATIVE CONSTRUCTORS AND MATCH
+    // -----------------------------------------------------------------
+    private static boolean isNativeConstant(Object value, String prefix) {
+        return value instanceof String && ((String) value).startsWith(prefix);
+    }
+
+    private String constructorLabel(String constructorName) {
+        return "con_" + sanitizeBare(constructorName);
+    }
+
+    private String matchLabel(String typeName) {
+        return "match_" + sanitizeBare(typeName);
+    }
+
+    private void emitNativeConstructorRoutines() {
+        for (String constructorName : usedConstructors) {
+            emitConstructorRoutine(ConstructorRegistry.getConstructorInfo(constructorName));
+        }
+        for (String typeName : usedMatchTypes) {
+            emitMatchRoutine(typeName);
+        }
+    }
+
+    /**
+     * {@code con_C f1 .. fn}: allocates a cell [header, f1 .. fn] and returns its tagged pointer.
+     */
+    private void emitConstructorRoutine(ConstructorRegistry.ConstructorInfo info) {
+        int arity = info.getArity();
+        long header = ((long) info.getIndex() << 16) | ((long) arity << 4) | CELL_HEADER_TAG;
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad " + arity + "\n" + constructorLabel(info.getConstructorName())));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        // Fields stay on the stack (and visible to the collector) until the cell exists
+        emitAllocate((arity + 2) / 2, List.of());
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", String.valueOf(header)));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
+        for (int i = 0; i < arity; i++) {
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+" + (8 + 8 * i) + "]", "rcx"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.OR, "rax", String.valueOf(CELL_POINTER_TAG)));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.RET));
+    }
+
+    /**
+     * {@code match_T v h0 .. hk}: evaluates v, jumps through a table on its constructor index and
+     * returns the graph (h_index field1 .. fieldn) for the evaluator to continue with.
+     */
+    private void emitMatchRoutine(String typeName) {
+        List<ConstructorRegistry.ConstructorInfo> constructors = ConstructorRegistry.getConstructorsForType(typeName);
+        String label = matchLabel(typeName);
+        String dispatch = freshLocalLabel(label + "_dispatch");
+        List<String> cases = new ArrayList<>();
+        for (ConstructorRegistry.ConstructorInfo info : constructors) {
+            cases.add(label + "_case" + info.getIndex());
+        }
+        program.addData(label + "_table", ".quad", String.join(", ", cases));
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad " + (constructors.size() + 1) + "\n" + label));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+        emitEvaluate();
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+
+        // Nullary constructors carry their index in the value itself, cells in the header
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+        program.addInstruction(new X86Instruction(OpCodes.SHR, "rcx", "4"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "al", "4"));
+        program.addInstruction(new X86Instruction(OpCodes.JNZ, dispatch));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rax-8]"));
+        program.addInstruction(new X86Instruction(OpCodes.SHR, "rcx", "16"));
+        program.addInstruction(new X86Instruction(dispatch));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "qword ptr [" + label + "_table + rcx*8]"));
+
+        for (ConstructorRegistry.ConstructorInfo info : constructors) {
+            int arity = info.getArity();
+            program.addInstruction(new X86Instruction(cases.get(info.getIndex())));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rsp+" + (8 * info.getIndex()) + "]"));
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", String.valueOf(8 * constructors.size())));
+
+            if (arity == 0) {
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+            } else {
+                // Spine (((h f1) f2) .. fn) in one reservation; node j applies node j-1 to field j
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "rax"));
+                emitAllocate(arity, List.of("rbx", "rdx"));
+                for (int j = 0; j < arity; j++) {
+                    if (j > 0) {
+                        program.addInstruction(new X86Instruction(OpCodes.LEA, "rbx", "[rax+" + (16 * (j - 1)) + "]"));
+                    }
+                    program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rdx+" + (8 * j) + "]"));
+                    program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+" + (16 * j) + "]", "rbx"));
+                    program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+" + (16 * j + 8) + "]", "rcx"));
+                }
+                if (arity > 1) {
+                    program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", String.valueOf(16 * (arity - 1))));
+                }
+            }
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+            program.addInstruction(new X86Instruction(OpCodes.RET));
+        }
+    }
+
+    // -----------------------------------------------------------------
+    // LITERAL SECTIONS
+    // -----------------------------------------------------------------
+    /**
+     * An operator with one integer operand fixed at compile time: {@code (op k)} is
+     * {@code \x. k op x} and {@code (C op k)} is {@code \x. x op k}.
+     */
+    private final class LiteralSection {
+        final String operator;
+        final boolean literalOnLeft;
+        final long literal;
+
+        LiteralSection(String operator, boolean literalOnLeft, long literal) {
+            this.operator = operator;
+            this.literalOnLeft = literalOnLeft;
+            this.literal = literal;
+        }
+
+        String label() {
+            return sanitizeLabel(operator) + (literalOnLeft ? "_l" : "_r")
+                + (literal < 0 ? "m" + (-literal) : String.valueOf(literal));
+        }
+    }
+
+    private LiteralSection literalSection(Combinator term) {
+        if (!(term instanceof CombinatorApplication)) {
+            return null;
+        }
+        CombinatorApplication app = (CombinatorApplication) term;
+        Long literal = integerLiteral(app.getArgument());
+        if (literal == null || Math.abs(literal) > MAX_SECTION_LITERAL) {
+            return null;
+        }
+
+        Combinator function = app.getFunction();
+        boolean literalOnLeft = true;
+        if (function instanceof CombinatorApplication
+            && ((CombinatorApplication) function).getFunction() instanceof CCombinator) {
+            function = ((CombinatorApplication) function).getArgument();
+            literalOnLeft = false;
+        }
+        if (!(function instanceof CombinatorConstant)) {
+            return null;
+        }
+        String operator = String.valueOf(((CombinatorConstant) function).getValue());
+        if (!LITERAL_SECTION_OPERATORS.contains(operator)) {
+            return null;
+        }
+        return new LiteralSection(operator, literalOnLeft, literal);
+    }
+
+    private void emitLiteralSectionRoutines() {
+        for (LiteralSection section : usedLiteralSections.values()) {
+            emitLiteralSectionRoutine(section);
+        }
+    }
+
+    private void emitLiteralSectionRoutine(LiteralSection section) {
+        String ready = freshLocalLabel("section_ready");
+        String done = freshLocalLabel("section_done");
+        long tagged = (section.literal << 1) | 1;
+
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 1\n" + section.label()));
+        emitTakeArguments(1);
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "al", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.JNZ, ready));
+        if (!options.registerArguments) {
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+        }
+        emitEvaluate();
+        if (!options.registerArguments) {
+            program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        }
+        program.addInstruction(new X86Instruction(ready));
+
+        switch (section.operator) {
+            case "+":
+                program.addInstruction(new X86Instruction(OpCodes.ADD, "rax", String.valueOf(tagged - 1)));
+                break;
+            case "-":
+                if (section.literalOnLeft) {
+                    // (2k+1) - (2x+1) + 1 = 2(k-x)+1
+                    program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", String.valueOf(tagged + 1)));
+                    program.addInstruction(new X86Instruction(OpCodes.SUB, "rcx", "rax"));
+                    program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
+                } else {
+                    program.addInstruction(new X86Instruction(OpCodes.SUB, "rax", String.valueOf(tagged - 1)));
+                }
+                break;
+            case "*":
+                program.addInstruction(new X86Instruction(OpCodes.SAR, "rax", "1"));
+                program.addInstruction(new X86Instruction(OpCodes.IMUL, "rax", String.valueOf(section.literal)));
+                program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "1"));
+                program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
+                break;
+            default:
+                // Comparisons on tagged values; MOV leaves the flags alone
+                program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", String.valueOf(tagged)));
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "3")); // True
+                if ("=".equals(section.operator)) {
+                    program.addInstruction(new X86Instruction(OpCodes.JE, done));
+                } else {
+                    program.addInstruction(new X86Instruction(section.literalOnLeft ? OpCodes.JGE : OpCodes.JLE, done));
+                }
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "1")); // False
+                program.addInstruction(new X86Instruction(done));
+                break;
+        }
+        emitRoutineReturn(1);
+    }
+
+    // -----------------------------------------------------------------
+    // SUPERCOMBINATORS
+    //
+    // A supercombinator of arity n is entered like any other global: the evaluator calls it
+    // with its n arguments above the return address, and it leaves them to "ret 8n". The body
+    // is compiled with the usual G-machine schemes:
+    //   R (emitReturn)      returns the body's value, possibly a graph the evaluator continues with
+    //   E (emitStrict)      evaluates to weak head normal form in RAX
+    //   C (emitInstantiate) builds the graph of a lazy term with one heap reservation
+    // lbl_eval clobbers every register, so values that must survive it stay on the stack.
+    // -----------------------------------------------------------------
+
+    /**
+     * Where the parameters and pushed locals of the supercombinator being compiled live.
+     * Argument i has height -(i+1); the k-th value the body pushed has height k.
+     */
+    private static final class Frame {
+        final int arity;
+        final int depth;
+        final Map<String, Integer> heights;
+
+        Frame(List<String> parameters) {
+            this(parameters.size(), 0, new HashMap<>());
+            for (int i = 0; i < parameters.size(); i++) {
+                heights.put(parameters.get(i), -(i + 1));
+            }
+        }
+
+        private Frame(int arity, int depth, Map<String, Integer> heights) {
+            this.arity = arity;
+            this.depth = depth;
+            this.heights = heights;
+        }
+
+        // The frame after one more push, naming the pushed value when name is non-null
+        Frame push(String name) {
+            Map<String, Integer> extended = new HashMap<>(heights);
+            if (name != null) {
+                extended.put(name, depth + 1);
+            }
+            return new Frame(arity, depth + 1, extended);
+        }
+
+        boolean binds(String name) {
+            return heights.containsKey(name);
+        }
+
+        String slot(String name) {
+            return "qword ptr [rsp+" + 8 * (depth - heights.get(name)) + "]";
+        }
+
+        // A name for a pushed temporary that cannot clash with a source variable
+        String temporary() {
+            return "%t" + (depth + 1);
+        }
+    }
+
+    private void emitSupercombinator(Supercombinator supercombinator) {
+        String label = sanitizeLabel(supercombinator.getName());
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad " + supercombinator.getArity() + "\n" + label));
+        if (supercombinator.getArity() == 0 && options.updateRedexes) {
+            // CAF: the body runs as a subroutine on the first entry only, see compile()
+            String cell = "value_" + label;
+            emitCellLookup(cell);
+            program.addInstruction(new X86Instruction(OpCodes.CALL, label + "_body"));
+            emitEvaluate();
+            emitCellStore(cell);
+            program.addInstruction(new X86Instruction(OpCodes.RET));
+            program.addInstruction(new X86Instruction(".p2align 3\n" + label + "_body"));
+        }
+        emitReturn(supercombinator.getBody(), new Frame(supercombinator.getParameters()));
+    }
+
+    // Drops the pushed locals and the arguments, keeping RAX
+    private void emitSupercombinatorExit(Frame frame) {
+        if (frame.depth > 0) {
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", String.valueOf(8 * frame.depth)));
+        }
+        if (frame.arity > 0) {
+            program.addInstruction(new X86Instruction(OpCodes.RET, String.valueOf(8 * frame.arity)));
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.RET));
+        }
+    }
+
+    private void emitReturn(Term term, Frame frame) {
+        if (term instanceof Conditional) {
+            Conditional c = (Conditional) term;
+            String otherwise = freshLocalLabel("sc_else");
+            emitStrict(c.getCondition(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "3"));
+            program.addInstruction(new X86Instruction(OpCodes.JNE, otherwise));
+            emitReturn(c.getTrueBranch(), frame);
+            program.addInstruction(new X86Instruction(otherwise));
+            emitReturn(c.getFalseBranch(), frame);
+            return;
+        }
+
+        Abstraction let = letBinding(term);
+        if (let != null) {
+            emitInstantiate(((Application) term).getArgument(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+            emitReturn(let.getBody(), frame.push(let.getParameter()));
+            return;
+        }
+
+        if (matchedConstructors(term) != null) {
+            emitMatch(term, frame, true);
+            return;
+        }
+
+        if (term instanceof And || term instanceof Or) {
+            boolean isAnd = term instanceof And;
+            String rest = freshLocalLabel("sc_rest");
+            emitStrict(isAnd ? ((And) term).getLeft() : ((Or) term).getLeft(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", isAnd ? "1" : "3"));
+            program.addInstruction(new X86Instruction(OpCodes.JNE, rest));
+            emitSupercombinatorExit(frame);
+            program.addInstruction(new X86Instruction(rest));
+            emitReturn(isAnd ? ((And) term).getRight() : ((Or) term).getRight(), frame);
+            return;
+        }
+
+        Application strictApply = strictApplication(term);
+        if (strictApply != null) {
+            PushedTemporary inner = emitStrictArgument(strictApply, frame);
+            emitReturn(strictContinuation(term, strictApply, inner.temporaryName), inner.frame);
+            return;
+        }
+
+        if (knownCallArity(term, frame) > 0) {
+            emitKnownCall(term, frame, true);
+            return;
+        }
+
+        if (producesValue(term)) {
+            emitStrict(term, frame);
+        } else {
+            emitInstantiate(term, frame);
+        }
+        emitSupercombinatorExit(frame);
+    }
+
+    private void emitStrict(Term term, Frame frame) {
+        Long literal = taggedLiteral(term);
+        if (literal != null) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", String.valueOf(literal)));
+            return;
+        }
+
+        if (term instanceof Variable && frame.binds(((Variable) term).getName())) {
+            // Keep the evaluated value in the slot so later uses skip the evaluator
+            String slot = frame.slot(((Variable) term).getName());
+            String ready = freshLocalLabel("sc_ready");
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", slot));
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "al", "1"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, ready));
+            emitEvaluate();
+            program.addInstruction(new X86Instruction(OpCodes.MOV, slot, "rax"));
+            program.addInstruction(new X86Instruction(ready));
+            return;
+        }
+
+        String operator = binaryOperator(term);
+        if (operator != null) {
+            Application operands = primitiveApplication(term);
+            emitOperands(((Application) operands.getFunction()).getArgument(), operands.getArgument(), frame);
+            emitIntegerOperation(operator);
+            return;
+        }
+
+        if (term instanceof Not) {
+            emitStrict(((Not) term).getOperand(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.XOR, "rax", "2")); // 3 <-> 1
+            return;
+        }
+
+        if (term instanceof And || term instanceof Or) {
+            boolean isAnd = term instanceof And;
+            String done = freshLocalLabel("sc_logic_done");
+            emitStrict(isAnd ? ((And) term).getLeft() : ((Or) term).getLeft(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", isAnd ? "1" : "3"));
+            program.addInstruction(new X86Instruction(OpCodes.JE, done));
+            emitStrict(isAnd ? ((And) term).getRight() : ((Or) term).getRight(), frame);
+            program.addInstruction(new X86Instruction(done));
+            return;
+        }
+
+        if (term instanceof Conditional) {
+            Conditional c = (Conditional) term;
+            String otherwise = freshLocalLabel("sc_else");
+            String done = freshLocalLabel("sc_if_done");
+            emitStrict(c.getCondition(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "3"));
+            program.addInstruction(new X86Instruction(OpCodes.JNE, otherwise));
+            emitStrict(c.getTrueBranch(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.JMP, done));
+            program.addInstruction(new X86Instruction(otherwise));
+            emitStrict(c.getFalseBranch(), frame);
+            program.addInstruction(new X86Instruction(done));
+            return;
+        }
+
+        Abstraction let = letBinding(term);
+        if (let != null) {
+            emitInstantiate(((Application) term).getArgument(), frame);
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+            emitStrict(let.getBody(), frame.push(let.getParameter()));
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", "8"));
+            return;
+        }
+
+        if (matchedConstructors(term) != null) {
+            emitMatch(term, frame, false);
+            return;
+        }
+
+        Application strictApply = strictApplication(term);
+        if (strictApply != null) {
+            PushedTemporary inner = emitStrictArgument(strictApply, frame);
+            emitStrict(strictContinuation(term, strictApply, inner.temporaryName), inner.frame);
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", "8"));
+            return;
+        }
+
+        if (knownCallArity(term, frame) > 0) {
+            emitKnownCall(term, frame, false);
+        } else {
+            emitInstantiate(term, frame);
+        }
+        emitEvaluate();
+    }
+
+    /**
+     * The arity of the supercombinator heading term when it receives at least that many
+     * arguments, otherwise 0. Parameters and let-bound names shadow globals.
+     */
+    private int knownCallArity(Term term, Frame frame) {
+        if (!options.knownCalls) {
+            return 0;
+        }
+        List<Term> args = new ArrayList<>();
+        Term head = spine(term, args);
+        if (!(head instanceof Variable) || frame.binds(((Variable) head).getName())) {
+            return 0;
+        }
+        Integer arity = supercombinatorArities.get(((Variable) head).getName());
+        return arity != null && arity > 0 && args.size() >= arity ? arity : 0;
+    }
+
+    /**
+     * A saturated call to a known supercombinator: the arguments are built lazily and pushed,
+     * and the supercombinator is called directly, skipping the spine nodes the evaluator
+     * would unwind and its arity check. The result is, like any supercombinator's, a value or
+     * a graph; arguments beyond the arity are applied to it.
+     *
+     * In tail position an exactly saturated call replaces the current frame: the arguments
+     * move down over it and the return address, and control jumps to the callee, so a loop
+     * runs in constant stack as it does through the evaluator.
+     */
+    private void emitKnownCall(Term term, Frame frame, boolean tail) {
+        List<Term> args = new ArrayList<>();
+        String name = ((Variable) spine(term, args)).getName();
+        int arity = supercombinatorArities.get(name);
+        String label = sanitizeLabel(name);
+
+        // Pushed last to first, so the first argument ends up next to the return address
+        Frame pushed = frame;
+        for (int i = arity - 1; i >= 0; i--) {
+            emitInstantiate(args.get(i), pushed);
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+            pushed = pushed.push(null);
+        }
+        if (options.countReductions) {
+            program.addInstruction(new X86Instruction(OpCodes.INC, "qword ptr [reduction_count]"));
+        }
+
+        if (tail && args.size() == arity) {
+            emitTailJump(label, arity, frame);
+            return;
+        }
+
+        program.addInstruction(new X86Instruction(OpCodes.CALL, label));
+        if (args.size() > arity) {
+            // The result joins the frame as a temporary the remaining arguments are applied to
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+            String temporary = frame.temporary();
+            Term applied = new Variable(temporary);
+            for (Term extra : args.subList(arity, args.size())) {
+                applied = new Application(applied, extra);
+            }
+            emitInstantiate(applied, frame.push(temporary));
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", "8"));
+        }
+        if (tail) {
+            emitSupercombinatorExit(frame);
+        }
+    }
+
+    // The arguments on top of the stack take the place of the frame's locals, return address
+    // and arguments, the return address goes below them, and control passes to label
+    private void emitTailJump(String label, int count, Frame frame) {
+        int shift = frame.depth + frame.arity + 1;
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "r15", "[rsp+" + (8 * (count + frame.depth)) + "]"));
+        // Highest slot first: every slot written is one already read
+        for (int i = count - 1; i >= 0; i--) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rsp+" + (8 * i) + "]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsp+" + (8 * (i + shift)) + "]", "rcx"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsp+" + (8 * (shift - 1)) + "]", "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", String.valueOf(8 * (shift - 1))));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, label));
+    }
+
+    private static final class PushedTemporary {
+        final Frame frame;
+        final String temporaryName;
+
+        PushedTemporary(Frame frame, String temporaryName) {
+            this.frame = frame;
+            this.temporaryName = temporaryName;
+        }
+    }
+
+    // %strict f a: evaluates a and pushes it as a temporary; the caller continues with (f temporary)
+    private PushedTemporary emitStrictArgument(Application strictApply, Frame frame) {
+        emitStrict(strictApply.getArgument(), frame);
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+        String temporary = frame.temporary();
+        return new PushedTemporary(frame.push(temporary), temporary);
+    }
+
+    // Evaluates both operands into RBX (left) and RCX (right)
+    private void emitOperands(Term left, Term right, Frame frame) {
+        Long leftLiteral = taggedLiteral(left);
+        Long rightLiteral = taggedLiteral(right);
+        if (rightLiteral != null) {
+            emitStrict(left, frame);
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", String.valueOf(rightLiteral)));
+        } else if (leftLiteral != null) {
+            emitStrict(right, frame);
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", String.valueOf(leftLiteral)));
+        } else {
+            emitStrict(left, frame);
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rax"));
+            emitStrict(right, frame.push(null));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
+        }
+    }
+
+    // RAX = RBX op RCX on tagged operands, without untagging where the tag cancels out
+    private void emitIntegerOperation(String operator) {
+        switch (operator) {
+            case "+":
+                program.addInstruction(new X86Instruction(OpCodes.LEA, "rax", "[rbx+rcx-1]"));
+                return;
+            case "-":
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+                program.addInstruction(new X86Instruction(OpCodes.SUB, "rax", "rcx"));
+                program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
+                return;
+            case "*":
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+                program.addInstruction(new X86Instruction(OpCodes.SAR, "rax", "1"));
+                program.addInstruction(new X86Instruction(OpCodes.SUB, "rcx", "1"));
+                program.addInstruction(new X86Instruction(OpCodes.IMUL, "rax", "rcx"));
+                program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
+                return;
+            case "/":
+                program.addInstruction(new X86Instruction(OpCodes.SAR, "rbx", "1"));
+                program.addInstruction(new X86Instruction(OpCodes.SAR, "rcx", "1"));
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+                program.addInstruction(new X86Instruction(OpCodes.CQO));
+                program.addInstruction(new X86Instruction(OpCodes.IDIV, "rcx"));
+                program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "1"));
+                program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
+                return;
+            default:
+                // Comparisons; MOV leaves the flags of the CMP intact
+                String done = freshLocalLabel("sc_cmp_done");
+                program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "rcx"));
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "1"));
+                program.addInstruction(new X86Instruction("=".equals(operator) ? OpCodes.JNE : OpCodes.JG, done));
+                program.addInstruction(new X86Instruction(OpCodes.MOV, "eax", "3"));
+                program.addInstruction(new X86Instruction(done));
+        }
+    }
+
+    /**
+     * Evaluates the scrutinee of a saturated {@code %match:T} and continues with the chosen
+     * alternative in place, its leading lambdas bound to the fields of the cell.
+     */
+    private void emitMatch(Term term, Frame frame, boolean tail) {
+        List<Term> args = new ArrayList<>();
+        spine(term, args);
+        List<ConstructorRegistry.ConstructorInfo> constructors = matchedConstructors(term);
+        String done = freshLocalLabel("sc_match_done");
+        List<String> cases = new ArrayList<>();
+        for (int i = 0; i < constructors.size(); i++) {
+            cases.add(freshLocalLabel("sc_case"));
+        }
+
+        emitStrict(args.get(0), frame);
+        if (constructors.size() > 1) {
+            // Nullary constructors carry their index in the value itself, cells in the header
+            String dispatch = freshLocalLabel("sc_dispatch");
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.SHR, "rcx", "4"));
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "al", "4"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, dispatch));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rax-8]"));
+            program.addInstruction(new X86Instruction(OpCodes.SHR, "rcx", "16"));
+            program.addInstruction(new X86Instruction(dispatch));
+            for (int i = 1; i < constructors.size(); i++) {
+                program.addInstruction(new X86Instruction(OpCodes.CMP, "rcx", String.valueOf(i)));
+                program.addInstruction(new X86Instruction(OpCodes.JE, cases.get(i)));
+            }
+        }
+
+        for (ConstructorRegistry.ConstructorInfo info : constructors) {
+            int index = info.getIndex();
+            program.addInstruction(new X86Instruction(cases.get(index)));
+
+            List<String> fields = new ArrayList<>();
+            Term body = args.get(1 + index);
+            while (fields.size() < info.getArity() && body instanceof Abstraction) {
+                fields.add(((Abstraction) body).getParameter());
+                body = ((Abstraction) body).getBody();
+            }
+
+            // Push the fields the alternative uses; fields it does not bind are applied to it
+            Set<String> used = body.getFreeVariables();
+            Frame inner = frame;
+            for (int j = 0; j < info.getArity(); j++) {
+                String name = j < fields.size() ? fields.get(j) : inner.temporary();
+                if (j < fields.size() && !used.contains(name)) {
+                    continue;
+                }
+                program.addInstruction(new X86Instruction(OpCodes.PUSH, "qword ptr [rax+" + (8 * j) + "]"));
+                inner = inner.push(name);
+                if (j >= fields.size()) {
+                    body = new Application(body, new Variable(name));
+                }
+            }
+
+            if (tail) {
+                emitReturn(body, inner);
+            } else {
+                emitStrict(body, inner);
+                if (inner.depth > frame.depth) {
+                    program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", String.valueOf(8 * (inner.depth - frame.depth))));
+                }
+                program.addInstruction(new X86Instruction(OpCodes.JMP, done));
+            }
+        }
+        if (!tail) {
+            program.addInstruction(new X86Instruction(done));
+        }
+    }
+
+    /**
+     * Builds the graph of a lazy term: applications and primitive operators become one
+     * batch of nodes laid out in pre-order, like {@link #emitApplicationGraph}.
+     */
+    private void emitInstantiate(Term term, Frame frame) {
+        int nodes = countInstanceNodes(term);
+        if (nodes == 0) {
+            emitInstanceAtom(term, "rax", frame);
+            return;
+        }
+        emitAllocate(nodes, List.of());
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "rax"));
+        emitInstanceNode(primitiveApplication(term), frame, new int[] {0});
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rdx"));
+    }
+
+    private int emitInstanceNode(Application app, Frame frame, int[] next) {
+        int index = next[0]++;
+        emitInstanceField(app.getFunction(), "[rdx+" + (16 * index) + "]", frame, next);
+        emitInstanceField(app.getArgument(), "[rdx+" + (16 * index + 8) + "]", frame, next);
+        return index;
+    }
+
+    private void emitInstanceField(Term child, String field, Frame frame, int[] next) {
+        Application app = primitiveApplication(child);
+        if (app != null) {
+            int index = emitInstanceNode(app, frame, next);
+            program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[rdx+" + (16 * index) + "]"));
+        } else {
+            emitInstanceAtom(child, "rcx", frame);
+        }
+        program.addInstruction(new X86Instruction(OpCodes.MOV, field, "rcx"));
+    }
+
+    private int countInstanceNodes(Term term) {
+        Application app = primitiveApplication(term);
+        if (app == null) {
+            return 0;
+        }
+        return 1 + countInstanceNodes(app.getFunction()) + countInstanceNodes(app.getArgument());
+    }
+
+    private void emitInstanceAtom(Term term, String reg, Frame frame) {
+        Long literal = taggedLiteral(term);
+        if (literal != null) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, reg, String.valueOf(literal)));
+        } else if (term instanceof Variable && frame.binds(((Variable) term).getName())) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, reg, frame.slot(((Variable) term).getName())));
+        } else if (term instanceof Variable) {
+            emitAtom(Combinators.variable(((Variable) term).getName()), reg);
+        } else if (term instanceof ca.brock.cs.lambda.parser.Constant) {
+            String value = ((ca.brock.cs.lambda.parser.Constant) term).getValue();
+            emitAtom(LambdaLifter.FIX.equals(value) ? Combinators.Y : Combinators.constant(value), reg);
+        } else {
+            throw new IllegalStateException("Cannot build a graph for " + term);
+        }
+    }
+
+    // Primitive operators as the applications of their runtime routines; null for atoms
+    private static Application primitiveApplication(Term term) {
+        if (term instanceof Application) {
+            return (Application) term;
+        }
+        String operator = binaryOperator(term);
+        if (operator == null) {
+            operator = term instanceof And ? "and" : term instanceof Or ? "or" : null;
+        }
+        if (operator != null) {
+            Term left = term instanceof And ? ((And) term).getLeft()
+                : term instanceof Or ? ((Or) term).getLeft()
+                : binaryOperand(term, true);
+            Term right = term instanceof And ? ((And) term).getRight()
+                : term instanceof Or ? ((Or) term).getRight()
+                : binaryOperand(term, false);
+            return new Application(new Application(new ca.brock.cs.lambda.parser.Constant(operator), left), right);
+        }
+        if (term instanceof Not) {
+            return new Application(new ca.brock.cs.lambda.parser.Constant("not"), ((Not) term).getOperand());
+        }
+        return null;
+    }
+
+    private static String binaryOperator(Term term) {
+        if (term instanceof Addition) return "+";
+        if (term instanceof Subtraction) return "-";
+        if (term instanceof Multiplication) return "*";
+        if (term instanceof Division) return "/";
+        if (term instanceof Equal) return "=";
+        if (term instanceof LEqual) return "<=";
+        return null;
+    }
+
+    private static Term binaryOperand(Term term, boolean left) {
+        if (term instanceof Addition) return left ? ((Addition) term).getLeft() : ((Addition) term).getRight();
+        if (term instanceof Subtraction) return left ? ((Subtraction) term).getLeft() : ((Subtraction) term).getRight();
+        if (term instanceof Multiplication) return left ? ((Multiplication) term).getLeft() : ((Multiplication) term).getRight();
+        if (term instanceof Division) return left ? ((Division) term).getLeft() : ((Division) term).getRight();
+        if (term instanceof Equal) return left ? ((Equal) term).getLeft() : ((Equal) term).getRight();
+        return left ? ((LEqual) term).getLeft() : ((LEqual) term).getRight();
+    }
 
-        program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\ncomb_K"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+    // Terms whose strict value is computed inline rather than by the evaluator
+    private static boolean producesValue(Term term) {
+        return binaryOperator(term) != null || term instanceof Not
+            || term instanceof IntegerLiteral || term instanceof BooleanLiteral;
+    }
 
-        program.addInstruction(new X86Instruction(".p2align 3\n.quad 3\ncomb_B"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rdx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "r8"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+    // Integer, boolean and nullary constructor literals as their tagged machine words
+    private static Long taggedLiteral(Term term) {
+        if (term instanceof IntegerLiteral) {
+            return ((long) ((IntegerLiteral) term).getValue() << 1) | 1;
+        }
+        if (term instanceof BooleanLiteral) {
+            return ((BooleanLiteral) term).getValue() ? 3L : 1L;
+        }
+        if (term instanceof ca.brock.cs.lambda.parser.Constant) {
+            String value = ((ca.brock.cs.lambda.parser.Constant) term).getValue();
+            Long number = integerLiteral(Combinators.constant(value));
+            if (number != null) {
+                return (number << 1) | 1;
+            }
+            if (isNativeConstant(value, ScottEncoding.NATIVE_CONSTRUCTOR_PREFIX)) {
+                ConstructorRegistry.ConstructorInfo info = ConstructorRegistry.getConstructorInfo(
+                    value.substring(ScottEncoding.NATIVE_CONSTRUCTOR_PREFIX.length()));
+                if (info.getArity() == 0) {
+                    return ((long) info.getIndex() << 4) | NULLARY_CONSTRUCTOR_TAG;
+                }
+            }
+        }
+        return null;
+    }
 
-        program.addInstruction(new X86Instruction(".p2align 3\n.quad 3\ncomb_C"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rdx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "r8"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+    private static Abstraction letBinding(Term term) {
+        if (term instanceof Application && ((Application) term).getFunction() instanceof Abstraction) {
+            return (Abstraction) ((Application) term).getFunction();
+        }
+        return null;
+    }
 
-        program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\ncomb_CStar"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx")); // arg 1 (a)
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx")); // arg 2 (b)
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+    // The (%strict f a) at the head of term, which may apply it to further arguments
+    private static Application strictApplication(Term term) {
+        while (term instanceof Application && ((Application) term).getFunction() instanceof Application) {
+            Term head = ((Application) ((Application) term).getFunction()).getFunction();
+            if (head instanceof ca.brock.cs.lambda.parser.Constant
+                && StrictnessAnalysis.STRICT_APPLY.equals(((ca.brock.cs.lambda.parser.Constant) head).getValue())) {
+                return (Application) term;
+            }
+            term = ((Application) term).getFunction();
+        }
+        return null;
+    }
 
-        program.addInstruction(new X86Instruction(".p2align 3\n.quad 3\ncomb_S"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rdx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "r9", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "r9"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "r8"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+    // term with its head (%strict f a) replaced by (f temporary)
+    private static Term strictContinuation(Term term, Application strictApply, String temporary) {
+        if (term == strictApply) {
+            return new Application(((Application) strictApply.getFunction()).getArgument(), new Variable(temporary));
+        }
+        Application app = (Application) term;
+        return new Application(strictContinuation(app.getFunction(), strictApply, temporary), app.getArgument());
+    }
 
-        program.addInstruction(new X86Instruction(".p2align 3\n.quad 1\ncomb_Y"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rax")); // Cyclic graph
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+    // The constructors of T when term is a saturated %match:T, otherwise null
+    private static List<ConstructorRegistry.ConstructorInfo> matchedConstructors(Term term) {
+        List<Term> args = new ArrayList<>();
+        Term head = spine(term, args);
+        if (!(head instanceof ca.brock.cs.lambda.parser.Constant)
+            || !isNativeConstant(((ca.brock.cs.lambda.parser.Constant) head).getValue(), ScottEncoding.NATIVE_MATCH_PREFIX)) {
+            return null;
+        }
+        String typeName = ((ca.brock.cs.lambda.parser.Constant) head).getValue().substring(ScottEncoding.NATIVE_MATCH_PREFIX.length());
+        List<ConstructorRegistry.ConstructorInfo> constructors = ConstructorRegistry.getConstructorsForType(typeName);
+        return args.size() == constructors.size() + 1 ? constructors : null;
+    }
 
-        program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\ncomb_W"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "r8", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "r8"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+    private static Term spine(Term term, List<Term> args) {
+        while (term instanceof Application) {
+            args.add(0, ((Application) term).getArgument());
+            term = ((Application) term).getFunction();
+        }
+        return term;
     }
 
     private void emitNativeOperators() {
         // NATIVE ADDITION (+)
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\nlbl_plus"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval")); // Evaluate Arg 1
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval")); // Evaluate Arg 2
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+        emitEvaluateOperands();
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rbx", "1")); // Untag
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rcx", "1")); // Untag
         program.addInstruction(new X86Instruction(OpCodes.ADD, "rbx", "rcx")); // Execute
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
         program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "1")); // Retag
         program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        emitRoutineReturn(2);
 
         // NATIVE MULTIPLICATION (*)
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\nlbl_mul"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+        emitEvaluateOperands();
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rbx", "1"));
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rcx", "1"));
         program.addInstruction(new X86Instruction(OpCodes.IMUL, "rbx", "rcx")); // Execute
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
         program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "1"));
         program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        emitRoutineReturn(2);
 
         // NATIVE SUBTRACTION (-)
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\nlbl_minus"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+        emitEvaluateOperands();
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rbx", "1"));
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rcx", "1"));
         program.addInstruction(new X86Instruction(OpCodes.SUB, "rbx", "rcx")); // Execute
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
         program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "1"));
         program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        emitRoutineReturn(2);
 
         emitDivRoutine();
         // NATIVE LESS-THAN-EQUAL (<=)
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\nlbl_lteq"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+        emitEvaluateOperands();
         program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "rcx")); // Execute
         program.addInstruction(new X86Instruction(OpCodes.JLE, ".is_true"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "1"));   // False (Tagged 0)
@@ -597,22 +3104,29 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(".is_true"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "3"));   // True (Tagged 1)
         program.addInstruction(new X86Instruction(".cmp_done"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        emitRoutineReturn(2);
 
         // NATIVE CONDITIONAL BRANCH (IF)
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 3\nlbl_IF"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rax")); // cond
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx")); // true_branch
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx")); // false_branch
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval")); // Evaluate Condition
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+        if (options.registerArguments) {
+            // The branches stay in their stack slots while the condition is evaluated
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx")); // cond
+            emitEvaluate(); // Evaluate Condition
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rsp+16]")); // true_branch
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rsp+24]")); // false_branch
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rax")); // cond
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rbx")); // true_branch
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rcx")); // false_branch
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+            emitEvaluate(); // Evaluate Condition
+            program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+        }
         program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "3")); // 3 is tagged True
         program.addInstruction(new X86Instruction(OpCodes.JE, ".do_true"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx")); // Select False Graph
@@ -620,14 +3134,100 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(".do_true"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx")); // Select True Graph
         program.addInstruction(new X86Instruction(".if_done"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        emitRoutineReturn(3);
 
         emitEqRoutine();
 
+        // STRICT APPLICATION (%strict f x): evaluate x now, continue with (f x)
+        program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\nlbl_strict_apply"));
+        if (options.registerArguments) {
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx")); // x
+            emitEvaluate();
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rsp+8]")); // f
+        } else {
+            program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rbx")); // f
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rax")); // x
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+            emitEvaluate();
+            program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
+        }
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", "rax"));
+        emitAllocate(1, List.of("rbx", "rdx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rdx"));
+        emitRoutineReturn(2);
+    }
+
 
+    /**
+     * Evaluates RAX, leaving its value in RAX, as a call to lbl_eval would but without a return
+     * address: the continuation goes to the dump with the evaluator's frame.
+     */
+    private void emitEvaluate() {
+        String continuation = freshLocalLabel("eval_continue");
+        program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[" + continuation + "]"));
+        program.addInstruction(new X86Instruction(OpCodes.JMP, "lbl_eval"));
+        program.addInstruction(new X86Instruction(continuation));
     }
 
+    /**
+     * Takes two operands into RBX and RCX as emitTakeArguments(2) does, evaluating each one
+     * unless it already is a tagged integer or boolean. Return with emitRoutineReturn(2).
+     */
+    private void emitEvaluateOperands() {
+        String firstReady = freshLocalLabel("first_ready");
+        String secondReady = freshLocalLabel("second_ready");
+
+        if (options.registerArguments) {
+            // lbl_eval clobbers both registers; the stack slots keep the operands meanwhile
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "bl", "1"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, firstReady));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+            emitEvaluate(); // Evaluate Arg 1
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "[rsp+16]"));
+            program.addInstruction(new X86Instruction(firstReady));
+
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "cl", "1"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, secondReady));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rsp+8]", "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
+            emitEvaluate(); // Evaluate Arg 2
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "[rsp+8]"));
+            program.addInstruction(new X86Instruction(secondReady));
+            return;
+        }
+
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "bl", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.JNZ, firstReady));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
+        emitEvaluate(); // Evaluate Arg 1
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
+        program.addInstruction(new X86Instruction(firstReady));
+
+        program.addInstruction(new X86Instruction(OpCodes.TEST, "cl", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.JNZ, secondReady));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
+        emitEvaluate(); // Evaluate Arg 2
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+        program.addInstruction(new X86Instruction(secondReady));
+    }
 
     /**
      * Print the value in RAX according to the source-language type of main.
@@ -657,7 +3257,7 @@ public class X86Emitter {
         String loop = freshLocalLabel("force_eval_loop");
         String done = freshLocalLabel("force_eval_done");
         program.addInstruction(new X86Instruction(loop));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
+        emitEvaluate();
         program.addInstruction(new X86Instruction(OpCodes.TEST, "rax", "1"));
         program.addInstruction(new X86Instruction(OpCodes.JNZ, done));
         program.addInstruction(new X86Instruction(OpCodes.JMP, loop));
@@ -721,6 +3321,10 @@ public class X86Emitter {
     }
 
     private void emitPrintStringLiteral(String text) {
+        emitPrintStringLiteral(1, text);
+    }
+
+    private void emitPrintStringLiteral(int fd, String text) {
         String label = "str_" + generatedLabelCounter++;
         String escaped = text
             .replace("\\", "\\\\")
@@ -729,7 +3333,7 @@ public class X86Emitter {
             .replace("\"", "\\\"");
         program.addData(label, ".ascii", "\"" + escaped + "\"");
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "1"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.MOV, "rdi", String.valueOf(fd)));
         program.addInstruction(new X86Instruction(OpCodes.LEA, "rsi", "[" + label + "]"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rdx", String.valueOf(text.length())));
         program.addInstruction(new X86Instruction(OpCodes.SYSCALL));
@@ -744,21 +3348,29 @@ public class X86Emitter {
         }
 
         String dispatchDone = freshLocalLabel("adt_print_done");
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
 
+        if (options.nativeConstructors) {
+            // Start from (match value) so the handlers below receive the fields as arguments
+            usedMatchTypes.add(typeName);
+            emitAllocate(1, List.of("rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[" + matchLabel(typeName) + "+2]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rcx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rbx"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
+        }
+
         // Build Scott application: (((value handler0) handler1) ... handlerN)
         for (ConstructorRegistry.ConstructorInfo info : constructors) {
             String handler = "lbl_print_" + sanitizeBare(context + "_" + info.getConstructorName());
             program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[" + handler + "]"));
             program.addInstruction(new X86Instruction(OpCodes.OR, "rcx", "2"));
-            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
+            emitAllocate(1, List.of("rbx"));
             program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
             program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
             program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
         }
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
+        emitEvaluate();
         program.addInstruction(new X86Instruction(OpCodes.JMP, dispatchDone));
 
         for (ConstructorRegistry.ConstructorInfo info : constructors) {
@@ -770,26 +3382,23 @@ public class X86Emitter {
     private void emitAdtConstructorPrintHandler(String context, ConstructorRegistry.ConstructorInfo info, Type parentType) {
         String handler = "lbl_print_" + sanitizeBare(context + "_" + info.getConstructorName());
         program.addInstruction(new X86Instruction(".p2align 3\n.quad " + info.getArity() + "\n" + handler));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        List<String> regs = List.of("r12", "r13", "r14", "rbx", "rcx", "rdx");
-        for (int i = 0; i < info.getArity(); i++) {
-            String reg = i < regs.size() ? regs.get(i) : "rbx";
-            program.addInstruction(new X86Instruction(OpCodes.POP, reg));
-        }
+        // Fields stay on the stack under the return address (r12/r13 are the heap registers),
+        // so field i is at [rsp + 8 + 8*i] and survives nested evaluation and printing
         emitPrintStringLiteral(info.getConstructorName());
         if (info.getArity() > 0) emitPrintStringLiteral("(");
         List<Type> fieldTypes = getConstructorFieldTypes(info.getConstructorName(), currentTypeMap);
         for (int i = 0; i < info.getArity(); i++) {
             if (i > 0) emitPrintStringLiteral(", ");
-            String reg = i < regs.size() ? regs.get(i) : "rbx";
             Type fieldType = i < fieldTypes.size() ? fieldTypes.get(i) : new Constant("Int");
-            program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", reg));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rsp+" + (8 + 8 * i) + "]"));
             emitPrintDispatch(fieldType, context + "_field" + i);
-            program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
         }
         if (info.getArity() > 0) emitPrintStringLiteral(")");
         emitPrintStringLiteral("\n");
+        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
+        if (info.getArity() > 0) {
+            program.addInstruction(new X86Instruction(OpCodes.ADD, "rsp", String.valueOf(8 * info.getArity())));
+        }
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "1"));
         program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
         program.addInstruction(new X86Instruction(OpCodes.RET));
@@ -836,16 +3445,32 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_print_list_raw"));
         program.addInstruction(new X86Instruction(OpCodes.RET));
 
-        program.addInstruction(new X86Instruction(".p2align 3\nlbl_print_list_raw"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
+        if (options.nativeConstructors) {
+            // Walk the cells directly: a nullary constructor ends the list, a cell holds (head, tail)
+            program.addInstruction(new X86Instruction(".p2align 3\nlbl_print_list_raw"));
+            emitEvaluate();
+            program.addInstruction(new X86Instruction(OpCodes.TEST, "al", "4"));
+            program.addInstruction(new X86Instruction(OpCodes.JNZ, ".print_list_end"));
+            program.addInstruction(new X86Instruction(OpCodes.PUSH, "qword ptr [rax+8]"));
+            program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "[rax]"));
+            emitEvaluate();
+            program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_print_int"));
+            program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
+            program.addInstruction(new X86Instruction(OpCodes.JMP, "lbl_print_list_raw"));
+            program.addInstruction(new X86Instruction(".print_list_end"));
+            program.addInstruction(new X86Instruction(OpCodes.RET));
+            return;
+        }
 
+        // Applies the list to the two handlers: the cons handler prints the head and returns the
+        // tail, evaluated next round, and the empty handler returns tagged 0, which no list is
+        program.addInstruction(new X86Instruction(".p2align 3\nlbl_print_list_raw"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
 
         program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[lbl_list_empty_handler]"));
         program.addInstruction(new X86Instruction(OpCodes.OR, "rcx", "2"));
 
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
+        emitAllocate(1, List.of("rbx"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
 
@@ -854,14 +3479,13 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(OpCodes.LEA, "rcx", "[lbl_list_cons_handler]"));
         program.addInstruction(new X86Instruction(OpCodes.OR, "rcx", "2"));
 
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_alloc_node"));
+        emitAllocate(1, List.of("rbx"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax]", "rbx"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "[rax+8]", "rcx"));
 
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
+        emitEvaluate();
+        program.addInstruction(new X86Instruction(OpCodes.CMP, "rax", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.JNE, "lbl_print_list_raw"));
         program.addInstruction(new X86Instruction(OpCodes.RET));
 
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 0\nlbl_list_empty_handler"));
@@ -878,17 +3502,10 @@ public class X86Emitter {
         program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
         program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
         program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
+        emitEvaluate();
         program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_print_int"));
         program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_print_list_raw"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "1"));
+        program.addInstruction(new X86Instruction(OpCodes.POP, "rax"));
         program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
         program.addInstruction(new X86Instruction(OpCodes.RET));
     }
@@ -931,61 +3548,23 @@ public class X86Emitter {
 private void emitEqRoutine() {
     program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\nlbl_eq"));
 
-    program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-    program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-    program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-
-    program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
-    program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-    program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
-    program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-    program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-    program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-    program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
-
-    program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-    program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-    program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
-    program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-    program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-    program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-    program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+    emitEvaluateOperands();
 
     program.addInstruction(new X86Instruction(OpCodes.CMP, "rbx", "rcx"));
     program.addInstruction(new X86Instruction(OpCodes.JE, ".eq_true"));
 
     program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "1"));
-    program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-    program.addInstruction(new X86Instruction(OpCodes.RET));
+    emitRoutineReturn(2);
 
     program.addInstruction(new X86Instruction(".eq_true"));
     program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "3"));
-    program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-    program.addInstruction(new X86Instruction(OpCodes.RET));
+    emitRoutineReturn(2);
 }
 
     private void emitDivRoutine() {
         program.addInstruction(new X86Instruction(".p2align 3\n.quad 2\nlbl_div"));
 
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rbx", "rax"));
-
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rax", "rcx"));
-        program.addInstruction(new X86Instruction(OpCodes.CALL, "lbl_eval"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.POP, "rbx"));
-        program.addInstruction(new X86Instruction(OpCodes.MOV, "rcx", "rax"));
+        emitEvaluateOperands();
 
         // Untag operands
         program.addInstruction(new X86Instruction(OpCodes.SAR, "rbx", "1"));
@@ -1000,8 +3579,7 @@ private void emitEqRoutine() {
         program.addInstruction(new X86Instruction(OpCodes.SHL, "rax", "1"));
         program.addInstruction(new X86Instruction(OpCodes.OR, "rax", "1"));
 
-        program.addInstruction(new X86Instruction(OpCodes.PUSH, "r15"));
-        program.addInstruction(new X86Instruction(OpCodes.RET));
+        emitRoutineReturn(2);
     }
 
 //    private void emitDataSections() {
@@ -1,19 +1,25 @@
 package ca.brock.cs.lambda.abstractmachine;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
- * Represents a single x86 instruction.
+ * Represents a single x86 instruction, or a label.
+ *
+ * Operands are typed (see {@link Operand}); the String constructors parse what the emitter
+ * writes. A label may carry assembler directives that come before it, such as an alignment and
+ * the arity word in front of a routine: ".p2align 3\n.quad 2\ncomb_K".
  */
 public class X86Instruction {
     private final OpCodes opCode;
-    private final String operand1;
-    private final String operand2;
+    private final List<Operand> operands;
     private final String label;
+    private final String directives;
 
     public X86Instruction(OpCodes opCode, String operand1, String operand2) {
-        this.opCode = opCode;
-        this.operand1 = operand1;
-        this.operand2 = operand2;
-        this.label = null;
+        this(opCode, parseOperands(operand1, operand2));
     }
 
     public X86Instruction(OpCodes opCode, String operand1) {
@@ -21,37 +27,80 @@ public class X86Instruction {
     }
 
     public X86Instruction(OpCodes opCode) {
-        this(opCode, null, null);
+        this(opCode, Collections.emptyList());
+    }
+
+    public X86Instruction(OpCodes opCode, Operand... operands) {
+        this(opCode, Arrays.asList(operands));
+    }
+
+    public X86Instruction(OpCodes opCode, List<Operand> operands) {
+        this.opCode = opCode;
+        this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        this.label = null;
+        this.directives = null;
     }
 
     public X86Instruction(String label) {
+        int newline = label.lastIndexOf('\n');
         this.opCode = null;
-        this.operand1 = null;
-        this.operand2 = null;
-        this.label = label;
+        this.operands = Collections.emptyList();
+        this.label = label.substring(newline + 1);
+        this.directives = newline < 0 ? null : label.substring(0, newline);
+    }
+
+    private static List<Operand> parseOperands(String operand1, String operand2) {
+        List<Operand> operands = new ArrayList<>();
+        if (operand1 != null) {
+            operands.add(Operand.parse(operand1));
+            if (operand2 != null) {
+                operands.add(Operand.parse(operand2));
+            }
+        }
+        return operands;
+    }
+
+    public boolean isLabel() {
+        return label != null;
     }
 
-    public boolean isPushRax() {
-        return opCode == OpCodes.PUSH && "rax".equalsIgnoreCase(operand1);
+    /**
+     * The name of a label, null for an instruction.
+     */
+    public String getLabel() {
+        return label;
     }
 
-    public boolean isPopRax() {
-        return opCode == OpCodes.POP && "rax".equalsIgnoreCase(operand1);
+    /**
+     * The directives in front of a label, or null. Code must not fall through into a label whose
+     * directives emit data.
+     */
+    public String getDirectives() {
+        return directives;
+    }
+
+    public OpCodes getOpCode() {
+        return opCode;
+    }
+
+    public List<Operand> getOperands() {
+        return operands;
+    }
+
+    public Operand getOperand(int i) {
+        return i < operands.size() ? operands.get(i) : null;
     }
 
     @Override
     public String toString() {
         if (label != null) {
-            return label + ":";
+            return directives == null ? label + ":" : directives + "\n" + label + ":";
         }
         StringBuilder sb = new StringBuilder();
         sb.append("    ").append(opCode.name().toLowerCase());
-        if (operand1 != null) {
-            sb.append(" ").append(operand1);
-            if (operand2 != null) {
-                sb.append(", ").append(operand2);
-            }
+        for (int i = 0; i < operands.size(); i++) {
+            sb.append(i == 0 ? " " : ", ").append(operands.get(i));
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+}
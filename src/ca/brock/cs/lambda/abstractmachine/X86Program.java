@@ -1,7 +1,10 @@
 package ca.brock.cs.lambda.abstractmachine;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents an entire x86-64 assembly program.
@@ -9,23 +12,70 @@ import java.util.List;
 public class X86Program {
     private final List<X86Instruction> instructions;
     private final List<String> dataSection;
-
-//    private static final long HEAP_SIZE = 512L * 1024 * 1024; // 512 MB
-    private static final long HEAP_SIZE = 1L * 1024 * 1024 * 1024; // 1 GB
+    private final List<String> bssSection;
+    private final List<String> staticGraph;
+    private boolean peephole = true;
+    private PeepholeOptimizer optimizer;
+    private final Map<String, List<Set<Registers>>> callConventions = new LinkedHashMap<>();
+    private Set<Registers> routineResult;
 
     public X86Program() {
         this.instructions = new ArrayList<>();
         this.dataSection = new ArrayList<>();
+        this.bssSection = new ArrayList<>();
+        this.staticGraph = new ArrayList<>();
     }
 
     public void addInstruction(X86Instruction instruction) {
         instructions.add(instruction);
     }
 
+    /**
+     * Whether emit() runs the text section through a {@link PeepholeOptimizer}.
+     */
+    public void setPeephole(boolean peephole) {
+        this.peephole = peephole;
+    }
+
+    /**
+     * The optimizer of the last emit(), with its counts, or null if it did not run.
+     */
+    public PeepholeOptimizer getPeepholeOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * Tells the peephole optimizer what a runtime entry point reads and which registers it may
+     * change. Calls to anything not declared are assumed to read and change every register.
+     */
+    public void declareCall(String label, Set<Registers> reads, Set<Registers> clobbers) {
+        callConventions.put(label, List.of(reads, clobbers));
+    }
+
+    /**
+     * Tells the peephole optimizer which registers callers read after a routine with an arity
+     * word returns.
+     */
+    public void declareRoutineResult(Set<Registers> live) {
+        this.routineResult = live;
+    }
+
     public void addData(String label, String directive, String value) {
         dataSection.add(label + ": " + directive + " " + value);
     }
 
+    public void addBss(String label, long size) {
+        bssSection.add(".lcomm " + label + ", " + size);
+    }
+
+    /**
+     * A pre-built application node [function, argument]. The nodes are laid out contiguously
+     * between static_graph_start and static_graph_end, 16-byte aligned like heap nodes.
+     */
+    public void addStaticNode(String label, String function, String argument) {
+        staticGraph.add(label + ": .quad " + function + ", " + argument);
+    }
+
     public String emit() {
         StringBuilder sb = new StringBuilder();
 
@@ -33,21 +83,34 @@ public class X86Program {
         sb.append(".intel_syntax noprefix\n\n");
 
         // ------------------------------------------------
-        // BSS Section: Uninitialized Data (Graph Heap)
+        // BSS Section: Uninitialized Data (the graph heap and the stacks are mapped at startup)
         // ------------------------------------------------
         sb.append(".section .bss\n");
 //        sb.append("    .lcomm HEAP, 67108864\n"); // Reserve 1MB for the heap
-        sb.append("    .lcomm HEAP, " + HEAP_SIZE + "\n");
+        for (String bss : bssSection) {
+            sb.append("    ").append(bss).append("\n");
+        }
         sb.append("    .global heap_ptr\n\n");
 
         // ------------------------------------------------
         // Data Section: Initialized Data
         // ------------------------------------------------
         sb.append(".section .data\n");
-        sb.append("    heap_ptr: .quad HEAP\n"); // Pointer to the next free heap byte
+        sb.append("    heap_ptr: .quad 0\n"); // Pointer to the next free heap byte (heap is mapped by _start)
+        sb.append("    heap_limit: .quad 0\n"); // End of the region heap_ptr allocates from
+        sb.append("    spine_base: .quad 0\n"); // Bottom of the spine node stack (mapped by _start)
+        sb.append("    spine_ptr: .quad 0\n"); // Next free slot of the spine node stack
+        sb.append("    dump_ptr: .quad 0\n"); // Next free frame of the evaluator's dump (mapped by _start)
+        sb.append("    reduction_count: .quad 0\n");
         for (String data : dataSection) {
             sb.append("    ").append(data).append("\n");
         }
+        sb.append("    .p2align 4\n");
+        sb.append("    static_graph_start:\n");
+        for (String node : staticGraph) {
+            sb.append("    ").append(node).append("\n");
+        }
+        sb.append("    static_graph_end:\n");
         sb.append("\n");
 
         // ------------------------------------------------
@@ -56,21 +119,19 @@ public class X86Program {
         sb.append(".section .text\n");
         sb.append(".global _start\n\n");
 
-        // Peephole Optimization: remove adjacent `push rax` followed by `pop rax`
-        List<X86Instruction> optimized = new ArrayList<>();
-        for (int i = 0; i < instructions.size(); i++) {
-            X86Instruction curr = instructions.get(i);
-            if (i < instructions.size() - 1) {
-                X86Instruction next = instructions.get(i + 1);
-                if (curr.isPushRax() && next.isPopRax()) {
-                    i++; // skip both instructions
-                    continue;
-                }
+        List<X86Instruction> text = instructions;
+        if (peephole) {
+            optimizer = new PeepholeOptimizer();
+            for (Map.Entry<String, List<Set<Registers>>> convention : callConventions.entrySet()) {
+                optimizer.declareCall(convention.getKey(), convention.getValue().get(0), convention.getValue().get(1));
+            }
+            if (routineResult != null) {
+                optimizer.setRoutineResult(routineResult);
             }
-            optimized.add(curr);
+            text = optimizer.optimize(instructions);
         }
 
-        for (X86Instruction inst : optimized) {
+        for (X86Instruction inst : text) {
             sb.append(inst.toString()).append("\n");
         }
 
@@ -13,7 +13,7 @@ public class BCombinator extends Combinator {
     // Define precedence for this specific combinator for toStringPrec formatting
     private static final int precedence = 0; // Individual combinators typically have the lowest precedence
 
-    public BCombinator() {
+    BCombinator() {
         // No specific fields, it's a fundamental combinator
     }
 
@@ -0,0 +1,103 @@
+package ca.brock.cs.lambda.combinators;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bulk combinator Bn, Cn or Sn, which passes n arguments at once, or Kn, which drops n:
+ *
+ *   Bn f g x1 .. xn = f (g x1 .. xn)
+ *   Cn f g x1 .. xn = f x1 .. xn g
+ *   Sn f g x1 .. xn = f x1 .. xn (g x1 .. xn)
+ *   Kn f x1 .. xn   = f
+ *
+ * B1, C1, S1 and K1 are the ordinary B, C, S and K. These are produced by the Kiselyov translation.
+ */
+public class BulkCombinator extends Combinator {
+    public enum Kind { B, C, S, K }
+
+    private static final int precedence = 0;
+
+    private final Kind kind;
+    private final int count;
+
+    BulkCombinator(Kind kind, int count) {
+        if (count < 2) {
+            throw new IllegalArgumentException("Bulk combinators take at least two arguments: " + kind + count);
+        }
+        this.kind = kind;
+        this.count = count;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The number of arguments needed for a reduction: f, g and x1 .. xn, or f and x1 .. xn for Kn.
+     */
+    public int getArity() {
+        return kind == Kind.K ? count + 1 : count + 2;
+    }
+
+    /**
+     * Rewrites a saturated application.
+     * @param args f, g, x1 .. xn (f, x1 .. xn for Kn) in application order.
+     * @return The reduct.
+     */
+    public Combinator reduce(List<Combinator> args) {
+        Combinator f = args.get(0);
+        if (kind == Kind.K) {
+            return f;
+        }
+        Combinator g = args.get(1);
+        List<Combinator> xs = args.subList(2, args.size());
+
+        switch (kind) {
+            case B:
+                return Combinators.apply(f, applyAll(g, xs));
+            case C:
+                return Combinators.apply(applyAll(f, xs), g);
+            default:
+                return Combinators.apply(applyAll(f, xs), applyAll(g, xs));
+        }
+    }
+
+    private static Combinator applyAll(Combinator function, List<Combinator> args) {
+        Combinator result = function;
+        for (Combinator arg : args) {
+            result = Combinators.apply(result, arg);
+        }
+        return result;
+    }
+
+    @Override
+    public String toStringPrec(int prec) {
+        String result = kind.name() + count;
+        if (prec > precedence) {
+            result = "(" + result + ")";
+        }
+        return result;
+    }
+
+    @Override
+    public Combinator eval(Map<String, Combinator> env) {
+        return this;
+    }
+
+    @Override
+    public Set<String> getFreeVariables() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Combinator substitute(String varName, Combinator value) {
+        return this;
+    }
+}
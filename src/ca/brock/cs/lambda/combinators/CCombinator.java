@@ -13,7 +13,7 @@ public class CCombinator extends Combinator {
     // Define precedence for this specific combinator for toStringPrec formatting
     private static final int precedence = 0; // Individual combinators typically have the lowest precedence
 
-    public CCombinator() {
+    CCombinator() {
         // No specific fields, just represents a fundamental combinator
     }
 
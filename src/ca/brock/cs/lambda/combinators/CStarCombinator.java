@@ -7,7 +7,7 @@ import java.util.Set;
 public class CStarCombinator extends Combinator {
     private static final int precedence = 0;
 
-    public CStarCombinator() {}
+    CStarCombinator() {}
 
     @Override
     public String toStringPrec(int prec) {
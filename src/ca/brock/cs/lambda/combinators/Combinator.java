@@ -29,6 +29,27 @@ public abstract class Combinator {
      */
     public abstract Set<String> getFreeVariables(); // Will implement this later
 
+    /**
+     * Sizes saturate here. Terms are interned DAGs, so the tree size of n levels of
+     * self-application is about 2^n; capped, a sum or a percentage of sizes still fits a long.
+     */
+    public static final long MAX_SIZE = 1L << 40;
+
+    /**
+     * The number of nodes in the term, counting a shared subterm once per occurrence, or
+     * {@link #MAX_SIZE} if that is more.
+     */
+    public long size() {
+        return 1;
+    }
+
+    /**
+     * The saturating sum of two sizes.
+     */
+    public static long addSizes(long a, long b) {
+        return Math.min(MAX_SIZE, a + b);
+    }
+
     /**
      * Substitutes a combinator term for a variable name within this combinator term.
      * This is generally less common in combinator calculus as variables are not explicit in the same way.
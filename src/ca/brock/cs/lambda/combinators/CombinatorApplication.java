@@ -1,18 +1,25 @@
 package ca.brock.cs.lambda.combinators;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class CombinatorApplication extends Combinator {
-    private Combinator function;
-    private Combinator argument;
+    private final Combinator function;
+    private final Combinator argument;
+    private final long size;
+    // Computed on first use; applications are immutable and interned, so it never goes stale
+    private Set<String> freeVariables;
 
     private static final int precedence = 20;
 
-    public CombinatorApplication(Combinator function, Combinator argument) {
+    CombinatorApplication(Combinator function, Combinator argument) {
         this.function = function;
         this.argument = argument;
+        this.size = addSizes(1 + function.size(), argument.size());
     }
 
     public Combinator getFunction() {
@@ -234,9 +241,9 @@ public class CombinatorApplication extends Combinator {
                 Combinator bCombinator = funcArg;
                 Combinator cCombinator = evaluatedArgument;
 
-                Combinator ac = new CombinatorApplication(aCombinator, cCombinator);
-                Combinator bc = new CombinatorApplication(bCombinator, cCombinator);
-                return new CombinatorApplication(ac, bc).eval(env);
+                Combinator ac = Combinators.apply(aCombinator, cCombinator);
+                Combinator bc = Combinators.apply(bCombinator, cCombinator);
+                return Combinators.apply(ac, bc).eval(env);
             }
 
             // Subcase 2.3: (((C F) X) Y) -> (F Y) X
@@ -245,8 +252,8 @@ public class CombinatorApplication extends Combinator {
                 Combinator xCombinator = funcArg;
                 Combinator yCombinator = evaluatedArgument;
 
-                Combinator fy = new CombinatorApplication(fCombinator, yCombinator);
-                return new CombinatorApplication(fy, xCombinator).eval(env);
+                Combinator fy = Combinators.apply(fCombinator, yCombinator);
+                return Combinators.apply(fy, xCombinator).eval(env);
             }
 
             // Subcase 2.4: (((B F) G) X) -> F (G X)
@@ -255,15 +262,15 @@ public class CombinatorApplication extends Combinator {
                 Combinator gCombinator = funcArg;
                 Combinator xCombinator = evaluatedArgument;
 
-                Combinator gx = new CombinatorApplication(gCombinator, xCombinator);
-                return new CombinatorApplication(fCombinator, gx).eval(env);
+                Combinator gx = Combinators.apply(gCombinator, xCombinator);
+                return Combinators.apply(fCombinator, gx).eval(env);
             }
 
             // Subcase 2.5: (Y f) arg -> f (Y f) arg
             if (funcFunc instanceof YCombinator) {
-                Combinator yf = new CombinatorApplication(funcFunc, funcArg);
-                Combinator newFunc = new CombinatorApplication(funcArg, yf);
-                return new CombinatorApplication(newFunc, evaluatedArgument).eval(env);
+                Combinator yf = Combinators.apply(funcFunc, funcArg);
+                Combinator newFunc = Combinators.apply(funcArg, yf);
+                return Combinators.apply(newFunc, evaluatedArgument).eval(env);
             }
 
             // Handle arithmetic operations: ((op arg1) arg2)
@@ -288,14 +295,14 @@ public class CombinatorApplication extends Combinator {
 
                             switch (op) {
                                 case "+":
-                                    return new CombinatorConstant(leftVal + rightVal);
+                                    return Combinators.constant(leftVal + rightVal);
                                 case "-":
-                                    return new CombinatorConstant(leftVal - rightVal);
+                                    return Combinators.constant(leftVal - rightVal);
                                 case "*":
-                                    return new CombinatorConstant(leftVal * rightVal);
+                                    return Combinators.constant(leftVal * rightVal);
                                 case "/":
                                     if (rightVal == 0) throw new RuntimeException("Division by zero");
-                                    return new CombinatorConstant(leftVal / rightVal);
+                                    return Combinators.constant(leftVal / rightVal);
                             }
                         }
 
@@ -306,9 +313,9 @@ public class CombinatorApplication extends Combinator {
 
                             switch (op) {
                                 case "=":
-                                    return new CombinatorConstant(leftVal == rightVal);
+                                    return Combinators.constant(leftVal == rightVal);
                                 case "<=":
-                                    return new CombinatorConstant(leftVal <= rightVal);
+                                    return Combinators.constant(leftVal <= rightVal);
                             }
                         }
 
@@ -319,9 +326,9 @@ public class CombinatorApplication extends Combinator {
 
                             switch (op) {
                                 case "and":
-                                    return new CombinatorConstant(leftVal && rightVal);
+                                    return Combinators.constant(leftVal && rightVal);
                                 case "or":
-                                    return new CombinatorConstant(leftVal || rightVal);
+                                    return Combinators.constant(leftVal || rightVal);
                             }
                         }
                     }
@@ -359,9 +366,9 @@ public class CombinatorApplication extends Combinator {
                         }
 
                         // If condition is not reducible to a boolean yet, return as-is
-                        return new CombinatorApplication(
-                            new CombinatorApplication(
-                                new CombinatorApplication(new CombinatorConstant("IF"), condition),
+                        return Combinators.apply(
+                            Combinators.apply(
+                                Combinators.apply(Combinators.constant("IF"), condition),
                                 funcArg
                             ),
                             evaluatedArgument
@@ -375,15 +382,15 @@ public class CombinatorApplication extends Combinator {
                 Combinator x = funcArg;
                 Combinator y = evaluatedArgument;
 
-                Combinator xy = new CombinatorApplication(x, y);
-                return new CombinatorApplication(xy, y).eval(env);
+                Combinator xy = Combinators.apply(x, y);
+                return Combinators.apply(xy, y).eval(env);
             }
         }
 
         // Case 3: The function is Y (Y f)
         if (evaluatedFunction instanceof YCombinator) {
-            Combinator yAppliedToF = new CombinatorApplication(evaluatedFunction, evaluatedArgument);
-            Combinator newFunc = new CombinatorApplication(evaluatedArgument, yAppliedToF);
+            Combinator yAppliedToF = Combinators.apply(evaluatedFunction, evaluatedArgument);
+            Combinator newFunc = Combinators.apply(evaluatedArgument, yAppliedToF);
             return newFunc.eval(env);
         }
 
@@ -393,7 +400,7 @@ public class CombinatorApplication extends Combinator {
 
             if (constFunc.getValue() instanceof String && constFunc.getValue().equals("IF")) {
                 // We have (IF condition), need to wait for thenBranch
-                return new CombinatorApplication(evaluatedFunction, evaluatedArgument);
+                return Combinators.apply(evaluatedFunction, evaluatedArgument);
             }
         }
 
@@ -408,7 +415,7 @@ public class CombinatorApplication extends Combinator {
 
                 if (ifConst.getValue() instanceof String && ifConst.getValue().equals("IF")) {
                     // We have ((IF condition) thenBranch), need to wait for elseBranch
-                    return new CombinatorApplication(evaluatedFunction, evaluatedArgument);
+                    return Combinators.apply(evaluatedFunction, evaluatedArgument);
                 }
             }
         }
@@ -423,14 +430,14 @@ public class CombinatorApplication extends Combinator {
                 if (op.equals("not")) {
                     if (evaluatedArgument instanceof CombinatorConstant && ((CombinatorConstant) evaluatedArgument).isBoolean()) {
                         boolean val = (boolean) ((CombinatorConstant) evaluatedArgument).getValue();
-                        return new CombinatorConstant(!val);
+                        return Combinators.constant(!val);
                     }
                 }
 
                 // Handle partial application of binary operators
                 if (isBinaryOperator(op) && !(evaluatedArgument instanceof CombinatorApplication)) {
                     // This is a partial application like (+ 3), wait for second argument
-                    return new CombinatorApplication(evaluatedFunction, evaluatedArgument);
+                    return Combinators.apply(evaluatedFunction, evaluatedArgument);
                 }
             }
         }
@@ -438,12 +445,49 @@ public class CombinatorApplication extends Combinator {
         // NEW: Handle standalone W combinator: W x -> wait for second argument
         if (evaluatedFunction instanceof WCombinator) {
             // W x -> wait for second argument y to become (W x) y
-            return new CombinatorApplication(evaluatedFunction, evaluatedArgument);
+            return Combinators.apply(evaluatedFunction, evaluatedArgument);
         }
 
 
+        // Combinators of four or more arguments reduce once the last one arrives
+        List<Combinator> spineArgs = new ArrayList<>();
+        spineArgs.add(evaluatedArgument);
+        Combinator head = evaluatedFunction;
+        while (head instanceof CombinatorApplication) {
+            spineArgs.add(0, ((CombinatorApplication) head).getArgument());
+            head = ((CombinatorApplication) head).getFunction();
+        }
+        if (spineArgs.size() == 4) {
+            Combinator c = spineArgs.get(0);
+            Combinator f = spineArgs.get(1);
+            Combinator g = spineArgs.get(2);
+            Combinator x = spineArgs.get(3);
+
+            // S' c f g x -> c (f x) (g x)
+            if (head instanceof SPrimeCombinator) {
+                Combinator cfx = Combinators.apply(c, Combinators.apply(f, x));
+                return Combinators.apply(cfx, Combinators.apply(g, x)).eval(env);
+            }
+
+            // B* c f g x -> c (f (g x))
+            if (head instanceof BStarCombinator) {
+                Combinator fgx = Combinators.apply(f, Combinators.apply(g, x));
+                return Combinators.apply(c, fgx).eval(env);
+            }
+
+            // C' c f g x -> c (f x) g
+            if (head instanceof CPrimeCombinator) {
+                Combinator cfx = Combinators.apply(c, Combinators.apply(f, x));
+                return Combinators.apply(cfx, g).eval(env);
+            }
+        }
+        // Bulk combinators: Bn f g x1 .. xn
+        if (head instanceof BulkCombinator && spineArgs.size() == ((BulkCombinator) head).getArity()) {
+            return ((BulkCombinator) head).reduce(spineArgs).eval(env);
+        }
+
         // Default: no reduction happened, return the application with evaluated sub-terms
-        return new CombinatorApplication(evaluatedFunction, evaluatedArgument);
+        return Combinators.apply(evaluatedFunction, evaluatedArgument);
     }
 
     // Helper methods to classify operators
@@ -465,15 +509,26 @@ public class CombinatorApplication extends Combinator {
 
     @Override
     public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(function.getFreeVariables());
-        freeVars.addAll(argument.getFreeVariables());
-        return freeVars;
+        if (freeVariables == null) {
+            Set<String> freeVars = new HashSet<>();
+            freeVars.addAll(function.getFreeVariables());
+            freeVars.addAll(argument.getFreeVariables());
+            freeVariables = freeVars.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(freeVars);
+        }
+        return freeVariables;
+    }
+
+    @Override
+    public long size() {
+        return size;
     }
 
     @Override
     public Combinator substitute(String varName, Combinator value) {
-        return new CombinatorApplication(function.substitute(varName, value), argument.substitute(varName, value));
+        if (!getFreeVariables().contains(varName)) {
+            return this;
+        }
+        return Combinators.apply(function.substitute(varName, value), argument.substitute(varName, value));
     }
 
     @Override
@@ -491,13 +546,13 @@ public class CombinatorApplication extends Combinator {
         }
 
         // If no rule applied, return the application of the optimized subterms
-        return new CombinatorApplication(optimizedFunction, optimizedArgument);
+        return Combinators.apply(optimizedFunction, optimizedArgument);
     }
 
     private Combinator applyOptimizationRules(Combinator func, Combinator arg) {
         // Rule 1: B I = I
         if (func instanceof BCombinator && arg instanceof ICombinator) {
-            return new ICombinator();
+            return Combinators.I;
         }
 
 //         Rule 2: C I = C (or C*)
@@ -505,14 +560,14 @@ public class CombinatorApplication extends Combinator {
 //            return func; // C I = C
 //        }
         if (func instanceof CCombinator && arg instanceof ICombinator) {
-            return new CStarCombinator();
+            return Combinators.C_STAR;
         }
 
         // Rule 3: S x I = W x
         if (func instanceof CombinatorApplication) {
             CombinatorApplication app = (CombinatorApplication) func;
             if (app.getFunction() instanceof SCombinator && arg instanceof ICombinator) {
-                return new CombinatorApplication(new WCombinator(), app.getArgument());
+                return Combinators.apply(Combinators.W, app.getArgument());
             }
         }
 
@@ -520,7 +575,7 @@ public class CombinatorApplication extends Combinator {
         if (func instanceof CombinatorApplication) {
             CombinatorApplication app = (CombinatorApplication) func;
             if (app.getFunction() instanceof SCombinator && app.getArgument() instanceof KCombinator) {
-                return new ICombinator();
+                return Combinators.I;
             }
         }
 
@@ -536,7 +591,7 @@ public class CombinatorApplication extends Combinator {
         if (func instanceof CombinatorApplication) {
             CombinatorApplication app = (CombinatorApplication) func;
             if (app.getFunction() instanceof CCombinator && app.getArgument() instanceof KCombinator) {
-                return new ICombinator();
+                return Combinators.I;
             }
         }
 
@@ -548,12 +603,52 @@ public class CombinatorApplication extends Combinator {
                     CombinatorApplication innerApp = (CombinatorApplication) app.getArgument();
                     if (innerApp.getFunction() instanceof BCombinator &&
                         innerApp.getArgument() instanceof ICombinator) {
-                        return new ICombinator();
+                        return Combinators.I;
                     }
                 }
             }
         }
 
+        // Rule 8: S (B c f) g = S' c f g
+        // Rule 9: C (B c f) g = C' c f g
+        if (func instanceof CombinatorApplication) {
+            CombinatorApplication app = (CombinatorApplication) func;
+            Combinator[] bArgs = bApplicationArguments(app.getArgument());
+            if (bArgs != null && app.getFunction() instanceof SCombinator) {
+                return apply3(Combinators.S_PRIME, bArgs[0], bArgs[1], arg);
+            }
+            if (bArgs != null && app.getFunction() instanceof CCombinator) {
+                return apply3(Combinators.C_PRIME, bArgs[0], bArgs[1], arg);
+            }
+        }
+
+        // Rule 10: B f (B g h) = B* f g h
+        if (func instanceof CombinatorApplication) {
+            CombinatorApplication app = (CombinatorApplication) func;
+            Combinator[] bArgs = bApplicationArguments(arg);
+            if (bArgs != null && app.getFunction() instanceof BCombinator) {
+                return apply3(Combinators.B_STAR, app.getArgument(), bArgs[0], bArgs[1]);
+            }
+        }
+
         return null; // No rule applied
     }
+
+    // f and g when term is B f g, else null
+    private static Combinator[] bApplicationArguments(Combinator term) {
+        if (term instanceof CombinatorApplication) {
+            CombinatorApplication outer = (CombinatorApplication) term;
+            if (outer.getFunction() instanceof CombinatorApplication) {
+                CombinatorApplication inner = (CombinatorApplication) outer.getFunction();
+                if (inner.getFunction() instanceof BCombinator) {
+                    return new Combinator[] { inner.getArgument(), outer.getArgument() };
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Combinator apply3(Combinator function, Combinator first, Combinator second, Combinator third) {
+        return Combinators.apply(Combinators.apply(Combinators.apply(function, first), second), third);
+    }
 }
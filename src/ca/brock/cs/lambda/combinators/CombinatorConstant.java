@@ -7,7 +7,7 @@ import java.util.Set;
 public class CombinatorConstant extends Combinator {
     private Object value; // Can hold String (for operators), Boolean, Integer
 
-    public CombinatorConstant(Object value) {
+    CombinatorConstant(Object value) {
         this.value = value;
     }
 
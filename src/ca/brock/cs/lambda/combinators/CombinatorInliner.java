@@ -1,14 +1,75 @@
 package ca.brock.cs.lambda.combinators;
 
+import ca.brock.cs.lambda.types.FType;
+import ca.brock.cs.lambda.types.Type;
+
 import java.util.*;
 
 /**
  * Utility class for inlining function calls in combinators by substituting definitions.
+ *
+ * The inliner walks the call graph of the globals one strongly connected component at a time,
+ * callees before callers, so every definition is substituted in its final, already inlined
+ * form and each body is visited once. Members of a cycle (including a global that names
+ * itself) are never inlined.
+ *
+ * Whether a particular call site is inlined is decided by a cost model: tiny bodies always
+ * are, larger ones only up to a size threshold that is raised for saturated calls (which the
+ * partial evaluator can then reduce) and for globals with a single call site. Every inlined
+ * body counts against a growth budget, a percentage of the program's size. Constant
+ * applicative forms are left alone unless tiny, since the emitter evaluates a CAF once and
+ * shares the value, which an inlined copy would recompute.
  */
 public class CombinatorInliner {
 
+    public static final int DEFAULT_GROWTH_PERCENT = 100;
+
+    // Bodies up to this size are no bigger than the call they replace
+    private static final int ALWAYS_INLINE_SIZE = 8;
+    private static final int INLINE_SIZE_THRESHOLD = 40;
+    private static final int SATURATED_BONUS = 40;
+    private static final int SINGLE_SITE_BONUS = 160;
+
     /**
-     * Inline all function calls in the combinator map.
+     * What the inliner did at one call site, for {@code --stats}.
+     */
+    public static final class Decision {
+        private final String caller;
+        private final String callee;
+        private final boolean inlined;
+        private final String reason;
+
+        Decision(String caller, String callee, boolean inlined, String reason) {
+            this.caller = caller;
+            this.callee = callee;
+            this.inlined = inlined;
+            this.reason = reason;
+        }
+
+        public String getCaller() {
+            return caller;
+        }
+
+        public String getCallee() {
+            return callee;
+        }
+
+        public boolean isInlined() {
+            return inlined;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return caller + " -> " + callee + ": " + (inlined ? "inlined" : "kept") + " (" + reason + ")";
+        }
+    }
+
+    /**
+     * Inline function calls in the combinator map with the default growth budget.
      * @param combinatorMap Map of function names to their combinator definitions
      * @param functionsToInline Set of function names to inline (null means all)
      * @return Map with inlined combinators
@@ -17,22 +78,24 @@ public class CombinatorInliner {
         Map<String, Combinator> combinatorMap,
         Set<String> functionsToInline
     ) {
-        Map<String, Combinator> result = new HashMap<>();
-
-        for (Map.Entry<String, Combinator> entry : combinatorMap.entrySet()) {
-            String name = entry.getKey();
-            Combinator combinator = entry.getValue();
-
-            // Create environment without this function to avoid infinite recursion
-            Map<String, Combinator> env = new HashMap<>(combinatorMap);
-            env.remove(name);
-
-            // Inline this combinator
-            Combinator inlined = substituteVariables(combinator, env, functionsToInline, new HashSet<>());
-            result.put(name, inlined);
-        }
+        return new Inlining(combinatorMap, null, functionsToInline, DEFAULT_GROWTH_PERCENT, new ArrayList<>()).run();
+    }
 
-        return result;
+    /**
+     * Inline function calls in the combinator map.
+     * @param types Types of the globals, from which the arity of a callee is read; calls of
+     *              globals without a type never count as saturated
+     * @param growthPercent How much the inlined bodies may add, as a percentage of the
+     *                      program's total size
+     * @param decisions Receives one entry per call site of a global
+     */
+    public static Map<String, Combinator> inline(
+        Map<String, Combinator> combinatorMap,
+        Map<String, Type> types,
+        int growthPercent,
+        List<Decision> decisions
+    ) {
+        return new Inlining(combinatorMap, types, null, growthPercent, decisions).run();
     }
 
     /**
@@ -52,91 +115,237 @@ public class CombinatorInliner {
         return inline(combinatorMap, functionsToInline);
     }
 
+
+    private static final class Inlining {
+        private final Map<String, Combinator> combinatorMap;
+        private final Map<String, Type> types;
+        private final Set<String> functionsToInline;
+        private final List<Decision> decisions;
+
+        private final Map<String, Integer> callSites = new HashMap<>();
+        private final Set<String> recursive = new HashSet<>();
+        private final Map<String, Combinator> result = new HashMap<>();
+        private final long budget;
+        private long growth;
+
+        Inlining(
+            Map<String, Combinator> combinatorMap,
+            Map<String, Type> types,
+            Set<String> functionsToInline,
+            int growthPercent,
+            List<Decision> decisions
+        ) {
+            this.combinatorMap = combinatorMap;
+            this.types = types;
+            this.functionsToInline = functionsToInline;
+            this.decisions = decisions;
+
+            long total = 0;
+            for (Combinator body : combinatorMap.values()) {
+                total = Combinator.addSizes(total, body.size());
+                countCallSites(body);
+            }
+            this.budget = total * growthPercent / 100;
+        }
+
+        Map<String, Combinator> run() {
+            for (List<String> component : stronglyConnectedComponents(combinatorMap)) {
+                if (isCycle(component, combinatorMap)) {
+                    recursive.addAll(component);
+                }
+                // Callees outside the component are already final in result
+                for (String name : component) {
+                    result.put(name, substituteCalls(name, combinatorMap.get(name)));
+                }
+            }
+            return result;
+        }
+
+        private void countCallSites(Combinator c) {
+            if (c instanceof CombinatorVariable) {
+                String name = ((CombinatorVariable) c).getName();
+                if (combinatorMap.containsKey(name)) {
+                    callSites.merge(name, 1, Integer::sum);
+                }
+            } else if (c instanceof CombinatorApplication) {
+                countCallSites(((CombinatorApplication) c).getFunction());
+                countCallSites(((CombinatorApplication) c).getArgument());
+            }
+        }
+
+        // Rewrites the call sites in a body, with the number of arguments each callee receives
+        private Combinator substituteCalls(String caller, Combinator c) {
+            List<Combinator> args = new ArrayList<>();
+            Combinator head = c;
+            while (head instanceof CombinatorApplication) {
+                args.add(0, ((CombinatorApplication) head).getArgument());
+                head = ((CombinatorApplication) head).getFunction();
+            }
+
+            Combinator rebuilt = head instanceof CombinatorVariable
+                ? inlineCall(caller, (CombinatorVariable) head, args.size())
+                : head;
+            for (Combinator arg : args) {
+                rebuilt = Combinators.apply(rebuilt, substituteCalls(caller, arg));
+            }
+            return rebuilt;
+        }
+
+        private Combinator inlineCall(String caller, CombinatorVariable variable, int argCount) {
+            String callee = variable.getName();
+            if (!combinatorMap.containsKey(callee) || !shouldInline(callee, functionsToInline)) {
+                return variable;
+            }
+
+            if (recursive.contains(callee) || !result.containsKey(callee)) {
+                return decide(caller, callee, variable, null, "recursive");
+            }
+            Combinator definition = result.get(callee);
+            if (isRecursive(definition)) {
+                return decide(caller, callee, variable, null, "recursive knot");
+            }
+
+            long size = definition.size();
+            int arity = types == null ? -1 : arity(types.get(callee));
+            if (arity == 0 && size > ALWAYS_INLINE_SIZE) {
+                return decide(caller, callee, variable, null, "shared CAF, size " + size);
+            }
+
+            boolean saturated = arity > 0 && argCount >= arity;
+            boolean singleSite = callSites.getOrDefault(callee, 0) == 1;
+            int threshold = INLINE_SIZE_THRESHOLD
+                + (saturated ? SATURATED_BONUS : 0)
+                + (singleSite ? SINGLE_SITE_BONUS : 0);
+            String facts = "size " + size
+                + (saturated ? ", saturated" : "")
+                + (singleSite ? ", single call site" : "");
+
+            if (size > ALWAYS_INLINE_SIZE && size > threshold) {
+                return decide(caller, callee, variable, null, facts + " over threshold " + threshold);
+            }
+            if (growth + size - 1 > budget && size > 1) {
+                return decide(caller, callee, variable, null, facts + ", growth budget spent");
+            }
+            growth += size - 1;
+            return decide(caller, callee, variable, definition, facts);
+        }
+
+        private Combinator decide(String caller, String callee, Combinator call, Combinator body, String reason) {
+            decisions.add(new Decision(caller, callee, body != null, reason));
+            return body != null ? body : call;
+        }
+
+        private static int arity(Type type) {
+            if (type == null) {
+                return -1;
+            }
+            int arity = 0;
+            while (type instanceof FType) {
+                arity++;
+                type = ((FType) type).getOutput();
+            }
+            return arity;
+        }
+    }
+
     /**
-     * Recursively substitute variables in a combinator.
+     * Globals that can reach themselves through references to other globals, i.e. the members
+     * of a cycle in the reference graph (including a definition that names itself). Top-level
+     * recursion refers to the global's own label instead of a Y knot, so this is how recursive
+     * definitions are recognised once {@code GlobalRecursion} has run.
      */
-//    private static Combinator substituteVariables(
-//        Combinator c,
-//        Map<String, Combinator> env,
-//        Set<String> functionsToInline,
-//        Set<String> visited
-//    ) {
-//        // Variable that might be a function call
-//        if (c instanceof CombinatorVariable) {
-//            String varName = ((CombinatorVariable) c).getName();
-//
-//            // Check if we should inline this variable
-//            if (shouldInline(varName, functionsToInline) && env.containsKey(varName)) {
-//                // Avoid infinite recursion
-//                if (visited.contains(varName)) {
-//                    return c; // Keep as variable to break recursion
-//                }
-//
-//                visited.add(varName);
-//                Combinator definition = env.get(varName);
-//                Combinator substituted = substituteVariables(definition, env, functionsToInline, visited);
-//                visited.remove(varName);
-//                return substituted;
-//            }
-//            return c;
-//        }
-//
-//        // Application: substitute in both parts
-//        else if (c instanceof CombinatorApplication) {
-//            CombinatorApplication app = (CombinatorApplication) c;
-//            Combinator newFunc = substituteVariables(app.getFunction(), env, functionsToInline, visited);
-//            Combinator newArg = substituteVariables(app.getArgument(), env, functionsToInline, visited);
-//            return new CombinatorApplication(newFunc, newArg);
-//        }
-//
-//        // Constants, I, K, S, etc. remain unchanged
-//        return c;
-//    }
+    public static Set<String> recursiveGlobals(Map<String, Combinator> combinatorMap) {
+        Set<String> recursive = new HashSet<>();
+        for (List<String> component : stronglyConnectedComponents(combinatorMap)) {
+            if (isCycle(component, combinatorMap)) {
+                recursive.addAll(component);
+            }
+        }
+        return recursive;
+    }
+
     /**
-     * Recursively substitute variables in a combinator,
-     * but skip inlining for recursive functions.
+     * The strongly connected components of the reference graph of the globals, callees
+     * before their callers (Tarjan's algorithm emits them in that order).
      */
-    private static Combinator substituteVariables(
-        Combinator c,
-        Map<String, Combinator> env,
-        Set<String> functionsToInline,
-        Set<String> visited
-    ) {
-        // Variable that might be a function call
-        if (c instanceof CombinatorVariable) {
-            String varName = ((CombinatorVariable) c).getName();
+    static List<List<String>> stronglyConnectedComponents(Map<String, Combinator> combinatorMap) {
+        Map<String, Set<String>> references = new HashMap<>();
+        for (Map.Entry<String, Combinator> entry : combinatorMap.entrySet()) {
+            Set<String> names = new LinkedHashSet<>();
+            collectGlobalReferences(entry.getValue(), combinatorMap.keySet(), names);
+            references.put(entry.getKey(), names);
+        }
+
+        Tarjan tarjan = new Tarjan(references);
+        // Sorted so the order of the components, and of the inlining decisions, is stable
+        for (String name : new TreeSet<>(combinatorMap.keySet())) {
+            if (!tarjan.index.containsKey(name)) {
+                tarjan.visit(name);
+            }
+        }
+        return tarjan.components;
+    }
 
-            // Check if we should inline this variable
-            if (shouldInline(varName, functionsToInline) && env.containsKey(varName)) {
-                Combinator definition = env.get(varName);
+    private static final class Tarjan {
+        private final Map<String, Set<String>> references;
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Integer> lowLink = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private final Set<String> onStack = new HashSet<>();
+        private final List<List<String>> components = new ArrayList<>();
 
-                // NEW RULE: Do not inline if the function is recursive
-                if (isRecursive(definition)) {
-                    return c; // Keep as a named variable call
-                }
+        Tarjan(Map<String, Set<String>> references) {
+            this.references = references;
+        }
+
+        void visit(String name) {
+            index.put(name, index.size());
+            lowLink.put(name, index.get(name));
+            stack.push(name);
+            onStack.add(name);
 
-                // Avoid infinite recursion in the inliner itself
-                if (visited.contains(varName)) {
-                    return c;
+            for (String callee : references.get(name)) {
+                if (!index.containsKey(callee)) {
+                    visit(callee);
+                    lowLink.put(name, Math.min(lowLink.get(name), lowLink.get(callee)));
+                } else if (onStack.contains(callee)) {
+                    lowLink.put(name, Math.min(lowLink.get(name), index.get(callee)));
                 }
+            }
 
-                visited.add(varName);
-                Combinator substituted = substituteVariables(definition, env, functionsToInline, visited);
-                visited.remove(varName);
-                return substituted;
+            if (lowLink.get(name).equals(index.get(name))) {
+                List<String> component = new ArrayList<>();
+                String member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    component.add(member);
+                } while (!member.equals(name));
+                components.add(component);
             }
-            return c;
         }
+    }
 
-        // Application: substitute in both parts
-        else if (c instanceof CombinatorApplication) {
-            CombinatorApplication app = (CombinatorApplication) c;
-            Combinator newFunc = substituteVariables(app.getFunction(), env, functionsToInline, visited);
-            Combinator newArg = substituteVariables(app.getArgument(), env, functionsToInline, visited);
-            return new CombinatorApplication(newFunc, newArg);
+    // A component is a cycle if it has several members or its one member names itself
+    private static boolean isCycle(List<String> component, Map<String, Combinator> combinatorMap) {
+        if (component.size() > 1) {
+            return true;
         }
+        Set<String> names = new HashSet<>();
+        collectGlobalReferences(combinatorMap.get(component.get(0)), combinatorMap.keySet(), names);
+        return names.contains(component.get(0));
+    }
 
-        return c;
+    private static void collectGlobalReferences(Combinator c, Set<String> globals, Set<String> names) {
+        if (c instanceof CombinatorVariable) {
+            String name = ((CombinatorVariable) c).getName();
+            if (globals.contains(name)) {
+                names.add(name);
+            }
+        } else if (c instanceof CombinatorApplication) {
+            collectGlobalReferences(((CombinatorApplication) c).getFunction(), globals, names);
+            collectGlobalReferences(((CombinatorApplication) c).getArgument(), globals, names);
+        }
     }
 
     /**
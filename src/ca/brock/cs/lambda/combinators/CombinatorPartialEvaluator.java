@@ -189,15 +189,17 @@ public class CombinatorPartialEvaluator {
     public static Map<String, Combinator> partialEvaluateAll(Map<String, Combinator> combinatorMap) {
         Map<String, Combinator> result = new HashMap<>();
         for (Map.Entry<String, Combinator> entry : combinatorMap.entrySet()) {
-            result.put(entry.getKey(), partialEval(entry.getValue(), combinatorMap));
+            result.put(entry.getKey(), partialEval(entry.getValue()));
         }
         return result;
     }
 
     /**
-     * The core logic for partial evaluation.
+     * The core logic for partial evaluation. References to globals are left alone: whether a
+     * definition is copied into a caller is the inliner's decision, made against its growth
+     * budget, and unfolding every reference again here would undo it.
      */
-    public static Combinator partialEval(Combinator c, Map<String, Combinator> env) {
+    public static Combinator partialEval(Combinator c) {
         // 1. Skip evaluation if it's a recursive function (contains Y combinator)
         if (isRecursive(c)) {
             return c;
@@ -208,8 +210,8 @@ public class CombinatorPartialEvaluator {
             CombinatorApplication app = (CombinatorApplication) c;
 
             // Recursively partially evaluate function and argument
-            Combinator func = partialEval(app.getFunction(), env);
-            Combinator arg = partialEval(app.getArgument(), env);
+            Combinator func = partialEval(app.getFunction());
+            Combinator arg = partialEval(app.getArgument());
 
             // --- FIX: CStarCombinator Reduction (C* a b -> b a) ---
             if (func instanceof CombinatorApplication) {
@@ -218,11 +220,11 @@ public class CombinatorPartialEvaluator {
                     Combinator a = innerApp.getArgument();
                     Combinator b = arg;
                     // Apply b to a, and recursively evaluate the new structure
-                    return partialEval(new CombinatorApplication(b, a), env);
+                    return partialEval(Combinators.apply(b, a));
                 }
             }
 
-            Combinator newApp = new CombinatorApplication(func, arg);
+            Combinator newApp = Combinators.apply(func, arg);
 
             // =======================================================================
             // --- CONSISTENCY FIX: Safe Reduction Gatekeeper ---
@@ -244,9 +246,10 @@ public class CombinatorPartialEvaluator {
                     // --- CRITICAL FIX ---
                     // If eval() successfully reduced the term (e.g., C f g x -> f x g),
                     // we MUST recursively partially evaluate the new structure!
-                    // We use toString() equality to prevent infinite loops if eval() didn't change the AST.
-                    if (evaluated != newApp && !evaluated.toString().equals(newApp.toString())) {
-                        return partialEval(evaluated, env);
+                    // Terms are interned, so identity tells whether eval() changed the AST and
+                    // stops us looping on a term it left alone.
+                    if (evaluated != newApp) {
+                        return partialEval(evaluated);
                     }
 
                     return evaluated;
@@ -260,17 +263,6 @@ public class CombinatorPartialEvaluator {
             return newApp;
         }
 
-        // 3. Variables: look up in environment if they are not recursive
-        if (c instanceof CombinatorVariable) {
-            String name = ((CombinatorVariable) c).getName();
-            if (env.containsKey(name)) {
-                Combinator def = env.get(name);
-                if (!isRecursive(def)) {
-                    return partialEval(def, env);
-                }
-            }
-        }
-
         return c;
     }
 
@@ -283,43 +275,54 @@ public class CombinatorPartialEvaluator {
      * safely evaluated without corrupting partial applications.
      */
     private static boolean isSaturated(CombinatorApplication app) {
-        List<Combinator> args = new java.util.ArrayList<>();
+        int argCount = 0;
         Combinator current = app;
 
-        // Unwind the application spine to collect all arguments
+        // Unwind the application spine to count the arguments
         while (current instanceof CombinatorApplication) {
-            args.add(((CombinatorApplication) current).getArgument());
+            argCount++;
             current = ((CombinatorApplication) current).getFunction();
         }
 
-        int argCount = args.size();
+        // Unknown or uninterpreted function, safer to not reduce at compile-time
+        int arity = arity(current);
+        return arity >= 0 && argCount >= arity;
+    }
 
+    /**
+     * The number of arguments the head of a spine needs before it reduces: the native
+     * combinators, the arithmetic and comparison operators and IF. -1 for anything else.
+     */
+    static int arity(Combinator head) {
         // Check native combinator arities
-        if (current instanceof ICombinator) return argCount >= 1;
-        if (current instanceof KCombinator) return argCount >= 2;
-        if (current instanceof SCombinator) return argCount >= 3;
-        if (current instanceof BCombinator) return argCount >= 3;
-        if (current instanceof CCombinator) return argCount >= 3;
-        if (current instanceof WCombinator) return argCount >= 2;
-        if (current instanceof CStarCombinator) return argCount >= 2;
+        if (head instanceof ICombinator) return 1;
+        if (head instanceof KCombinator) return 2;
+        if (head instanceof SCombinator) return 3;
+        if (head instanceof BCombinator) return 3;
+        if (head instanceof CCombinator) return 3;
+        if (head instanceof WCombinator) return 2;
+        if (head instanceof CStarCombinator) return 2;
+        if (head instanceof SPrimeCombinator) return 4;
+        if (head instanceof BStarCombinator) return 4;
+        if (head instanceof CPrimeCombinator) return 4;
+        if (head instanceof BulkCombinator) return ((BulkCombinator) head).getArity();
 
         // Check native mathematical operators and conditionals
         String opName = "";
-        if (current instanceof CombinatorConstant) {
-            opName = String.valueOf(((CombinatorConstant) current).getValue());
-        } else if (current instanceof CombinatorVariable) {
-            opName = ((CombinatorVariable) current).getName();
+        if (head instanceof CombinatorConstant) {
+            opName = String.valueOf(((CombinatorConstant) head).getValue());
+        } else if (head instanceof CombinatorVariable) {
+            opName = ((CombinatorVariable) head).getName();
         }
 
-        if ("IF".equals(opName)) return argCount >= 3;
+        if ("IF".equals(opName)) return 3;
 
         List<String> binaryOps = Arrays.asList("+", "-", "*", "/", "==", "<=", ">=", "<", ">", "=");
         if (binaryOps.contains(opName)) {
-            return argCount >= 2;
+            return 2;
         }
 
-        // Unknown or uninterpreted function, safer to not reduce at compile-time
-        return false;
+        return -1;
     }
 
     /**
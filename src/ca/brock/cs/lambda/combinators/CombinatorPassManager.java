@@ -0,0 +1,549 @@
+package ca.brock.cs.lambda.combinators;
+
+import ca.brock.cs.lambda.types.Type;
+
+import java.util.*;
+
+/**
+ * Runs the optimization passes over the translated program in the order a {@link Schedule}
+ * gives.
+ *
+ * A schedule is written as a comma-separated list of pass names, for instance
+ * {@code cse,strictness,global-rec,(inline,combinator-opt,partial-eval)*,saturate,specialize,fuse}.
+ * The term passes (cse, strictness and global-rec) run before translation and are only looked
+ * up with {@link Schedule#includes}; the rest run here. A parenthesised group followed by
+ * {@code *} is repeated, since partial evaluation exposes calls the inliner could not see
+ * before. It stops when a round leaves every global unchanged, when a round would grow the
+ * program past the size budget (that round is thrown away), or after a fixed number of rounds.
+ *
+ * Each pass declares the properties of the program it requires, establishes and invalidates.
+ * A pass whose requirement does not hold is preceded by the pass that establishes it, and a
+ * pass whose results all still hold is skipped. Every pass has a time budget; once it is spent
+ * the pass is not run again. Wall time and size change are recorded per pass and per global.
+ */
+public class CombinatorPassManager {
+
+    public static final String DEFAULT_SCHEDULE =
+        "cse,strictness,global-rec,(inline,combinator-opt,partial-eval)*,saturate,specialize,fuse";
+
+    private static final List<String> TERM_PASSES = Arrays.asList("cse", "strictness", "global-rec");
+
+    /**
+     * What a pass can rely on about the program.
+     */
+    public enum Property {
+        /** Call sites have been inlined as far as the cost model allows. */
+        INLINED,
+        /** Every term is a fixed point of {@link Combinator#optimize()}. */
+        NORMALIZED,
+        /** Compile-time redexes have been reduced by the partial evaluator. */
+        REDUCED,
+        /** Every term is the cheapest one equality saturation found. */
+        SATURATED,
+        /** Recursive globals have been specialized on their static arguments. */
+        SPECIALIZED,
+        /** Superinstructions replace every fragment of the table they match. */
+        FUSED
+    }
+
+    private static final class PassInfo {
+        private final String name;
+        private final Set<Property> requires;
+        private final Set<Property> establishes;
+        private final Set<Property> invalidates;
+        // Runs on one global at a time, so it can be timed per global
+        private final boolean perFunction;
+
+        PassInfo(String name, Set<Property> requires, Set<Property> establishes,
+                 Set<Property> invalidates, boolean perFunction) {
+            this.name = name;
+            this.requires = requires;
+            this.establishes = establishes;
+            this.invalidates = invalidates;
+            this.perFunction = perFunction;
+        }
+    }
+
+    private static final Map<String, PassInfo> PASSES = new LinkedHashMap<>();
+    private static final Map<Property, String> ESTABLISHED_BY = new EnumMap<>(Property.class);
+
+    static {
+        declare(new PassInfo("inline",
+            EnumSet.noneOf(Property.class),
+            EnumSet.of(Property.INLINED),
+            EnumSet.of(Property.NORMALIZED, Property.REDUCED, Property.SATURATED, Property.FUSED),
+            false));
+        declare(new PassInfo("combinator-opt",
+            EnumSet.noneOf(Property.class),
+            EnumSet.of(Property.NORMALIZED),
+            EnumSet.of(Property.REDUCED, Property.SATURATED, Property.FUSED),
+            true));
+        // Seeded with the greedy result, so its report compares against the greedy rules
+        declare(new PassInfo("saturate",
+            EnumSet.of(Property.NORMALIZED),
+            EnumSet.of(Property.SATURATED),
+            EnumSet.of(Property.NORMALIZED, Property.REDUCED, Property.FUSED),
+            true));
+        // Reductions can bring a global into a saturated call
+        declare(new PassInfo("partial-eval",
+            EnumSet.noneOf(Property.class),
+            EnumSet.of(Property.REDUCED),
+            EnumSet.of(Property.INLINED, Property.NORMALIZED, Property.SATURATED, Property.FUSED),
+            true));
+        // Residuals are not specialized again, so nothing invalidates SPECIALIZED
+        declare(new PassInfo("specialize",
+            EnumSet.noneOf(Property.class),
+            EnumSet.of(Property.SPECIALIZED),
+            EnumSet.of(Property.INLINED, Property.NORMALIZED, Property.REDUCED, Property.SATURATED, Property.FUSED),
+            false));
+        // The other passes see fused combinators as opaque atoms, so fusion comes last
+        declare(new PassInfo("fuse",
+            EnumSet.noneOf(Property.class),
+            EnumSet.of(Property.FUSED),
+            EnumSet.noneOf(Property.class),
+            true));
+    }
+
+    private static void declare(PassInfo pass) {
+        PASSES.put(pass.name, pass);
+        for (Property property : pass.establishes) {
+            ESTABLISHED_BY.putIfAbsent(property, pass.name);
+        }
+    }
+
+    public static class Options {
+        // Growth budget of each inlining run, as a percentage of the program's size
+        public int inlineGrowth = CombinatorInliner.DEFAULT_GROWTH_PERCENT;
+        public CombinatorSaturator.Cost saturationCost = CombinatorSaturator.Cost.SIZE;
+        public int saturationNodes = CombinatorSaturator.DEFAULT_NODE_LIMIT;
+        // Total wall time each pass may use before it is no longer run
+        public long passTimeMillis = 10_000;
+        // Rounds of a fixpoint group, and how far past its first round's size it may grow
+        public int maxRounds = 8;
+        public int roundGrowthPercent = 50;
+        public Superinstructions superinstructions = Superinstructions.standard();
+    }
+
+    /**
+     * A parsed pass order. A step is a single pass or a group; a group marked with {@code *}
+     * is repeated to a fixpoint.
+     */
+    public static final class Schedule {
+        private final List<List<String>> steps;
+        private final List<Boolean> repeated;
+        private final Set<String> names;
+
+        private Schedule(List<List<String>> steps, List<Boolean> repeated) {
+            this.steps = steps;
+            this.repeated = repeated;
+            this.names = new HashSet<>();
+            for (List<String> step : steps) {
+                names.addAll(step);
+            }
+        }
+
+        /**
+         * The schedule an {@code --opt-level} stands for.
+         */
+        public static Schedule forLevel(String level) {
+            if ("all".equalsIgnoreCase(level) || "3".equals(level)) {
+                return parse(DEFAULT_SCHEDULE);
+            }
+            if ("0".equals(level)) {
+                return parse("");
+            }
+            if ("1".equals(level)) {
+                return parse("cse");
+            }
+            if ("2".equals(level)) {
+                return parse("cse,strictness,global-rec,inline,combinator-opt");
+            }
+            throw new IllegalArgumentException("Unknown optimization level: " + level);
+        }
+
+        public static Schedule parse(String text) {
+            List<List<String>> steps = new ArrayList<>();
+            List<Boolean> repeated = new ArrayList<>();
+            int i = 0;
+
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                if (c == ',' || Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(') {
+                    int close = text.indexOf(')', i);
+                    if (close < 0) {
+                        throw new IllegalArgumentException("Unclosed pass group in: " + text);
+                    }
+                    List<String> group = new ArrayList<>();
+                    for (String name : text.substring(i + 1, close).split(",")) {
+                        group.add(checkName(name.trim(), true));
+                    }
+                    boolean star = close + 1 < text.length() && text.charAt(close + 1) == '*';
+                    steps.add(group);
+                    repeated.add(star);
+                    i = close + (star ? 2 : 1);
+                } else {
+                    int end = i;
+                    while (end < text.length() && text.charAt(end) != ',') {
+                        end++;
+                    }
+                    steps.add(Collections.singletonList(checkName(text.substring(i, end).trim(), false)));
+                    repeated.add(false);
+                    i = end;
+                }
+            }
+
+            return new Schedule(steps, repeated);
+        }
+
+        private static String checkName(String name, boolean inGroup) {
+            if (TERM_PASSES.contains(name)) {
+                if (inGroup) {
+                    throw new IllegalArgumentException(name + " runs before translation and cannot be repeated");
+                }
+                return name;
+            }
+            if (!PASSES.containsKey(name)) {
+                throw new IllegalArgumentException(
+                    "Unknown pass: " + name + " (expected one of " + TERM_PASSES + " or " + PASSES.keySet() + ")");
+            }
+            return name;
+        }
+
+        public boolean includes(String pass) {
+            return names.contains(pass);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < steps.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                List<String> step = steps.get(i);
+                if (step.size() == 1 && !repeated.get(i)) {
+                    sb.append(step.get(0));
+                } else {
+                    sb.append('(').append(String.join(",", step)).append(')').append(repeated.get(i) ? "*" : "");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Called after every pass that ran, for printing stages.
+     */
+    public interface Listener {
+        void passFinished(String pass, int round, Map<String, Combinator> globals);
+    }
+
+    /**
+     * One run of a pass over the whole program.
+     */
+    public static final class Run {
+        private final String pass;
+        private final int round;
+        private final long nanos;
+        private final long sizeBefore;
+        private final long sizeAfter;
+        private final String note;
+
+        Run(String pass, int round, long nanos, long sizeBefore, long sizeAfter, String note) {
+            this.pass = pass;
+            this.round = round;
+            this.nanos = nanos;
+            this.sizeBefore = sizeBefore;
+            this.sizeAfter = sizeAfter;
+            this.note = note;
+        }
+
+        public String getPass() {
+            return pass;
+        }
+
+        public int getRound() {
+            return round;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getSizeBefore() {
+            return sizeBefore;
+        }
+
+        public long getSizeAfter() {
+            return sizeAfter;
+        }
+
+        @Override
+        public String toString() {
+            String text = String.format("%-15s round %d  %9.3f ms  size %d -> %d",
+                pass, round, nanos / 1_000_000.0, sizeBefore, sizeAfter);
+            return note != null ? text + "  (" + note + ")" : text;
+        }
+    }
+
+    /**
+     * Totals for one pass on one global over all its runs. Whole-program passes are not timed
+     * per global; their time is -1.
+     */
+    public static final class Record {
+        private final String pass;
+        private final String function;
+        private int runs;
+        private long nanos;
+        private long sizeDelta;
+
+        Record(String pass, String function) {
+            this.pass = pass;
+            this.function = function;
+        }
+
+        public String getPass() {
+            return pass;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getSizeDelta() {
+            return sizeDelta;
+        }
+    }
+
+    private final Map<String, Type> types;
+    private final Options options;
+
+    private final EnumSet<Property> holding = EnumSet.noneOf(Property.class);
+    private final Map<String, Long> timeSpent = new HashMap<>();
+    private final List<Run> runs = new ArrayList<>();
+    private final Map<String, Record> records = new LinkedHashMap<>();
+    private final List<CombinatorInliner.Decision> decisions = new ArrayList<>();
+    private final CombinatorSaturator.Report saturationReport = new CombinatorSaturator.Report();
+    private boolean saturated;
+    // The input of the combinator-opt run that established NORMALIZED, to seed saturation
+    private Map<String, Combinator> beforeNormalization;
+    private Listener listener;
+
+    public CombinatorPassManager(Map<String, Type> types, Options options) {
+        this.types = types;
+        this.options = options;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Runs the combinator passes of the schedule.
+     */
+    public Map<String, Combinator> run(Schedule schedule, Map<String, Combinator> globals) {
+        Map<String, Combinator> current = globals;
+
+        for (int i = 0; i < schedule.steps.size(); i++) {
+            List<String> step = new ArrayList<>(schedule.steps.get(i));
+            step.removeAll(TERM_PASSES);
+            if (step.isEmpty()) {
+                continue;
+            }
+            current = schedule.repeated.get(i) ? runToFixpoint(step, current) : runAll(step, current, 1);
+        }
+
+        return current;
+    }
+
+    private Map<String, Combinator> runAll(List<String> passes, Map<String, Combinator> current, int round) {
+        for (String pass : passes) {
+            current = runPass(pass, current, round);
+        }
+        return current;
+    }
+
+    private Map<String, Combinator> runToFixpoint(List<String> group, Map<String, Combinator> current) {
+        long sizeBudget = Long.MAX_VALUE;
+
+        for (int round = 1; round <= options.maxRounds; round++) {
+            Map<String, Combinator> before = current;
+            EnumSet<Property> holdingBefore = EnumSet.copyOf(holding);
+            Map<String, Combinator> normalizationBefore = beforeNormalization;
+
+            current = runAll(group, current, round);
+
+            long size = sizeOf(current);
+            if (size > sizeBudget) {
+                runs.add(new Run("(group)", round, 0, sizeOf(before), size, "over size budget, round discarded"));
+                holding.clear();
+                holding.addAll(holdingBefore);
+                beforeNormalization = normalizationBefore;
+                return before;
+            }
+            if (round == 1) {
+                sizeBudget = (long) size * (100 + options.roundGrowthPercent) / 100;
+            }
+            if (sameTerms(before, current)) {
+                runs.add(new Run("(group)", round, 0, size, size, "fixpoint"));
+                return current;
+            }
+        }
+
+        runs.add(new Run("(group)", options.maxRounds, 0, sizeOf(current), sizeOf(current), "round limit"));
+        return current;
+    }
+
+    private Map<String, Combinator> runPass(String name, Map<String, Combinator> current, int round) {
+        PassInfo pass = PASSES.get(name);
+
+        for (Property property : pass.requires) {
+            if (!holding.contains(property)) {
+                current = runPass(ESTABLISHED_BY.get(property), current, round);
+            }
+        }
+
+        long size = sizeOf(current);
+        if (!pass.establishes.isEmpty() && holding.containsAll(pass.establishes)) {
+            runs.add(new Run(name, round, 0, size, size, "skipped, already holds"));
+            return current;
+        }
+        if (timeSpent.getOrDefault(name, 0L) >= options.passTimeMillis * 1_000_000L) {
+            runs.add(new Run(name, round, 0, size, size, "skipped, time budget spent"));
+            return current;
+        }
+
+        long start = System.nanoTime();
+        Map<String, Combinator> result = pass.perFunction
+            ? runPerFunction(name, current)
+            : runWholeProgram(name, current);
+        long elapsed = System.nanoTime() - start;
+
+        timeSpent.merge(name, elapsed, Long::sum);
+        if (!pass.perFunction) {
+            recordSizes(name, current, result);
+        }
+        runs.add(new Run(name, round, elapsed, size, sizeOf(result), null));
+
+        if ("combinator-opt".equals(name)) {
+            beforeNormalization = current;
+        }
+        holding.removeAll(pass.invalidates);
+        holding.addAll(pass.establishes);
+
+        if (listener != null) {
+            listener.passFinished(name, round, result);
+        }
+        return result;
+    }
+
+    private Map<String, Combinator> runWholeProgram(String name, Map<String, Combinator> current) {
+        if ("inline".equals(name)) {
+            // Only the latest decisions describe the program that is emitted
+            decisions.clear();
+            return CombinatorInliner.inline(current, types, options.inlineGrowth, decisions);
+        }
+        return CombinatorSpecializer.specializeProgram(current, types);
+    }
+
+    private Map<String, Combinator> runPerFunction(String name, Map<String, Combinator> current) {
+        Map<String, Combinator> result = new HashMap<>();
+        if ("saturate".equals(name)) {
+            saturated = true;
+        }
+
+        for (Map.Entry<String, Combinator> entry : current.entrySet()) {
+            Combinator term = entry.getValue();
+            long start = System.nanoTime();
+            Combinator optimized;
+
+            if ("combinator-opt".equals(name)) {
+                optimized = term.optimize();
+            } else if ("partial-eval".equals(name)) {
+                optimized = CombinatorPartialEvaluator.partialEval(term);
+            } else if ("fuse".equals(name)) {
+                optimized = options.superinstructions.rewrite(term);
+            } else {
+                Combinator original = beforeNormalization.get(entry.getKey());
+                optimized = CombinatorSaturator.saturateAll(
+                    Collections.singletonMap(entry.getKey(), original != null ? original : term),
+                    Collections.singletonMap(entry.getKey(), term),
+                    options.saturationCost,
+                    options.saturationNodes,
+                    saturationReport
+                ).get(entry.getKey());
+            }
+
+            Record record = record(name, entry.getKey());
+            record.runs++;
+            record.nanos += System.nanoTime() - start;
+            record.sizeDelta += optimized.size() - term.size();
+            result.put(entry.getKey(), optimized);
+        }
+
+        return result;
+    }
+
+    private void recordSizes(String name, Map<String, Combinator> before, Map<String, Combinator> after) {
+        for (Map.Entry<String, Combinator> entry : after.entrySet()) {
+            Combinator old = before.get(entry.getKey());
+            Record record = record(name, entry.getKey());
+            record.runs++;
+            record.nanos = -1;
+            record.sizeDelta += entry.getValue().size() - (old != null ? old.size() : 0);
+        }
+    }
+
+    private Record record(String pass, String function) {
+        return records.computeIfAbsent(pass + " " + function, k -> new Record(pass, function));
+    }
+
+    // Terms are interned, so identity says whether a global changed
+    private static boolean sameTerms(Map<String, Combinator> a, Map<String, Combinator> b) {
+        if (!a.keySet().equals(b.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, Combinator> entry : a.entrySet()) {
+            if (b.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long sizeOf(Map<String, Combinator> globals) {
+        long total = 0;
+        for (Combinator combinator : globals.values()) {
+            total = Combinator.addSizes(total, combinator.size());
+        }
+        return total;
+    }
+
+    public List<Run> getRuns() {
+        return runs;
+    }
+
+    public Collection<Record> getRecords() {
+        return records.values();
+    }
+
+    /** The decisions of the last inlining run, empty if the inliner did not run. */
+    public List<CombinatorInliner.Decision> getDecisions() {
+        return decisions;
+    }
+
+    /** Totals over every saturation run, or null if saturation did not run. */
+    public CombinatorSaturator.Report getSaturationReport() {
+        return saturated ? saturationReport : null;
+    }
+}
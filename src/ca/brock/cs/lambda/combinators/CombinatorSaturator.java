@@ -0,0 +1,585 @@
+package ca.brock.cs.lambda.combinators;
+
+import java.util.*;
+
+/**
+ * Optimizes combinator terms by equality saturation.
+ *
+ * {@link Combinator#optimize()} rewrites greedily: the first rule that matches wins and its
+ * result is optimized again, so the outcome depends on rule order, and a rewrite that only pays
+ * off after a step that makes the term bigger is never found. Here every global is loaded into
+ * an e-graph, a set of equivalence classes of terms with shared subterms. The rules are applied
+ * to every match at once and only ever add equalities, so nothing is lost by applying one
+ * before another. When the graph stops changing, or the node or iteration budget runs out, the
+ * cheapest term of the root class is extracted.
+ *
+ * The rules are the laws {@code optimize()} uses (in both directions where both sides are
+ * worth keeping), the η and constant laws of bracket abstraction, the reductions of the basic
+ * combinators, and folding of arithmetic and IF on literals. S, S' and W duplicate an
+ * argument, so they are only reduced when that argument is an atom.
+ *
+ * The graph is seeded with both the term before and after the greedy rules, which are equal,
+ * so the extracted term is never more expensive than the greedy one.
+ */
+public class CombinatorSaturator {
+
+    public static final int DEFAULT_NODE_LIMIT = 20_000;
+    private static final int MAX_ITERATIONS = 12;
+    // Under the steps model a combinator node outweighs any number of saved applications
+    private static final long STEP_WEIGHT = 1_000;
+    // Long enough for IF c t e
+    private static final int MAX_SPINE = 3;
+
+    /**
+     * What the extractor minimizes.
+     */
+    public enum Cost {
+        /** The number of nodes in the term, as reported by {@link Combinator#size()}. */
+        SIZE,
+        /**
+         * Predicted reduction steps: each combinator in a body is a reduction the machine
+         * performs when the body runs. Ties are broken on size.
+         */
+        STEPS
+    }
+
+    /**
+     * Totals over a program, for {@code --stats}.
+     */
+    public static final class Report {
+        private int globals;
+        private int saturated;
+        private int iterations;
+        private int nodes;
+        private long greedySize;
+        private long saturatedSize;
+
+        public int getGlobals() {
+            return globals;
+        }
+
+        /** Globals whose e-graph stopped changing within the budget. */
+        public int getSaturated() {
+            return saturated;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public int getNodes() {
+            return nodes;
+        }
+
+        /** Total size after {@link CombinatorInliner#optimizeAfterInlining}. */
+        public long getGreedySize() {
+            return greedySize;
+        }
+
+        public long getSaturatedSize() {
+            return saturatedSize;
+        }
+    }
+
+    // A combinator or constant leaf, a ?variable, or an application of two patterns
+    private static final class Pattern {
+        private final Combinator leaf;
+        private final String variable;
+        private final Pattern function;
+        private final Pattern argument;
+
+        Pattern(Combinator leaf, String variable, Pattern function, Pattern argument) {
+            this.leaf = leaf;
+            this.variable = variable;
+            this.function = function;
+            this.argument = argument;
+        }
+    }
+
+    private static final class Rule {
+        private final Pattern left;
+        private final Pattern right;
+        // A variable that must be bound to an atom, since the right side copies it
+        private final String atom;
+
+        Rule(Pattern left, Pattern right, String atom) {
+            this.left = left;
+            this.right = right;
+            this.atom = atom;
+        }
+    }
+
+    private static final List<Rule> RULES = new ArrayList<>();
+
+    static {
+        // The greedy rules of CombinatorApplication.optimize()
+        rule("B I", "I");
+        equation("C I", "C*");
+        equation("S ?x I", "W ?x");
+        rule("S K ?x", "I");
+        rule("B ?x I", "?x");
+        rule("C K ?x", "I");
+        rule("C B I", "I");
+        equation("S (B ?c ?f) ?g", "S' ?c ?f ?g");
+        equation("C (B ?c ?f) ?g", "C' ?c ?f ?g");
+        equation("B ?f (B ?g ?h)", "B* ?f ?g ?h");
+
+        // η and constant laws of bracket abstraction
+        rule("S (K ?x) (K ?y)", "K (?x ?y)");
+        rule("S (K ?x) I", "?x");
+        rule("S (K ?x) ?y", "B ?x ?y");
+        rule("S ?x (K ?y)", "C ?x ?y");
+        rule("B (K ?x) ?y", "K ?x");
+        rule("B ?x (K ?y)", "K (?x ?y)");
+        rule("C (K ?x) ?y", "K (?x ?y)");
+
+        // Reductions
+        rule("I ?x", "?x");
+        rule("K ?x ?y", "?x");
+        rule("B ?f ?g ?x", "?f (?g ?x)");
+        rule("C ?f ?g ?x", "?f ?x ?g");
+        rule("C* ?x ?f", "?f ?x");
+        rule("B* ?c ?f ?g ?x", "?c (?f (?g ?x))");
+        rule("C' ?c ?f ?g ?x", "?c (?f ?x) ?g");
+        atomRule("S ?f ?g ?x", "?f ?x (?g ?x)", "x");
+        atomRule("S' ?c ?f ?g ?x", "?c (?f ?x) (?g ?x)", "x");
+        atomRule("W ?f ?x", "?f ?x ?x", "x");
+    }
+
+    private static void rule(String left, String right) {
+        RULES.add(new Rule(parse(left), parse(right), null));
+    }
+
+    private static void equation(String left, String right) {
+        rule(left, right);
+        rule(right, left);
+    }
+
+    private static void atomRule(String left, String right, String atom) {
+        RULES.add(new Rule(parse(left), parse(right), atom));
+    }
+
+    /**
+     * Saturates every global.
+     * @param before The terms before the greedy rules ran, or the same map as {@code greedy}.
+     * @param greedy The terms after {@link CombinatorInliner#optimizeAfterInlining}.
+     * @param report Filled in with totals over the program; may be null.
+     */
+    public static Map<String, Combinator> saturateAll(
+        Map<String, Combinator> before,
+        Map<String, Combinator> greedy,
+        Cost cost,
+        int nodeLimit,
+        Report report
+    ) {
+        Map<String, Combinator> result = new HashMap<>();
+        Report totals = report != null ? report : new Report();
+
+        for (Map.Entry<String, Combinator> entry : greedy.entrySet()) {
+            Combinator original = before.get(entry.getKey());
+            EGraph graph = new EGraph(cost, nodeLimit);
+            int root = graph.add(entry.getValue());
+            if (original != null && original != entry.getValue()) {
+                graph.union(root, graph.add(original));
+            }
+
+            boolean saturated = graph.run();
+            Combinator best = graph.extract(root);
+
+            totals.globals++;
+            totals.saturated += saturated ? 1 : 0;
+            totals.iterations += graph.iterations;
+            totals.nodes += graph.memo.size();
+            totals.greedySize = Combinator.addSizes(totals.greedySize, entry.getValue().size());
+            totals.saturatedSize = Combinator.addSizes(totals.saturatedSize, best.size());
+
+            result.put(entry.getKey(), best);
+        }
+
+        return result;
+    }
+
+    /**
+     * Saturates a single term with the default budget.
+     */
+    public static Combinator saturate(Combinator c, Cost cost) {
+        EGraph graph = new EGraph(cost, DEFAULT_NODE_LIMIT);
+        int root = graph.add(c);
+        graph.run();
+        return graph.extract(root);
+    }
+
+    // An e-node: a leaf, or an application of two classes
+    private static final class Node {
+        private final Combinator leaf;
+        private final int function;
+        private final int argument;
+
+        Node(Combinator leaf, int function, int argument) {
+            this.leaf = leaf;
+            this.function = function;
+            this.argument = argument;
+        }
+
+        boolean isApplication() {
+            return leaf == null;
+        }
+
+        // Leaves are interned, so identity is equality
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) o;
+            return leaf == other.leaf && function == other.function && argument == other.argument;
+        }
+
+        @Override
+        public int hashCode() {
+            return leaf != null ? System.identityHashCode(leaf) : 31 * function + argument;
+        }
+    }
+
+    private static final class EGraph {
+        private final Cost cost;
+        private final int nodeLimit;
+
+        private int[] parent = new int[64];
+        private int classCount;
+        // Canonical node to its class; after rebuild() every key is canonical
+        private Map<Node, Integer> memo = new HashMap<>();
+        private final Map<Integer, List<Node>> classes = new HashMap<>();
+        private int iterations;
+
+        EGraph(Cost cost, int nodeLimit) {
+            this.cost = cost;
+            this.nodeLimit = nodeLimit;
+        }
+
+        int find(int id) {
+            while (parent[id] != id) {
+                parent[id] = parent[parent[id]];
+                id = parent[id];
+            }
+            return id;
+        }
+
+        boolean union(int a, int b) {
+            a = find(a);
+            b = find(b);
+            if (a == b) {
+                return false;
+            }
+            parent[Math.max(a, b)] = Math.min(a, b);
+            return true;
+        }
+
+        int add(Combinator c) {
+            if (c instanceof CombinatorApplication) {
+                CombinatorApplication app = (CombinatorApplication) c;
+                return add(new Node(null, add(app.getFunction()), add(app.getArgument())));
+            }
+            return add(new Node(c, -1, -1));
+        }
+
+        int add(Node node) {
+            Node canonical = canonicalize(node);
+            Integer id = memo.get(canonical);
+            if (id != null) {
+                return find(id);
+            }
+            if (classCount == parent.length) {
+                parent = Arrays.copyOf(parent, 2 * parent.length);
+            }
+            int fresh = classCount++;
+            parent[fresh] = fresh;
+            memo.put(canonical, fresh);
+            return fresh;
+        }
+
+        Node canonicalize(Node node) {
+            if (!node.isApplication()) {
+                return node;
+            }
+            return new Node(null, find(node.function), find(node.argument));
+        }
+
+        /**
+         * Restores congruence: nodes whose children were merged may now be equal, which merges
+         * their classes in turn. Then regroups the nodes by class for matching.
+         */
+        void rebuild() {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                Map<Node, Integer> canonical = new HashMap<>();
+                for (Map.Entry<Node, Integer> entry : memo.entrySet()) {
+                    Node node = canonicalize(entry.getKey());
+                    int id = find(entry.getValue());
+                    Integer existing = canonical.putIfAbsent(node, id);
+                    if (existing != null && union(existing, id)) {
+                        changed = true;
+                    }
+                }
+                memo = canonical;
+            }
+
+            classes.clear();
+            for (Map.Entry<Node, Integer> entry : memo.entrySet()) {
+                classes.computeIfAbsent(find(entry.getValue()), k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        /**
+         * Applies the rules until nothing changes or the budget runs out.
+         * @return true if the graph saturated.
+         */
+        boolean run() {
+            rebuild();
+            while (iterations < MAX_ITERATIONS) {
+                iterations++;
+                int nodesBefore = memo.size();
+                boolean merged = false;
+
+                // Match everything against the same graph, then apply
+                List<Object[]> matches = new ArrayList<>();
+                for (Rule rule : RULES) {
+                    for (int id : classes.keySet()) {
+                        for (Map<String, Integer> bindings : match(rule.left, id, new HashMap<>())) {
+                            if (rule.atom == null || isAtom(bindings.get(rule.atom))) {
+                                matches.add(new Object[] { rule, id, bindings });
+                            }
+                        }
+                    }
+                }
+
+                for (Object[] match : matches) {
+                    if (memo.size() >= nodeLimit) {
+                        break;
+                    }
+                    @SuppressWarnings("unchecked")
+                    Map<String, Integer> bindings = (Map<String, Integer>) match[2];
+                    int id = instantiate(((Rule) match[0]).right, bindings);
+                    merged |= union((Integer) match[1], id);
+                }
+
+                if (memo.size() < nodeLimit) {
+                    merged |= foldPrimitives();
+                }
+
+                rebuild();
+
+                if (!merged && memo.size() == nodesBefore) {
+                    return true;
+                }
+                if (memo.size() >= nodeLimit) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        // Every way the pattern matches a term of the class, extending the bindings
+        List<Map<String, Integer>> match(Pattern pattern, int id, Map<String, Integer> bindings) {
+            id = find(id);
+            if (pattern.variable != null) {
+                Integer bound = bindings.get(pattern.variable);
+                if (bound == null) {
+                    Map<String, Integer> extended = new HashMap<>(bindings);
+                    extended.put(pattern.variable, id);
+                    return Collections.singletonList(extended);
+                }
+                return find(bound) == id ? Collections.singletonList(bindings) : Collections.emptyList();
+            }
+
+            List<Map<String, Integer>> results = new ArrayList<>();
+            for (Node node : classes.getOrDefault(id, Collections.emptyList())) {
+                if (pattern.leaf != null) {
+                    if (node.leaf == pattern.leaf) {
+                        results.add(bindings);
+                        break;
+                    }
+                } else if (node.isApplication()) {
+                    for (Map<String, Integer> partial : match(pattern.function, node.function, bindings)) {
+                        results.addAll(match(pattern.argument, node.argument, partial));
+                    }
+                }
+            }
+            return results;
+        }
+
+        int instantiate(Pattern pattern, Map<String, Integer> bindings) {
+            if (pattern.variable != null) {
+                return find(bindings.get(pattern.variable));
+            }
+            if (pattern.leaf != null) {
+                return add(pattern.leaf);
+            }
+            return add(new Node(null, instantiate(pattern.function, bindings), instantiate(pattern.argument, bindings)));
+        }
+
+        // An atom is cheap to copy: a variable, a literal or a combinator
+        boolean isAtom(int id) {
+            for (Node node : classes.getOrDefault(find(id), Collections.emptyList())) {
+                if (!node.isApplication()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        CombinatorConstant literal(int id) {
+            for (Node node : classes.getOrDefault(find(id), Collections.emptyList())) {
+                if (node.leaf instanceof CombinatorConstant) {
+                    CombinatorConstant constant = (CombinatorConstant) node.leaf;
+                    if (constant.isInteger() || constant.isBoolean()) {
+                        return constant;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * op a b with both operands literals, and IF on a literal condition.
+         */
+        boolean foldPrimitives() {
+            boolean merged = false;
+            List<int[]> equalities = new ArrayList<>();
+
+            for (Map.Entry<Integer, List<Node>> entry : classes.entrySet()) {
+                for (Node node : entry.getValue()) {
+                    List<Integer> args = new ArrayList<>();
+                    Combinator head = spineHead(node, args, MAX_SPINE);
+                    if (!(head instanceof CombinatorConstant)) {
+                        continue;
+                    }
+
+                    if ("IF".equals(((CombinatorConstant) head).getValue()) && args.size() == 3) {
+                        CombinatorConstant condition = literal(args.get(0));
+                        if (condition != null && condition.isBoolean()) {
+                            int branch = (Boolean) condition.getValue() ? args.get(1) : args.get(2);
+                            equalities.add(new int[] { entry.getKey(), branch });
+                        }
+                    } else if (CombinatorPartialEvaluator.arity(head) == 2 && args.size() == 2) {
+                        CombinatorConstant left = literal(args.get(0));
+                        CombinatorConstant right = literal(args.get(1));
+                        if (left == null || right == null) {
+                            continue;
+                        }
+                        try {
+                            Combinator folded =
+                                Combinators.apply(Combinators.apply(head, left), right).eval(new HashMap<>());
+                            if (folded instanceof CombinatorConstant) {
+                                equalities.add(new int[] { entry.getKey(), add(folded) });
+                            }
+                        } catch (RuntimeException e) {
+                            // Division by zero is left for the program to report
+                        }
+                    }
+                }
+            }
+
+            for (int[] equality : equalities) {
+                merged |= union(equality[0], equality[1]);
+            }
+            return merged;
+        }
+
+        /**
+         * The leaf at the head of a spine through this node, following the first path that
+         * ends in a constant, with the argument classes in application order; null if there is
+         * none within the depth, which also stops the walk on cycles such as I x = x.
+         */
+        Combinator spineHead(Node node, List<Integer> args, int depth) {
+            if (!node.isApplication()) {
+                return node.leaf;
+            }
+            if (depth == 0) {
+                return null;
+            }
+            for (Node function : classes.getOrDefault(find(node.function), Collections.emptyList())) {
+                List<Integer> inner = new ArrayList<>();
+                Combinator head = spineHead(function, inner, depth - 1);
+                if (head instanceof CombinatorConstant) {
+                    args.addAll(inner);
+                    args.add(node.argument);
+                    return head;
+                }
+            }
+            return null;
+        }
+
+        long nodeCost(Node node, Map<Integer, Long> best) {
+            if (!node.isApplication()) {
+                boolean combinator = !(node.leaf instanceof CombinatorConstant)
+                    && !(node.leaf instanceof CombinatorVariable);
+                return cost == Cost.STEPS && combinator ? STEP_WEIGHT + 1 : 1;
+            }
+            Long function = best.get(find(node.function));
+            Long argument = best.get(find(node.argument));
+            if (function == null || argument == null) {
+                return Long.MAX_VALUE;
+            }
+            return Combinator.addSizes(1 + function, argument);
+        }
+
+        /**
+         * The cheapest term of a class. Costs are found bottom up until they stop improving;
+         * every node costs more than its children, so the choice has no cycles.
+         */
+        Combinator extract(int root) {
+            Map<Integer, Long> best = new HashMap<>();
+            Map<Integer, Node> choice = new HashMap<>();
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Map.Entry<Integer, List<Node>> entry : classes.entrySet()) {
+                    for (Node node : entry.getValue()) {
+                        long c = nodeCost(node, best);
+                        Long current = best.get(entry.getKey());
+                        if (c != Long.MAX_VALUE && (current == null || c < current)) {
+                            best.put(entry.getKey(), c);
+                            choice.put(entry.getKey(), node);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            return build(find(root), choice, new HashMap<>());
+        }
+
+        Combinator build(int id, Map<Integer, Node> choice, Map<Integer, Combinator> built) {
+            Combinator term = built.get(id);
+            if (term != null) {
+                return term;
+            }
+            Node node = choice.get(id);
+            term = node.isApplication()
+                ? Combinators.apply(
+                    build(find(node.function), choice, built),
+                    build(find(node.argument), choice, built))
+                : node.leaf;
+            built.put(id, term);
+            return term;
+        }
+    }
+
+    // ---- Rule syntax: read as a combinator term, whose ?x variables become pattern variables ----
+
+    private static Pattern parse(String text) {
+        return pattern(Combinators.read(text));
+    }
+
+    private static Pattern pattern(Combinator term) {
+        if (term instanceof CombinatorApplication) {
+            CombinatorApplication app = (CombinatorApplication) term;
+            return new Pattern(null, null, pattern(app.getFunction()), pattern(app.getArgument()));
+        }
+        if (term instanceof CombinatorVariable) {
+            return new Pattern(null, ((CombinatorVariable) term).getName().substring(1), null, null);
+        }
+        return new Pattern(term, null, null, null);
+    }
+}
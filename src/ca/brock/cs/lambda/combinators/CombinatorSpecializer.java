@@ -0,0 +1,533 @@
+package ca.brock.cs.lambda.combinators;
+
+import ca.brock.cs.lambda.parser.StrictnessAnalysis;
+import ca.brock.cs.lambda.types.FType;
+import ca.brock.cs.lambda.types.Type;
+
+import java.util.*;
+
+/**
+ * Online specialization of recursive globals on their static arguments.
+ *
+ * The partial evaluator never unfolds a recursive global, so a loop such as
+ * {@code filterMultiples 3 xs} or {@code quicksort leqInt xs} keeps passing its known argument
+ * around at run time. For every call of a recursive global whose spine carries a static value
+ * (a literal, an operator, a global function or a partial application of those), this pass
+ * builds a residual global with the static arguments substituted and reduced away, and
+ * rewrites the call to use it.
+ *
+ * Residuals are memoised on (function, static-argument pattern), so the recursive call inside
+ * a specialization that passes the same static values back in ties the knot through the
+ * residual's own label. A self-call that passes a different static value in some position
+ * (the {@code start + 1} of a range) marks that position as varying; the specialization is
+ * thrown away and redone with the position dynamic, rather than unrolling the loop.
+ *
+ * The pass is bounded: a fixed number of specializations per program and per function, a
+ * reduction fuel per residual and a cap on how much a residual may grow over the original.
+ */
+public class CombinatorSpecializer {
+
+    private static final int MAX_SPECIALIZATIONS = 32;
+    private static final int MAX_PER_FUNCTION = 4;
+    private static final int REDUCTION_FUEL = 10_000;
+    // A residual may be at most this many times the size of the original body, plus the slack
+    private static final int MAX_GROWTH = 2;
+    private static final int SIZE_SLACK = 32;
+
+    private static final String FRESH_PREFIX = "%s";
+
+    private final Map<String, Combinator> globals;
+    private final Map<String, Type> types;
+    private final Set<String> recursive;
+
+    private final Map<Key, String> memo = new HashMap<>();
+    // Keys in the order their residuals were created, so an abandoned attempt can be undone
+    private final List<Key> created = new ArrayList<>();
+    private final Set<Key> rejected = new HashSet<>();
+    private final Map<String, Combinator> residuals = new LinkedHashMap<>();
+    private final Map<String, Type> residualTypes = new HashMap<>();
+    private final Map<String, Integer> perFunction = new HashMap<>();
+    // Argument positions a function is known to change in its own recursive calls
+    private final Map<String, BitSet> varying = new HashMap<>();
+
+    private int attemptsLeft = MAX_SPECIALIZATIONS;
+    private int fuel;
+    private int freshCounter;
+    private int nameCounter;
+
+    // A recursive global with the static arguments of a call; null marks a dynamic position
+    private static final class Key {
+        private final String function;
+        private final List<Combinator> pattern;
+
+        Key(String function, List<Combinator> pattern) {
+            this.function = function;
+            this.pattern = pattern;
+        }
+
+        // Terms are interned, so list equality on them is identity
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return function.equals(other.function) && pattern.equals(other.pattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * function.hashCode() + pattern.hashCode();
+        }
+    }
+
+    // Thrown out of a specialization whose self-call passes a different static argument
+    private static final class Generalize extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Generalize() {
+            super(null, null, false, false);
+        }
+    }
+
+    private CombinatorSpecializer(Map<String, Combinator> globals, Map<String, Type> types) {
+        this.globals = globals;
+        this.types = types;
+        this.recursive = CombinatorInliner.recursiveGlobals(globals);
+    }
+
+    /**
+     * Specializes the recursive globals of a program at their call sites. The residual
+     * globals are added to the returned map and their types to {@code types}, which the
+     * emitter reads their arity from.
+     */
+    public static Map<String, Combinator> specializeProgram(
+        Map<String, Combinator> globals,
+        Map<String, Type> types
+    ) {
+        CombinatorSpecializer specializer = new CombinatorSpecializer(globals, types);
+
+        Map<String, Combinator> result = new HashMap<>();
+        for (Map.Entry<String, Combinator> entry : globals.entrySet()) {
+            result.put(entry.getKey(), specializer.rewriteCalls(entry.getValue(), null));
+        }
+        result.putAll(specializer.residuals);
+        types.putAll(specializer.residualTypes);
+        return result;
+    }
+
+    /**
+     * Replaces every call of a recursive global that has static arguments by a call of its
+     * specialization. {@code current} is the specialization whose body this is, if any.
+     */
+    private Combinator rewriteCalls(Combinator c, Key current) {
+        if (!(c instanceof CombinatorApplication)) {
+            return c;
+        }
+
+        List<Combinator> args = new ArrayList<>();
+        Combinator head = unwind(c, args);
+        for (int i = 0; i < args.size(); i++) {
+            args.set(i, rewriteCalls(args.get(i), current));
+        }
+
+        // %strict g a1 .. an is a call of g whose first argument is evaluated first
+        boolean strict = isStrictApply(head) && !args.isEmpty();
+        int first = strict ? 1 : 0;
+        Combinator callee = strict ? args.get(0) : head;
+
+        if (callee instanceof CombinatorVariable && recursive.contains(((CombinatorVariable) callee).getName())) {
+            String function = ((CombinatorVariable) callee).getName();
+            List<Combinator> callArgs = args.subList(first, args.size());
+
+            // A new varying position means the attempt is redone, so the pattern is recomputed
+            while (true) {
+                List<Combinator> pattern = staticPattern(function, callArgs);
+                if (current != null && current.function.equals(function)) {
+                    checkInvariant(current, pattern);
+                }
+                if (pattern.isEmpty()) {
+                    break;
+                }
+
+                Key key = new Key(function, pattern);
+                String name;
+                try {
+                    name = specialize(key);
+                } catch (Generalize e) {
+                    continue;
+                }
+                if (name == null) {
+                    break;
+                }
+                return residualCall(name, pattern, callArgs, strict);
+            }
+        }
+
+        Combinator rebuilt = head;
+        for (Combinator arg : args) {
+            rebuilt = Combinators.apply(rebuilt, arg);
+        }
+        return rebuilt;
+    }
+
+    /**
+     * The static arguments of a call, up to the last one; positions known to vary are dynamic.
+     */
+    private List<Combinator> staticPattern(String function, List<Combinator> args) {
+        int arity = typeArity(types.get(function));
+        BitSet dynamic = varying.getOrDefault(function, new BitSet());
+
+        List<Combinator> pattern = new ArrayList<>();
+        int length = 0;
+        for (int i = 0; i < Math.min(arity, args.size()); i++) {
+            boolean isStatic = !dynamic.get(i) && isStaticValue(args.get(i));
+            pattern.add(isStatic ? args.get(i) : null);
+            if (isStatic) {
+                length = i + 1;
+            }
+        }
+        return new ArrayList<>(pattern.subList(0, length));
+    }
+
+    // A self-call inside a specialization must pass the same static values back in
+    private void checkInvariant(Key current, List<Combinator> pattern) {
+        BitSet changed = new BitSet();
+        for (int i = 0; i < current.pattern.size(); i++) {
+            Combinator expected = current.pattern.get(i);
+            Combinator actual = i < pattern.size() ? pattern.get(i) : null;
+            if (expected != null && expected != actual) {
+                changed.set(i);
+            }
+        }
+        if (!changed.isEmpty()) {
+            varying.computeIfAbsent(current.function, f -> new BitSet()).or(changed);
+            throw new Generalize();
+        }
+    }
+
+    /**
+     * The name of the residual for {@code key}, creating it if needed; null if the budgets
+     * rule it out. Throws {@link Generalize} when the attempt has to be redone.
+     */
+    private String specialize(Key key) {
+        if (memo.containsKey(key)) {
+            return memo.get(key);
+        }
+        if (rejected.contains(key) || attemptsLeft == 0
+            || perFunction.getOrDefault(key.function, 0) >= MAX_PER_FUNCTION) {
+            return null;
+        }
+
+        Combinator original = globals.get(key.function);
+        Type type = types.get(key.function);
+        int arity = typeArity(type);
+        if (original == null || arity == 0) {
+            return null;
+        }
+        attemptsLeft--;
+
+        String name = freshName(key.function);
+        int mark = created.size();
+        memo.put(key, name);
+        created.add(key);
+        perFunction.merge(key.function, 1, Integer::sum);
+
+        try {
+            // Apply the body to the static values and a fresh variable per dynamic parameter
+            List<String> parameters = new ArrayList<>();
+            Combinator body = original;
+            for (int i = 0; i < arity; i++) {
+                Combinator arg = i < key.pattern.size() ? key.pattern.get(i) : null;
+                if (arg == null) {
+                    String parameter = FRESH_PREFIX + freshCounter++;
+                    parameters.add(parameter);
+                    arg = Combinators.variable(parameter);
+                }
+                body = Combinators.apply(body, arg);
+            }
+
+            fuel = REDUCTION_FUEL;
+            body = rewriteCalls(reduce(body), key);
+
+            for (int i = parameters.size() - 1; i >= 0; i--) {
+                body = abstractVariable(parameters.get(i), body);
+            }
+            body = body.optimize();
+
+            if (body.size() > MAX_GROWTH * original.size() + SIZE_SLACK) {
+                rollback(mark);
+                rejected.add(key);
+                return null;
+            }
+
+            residuals.put(name, body);
+            residualTypes.put(name, residualType(type, key.pattern));
+            return name;
+        } catch (Generalize e) {
+            rollback(mark);
+            throw e;
+        }
+    }
+
+    // Forgets the residuals created since the attempt at created[mark] started
+    private void rollback(int mark) {
+        while (created.size() > mark) {
+            Key key = created.remove(created.size() - 1);
+            String name = memo.remove(key);
+            residuals.remove(name);
+            residualTypes.remove(name);
+            perFunction.merge(key.function, -1, Integer::sum);
+        }
+    }
+
+    private Combinator residualCall(String name, List<Combinator> pattern, List<Combinator> args, boolean strict) {
+        // The strict marker stays only while the argument it forces is still passed
+        Combinator call = strict && pattern.get(0) == null
+            ? Combinators.apply(Combinators.constant(StrictnessAnalysis.STRICT_APPLY), Combinators.variable(name))
+            : Combinators.variable(name);
+        for (int i = 0; i < args.size(); i++) {
+            if (i >= pattern.size() || pattern.get(i) == null) {
+                call = Combinators.apply(call, args.get(i));
+            }
+        }
+        return call;
+    }
+
+    private String freshName(String function) {
+        String name;
+        do {
+            name = function + "%" + nameCounter++;
+        } while (globals.containsKey(name) || globals.containsKey(name.replace('%', '_')));
+        return name;
+    }
+
+    /**
+     * Reduces a term without ever copying work: combinators that duplicate an argument (S, S'
+     * and W) fire only when that argument is a variable or a static value. Arithmetic on
+     * literals is folded and IF on a literal condition picks its branch.
+     */
+    private Combinator reduce(Combinator c) {
+        List<Combinator> args = new ArrayList<>();
+        Combinator head = unwind(c, args);
+
+        while (fuel > 0) {
+            Combinator next = step(head, args);
+            if (next == null) {
+                break;
+            }
+            fuel--;
+            args.clear();
+            head = unwind(next, args);
+        }
+
+        Combinator result = head;
+        for (Combinator arg : args) {
+            result = Combinators.apply(result, reduce(arg));
+        }
+        return result;
+    }
+
+    // One reduction of the head of a spine, or null if it is stuck
+    private Combinator step(Combinator head, List<Combinator> args) {
+        int n = args.size();
+        Combinator result;
+        int used;
+
+        if (head instanceof ICombinator && n >= 1) {
+            result = args.get(0);
+            used = 1;
+        } else if (head instanceof KCombinator && n >= 2) {
+            result = args.get(0);
+            used = 2;
+        } else if (head instanceof CStarCombinator && n >= 2) {
+            result = Combinators.apply(args.get(1), args.get(0));
+            used = 2;
+        } else if (head instanceof BCombinator && n >= 3) {
+            result = Combinators.apply(args.get(0), Combinators.apply(args.get(1), args.get(2)));
+            used = 3;
+        } else if (head instanceof CCombinator && n >= 3) {
+            result = Combinators.apply(Combinators.apply(args.get(0), args.get(2)), args.get(1));
+            used = 3;
+        } else if (head instanceof BStarCombinator && n >= 4) {
+            result = Combinators.apply(args.get(0),
+                Combinators.apply(args.get(1), Combinators.apply(args.get(2), args.get(3))));
+            used = 4;
+        } else if (head instanceof CPrimeCombinator && n >= 4) {
+            result = Combinators.apply(
+                Combinators.apply(args.get(0), Combinators.apply(args.get(1), args.get(3))), args.get(2));
+            used = 4;
+        } else if (head instanceof SCombinator && n >= 3 && isTrivial(args.get(2))) {
+            Combinator x = args.get(2);
+            result = Combinators.apply(Combinators.apply(args.get(0), x), Combinators.apply(args.get(1), x));
+            used = 3;
+        } else if (head instanceof SPrimeCombinator && n >= 4 && isTrivial(args.get(3))) {
+            Combinator x = args.get(3);
+            result = Combinators.apply(
+                Combinators.apply(args.get(0), Combinators.apply(args.get(1), x)), Combinators.apply(args.get(2), x));
+            used = 4;
+        } else if (head instanceof WCombinator && n >= 2 && isTrivial(args.get(1))) {
+            result = Combinators.apply(Combinators.apply(args.get(0), args.get(1)), args.get(1));
+            used = 2;
+        } else if (isConstant(head, "IF") && n >= 3) {
+            Combinator condition = reduce(args.get(0));
+            args.set(0, condition);
+            if (!(condition instanceof CombinatorConstant) || !((CombinatorConstant) condition).isBoolean()) {
+                return null;
+            }
+            result = (Boolean) ((CombinatorConstant) condition).getValue() ? args.get(1) : args.get(2);
+            used = 3;
+        } else if (head instanceof CombinatorConstant && CombinatorPartialEvaluator.arity(head) == 2 && n >= 2) {
+            result = fold(head, args);
+            if (result == null) {
+                return null;
+            }
+            used = 2;
+        } else {
+            return null;
+        }
+
+        for (int i = used; i < n; i++) {
+            result = Combinators.apply(result, args.get(i));
+        }
+        return result;
+    }
+
+    // op a b with both operands literals, else null
+    private Combinator fold(Combinator op, List<Combinator> args) {
+        Combinator left = reduce(args.get(0));
+        Combinator right = reduce(args.get(1));
+        args.set(0, left);
+        args.set(1, right);
+        if (!(left instanceof CombinatorConstant) || !(right instanceof CombinatorConstant)) {
+            return null;
+        }
+        try {
+            Combinator folded = Combinators.apply(Combinators.apply(op, left), right).eval(new HashMap<>());
+            return folded instanceof CombinatorConstant ? folded : null;
+        } catch (RuntimeException e) {
+            // Division by zero is left for the program to report
+            return null;
+        }
+    }
+
+    /**
+     * T[λx.c] with the B, C and η rules, so that {@link Combinator#optimize()} can turn the
+     * result into S', B* and C' like the main translation does.
+     */
+    private static Combinator abstractVariable(String x, Combinator c) {
+        if (c instanceof CombinatorVariable && ((CombinatorVariable) c).getName().equals(x)) {
+            return Combinators.I;
+        }
+        if (!c.getFreeVariables().contains(x)) {
+            return Combinators.apply(Combinators.K, c);
+        }
+
+        CombinatorApplication app = (CombinatorApplication) c;
+        Combinator function = app.getFunction();
+        Combinator argument = app.getArgument();
+        boolean inFunction = function.getFreeVariables().contains(x);
+        boolean inArgument = argument.getFreeVariables().contains(x);
+
+        if (!inFunction && argument instanceof CombinatorVariable && ((CombinatorVariable) argument).getName().equals(x)) {
+            return function;
+        }
+        if (!inFunction) {
+            return Combinators.apply(Combinators.apply(Combinators.B, function), abstractVariable(x, argument));
+        }
+        if (!inArgument) {
+            return Combinators.apply(Combinators.apply(Combinators.C, abstractVariable(x, function)), argument);
+        }
+        return Combinators.apply(
+            Combinators.apply(Combinators.S, abstractVariable(x, function)), abstractVariable(x, argument));
+    }
+
+    /**
+     * A value known at compile time that may be copied freely: a literal, an operator, a
+     * combinator, a global function, or one of those applied to fewer static values than it
+     * needs to reduce.
+     */
+    private boolean isStaticValue(Combinator c) {
+        List<Combinator> args = new ArrayList<>();
+        Combinator head = unwind(c, args);
+
+        int arity;
+        if (head instanceof CombinatorVariable) {
+            arity = typeArity(types.get(((CombinatorVariable) head).getName()));
+            if (!globals.containsKey(((CombinatorVariable) head).getName()) || arity == 0) {
+                return false;
+            }
+        } else if (head instanceof CombinatorConstant) {
+            Object value = ((CombinatorConstant) head).getValue();
+            if (value instanceof Integer || value instanceof Boolean) {
+                return args.isEmpty();
+            }
+            arity = CombinatorPartialEvaluator.arity(head);
+            if (arity < 0 || isConstant(head, "IF")) {
+                return false;
+            }
+        } else {
+            arity = CombinatorPartialEvaluator.arity(head);
+            if (arity < 0) {
+                return false;
+            }
+        }
+
+        if (args.size() >= arity) {
+            return false;
+        }
+        for (Combinator arg : args) {
+            if (!isStaticValue(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTrivial(Combinator c) {
+        return !(c instanceof CombinatorApplication) || isStaticValue(c);
+    }
+
+    private static boolean isStrictApply(Combinator head) {
+        return isConstant(head, StrictnessAnalysis.STRICT_APPLY);
+    }
+
+    private static boolean isConstant(Combinator c, String value) {
+        return c instanceof CombinatorConstant && value.equals(((CombinatorConstant) c).getValue());
+    }
+
+    // The head of a spine; its arguments are appended to args in order
+    private static Combinator unwind(Combinator c, List<Combinator> args) {
+        int start = args.size();
+        while (c instanceof CombinatorApplication) {
+            args.add(start, ((CombinatorApplication) c).getArgument());
+            c = ((CombinatorApplication) c).getFunction();
+        }
+        return c;
+    }
+
+    private static int typeArity(Type type) {
+        int arity = 0;
+        while (type instanceof FType) {
+            arity++;
+            type = ((FType) type).getOutput();
+        }
+        return arity;
+    }
+
+    // The type of the function with the parameters at the static positions removed
+    private static Type residualType(Type type, List<Combinator> pattern) {
+        List<Type> parameters = new ArrayList<>();
+        for (int i = 0; type instanceof FType; i++) {
+            FType function = (FType) type;
+            if (i >= pattern.size() || pattern.get(i) == null) {
+                parameters.add(function.getInput());
+            }
+            type = function.getOutput();
+        }
+        for (int i = parameters.size() - 1; i >= 0; i--) {
+            type = new FType(parameters.get(i), type);
+        }
+        return type;
+    }
+}
@@ -16,7 +16,7 @@ public class CombinatorTranslator {
     public static Combinator translateAbstraction(String x, Term M) {
         // Rule 1: T[λx.x] = I
         if (M instanceof Variable && ((Variable) M).getName().equals(x)) {
-            return new ICombinator();
+            return Combinators.I;
         }
 
         // Rule 2: T[λx.M] = K (T[M]) if x is not free in M
@@ -25,7 +25,7 @@ public class CombinatorTranslator {
         // This also applies to Recursion terms, as their bound variable is internal,
         // so `x` should generally not be free in a `rec` term.
         if (!M.getFreeVariables().contains(x)) {
-            return new CombinatorApplication(new KCombinator(), M.translate()); // M.translate() ensures M is a Combinator
+            return Combinators.apply(Combinators.K, M.translate()); // M.translate() ensures M is a Combinator
         }
 
         // Rule 3: T[λx.(A B)] = S (T[λx.A]) (T[λx.B])
@@ -33,7 +33,7 @@ public class CombinatorTranslator {
             Application app = (Application) M;
             Combinator translatedFunction = translateAbstraction(x, app.getFunction());
             Combinator translatedArgument = translateAbstraction(x, app.getArgument());
-            return new CombinatorApplication(new CombinatorApplication(new SCombinator(), translatedFunction), translatedArgument);
+            return Combinators.apply(Combinators.apply(Combinators.S, translatedFunction), translatedArgument);
         }
 
         // Rule 4: Handling composite terms that are NOT applications (e.g., Abstraction, Addition, Conditional)
@@ -55,124 +55,124 @@ public class CombinatorTranslator {
 
         if (M instanceof Addition) {
             Addition add = (Addition) M;
-            Combinator op = new CombinatorConstant("+");
+            Combinator op = Combinators.constant("+");
             Combinator translatedLeft = translateAbstraction(x, add.getLeft());
             Combinator translatedRight = translateAbstraction(x, add.getRight());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.+] = K +
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.+] = K +
                 ),
-                new CombinatorApplication(
-                    new CombinatorApplication(new SCombinator(), translatedLeft),
+                Combinators.apply(
+                    Combinators.apply(Combinators.S, translatedLeft),
                     translatedRight
                 )
             );
         }
         if (M instanceof Subtraction) {
             Subtraction sub = (Subtraction) M;
-            Combinator op = new CombinatorConstant("-");
+            Combinator op = Combinators.constant("-");
             Combinator translatedLeft = translateAbstraction(x, sub.getLeft());
             Combinator translatedRight = translateAbstraction(x, sub.getRight());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.-] = K -
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.-] = K -
                 ),
-                new CombinatorApplication(
-                    new CombinatorApplication(new SCombinator(), translatedLeft),
+                Combinators.apply(
+                    Combinators.apply(Combinators.S, translatedLeft),
                     translatedRight
                 )
             );
         }
         if (M instanceof Multiplication) {
             Multiplication mul = (Multiplication) M;
-            Combinator op = new CombinatorConstant("*");
+            Combinator op = Combinators.constant("*");
             Combinator translatedLeft = translateAbstraction(x, mul.getLeft());
             Combinator translatedRight = translateAbstraction(x, mul.getRight());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.*] = K *
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.*] = K *
                 ),
-                new CombinatorApplication(
-                    new CombinatorApplication(new SCombinator(), translatedLeft),
+                Combinators.apply(
+                    Combinators.apply(Combinators.S, translatedLeft),
                     translatedRight
                 )
             );
         }
         if (M instanceof Equal) {
             Equal eq = (Equal) M;
-            Combinator op = new CombinatorConstant("=");
+            Combinator op = Combinators.constant("=");
             Combinator translatedLeft = translateAbstraction(x, eq.getLeft());
             Combinator translatedRight = translateAbstraction(x, eq.getRight());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.=] = K =
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.=] = K =
                 ),
-                new CombinatorApplication(
-                    new CombinatorApplication(new SCombinator(), translatedLeft),
+                Combinators.apply(
+                    Combinators.apply(Combinators.S, translatedLeft),
                     translatedRight
                 )
             );
         }
         if (M instanceof LEqual) {
             LEqual le = (LEqual) M;
-            Combinator op = new CombinatorConstant("<=");
+            Combinator op = Combinators.constant("<=");
             Combinator translatedLeft = translateAbstraction(x, le.getLeft());
             Combinator translatedRight = translateAbstraction(x, le.getRight());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.<=] = K <=
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.<=] = K <=
                 ),
-                new CombinatorApplication(
-                    new CombinatorApplication(new SCombinator(), translatedLeft),
+                Combinators.apply(
+                    Combinators.apply(Combinators.S, translatedLeft),
                     translatedRight
                 )
             );
         }
         if (M instanceof And) {
             And and = (And) M;
-            Combinator op = new CombinatorConstant("and");
+            Combinator op = Combinators.constant("and");
             Combinator translatedLeft = translateAbstraction(x, and.getLeft());
             Combinator translatedRight = translateAbstraction(x, and.getRight());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.and] = K and
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.and] = K and
                 ),
-                new CombinatorApplication(
-                    new CombinatorApplication(new SCombinator(), translatedLeft),
+                Combinators.apply(
+                    Combinators.apply(Combinators.S, translatedLeft),
                     translatedRight
                 )
             );
         }
         if (M instanceof Or) {
             Or or = (Or) M;
-            Combinator op = new CombinatorConstant("or");
+            Combinator op = Combinators.constant("or");
             Combinator translatedLeft = translateAbstraction(x, or.getLeft());
             Combinator translatedRight = translateAbstraction(x, or.getRight());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.or] = K or
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.or] = K or
                 ),
-                new CombinatorApplication(
-                    new CombinatorApplication(new SCombinator(), translatedLeft),
+                Combinators.apply(
+                    Combinators.apply(Combinators.S, translatedLeft),
                     translatedRight
                 )
             );
         }
         if (M instanceof Not) {
             Not not = (Not) M;
-            Combinator op = new CombinatorConstant("not");
+            Combinator op = Combinators.constant("not");
             Combinator translatedOperand = translateAbstraction(x, not.getOperand());
-            return new CombinatorApplication(
-                new CombinatorApplication(
-                    new SCombinator(),
-                    new CombinatorApplication(new KCombinator(), op) // T[λx.not] = K not
+            return Combinators.apply(
+                Combinators.apply(
+                    Combinators.S,
+                    Combinators.apply(Combinators.K, op) // T[λx.not] = K not
                 ),
                 translatedOperand
             );
@@ -187,8 +187,8 @@ public class CombinatorTranslator {
             Combinator translatedTrueBranch = translateAbstraction(x, condTerm.getTrueBranch());
             Combinator translatedFalseBranch = translateAbstraction(x, condTerm.getFalseBranch());
 
-            return new CombinatorApplication(
-                new CombinatorApplication(
+            return Combinators.apply(
+                Combinators.apply(
                     translatedCondition,
                     translatedTrueBranch
                 ),
@@ -215,7 +215,7 @@ public class CombinatorTranslator {
     public static Combinator translateAbstractionCombinator(String x, Combinator C) {
         // Rule: T[λx.x] = I (if C is CombinatorVariable x)
         if (C instanceof CombinatorVariable && ((CombinatorVariable) C).getName().equals(x)) {
-            return new ICombinator();
+            return Combinators.I;
         }
 
         // Optimization: T[λx. (F x)] = F, if x is not free in F
@@ -237,7 +237,7 @@ public class CombinatorTranslator {
 
         // Rule: T[λx.C] = K (C) if x is not free in C (This rule should be after the optimization for Fx pattern)
         if (!C.getFreeVariables().contains(x)) {
-            return new CombinatorApplication(new KCombinator(), C);
+            return Combinators.apply(Combinators.K, C);
         }
 
 
@@ -246,7 +246,7 @@ public class CombinatorTranslator {
             CombinatorApplication app = (CombinatorApplication) C;
             Combinator translatedFunction = translateAbstractionCombinator(x, app.getFunction());
             Combinator translatedArgument = translateAbstractionCombinator(x, app.getArgument());
-            return new CombinatorApplication(new CombinatorApplication(new SCombinator(), translatedFunction), translatedArgument);
+            return Combinators.apply(Combinators.apply(Combinators.S, translatedFunction), translatedArgument);
         }
 
         // Other combinator types (K, S, I, Y, Constant) should not have free variables.
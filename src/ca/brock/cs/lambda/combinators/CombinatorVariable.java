@@ -1,15 +1,16 @@
 package ca.brock.cs.lambda.combinators;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 public class CombinatorVariable extends Combinator {
-    private String name;
+    private final String name;
+    private final Set<String> freeVariables;
 
-    public CombinatorVariable(String name) {
+    CombinatorVariable(String name) {
         this.name = name;
+        this.freeVariables = Collections.singleton(name);
     }
 
     public String getName() {
@@ -31,9 +32,7 @@ public class CombinatorVariable extends Combinator {
 
     @Override
     public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.add(name);
-        return freeVars;
+        return freeVariables;
     }
 
     @Override
@@ -0,0 +1,192 @@
+package ca.brock.cs.lambda.combinators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * The only way to build combinator terms. Every term is hash-consed: the basic combinators are
+ * singletons, and constants, variables, bulk combinators and applications are interned, so two
+ * terms are structurally equal exactly when they are the same object. Passes compare terms
+ * with {@code ==} and may key identity maps on them.
+ *
+ * An application is interned on the identity of its two (already interned) children, which
+ * makes building one O(1). The tables live for the whole compilation.
+ */
+public final class Combinators {
+
+    public static final SCombinator S = new SCombinator();
+    public static final KCombinator K = new KCombinator();
+    public static final ICombinator I = new ICombinator();
+    public static final BCombinator B = new BCombinator();
+    public static final CCombinator C = new CCombinator();
+    public static final WCombinator W = new WCombinator();
+    public static final YCombinator Y = new YCombinator();
+    public static final CStarCombinator C_STAR = new CStarCombinator();
+    public static final SPrimeCombinator S_PRIME = new SPrimeCombinator();
+    public static final BStarCombinator B_STAR = new BStarCombinator();
+    public static final CPrimeCombinator C_PRIME = new CPrimeCombinator();
+
+    // The constants the runtime has a routine for
+    static final Set<String> PRIMITIVES =
+        Collections.unmodifiableSet(new HashSet<>(Arrays.asList("IF", "+", "-", "*", "/", "=", "<=")));
+
+    // Children are interned, so comparing them by identity is structural equality
+    private static final class ApplicationKey {
+        private final Combinator function;
+        private final Combinator argument;
+
+        ApplicationKey(Combinator function, Combinator argument) {
+            this.function = function;
+            this.argument = argument;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ApplicationKey)) {
+                return false;
+            }
+            ApplicationKey other = (ApplicationKey) o;
+            return function == other.function && argument == other.argument;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(function) + System.identityHashCode(argument);
+        }
+    }
+
+    private static final Map<ApplicationKey, CombinatorApplication> applications = new HashMap<>();
+    // Keyed by value, so Integer 1, Long 1 and "1" stay distinct
+    private static final Map<Object, CombinatorConstant> constants = new HashMap<>();
+    private static final Map<String, CombinatorVariable> variables = new HashMap<>();
+    private static final Map<String, BulkCombinator> bulkCombinators = new HashMap<>();
+    private static final Map<Combinator, FusedCombinator> fusedCombinators = new HashMap<>();
+
+    private Combinators() {}
+
+    public static CombinatorApplication apply(Combinator function, Combinator argument) {
+        ApplicationKey key = new ApplicationKey(function, argument);
+        CombinatorApplication app = applications.get(key);
+        if (app == null) {
+            app = new CombinatorApplication(function, argument);
+            applications.put(key, app);
+        }
+        return app;
+    }
+
+    public static CombinatorConstant constant(Object value) {
+        CombinatorConstant constant = constants.get(value);
+        if (constant == null) {
+            constant = new CombinatorConstant(value);
+            constants.put(value, constant);
+        }
+        return constant;
+    }
+
+    public static CombinatorVariable variable(String name) {
+        CombinatorVariable variable = variables.get(name);
+        if (variable == null) {
+            variable = new CombinatorVariable(name);
+            variables.put(name, variable);
+        }
+        return variable;
+    }
+
+    public static BulkCombinator bulk(BulkCombinator.Kind kind, int count) {
+        String key = kind.name() + count;
+        BulkCombinator bulk = bulkCombinators.get(key);
+        if (bulk == null) {
+            bulk = new BulkCombinator(kind, count);
+            bulkCombinators.put(key, bulk);
+        }
+        return bulk;
+    }
+
+    /**
+     * The superinstruction for {@code pattern}, a term whose holes are the variables ?1 .. ?k.
+     * Patterns are interned, so the table is keyed on their identity.
+     */
+    public static FusedCombinator fused(Combinator pattern) {
+        FusedCombinator fused = fusedCombinators.get(pattern);
+        if (fused == null) {
+            fused = new FusedCombinator(fusedCombinators.size(), pattern, FusedCombinator.holes(pattern));
+            fusedCombinators.put(pattern, fused);
+        }
+        return fused;
+    }
+
+    // ---- Term syntax: juxtaposition is application, ?x a variable ----
+
+    /**
+     * Reads a term as printed by {@link Combinator#toString()}: the basic combinators, bulk
+     * combinators such as {@code B3}, the primitives, and variables {@code ?x}, which keep
+     * their question mark.
+     */
+    static Combinator read(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringTokenizer tokenizer = new StringTokenizer(text, " ()", true);
+        while (tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            if (!token.equals(" ")) {
+                tokens.add(token);
+            }
+        }
+        int[] position = { 0 };
+        Combinator term = readApplication(tokens, position, text);
+        if (term == null || position[0] != tokens.size()) {
+            throw new IllegalArgumentException("Malformed term: " + text);
+        }
+        return term;
+    }
+
+    private static Combinator readApplication(List<String> tokens, int[] position, String text) {
+        Combinator result = null;
+        while (position[0] < tokens.size() && !tokens.get(position[0]).equals(")")) {
+            Combinator next = readAtom(tokens, position, text);
+            result = result == null ? next : apply(result, next);
+        }
+        return result;
+    }
+
+    private static Combinator readAtom(List<String> tokens, int[] position, String text) {
+        String token = tokens.get(position[0]++);
+        if (token.equals("(")) {
+            Combinator inner = readApplication(tokens, position, text);
+            if (inner == null || position[0] >= tokens.size()) {
+                throw new IllegalArgumentException("Malformed term: " + text);
+            }
+            position[0]++;
+            return inner;
+        }
+        if (token.matches("\\?\\w+")) {
+            return variable(token);
+        }
+        if (token.matches("[BCSK][2-9][0-9]*|[BCSK]1[0-9]+")) {
+            return bulk(BulkCombinator.Kind.valueOf(token.substring(0, 1)), Integer.parseInt(token.substring(1)));
+        }
+        if (PRIMITIVES.contains(token)) {
+            return constant(token);
+        }
+        switch (token) {
+            case "S": return S;
+            case "K": return K;
+            case "I": return I;
+            case "B": return B;
+            case "C": return C;
+            case "W": return W;
+            case "C*": return C_STAR;
+            case "S'": return S_PRIME;
+            case "B*": return B_STAR;
+            case "C'": return C_PRIME;
+            default:
+                throw new IllegalArgumentException("Unknown combinator in " + text + ": " + token);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ca.brock.cs.lambda.combinators;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts the combinator fragments of compiled programs: which runtime routine is applied,
+ * directly, to the result of which other one. These are the candidates for superinstructions.
+ *
+ * A bigram is an application of a combinator or primitive whose last argument is itself headed
+ * by one, such as {@code S (K ?1)} or {@code IF (<= ?1 ?2)}. A trigram adds a third routine,
+ * either nested inside the second ({@code B (C (B ?1 ?2))}) or as the previous argument of the
+ * first ({@code C' (B ?1) (K ?2)}). Everything else is a hole. Only arguments a routine consumes
+ * count, so a fragment is always something its outer routine reduces in one step.
+ *
+ * Counts are static occurrences in the final combinator terms, the same terms the emitter
+ * compiles. A profile file has one fragment per line, {@code count<TAB>pattern}, so the counts
+ * of a whole benchmark corpus can be gathered by merging program after program into one file.
+ */
+public class FragmentProfile {
+    // Marks the holes of a shape until they are numbered
+    private static final Combinator HOLE = Combinators.variable("?");
+
+    private final Map<Combinator, Long> counts = new LinkedHashMap<>();
+
+    public static FragmentProfile of(Collection<Combinator> terms) {
+        FragmentProfile profile = new FragmentProfile();
+        for (Combinator term : terms) {
+            profile.count(term);
+        }
+        return profile;
+    }
+
+    public Map<Combinator, Long> getCounts() {
+        return counts;
+    }
+
+    /**
+     * The n most frequent fragments, most frequent first; ties go to the smaller pattern.
+     */
+    public List<Combinator> top(int n) {
+        List<Combinator> patterns = new ArrayList<>(counts.keySet());
+        patterns.sort(Comparator.comparing((Combinator p) -> -counts.get(p))
+            .thenComparing(p -> p.toString().length())
+            .thenComparing(Combinator::toString));
+        return patterns.subList(0, Math.min(n, patterns.size()));
+    }
+
+    public void merge(FragmentProfile other) {
+        for (Map.Entry<Combinator, Long> entry : other.counts.entrySet()) {
+            counts.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    public static FragmentProfile load(Path file) throws IOException {
+        FragmentProfile profile = new FragmentProfile();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                throw new IllegalArgumentException("Malformed profile line: " + line);
+            }
+            profile.counts.merge(Combinators.read(line.substring(tab + 1)), Long.parseLong(line.substring(0, tab).trim()), Long::sum);
+        }
+        return profile;
+    }
+
+    public void save(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Combinator pattern : top(counts.size())) {
+            lines.add(counts.get(pattern) + "\t" + pattern);
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private void count(Combinator term) {
+        Set<Combinator> visited = new HashSet<>();
+        countAll(term, visited);
+    }
+
+    // Terms are DAGs after interning; a shared subterm is compiled once and counted once.
+    // A literal section is compiled as an atom, so nothing inside it is a fragment.
+    private void countAll(Combinator term, Set<Combinator> visited) {
+        if (!(term instanceof CombinatorApplication) || Superinstructions.isLiteralSection(term) || !visited.add(term)) {
+            return;
+        }
+        CombinatorApplication app = (CombinatorApplication) term;
+        countAt(app);
+        countAll(app.getFunction(), visited);
+        countAll(app.getArgument(), visited);
+    }
+
+    private void countAt(CombinatorApplication app) {
+        List<Combinator> args = new ArrayList<>();
+        Combinator head = FusedCombinator.unwind(app, args);
+        int last = args.size() - 1;
+        if (!isRoutine(head) || args.size() > routineArity(head) || !isInner(head, last, args.get(last))) {
+            return;
+        }
+
+        int[] hole = { 0 };
+        Combinator[] shape = new Combinator[args.size()];
+        Arrays.fill(shape, HOLE);
+        shape[last] = holes(args.get(last));
+
+        record(head, args, shape, hole);
+
+        // Nested: the inner fragment's own last argument is a third routine
+        List<Combinator> innerArgs = new ArrayList<>();
+        Combinator innerHead = FusedCombinator.unwind(args.get(last), innerArgs);
+        int innerLast = innerArgs.size() - 1;
+        if (innerLast >= 0 && isInner(innerHead, innerLast, innerArgs.get(innerLast))) {
+            Combinator nested = innerHead;
+            for (int i = 0; i < innerArgs.size(); i++) {
+                nested = Combinators.apply(nested, i == innerLast ? holes(innerArgs.get(i)) : HOLE);
+            }
+            shape[last] = nested;
+            record(head, args, shape, hole);
+            shape[last] = holes(args.get(last));
+        }
+
+        // Sibling: the argument before it is headed by a routine too
+        if (last > 0 && isInner(head, last - 1, args.get(last - 1))) {
+            shape[last - 1] = holes(args.get(last - 1));
+            record(head, args, shape, hole);
+        }
+    }
+
+    // Builds head applied to shape, numbering the holes, and counts the pattern
+    private void record(Combinator head, List<Combinator> args, Combinator[] shape, int[] hole) {
+        hole[0] = 0;
+        Combinator pattern = head;
+        for (int i = 0; i < args.size(); i++) {
+            pattern = Combinators.apply(pattern, number(shape[i], hole));
+        }
+        counts.merge(pattern, 1L, Long::sum);
+    }
+
+    // Replaces the holes of a shape, left to right, by ?1, ?2 ..
+    private static Combinator number(Combinator shape, int[] hole) {
+        if (shape == HOLE) {
+            return FusedCombinator.argument(++hole[0]);
+        }
+        if (shape instanceof CombinatorApplication) {
+            CombinatorApplication app = (CombinatorApplication) shape;
+            Combinator function = number(app.getFunction(), hole);
+            return Combinators.apply(function, number(app.getArgument(), hole));
+        }
+        return shape;
+    }
+
+    // The routine heading term, applied to a hole for each of its arguments
+    private static Combinator holes(Combinator term) {
+        List<Combinator> args = new ArrayList<>();
+        Combinator shape = FusedCombinator.unwind(term, args);
+        for (int i = 0; i < args.size(); i++) {
+            shape = Combinators.apply(shape, HOLE);
+        }
+        return shape;
+    }
+
+    /**
+     * Whether the argument at {@code position} of {@code outer} can be fused into it: headed by
+     * a routine that is still waiting for arguments, or the comparison a conditional tests,
+     * which the conditional can then make without building it. Literal sections have routines
+     * of their own and are left alone.
+     */
+    private static boolean isInner(Combinator outer, int position, Combinator term) {
+        List<Combinator> args = new ArrayList<>();
+        Combinator head = FusedCombinator.unwind(term, args);
+        if (!isRoutine(head) || Superinstructions.isLiteralSection(term)) {
+            return false;
+        }
+        if (args.size() < routineArity(head)) {
+            return true;
+        }
+        return position == 0 && args.size() == 2 && isComparison(head) && outer instanceof CombinatorConstant
+            && "IF".equals(((CombinatorConstant) outer).getValue());
+    }
+
+    static boolean isComparison(Combinator head) {
+        if (!(head instanceof CombinatorConstant)) {
+            return false;
+        }
+        Object value = ((CombinatorConstant) head).getValue();
+        return "<=".equals(value) || "=".equals(value);
+    }
+
+    static boolean isRoutine(Combinator head) {
+        if (head instanceof CombinatorConstant) {
+            return Combinators.PRIMITIVES.contains(String.valueOf(((CombinatorConstant) head).getValue()));
+        }
+        return !(head instanceof YCombinator) && !(head instanceof FusedCombinator)
+            && CombinatorPartialEvaluator.arity(head) > 0;
+    }
+
+    static int routineArity(Combinator head) {
+        return CombinatorPartialEvaluator.arity(head);
+    }
+}
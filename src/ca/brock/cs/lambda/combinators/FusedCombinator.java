@@ -0,0 +1,241 @@
+package ca.brock.cs.lambda.combinators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A superinstruction: a fragment of combinator code such as {@code S (K ?1)} or
+ * {@code C' (C' ?1 ?2)} fused into one combinator with its own runtime routine.
+ *
+ * The holes ?1 .. ?k of the pattern become the first k arguments. Then come the arguments the
+ * head of the pattern still needs to reduce. The routine performs every head reduction those
+ * arguments allow in one go. The evaluator would have performed them back to back, on nodes
+ * that only the previous step had built, so nothing that could be shared is lost. No more
+ * arguments are taken than the first reduction needs. Taking more would rebuild, on every
+ * application, a partial application that the unfused code builds once and shares.
+ *
+ * {@code IF (<= ?1 ?2)} and {@code IF (= ?1 ?2)} are fused into a compare-and-branch that
+ * never builds the condition.
+ */
+public class FusedCombinator extends Combinator {
+    public enum Kind {
+        /** Builds the reduct over the arguments, like the basic combinators. */
+        GRAPH,
+        /** Evaluates ?1 and ?2, compares them and continues with ?3 or ?4. */
+        BRANCH
+    }
+
+    private static final int MAX_REDUCTIONS = 16;
+
+    private final int id;
+    private final Combinator pattern;
+    private final int holes;
+    private final int arity;
+    private final Kind kind;
+    private final Combinator reduct;
+    private final int reductions;
+
+    FusedCombinator(int id, Combinator pattern, int holes) {
+        this.id = id;
+        this.pattern = pattern;
+        this.holes = holes;
+
+        List<Combinator> args = new ArrayList<>();
+        Combinator head = unwind(pattern, args);
+        String operator = branchOperator(head, args);
+
+        if (operator != null) {
+            this.kind = Kind.BRANCH;
+            this.arity = holes + 2;
+            this.reduct = null;
+            // The condition and IF itself
+            this.reductions = 2;
+            return;
+        }
+
+        int needed = CombinatorPartialEvaluator.arity(head);
+        this.kind = Kind.GRAPH;
+        this.arity = holes + Math.max(0, needed - args.size());
+
+        Combinator applied = pattern;
+        for (int i = holes + 1; i <= arity; i++) {
+            applied = Combinators.apply(applied, argument(i));
+        }
+
+        int count = 0;
+        Combinator next = step(applied);
+        while (next != null && count < MAX_REDUCTIONS) {
+            applied = next;
+            count++;
+            next = step(applied);
+        }
+        this.reduct = applied;
+        this.reductions = count;
+    }
+
+    /**
+     * The placeholder for the i-th argument (from 1) in patterns and reducts.
+     */
+    public static CombinatorVariable argument(int i) {
+        return Combinators.variable("?" + i);
+    }
+
+    // The highest hole ?n in a pattern
+    static int holes(Combinator pattern) {
+        if (pattern instanceof CombinatorApplication) {
+            CombinatorApplication app = (CombinatorApplication) pattern;
+            return Math.max(holes(app.getFunction()), holes(app.getArgument()));
+        }
+        if (pattern instanceof CombinatorVariable && ((CombinatorVariable) pattern).getName().startsWith("?")) {
+            return Integer.parseInt(((CombinatorVariable) pattern).getName().substring(1));
+        }
+        return 0;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Combinator getPattern() {
+        return pattern;
+    }
+
+    public int getHoles() {
+        return holes;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The result of a saturated application, over the arguments ?1 .. ?arity. Null for BRANCH.
+     */
+    public Combinator getReduct() {
+        return reduct;
+    }
+
+    /**
+     * How many evaluator dispatches one application replaces.
+     */
+    public int getReductions() {
+        return reductions;
+    }
+
+    /**
+     * The comparison of a BRANCH, "<=" or "=".
+     */
+    public String getOperator() {
+        List<Combinator> args = new ArrayList<>();
+        return branchOperator(unwind(pattern, args), args);
+    }
+
+    // IF (op ?1 ?2) with op a comparison on tagged values, else null
+    private static String branchOperator(Combinator head, List<Combinator> args) {
+        if (!(head instanceof CombinatorConstant) || !"IF".equals(((CombinatorConstant) head).getValue())
+            || args.size() != 1) {
+            return null;
+        }
+        List<Combinator> operands = new ArrayList<>();
+        Combinator op = unwind(args.get(0), operands);
+        if (op instanceof CombinatorConstant && operands.size() == 2
+            && operands.get(0) instanceof CombinatorVariable && operands.get(1) instanceof CombinatorVariable) {
+            Object value = ((CombinatorConstant) op).getValue();
+            if ("<=".equals(value) || "=".equals(value)) {
+                return (String) value;
+            }
+        }
+        return null;
+    }
+
+    static Combinator unwind(Combinator c, List<Combinator> args) {
+        while (c instanceof CombinatorApplication) {
+            args.add(0, ((CombinatorApplication) c).getArgument());
+            c = ((CombinatorApplication) c).getFunction();
+        }
+        return c;
+    }
+
+    // One head reduction of a basic combinator, or null if the head is stuck
+    private static Combinator step(Combinator c) {
+        List<Combinator> args = new ArrayList<>();
+        Combinator head = unwind(c, args);
+        int n = args.size();
+        Combinator result;
+        int used;
+
+        if (head instanceof ICombinator && n >= 1) {
+            result = args.get(0);
+            used = 1;
+        } else if (head instanceof KCombinator && n >= 2) {
+            result = args.get(0);
+            used = 2;
+        } else if (head instanceof CStarCombinator && n >= 2) {
+            result = Combinators.apply(args.get(1), args.get(0));
+            used = 2;
+        } else if (head instanceof WCombinator && n >= 2) {
+            result = Combinators.apply(Combinators.apply(args.get(0), args.get(1)), args.get(1));
+            used = 2;
+        } else if (head instanceof BCombinator && n >= 3) {
+            result = Combinators.apply(args.get(0), Combinators.apply(args.get(1), args.get(2)));
+            used = 3;
+        } else if (head instanceof CCombinator && n >= 3) {
+            result = Combinators.apply(Combinators.apply(args.get(0), args.get(2)), args.get(1));
+            used = 3;
+        } else if (head instanceof SCombinator && n >= 3) {
+            result = Combinators.apply(
+                Combinators.apply(args.get(0), args.get(2)), Combinators.apply(args.get(1), args.get(2)));
+            used = 3;
+        } else if (head instanceof BStarCombinator && n >= 4) {
+            result = Combinators.apply(args.get(0),
+                Combinators.apply(args.get(1), Combinators.apply(args.get(2), args.get(3))));
+            used = 4;
+        } else if (head instanceof CPrimeCombinator && n >= 4) {
+            result = Combinators.apply(
+                Combinators.apply(args.get(0), Combinators.apply(args.get(1), args.get(3))), args.get(2));
+            used = 4;
+        } else if (head instanceof SPrimeCombinator && n >= 4) {
+            result = Combinators.apply(
+                Combinators.apply(args.get(0), Combinators.apply(args.get(1), args.get(3))),
+                Combinators.apply(args.get(2), args.get(3)));
+            used = 4;
+        } else if (head instanceof BulkCombinator && n >= ((BulkCombinator) head).getArity()) {
+            used = ((BulkCombinator) head).getArity();
+            result = ((BulkCombinator) head).reduce(args.subList(0, used));
+        } else {
+            return null;
+        }
+
+        for (int i = used; i < n; i++) {
+            result = Combinators.apply(result, args.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public String toStringPrec(int prec) {
+        return "{" + pattern + "}";
+    }
+
+    @Override
+    public Combinator eval(Map<String, Combinator> env) {
+        return this;
+    }
+
+    @Override
+    public Set<String> getFreeVariables() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Combinator substitute(String varName, Combinator value) {
+        return this;
+    }
+}
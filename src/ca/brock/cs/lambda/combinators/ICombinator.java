@@ -7,7 +7,7 @@ import java.util.Set;
 public class ICombinator extends Combinator {
     private static final int precedence = 20;
 
-    public ICombinator() {}
+    ICombinator() {}
 
     @Override
     public String toStringPrec(int prec) {
@@ -7,7 +7,7 @@ import java.util.Set;
 public class KCombinator extends Combinator {
     private static final int precedence = 20;
 
-    public KCombinator() {}
+    KCombinator() {}
 
     @Override
     public String toStringPrec(int prec) {
@@ -7,7 +7,7 @@ import java.util.Set;
 public class SCombinator extends Combinator {
     private static final int precedence = 20;
 
-    public SCombinator() {}
+    SCombinator() {}
 
     @Override
     public String toStringPrec(int prec) {
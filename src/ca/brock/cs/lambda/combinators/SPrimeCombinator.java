@@ -0,0 +1,38 @@
+package ca.brock.cs.lambda.combinators;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turner's long-reach S' combinator: S' c f g x = c (f x) (g x)
+ */
+public class SPrimeCombinator extends Combinator {
+    private static final int precedence = 0;
+
+    SPrimeCombinator() {}
+
+    @Override
+    public String toStringPrec(int prec) {
+        String result = "S'";
+        if (prec > precedence) {
+            result = "(" + result + ")";
+        }
+        return result;
+    }
+
+    @Override
+    public Combinator eval(Map<String, Combinator> env) {
+        return this;
+    }
+
+    @Override
+    public Set<String> getFreeVariables() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Combinator substitute(String varName, Combinator value) {
+        return this;
+    }
+}
@@ -0,0 +1,194 @@
+package ca.brock.cs.lambda.combinators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A table of superinstructions and the peephole that puts them into a program.
+ *
+ * The rewrite walks each term from the root and replaces every subterm that is an instance of
+ * a pattern by the fused combinator applied to what the holes matched. Larger patterns are
+ * tried first, so {@code C (B (B ?1 ?2))} wins over {@code C (B ?1)} where both fit. A pattern
+ * only enters the table if its routine does the work of two or more of the ordinary ones, or
+ * is a compare-and-branch; see {@link FusedCombinator} for why that limit keeps sharing intact.
+ */
+public class Superinstructions {
+
+    public static final int DEFAULT_SIZE = 12;
+
+    /**
+     * The hottest fusable fragments of the example programs, gathered with
+     * {@code --profile-fragments} over programs/*.kv at the default optimization level. The
+     * counts are static occurrences summed over the corpus. IF never meets its comparison
+     * there: bracket abstraction leaves them apart, as in {@code C' IF (<= x)}.
+     */
+    private static final String[] DEFAULT_PATTERNS = {
+        "C (B* ?1 ?2 ?3)",                   // 117
+        "C (B* ?1 ?2 ?3) I",                 // 54
+        "C (C ?1 ?2)",                       // 50
+        "S (B* ?1 ?2 ?3)",                   // 28
+        "C (B* ?1 ?2 (C ?3 ?4))",            // 27
+        "C (C' ?1 ?2 ?3)",                   // 25
+        "C (C' ?1 ?2 +)",                    // 24
+        "S (C' ?1 ?2 ?3)",                   // 17
+        "S (B* ?1 ?2 (C' ?3 ?4 ?5))",        // 16
+        "C (B* ?1 ?2 ?3) (C' ?4 ?5 ?6)",     // 15
+        "C (B* ?1 ?2 (C' ?3 ?4 ?5))",        // 14
+        "C (C ?1 ?2) (C' ?3 ?4 ?5)",         // 13
+    };
+
+    private static final Set<String> SECTION_OPERATORS = new HashSet<>(Arrays.asList("+", "-", "*", "<=", "="));
+
+    private final List<FusedCombinator> table;
+    private final Map<FusedCombinator, Integer> uses = new LinkedHashMap<>();
+
+    private Superinstructions(List<FusedCombinator> table) {
+        List<FusedCombinator> sorted = new ArrayList<>(table);
+        sorted.sort(Comparator.comparingLong((FusedCombinator f) -> -f.getPattern().size()));
+        this.table = Collections.unmodifiableList(sorted);
+    }
+
+    public static Superinstructions standard() {
+        List<FusedCombinator> table = new ArrayList<>();
+        for (String pattern : DEFAULT_PATTERNS) {
+            table.add(Combinators.fused(Combinators.read(pattern)));
+        }
+        return new Superinstructions(table);
+    }
+
+    public static Superinstructions none() {
+        return new Superinstructions(Collections.emptyList());
+    }
+
+    /**
+     * The {@code size} most frequent fusable fragments of a profile.
+     */
+    public static Superinstructions fromProfile(FragmentProfile profile, int size) {
+        List<FusedCombinator> table = new ArrayList<>();
+        for (Combinator pattern : profile.top(profile.getCounts().size())) {
+            if (table.size() == size) {
+                break;
+            }
+            FusedCombinator fused = Combinators.fused(pattern);
+            if (isWorthFusing(fused)) {
+                table.add(fused);
+            }
+        }
+        return new Superinstructions(table);
+    }
+
+    public static boolean isWorthFusing(FusedCombinator fused) {
+        return fused.getKind() == FusedCombinator.Kind.BRANCH || fused.getReductions() >= 2;
+    }
+
+    public List<FusedCombinator> getTable() {
+        return table;
+    }
+
+    /**
+     * How many subterms each superinstruction replaced, over every rewrite so far.
+     */
+    public Map<FusedCombinator, Integer> getUses() {
+        return uses;
+    }
+
+    public Combinator rewrite(Combinator term) {
+        if (table.isEmpty()) {
+            return term;
+        }
+        return rewrite(term, new IdentityHashMap<>());
+    }
+
+    // Terms are DAGs after interning; done keeps a shared subterm from being rewritten twice
+    private Combinator rewrite(Combinator term, Map<Combinator, Combinator> done) {
+        if (!(term instanceof CombinatorApplication) || isLiteralSection(term)) {
+            return term;
+        }
+        Combinator cached = done.get(term);
+        if (cached != null) {
+            return cached;
+        }
+
+        Combinator result = null;
+        for (FusedCombinator fused : table) {
+            Combinator[] bindings = new Combinator[fused.getHoles() + 1];
+            if (match(fused.getPattern(), term, bindings, fused.getKind() == FusedCombinator.Kind.GRAPH)) {
+                result = fused;
+                for (int i = 1; i < bindings.length; i++) {
+                    result = Combinators.apply(result, rewrite(bindings[i], done));
+                }
+                uses.merge(fused, 1, Integer::sum);
+                break;
+            }
+        }
+        if (result == null) {
+            CombinatorApplication app = (CombinatorApplication) term;
+            result = Combinators.apply(rewrite(app.getFunction(), done), rewrite(app.getArgument(), done));
+        }
+
+        done.put(term, result);
+        return result;
+    }
+
+    /**
+     * Matches pattern against term, filling in the holes. A routine that builds its reduct
+     * must not swallow a literal section, which has a faster routine of its own.
+     */
+    private static boolean match(Combinator pattern, Combinator term, Combinator[] bindings, boolean keepSections) {
+        if (pattern instanceof CombinatorVariable) {
+            bindings[Integer.parseInt(((CombinatorVariable) pattern).getName().substring(1))] = term;
+            return true;
+        }
+        if (pattern instanceof CombinatorApplication) {
+            if (!(term instanceof CombinatorApplication) || (keepSections && isLiteralSection(term))) {
+                return false;
+            }
+            CombinatorApplication p = (CombinatorApplication) pattern;
+            CombinatorApplication t = (CombinatorApplication) term;
+            return match(p.getFunction(), t.getFunction(), bindings, keepSections)
+                && match(p.getArgument(), t.getArgument(), bindings, keepSections);
+        }
+        return pattern == term;
+    }
+
+    /**
+     * {@code op k} or {@code C op k} with an integer k, which the emitter compiles to a
+     * routine of its own.
+     */
+    static boolean isLiteralSection(Combinator term) {
+        if (!(term instanceof CombinatorApplication)) {
+            return false;
+        }
+        CombinatorApplication app = (CombinatorApplication) term;
+        if (!(app.getArgument() instanceof CombinatorConstant) || !isInteger(((CombinatorConstant) app.getArgument()).getValue())) {
+            return false;
+        }
+        Combinator function = app.getFunction();
+        if (function instanceof CombinatorApplication
+            && ((CombinatorApplication) function).getFunction() instanceof CCombinator) {
+            function = ((CombinatorApplication) function).getArgument();
+        }
+        return function instanceof CombinatorConstant
+            && SECTION_OPERATORS.contains(String.valueOf(((CombinatorConstant) function).getValue()));
+    }
+
+    private static boolean isInteger(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return true;
+        }
+        try {
+            Long.parseLong(String.valueOf(value));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
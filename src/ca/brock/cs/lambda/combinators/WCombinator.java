@@ -7,7 +7,7 @@ import java.util.Set;
 public class WCombinator extends Combinator {
     private static final int precedence = 0;
 
-    public WCombinator() {}
+    WCombinator() {}
 
     @Override
     public String toStringPrec(int prec) {
@@ -7,7 +7,7 @@ import java.util.Set;
 public class YCombinator extends Combinator {
     private static final int precedence = 20;
 
-    public YCombinator() {}
+    YCombinator() {}
 
     @Override
     public String toStringPrec(int prec) {
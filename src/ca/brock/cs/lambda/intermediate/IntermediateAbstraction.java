@@ -5,9 +5,8 @@ import ca.brock.cs.lambda.combinators.ICombinator;
 import ca.brock.cs.lambda.combinators.KCombinator;
 import ca.brock.cs.lambda.combinators.CombinatorApplication;
 import ca.brock.cs.lambda.CombinatorTranslator; // Import the static helper
-import java.util.HashSet;
+import ca.brock.cs.lambda.parser.VariableSet;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -43,10 +42,8 @@ public class IntermediateAbstraction extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = body.getFreeVariables();
-        freeVars.remove(parameter); // The parameter is bound by this abstraction
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return body.getFreeVariables().without(parameter); // The parameter is bound by this abstraction
     }
 
 //    /**
@@ -158,8 +155,17 @@ public class IntermediateAbstraction extends IntermediateTerm {
  */
        public IntermediateTerm methodT(boolean optimize) {
         // First, recursively apply methodT to the body to ensure inner lambdas are eliminated first.
-        IntermediateTerm transformedBody = body.methodT(optimize);
+        return abstractOver(parameter, body.methodT(optimize), optimize);
+    }
 
+    /**
+     * Eliminates λx from a body that is already lambda-free, i.e. T[λx.E] given T[E].
+     * The rules recurse on the subterms of T[E] directly rather than wrapping them in a new
+     * abstraction and calling methodT again, which would re-transform (and re-allocate, losing
+     * the cached free variables of) every subterm once per enclosing parameter.
+     * @return The eliminated term, or the abstraction itself if no rule applies.
+     */
+    private static IntermediateTerm abstractOver(String parameter, IntermediateTerm transformedBody, boolean optimize) {
         // Rule 1: T[λx.x] -> I
         if (transformedBody instanceof IntermediateVariable) {
             if (((IntermediateVariable) transformedBody).getName().equals(parameter)) {
@@ -183,34 +189,30 @@ public class IntermediateAbstraction extends IntermediateTerm {
 
             // Optimization 1 (Rule 4): T[λx.(E1 E2)] -> (C T[λx.E1] T[E2]) if x is free in E1 but not E2
             if (optimize && xFreeInFunc && !xFreeInArg) {
-                IntermediateTerm transformedFunc = new IntermediateAbstraction(parameter, func).methodT(optimize);
-                return new IntermediateApplication(
-                    new IntermediateApplication(new IntermediateCCombinator(), transformedFunc),
-                    arg
-                );
+                IntermediateTerm transformedFunc = abstractOver(parameter, func, optimize);
+                return CombinatorTranslator.cApplication(transformedFunc, arg);
             }
 
             // Optimization 2 (Rule 5): T[λx.(E1 E2)] -> (B T[E1] T[λx.E2]) if x is free in E2 but not E1
             if (optimize && !xFreeInFunc && xFreeInArg) {
-                IntermediateTerm transformedArg = new IntermediateAbstraction(parameter, arg).methodT(optimize);
-                return new IntermediateApplication(
-                    new IntermediateApplication(new IntermediateBCombinator(), func),
-                    transformedArg
-                );
+                IntermediateTerm transformedArg = abstractOver(parameter, arg, optimize);
+                return CombinatorTranslator.bApplication(func, transformedArg);
             }
 
             // Default Application Rule (Rule 3): T[λx.(E1 E2)] -> (S T[λx.E1] T[λx.E2])
-            IntermediateTerm transformedFunc = new IntermediateAbstraction(parameter, func).methodT(optimize);
-            IntermediateTerm transformedArg = new IntermediateAbstraction(parameter, arg).methodT(optimize);
+            IntermediateTerm transformedFunc = abstractOver(parameter, func, optimize);
+            IntermediateTerm transformedArg = abstractOver(parameter, arg, optimize);
+            if (optimize) {
+                return CombinatorTranslator.sApplication(transformedFunc, transformedArg);
+            }
             return new IntermediateApplication(
                 new IntermediateApplication(new IntermediateSCombinator(), transformedFunc),
                 transformedArg
             );
         }
 
-
         // Failsafe
-        return this;
+        return new IntermediateAbstraction(parameter, transformedBody);
     }
 
 
@@ -2,8 +2,8 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import java.util.HashSet;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 /**
  * Represents an application of one intermediate term to another.
@@ -37,11 +37,8 @@ public class IntermediateApplication extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(function.getFreeVariables());
-        freeVars.addAll(argument.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return function.getFreeVariables().union(argument.getFreeVariables());
     }
 
 //    /**
@@ -74,6 +71,6 @@ public class IntermediateApplication extends IntermediateTerm {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new CombinatorApplication(function.toCombinatorTerm(), argument.toCombinatorTerm());
+        return Combinators.apply(function.toCombinatorTerm(), argument.toCombinatorTerm());
     }
 }
@@ -2,6 +2,7 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.BCombinator;
 import ca.brock.cs.lambda.combinators.Combinator;
+import ca.brock.cs.lambda.combinators.Combinators;
 
 /**
  * Represents the B combinator in the intermediate representation.
@@ -38,6 +39,6 @@ public class IntermediateBCombinator extends IntermediateCombinator {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new BCombinator();
+        return Combinators.B;
     }
 }
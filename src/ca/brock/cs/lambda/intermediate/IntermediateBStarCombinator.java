@@ -0,0 +1,33 @@
+package ca.brock.cs.lambda.intermediate;
+
+import ca.brock.cs.lambda.combinators.Combinator;
+import ca.brock.cs.lambda.combinators.Combinators;
+
+/**
+ * Represents Turner's B* combinator in the intermediate representation.
+ * B* c f g x = c (f (g x))
+ */
+public class IntermediateBStarCombinator extends IntermediateCombinator {
+
+    public IntermediateBStarCombinator() {
+    }
+
+    @Override
+    public String toStringPrec(int prec) {
+        String result = "B*";
+        if (prec > precedence) {
+            result = "(" + result + ")";
+        }
+        return result;
+    }
+
+    @Override
+    public IntermediateTerm methodT(boolean optimize) {
+        return this;
+    }
+
+    @Override
+    public Combinator toCombinatorTerm() {
+        return Combinators.B_STAR;
+    }
+}
@@ -2,8 +2,8 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorConstant;
-import java.util.Collections;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 /**
  * Represents a boolean literal in the intermediate representation.
@@ -25,8 +25,8 @@ public class IntermediateBooleanLiteral extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        return Collections.emptySet(); // Boolean literals have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Boolean literals have no free variables
     }
 
     /**
@@ -49,6 +49,6 @@ public class IntermediateBooleanLiteral extends IntermediateTerm {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new CombinatorConstant(value);
+        return Combinators.constant(value);
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package ca.brock.cs.lambda.intermediate;
+
+import ca.brock.cs.lambda.combinators.BulkCombinator;
+import ca.brock.cs.lambda.combinators.Combinator;
+import ca.brock.cs.lambda.combinators.Combinators;
+
+/**
+ * Represents a bulk combinator Bn, Cn, Sn or Kn in the intermediate representation.
+ * @see BulkCombinator
+ */
+public class IntermediateBulkCombinator extends IntermediateCombinator {
+    private final BulkCombinator.Kind kind;
+    private final int count;
+
+    public IntermediateBulkCombinator(BulkCombinator.Kind kind, int count) {
+        this.kind = kind;
+        this.count = count;
+    }
+
+    @Override
+    public String toStringPrec(int prec) {
+        String result = kind.name() + count;
+        if (prec > precedence) {
+            result = "(" + result + ")";
+        }
+        return result;
+    }
+
+    @Override
+    public IntermediateTerm methodT(boolean optimize) {
+        return this;
+    }
+
+    @Override
+    public Combinator toCombinatorTerm() {
+        return Combinators.bulk(kind, count);
+    }
+}
@@ -2,6 +2,7 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.CCombinator;
 import ca.brock.cs.lambda.combinators.Combinator;
+import ca.brock.cs.lambda.combinators.Combinators;
 
 /**
  * Represents the C combinator in the intermediate representation.
@@ -39,6 +40,6 @@ public class IntermediateCCombinator extends IntermediateCombinator {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new CCombinator();
+        return Combinators.C;
     }
 }
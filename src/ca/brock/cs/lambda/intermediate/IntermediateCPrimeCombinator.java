@@ -0,0 +1,33 @@
+package ca.brock.cs.lambda.intermediate;
+
+import ca.brock.cs.lambda.combinators.Combinator;
+import ca.brock.cs.lambda.combinators.Combinators;
+
+/**
+ * Represents Turner's C' combinator in the intermediate representation.
+ * C' c f g x = c (f x) g
+ */
+public class IntermediateCPrimeCombinator extends IntermediateCombinator {
+
+    public IntermediateCPrimeCombinator() {
+    }
+
+    @Override
+    public String toStringPrec(int prec) {
+        String result = "C'";
+        if (prec > precedence) {
+            result = "(" + result + ")";
+        }
+        return result;
+    }
+
+    @Override
+    public IntermediateTerm methodT(boolean optimize) {
+        return this;
+    }
+
+    @Override
+    public Combinator toCombinatorTerm() {
+        return Combinators.C_PRIME;
+    }
+}
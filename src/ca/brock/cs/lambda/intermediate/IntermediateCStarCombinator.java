@@ -1,9 +1,7 @@
 package ca.brock.cs.lambda.intermediate;
 
-import ca.brock.cs.lambda.combinators.CStarCombinator;
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 
 import java.util.Collections;
 import java.util.Map;
@@ -35,6 +33,6 @@ public class IntermediateCStarCombinator extends IntermediateCombinator {
 
     @Override
     public Combinator toCombinatorTerm() {
-        return new CStarCombinator();
+        return Combinators.C_STAR;
     }
 }
\ No newline at end of file
@@ -2,9 +2,8 @@
 package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import java.util.Collections;
+import ca.brock.cs.lambda.parser.VariableSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Abstract base class for combinators (S, K, I, Y, B, C) in the intermediate representation.
@@ -28,8 +27,8 @@ public abstract class IntermediateCombinator extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        return Collections.emptySet(); // Pure combinators have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Pure combinators have no free variables
     }
 
     // toCombinatorTerm() will be implemented by concrete subclasses (e.g., IntermediateICombinator)
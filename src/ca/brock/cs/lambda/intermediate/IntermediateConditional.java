@@ -1,11 +1,8 @@
 package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
-
-import java.util.HashSet;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 public class IntermediateConditional extends IntermediateTerm {
     private IntermediateTerm condition;
@@ -44,12 +41,8 @@ public class IntermediateConditional extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(condition.getFreeVariables());
-        freeVars.addAll(trueBranch.getFreeVariables());
-        freeVars.addAll(falseBranch.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return condition.getFreeVariables().union(trueBranch.getFreeVariables()).union(falseBranch.getFreeVariables());
     }
 
 //    /**
@@ -100,9 +93,9 @@ public class IntermediateConditional extends IntermediateTerm {
         Combinator translatedTrueBranch = trueBranch.toCombinatorTerm();
         Combinator translatedFalseBranch = falseBranch.toCombinatorTerm();
 
-        return new CombinatorApplication(
-            new CombinatorApplication(
-                new CombinatorApplication(new CombinatorConstant("IF"), translatedCondition),
+        return Combinators.apply(
+            Combinators.apply(
+                Combinators.apply(Combinators.constant("IF"), translatedCondition),
                 translatedTrueBranch
             ),
             translatedFalseBranch
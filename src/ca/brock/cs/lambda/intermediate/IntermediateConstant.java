@@ -2,10 +2,9 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateTerm;
-
-import java.util.Collections;
-import java.util.Set;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 /**
  * Represents a constant (like an integer, boolean, or operator symbol) in the intermediate representation.
@@ -42,8 +41,8 @@ public class IntermediateConstant extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        return Collections.emptySet(); // Constants have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Constants have no free variables
     }
 
 //    /**
@@ -73,6 +72,6 @@ public class IntermediateConstant extends IntermediateTerm {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new CombinatorConstant(value);
+        return Combinators.constant(value);
     }
 }
@@ -1,13 +1,12 @@
 package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.Unifier;
+import ca.brock.cs.lambda.parser.VariableSet;
 
-import java.util.Collections;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Represents a constructor of a user-defined data type in the intermediate representation.
@@ -30,8 +29,8 @@ public class IntermediateConstructor extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        return Collections.emptySet(); // Constructors have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Constructors have no free variables
     }
 
     @Override
@@ -43,6 +42,6 @@ public class IntermediateConstructor extends IntermediateTerm {
     @Override
     public Combinator toCombinatorTerm() {
         // Converts the IntermediateConstructor to its final Combinator form.
-        return new CombinatorConstant(name);
+        return Combinators.constant(name);
     }
 }
@@ -2,6 +2,7 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.ICombinator;
+import ca.brock.cs.lambda.combinators.Combinators;
 
 /**
  * Represents the I combinator in the intermediate representation.
@@ -36,6 +37,6 @@ public class IntermediateICombinator extends IntermediateCombinator {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new ICombinator();
+        return Combinators.I;
     }
 }
@@ -2,6 +2,7 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.KCombinator;
+import ca.brock.cs.lambda.combinators.Combinators;
 
 /**
  * Represents the K combinator in the intermediate representation.
@@ -37,6 +38,6 @@ public class IntermediateKCombinator extends IntermediateCombinator {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new KCombinator();
+        return Combinators.K;
     }
 }
@@ -2,9 +2,8 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
-import java.util.HashSet;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 public class IntermediateLEqual extends IntermediateTerm {
     private IntermediateTerm left;
@@ -35,11 +34,8 @@ public class IntermediateLEqual extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(left.getFreeVariables());
-        freeVars.addAll(right.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return left.getFreeVariables().union(right.getFreeVariables());
     }
 
 //    /**
@@ -68,9 +64,9 @@ public class IntermediateLEqual extends IntermediateTerm {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        Combinator leOp = new CombinatorConstant("<=");
+        Combinator leOp = Combinators.constant("<=");
         Combinator translatedLeft = left.toCombinatorTerm();
         Combinator translatedRight = right.toCombinatorTerm();
-        return new CombinatorApplication(new CombinatorApplication(leOp, translatedLeft), translatedRight);
+        return Combinators.apply(Combinators.apply(leOp, translatedLeft), translatedRight);
     }
 }
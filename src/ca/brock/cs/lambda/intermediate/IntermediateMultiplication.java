@@ -2,9 +2,8 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
-import java.util.HashSet;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 public class IntermediateMultiplication extends IntermediateTerm {
     private IntermediateTerm left;
@@ -35,11 +34,8 @@ public class IntermediateMultiplication extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(left.getFreeVariables());
-        freeVars.addAll(right.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return left.getFreeVariables().union(right.getFreeVariables());
     }
 
 //    /**
@@ -67,9 +63,9 @@ public class IntermediateMultiplication extends IntermediateTerm {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        Combinator mulOp = new CombinatorConstant("*");
+        Combinator mulOp = Combinators.constant("*");
         Combinator translatedLeft = left.toCombinatorTerm();
         Combinator translatedRight = right.toCombinatorTerm();
-        return new CombinatorApplication(new CombinatorApplication(mulOp, translatedLeft), translatedRight);
+        return Combinators.apply(Combinators.apply(mulOp, translatedLeft), translatedRight);
     }
 }
@@ -2,9 +2,8 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
-import java.util.HashSet;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 public class IntermediateNot extends IntermediateTerm {
     private IntermediateTerm operand;
@@ -29,7 +28,7 @@ public class IntermediateNot extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
+    protected VariableSet computeFreeVariables() {
         return operand.getFreeVariables();
     }
 
@@ -58,8 +57,8 @@ public class IntermediateNot extends IntermediateTerm {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        Combinator notOp = new CombinatorConstant("not");
+        Combinator notOp = Combinators.constant("not");
         Combinator translatedOperand = operand.toCombinatorTerm();
-        return new CombinatorApplication(notOp, translatedOperand);
+        return Combinators.apply(notOp, translatedOperand);
     }
 }
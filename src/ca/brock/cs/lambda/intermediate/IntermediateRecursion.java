@@ -2,9 +2,8 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.YCombinator;
-import java.util.HashSet;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 public class IntermediateRecursion extends IntermediateTerm {
     private String name;
@@ -35,10 +34,8 @@ public class IntermediateRecursion extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = body.getFreeVariables();
-        freeVars.remove(name); // The name is bound by this recursion
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return body.getFreeVariables().without(name); // The name is bound by this recursion
     }
 
 //    /**
@@ -97,6 +94,6 @@ public class IntermediateRecursion extends IntermediateTerm {
         // the rules with the `optimize` flag.
         Combinator translatedLambda = lambdaEquivalent.methodT(true).toCombinatorTerm(); // Assuming optimization for Y's internal lambda
 
-        return new CombinatorApplication(new YCombinator(), translatedLambda);
+        return Combinators.apply(Combinators.Y, translatedLambda);
     }
 }
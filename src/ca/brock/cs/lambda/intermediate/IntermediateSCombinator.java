@@ -2,6 +2,7 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.SCombinator;
+import ca.brock.cs.lambda.combinators.Combinators;
 
 /**
  * Represents the S combinator in the intermediate representation.
@@ -37,6 +38,6 @@ public class IntermediateSCombinator extends IntermediateCombinator {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new SCombinator();
+        return Combinators.S;
     }
 }
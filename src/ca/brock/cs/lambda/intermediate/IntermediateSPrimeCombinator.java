@@ -0,0 +1,33 @@
+package ca.brock.cs.lambda.intermediate;
+
+import ca.brock.cs.lambda.combinators.Combinator;
+import ca.brock.cs.lambda.combinators.Combinators;
+
+/**
+ * Represents Turner's S' combinator in the intermediate representation.
+ * S' c f g x = c (f x) (g x)
+ */
+public class IntermediateSPrimeCombinator extends IntermediateCombinator {
+
+    public IntermediateSPrimeCombinator() {
+    }
+
+    @Override
+    public String toStringPrec(int prec) {
+        String result = "S'";
+        if (prec > precedence) {
+            result = "(" + result + ")";
+        }
+        return result;
+    }
+
+    @Override
+    public IntermediateTerm methodT(boolean optimize) {
+        return this;
+    }
+
+    @Override
+    public Combinator toCombinatorTerm() {
+        return Combinators.S_PRIME;
+    }
+}
@@ -2,7 +2,7 @@
 package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import java.util.Set;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 /**
  * Abstract base class for terms in the intermediate representation.
@@ -13,6 +13,8 @@ public abstract class IntermediateTerm {
 
     protected static final int precedence = 0; // Default precedence for intermediate terms
 
+    private VariableSet freeVariables;
+
     /**
      * Returns a string representation of the term with respect to precedence.
      * @param prec The current precedence level.
@@ -26,10 +28,21 @@ public abstract class IntermediateTerm {
     }
 
     /**
-     * Computes the set of free variables in this intermediate term.
-     * @return A set of strings, where each string is the name of a free variable.
+     * The set of free variables in this intermediate term, computed once and cached.
+     * @return An immutable set of the names of the free variables.
+     */
+    public final VariableSet getFreeVariables() {
+        if (freeVariables == null) {
+            freeVariables = computeFreeVariables();
+        }
+        return freeVariables;
+    }
+
+    /**
+     * Computes the free variables from those of the subterms. Called once per node: terms do
+     * not change after construction, so {@link #getFreeVariables()} caches the result.
      */
-    public abstract Set<String> getFreeVariables();
+    protected abstract VariableSet computeFreeVariables();
 
     /**
      * Applies the T[] transformation (lambda elimination) to this intermediate term.
@@ -2,9 +2,8 @@ package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorVariable;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import ca.brock.cs.lambda.combinators.Combinators;
+import ca.brock.cs.lambda.parser.VariableSet;
 
 /**
  * Represents a variable in the intermediate representation.
@@ -26,10 +25,8 @@ public class IntermediateVariable extends IntermediateTerm {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.add(name);
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.of(name);
     }
 
 //    /**
@@ -58,6 +55,6 @@ public class IntermediateVariable extends IntermediateTerm {
      */
     @Override
     public Combinator toCombinatorTerm() {
-        return new CombinatorVariable(name);
+        return Combinators.variable(name);
     }
 }
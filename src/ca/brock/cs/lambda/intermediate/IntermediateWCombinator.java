@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.intermediate;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.WCombinator;
+import ca.brock.cs.lambda.combinators.Combinators;
 
 import java.util.Collections;
 import java.util.Map;
@@ -33,6 +32,6 @@ public class IntermediateWCombinator extends IntermediateCombinator {
 
     @Override
     public Combinator toCombinatorTerm() {
-        return new WCombinator();
+        return Combinators.W;
     }
 }
\ No newline at end of file
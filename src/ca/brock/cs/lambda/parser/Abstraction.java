@@ -11,7 +11,6 @@ import ca.brock.cs.lambda.types.Unifier;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Abstraction extends Term {
@@ -101,10 +100,8 @@ public class Abstraction extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = body.getFreeVariables();
-        freeVars.remove(parameter); // Remove the parameter as it's bound by this abstraction
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return body.getFreeVariables().without(parameter); // Remove the parameter as it's bound by this abstraction
     }
 
     /**
@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateAddition;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
@@ -13,9 +12,7 @@ import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Addition extends Term {
     private Term left;
@@ -91,21 +88,18 @@ public class Addition extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(left.getFreeVariables());
-        freeVars.addAll(right.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return left.getFreeVariables().union(right.getFreeVariables());
     }
 
     @Override
     public Combinator translate() {
         // Translate 'addition' to an application of the '+' combinator
         // T[L + R] = (+ T[L]) T[R]
-        Combinator plusOp = new CombinatorConstant("+"); // Represents the '+' operator
+        Combinator plusOp = Combinators.constant("+"); // Represents the '+' operator
         Combinator translatedLeft = left.translate();
         Combinator translatedRight = right.translate();
-        return new CombinatorApplication(new CombinatorApplication(plusOp, translatedLeft), translatedRight);
+        return Combinators.apply(Combinators.apply(plusOp, translatedLeft), translatedRight);
     }
 
 //    /**
@@ -1,7 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateTerm;
 import ca.brock.cs.lambda.logging.AppLogger;
@@ -13,10 +13,8 @@ import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class Application extends Term {
     private Term function;
@@ -265,17 +263,14 @@ public String toStringPrec(int prec) {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(function.getFreeVariables());
-        freeVars.addAll(argument.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return function.getFreeVariables().union(argument.getFreeVariables());
     }
 
     @Override
     public Combinator translate() {
         // T[M N] = T[M] T[N]
-        return new CombinatorApplication(function.translate(), argument.translate());
+        return Combinators.apply(function.translate(), argument.translate());
     }
 
     /**
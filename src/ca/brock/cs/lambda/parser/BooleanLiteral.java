@@ -1,16 +1,14 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateTerm;
 import ca.brock.cs.lambda.types.Constant;
 import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class BooleanLiteral extends Term {
         private boolean value;
@@ -45,14 +43,14 @@ public class BooleanLiteral extends Term {
         return this; // Boolean literals don't contain variables to substitute
     }
     @Override
-    public Set<String> getFreeVariables() {
-        return new HashSet<>(); // Literals have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Literals have no free variables
     }
 
     @Override
     public Combinator translate() {
         // Translate boolean literal to a CombinatorConstant
-        return new CombinatorConstant(value);
+        return Combinators.constant(value);
     }
 
     /**
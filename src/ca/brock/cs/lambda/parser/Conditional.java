@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateConditional;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
@@ -13,9 +12,7 @@ import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Conditional extends Term {
     private Term condition;
@@ -97,12 +94,8 @@ public class Conditional extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(condition.getFreeVariables());
-        freeVars.addAll(trueBranch.getFreeVariables());
-        freeVars.addAll(falseBranch.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return condition.getFreeVariables().union(trueBranch.getFreeVariables()).union(falseBranch.getFreeVariables());
     }
 
     @Override
@@ -163,11 +156,11 @@ public class Conditional extends Term {
         // This would require a special IF combinator or a more complex series of applications.
         // For demonstration, let's make a CombinatorConstant for "IF" and apply it.
         // This won't truly evaluate the conditional but represents it in combinator form.
-        Combinator ifCombinator = new CombinatorConstant("IF"); // Represents the conditional operator
+        Combinator ifCombinator = Combinators.constant("IF"); // Represents the conditional operator
 
-        Combinator app1 = new CombinatorApplication(ifCombinator, translatedCondition);
-        Combinator app2 = new CombinatorApplication(app1, translatedTrueBranch);
-        return new CombinatorApplication(app2, translatedFalseBranch);
+        Combinator app1 = Combinators.apply(ifCombinator, translatedCondition);
+        Combinator app2 = Combinators.apply(app1, translatedTrueBranch);
+        return Combinators.apply(app2, translatedFalseBranch);
     }
 
 //    /**
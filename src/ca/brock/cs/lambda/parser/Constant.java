@@ -1,7 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateTerm;
 import ca.brock.cs.lambda.types.FType;
@@ -9,9 +9,7 @@ import ca.brock.cs.lambda.types.TVar;
 import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Constant extends Term {
     private String value;
@@ -81,8 +79,8 @@ public class Constant extends Term {
         return this; // Constants don't contain variables to substitute
     }
     @Override
-    public Set<String> getFreeVariables() {
-        return new HashSet<>(); // Constants have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Constants have no free variables
     }
 
     @Override
@@ -91,9 +89,9 @@ public class Constant extends Term {
         // Special case for operators that are constants (e.g., "+", "and")
         // They will be wrapped as CombinatorConstant containing their string representation.
         if (operator != null) {
-            return new CombinatorConstant(operator.getSymbol());
+            return Combinators.constant(operator.getSymbol());
         }
-        return new CombinatorConstant(value);
+        return Combinators.constant(value);
     }
 
     /**
@@ -14,11 +14,9 @@ import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Represents a constructor of a user-defined data type (e.g., 'emptylist', 'cons').
@@ -157,8 +155,8 @@ public class Constructor extends Term implements DefinedValue {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        return Collections.emptySet(); // Constructors have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Constructors have no free variables
     }
 
 //    @Override
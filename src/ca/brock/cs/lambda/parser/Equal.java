@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateEqual;
@@ -12,9 +11,7 @@ import ca.brock.cs.lambda.types.TVar;
 import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Equal extends Term {
     private Term left;
@@ -84,21 +81,18 @@ public class Equal extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(left.getFreeVariables());
-        freeVars.addAll(right.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return left.getFreeVariables().union(right.getFreeVariables());
     }
 
     @Override
     public Combinator translate() {
         // Translate 'equal' to an application of the '=' combinator
         // T[L = R] = (= T[L]) T[R]
-        Combinator equalOp = new CombinatorConstant("="); // Represents the '=' operator
+        Combinator equalOp = Combinators.constant("="); // Represents the '=' operator
         Combinator translatedLeft = left.translate();
         Combinator translatedRight = right.translate();
-        return new CombinatorApplication(new CombinatorApplication(equalOp, translatedLeft), translatedRight);
+        return Combinators.apply(Combinators.apply(equalOp, translatedLeft), translatedRight);
     }
 
 //    /**
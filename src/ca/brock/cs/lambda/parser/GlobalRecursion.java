@@ -0,0 +1,56 @@
+package ca.brock.cs.lambda.parser;
+
+import ca.brock.cs.lambda.types.DefinedValue;
+import ca.brock.cs.lambda.types.FunctionDefinition;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the knot of a top-level {@code name = rec f. M} by a reference to the global itself,
+ * giving {@code name = M[f := name]}.
+ *
+ * The back end resolves a free global to its label, so the recursive call jumps straight to
+ * the definition instead of going through the cyclic node that {@code Y} allocates on every
+ * entry. Mutually recursive globals already refer to each other by name; after this pass the
+ * whole group is recursive through the symbol map only, which the inliner and the partial
+ * evaluator detect from the reference graph (see {@code CombinatorInliner.recursiveGlobals}).
+ *
+ * Nested recursions inside a body are local knots and keep their {@code Y}.
+ */
+public final class GlobalRecursion {
+
+    private GlobalRecursion() {}
+
+    public static Map<String, DefinedValue> transformProgram(Map<String, DefinedValue> symbolMap) {
+        Map<String, DefinedValue> result = new HashMap<>();
+        for (Map.Entry<String, DefinedValue> entry : symbolMap.entrySet()) {
+            DefinedValue value = entry.getValue();
+            if (value instanceof FunctionDefinition && ((FunctionDefinition) value).getTerm() instanceof Recursion) {
+                FunctionDefinition functionDefinition = (FunctionDefinition) value;
+                result.put(
+                    entry.getKey(),
+                    new FunctionDefinition(
+                        functionDefinition.getName(),
+                        functionDefinition.getType(),
+                        selfReference(entry.getKey(), functionDefinition.getTerm())
+                    )
+                );
+            } else {
+                result.put(entry.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    // rec f. rec g. M, with f and g both standing for the global
+    private static Term selfReference(String globalName, Term term) {
+        while (term instanceof Recursion) {
+            Recursion rec = (Recursion) term;
+            term = rec.getName().equals(globalName)
+                ? rec.getBody()
+                : rec.getBody().substitute(rec.getName(), new Variable(globalName));
+        }
+        return term;
+    }
+}
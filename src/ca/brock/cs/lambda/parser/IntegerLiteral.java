@@ -2,6 +2,7 @@ package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
 import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateTerm;
 import ca.brock.cs.lambda.parser.Term;
@@ -9,9 +10,7 @@ import ca.brock.cs.lambda.types.Constant;
 import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class IntegerLiteral extends Term {
     private int value;
@@ -45,8 +44,8 @@ public class IntegerLiteral extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        return new HashSet<>(); // Literals have no free variables
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.EMPTY; // Literals have no free variables
     }
 
     /**
@@ -55,7 +54,7 @@ public class IntegerLiteral extends Term {
      */
     @Override
     public Combinator translate() {
-        return new CombinatorConstant(value);
+        return Combinators.constant(value);
     }
 
     /**
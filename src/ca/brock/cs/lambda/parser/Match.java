@@ -17,9 +17,7 @@ import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -277,13 +275,12 @@ public class Match extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = inputTerm.getFreeVariables();
+    protected VariableSet computeFreeVariables() {
+        VariableSet freeVars = inputTerm.getFreeVariables();
         for (Case c : cases) {
             // Get free variables from the result term, but remove any variables bound by the pattern
-            Set<String> caseFreeVars = c.getResult().getFreeVariables();
-            caseFreeVars.removeAll(c.getPattern().getBoundVariables());
-            freeVars.addAll(caseFreeVars);
+            VariableSet caseFreeVars = c.getResult().getFreeVariables().withoutAll(c.getPattern().getBoundVariables());
+            freeVars = freeVars.union(caseFreeVars);
         }
         return freeVars;
     }
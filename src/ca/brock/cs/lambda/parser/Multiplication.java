@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateMultiplication;
@@ -13,9 +12,7 @@ import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Multiplication extends Term {
     private Term left;
@@ -92,11 +89,8 @@ public class Multiplication extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(left.getFreeVariables());
-        freeVars.addAll(right.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return left.getFreeVariables().union(right.getFreeVariables());
     }
 
     /**
@@ -107,12 +101,12 @@ public class Multiplication extends Term {
     @Override
     public Combinator translate() {
         // Create a CombinatorConstant for the multiplication operator "*"
-        Combinator multiplyOp = new CombinatorConstant("*");
+        Combinator multiplyOp = Combinators.constant("*");
         // Translate the left and right operands
         Combinator translatedLeft = left.translate();
         Combinator translatedRight = right.translate();
         // Apply the operator to the translated left and then the result to the translated right
-        return new CombinatorApplication(new CombinatorApplication(multiplyOp, translatedLeft), translatedRight);
+        return Combinators.apply(Combinators.apply(multiplyOp, translatedLeft), translatedRight);
     }
 
 //    /**
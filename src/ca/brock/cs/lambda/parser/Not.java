@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateNot;
@@ -15,7 +14,6 @@ import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
 import java.util.Map;
-import java.util.Set;
 
 public class Not extends Term {
     private Term operand;
@@ -63,7 +61,7 @@ public class Not extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
+    protected VariableSet computeFreeVariables() {
         return operand.getFreeVariables();
     }
 
@@ -71,9 +69,9 @@ public class Not extends Term {
     public Combinator translate() {
         // Translate 'not' to an application of the 'not' combinator
         // T[not Op] = (not T[Op])
-        Combinator notOp = new CombinatorConstant("not"); // Represents the 'not' operator
+        Combinator notOp = Combinators.constant("not"); // Represents the 'not' operator
         Combinator translatedOperand = operand.translate();
-        return new CombinatorApplication(notOp, translatedOperand);
+        return Combinators.apply(notOp, translatedOperand);
     }
 
 //    /**
@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateOr;
@@ -13,9 +12,7 @@ import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Or extends Term {
     private Term left;
@@ -94,21 +91,18 @@ public class Or extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(left.getFreeVariables());
-        freeVars.addAll(right.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return left.getFreeVariables().union(right.getFreeVariables());
     }
 
     @Override
     public Combinator translate() {
         // Translate 'or' to an application of the 'or' combinator
         // T[L or R] = (or T[L]) T[R]
-        Combinator orOp = new CombinatorConstant("or"); // Represents the 'or' operator
+        Combinator orOp = Combinators.constant("or"); // Represents the 'or' operator
         Combinator translatedLeft = left.translate();
         Combinator translatedRight = right.translate();
-        return new CombinatorApplication(new CombinatorApplication(orOp, translatedLeft), translatedRight);
+        return Combinators.apply(Combinators.apply(orOp, translatedLeft), translatedRight);
     }
 
 //    /**
@@ -1,9 +1,8 @@
     package ca.brock.cs.lambda.parser;
 
     import ca.brock.cs.lambda.combinators.Combinator;
-    import ca.brock.cs.lambda.combinators.CombinatorApplication;
     import ca.brock.cs.lambda.combinators.CombinatorTranslator;
-    import ca.brock.cs.lambda.combinators.YCombinator;
+    import ca.brock.cs.lambda.combinators.Combinators;
     import ca.brock.cs.lambda.intermediate.IntermediateRecursion;
     import ca.brock.cs.lambda.intermediate.IntermediateTerm;
     import ca.brock.cs.lambda.types.TVar;
@@ -105,10 +104,8 @@
         }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = body.getFreeVariables();
-        freeVars.remove(name); // The 'name' is bound by the 'rec' construct
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return body.getFreeVariables().without(name); // The 'name' is bound by the 'rec' construct
     }
 
     @Override
@@ -116,7 +113,7 @@
         // T[rec x. M] = Y (λx.M)
         // Here, λx.M needs to be translated first, which will be done by CombinatorTranslator.translateAbstraction.
         Combinator translatedLambdaBody = CombinatorTranslator.translateAbstraction(name, body);
-        return new CombinatorApplication(new YCombinator(), translatedLambdaBody);
+        return Combinators.apply(Combinators.Y, translatedLambdaBody);
     }
 
     /**
@@ -15,13 +15,29 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  * This keeps source-level ADTs for parsing and type checking, but ensures that
  * the intermediate/combinator/x86 stages only see the ordinary core language.
+ *
+ * With native constructors the backend represents ADT values as tagged heap cells
+ * instead: a constructor becomes the constant {@code %con:Name} (a runtime routine of
+ * the constructor's arity) and {@code match e with ...} becomes
+ * {@code %match:Type e branch0 ... branchN}, one branch per constructor in
+ * declaration order, each abstracted over that constructor's fields.
  */
 public final class ScottEncoding {
     private static final AtomicInteger freshCounter = new AtomicInteger();
 
+    public static final String NATIVE_CONSTRUCTOR_PREFIX = "%con:";
+    public static final String NATIVE_MATCH_PREFIX = "%match:";
+
     private ScottEncoding() {}
 
     public static Map<String, DefinedValue> desugarProgram(Map<String, DefinedValue> symbolMap) {
+        return desugarProgram(symbolMap, false);
+    }
+
+    public static Map<String, DefinedValue> desugarProgram(
+        Map<String, DefinedValue> symbolMap,
+        boolean nativeConstructors
+    ) {
         Map<String, DefinedValue> result = new HashMap<>();
         for (Map.Entry<String, DefinedValue> entry : symbolMap.entrySet()) {
             DefinedValue value = entry.getValue();
@@ -32,7 +48,7 @@ public final class ScottEncoding {
                     new FunctionDefinition(
                         functionDefinition.getName(),
                         functionDefinition.getType(),
-                        desugar(functionDefinition.getTerm())
+                        desugar(functionDefinition.getTerm(), nativeConstructors)
                     )
                 );
             } else {
@@ -43,6 +59,10 @@ public final class ScottEncoding {
     }
 
     public static Term desugar(Term term) {
+        return desugar(term, false);
+    }
+
+    private static Term desugar(Term term, boolean nativeConstructors) {
         if (term == null) {
             return null;
         }
@@ -56,81 +76,83 @@ public final class ScottEncoding {
 
         if (term instanceof Constructor) {
             Constructor c = (Constructor) term;
-            return encodeConstructor(c.getName());
+            return nativeConstructors
+                ? new Constant(NATIVE_CONSTRUCTOR_PREFIX + c.getName())
+                : encodeConstructor(c.getName());
         }
 
         if (term instanceof Application) {
             Application app = (Application) term;
-            return new Application(desugar(app.getFunction()), desugar(app.getArgument()));
+            return new Application(desugar(app.getFunction(), nativeConstructors), desugar(app.getArgument(), nativeConstructors));
         }
 
         if (term instanceof Abstraction) {
             Abstraction abs = (Abstraction) term;
-            return new Abstraction(abs.getParameter(), desugar(abs.getBody()));
+            return new Abstraction(abs.getParameter(), desugar(abs.getBody(), nativeConstructors));
         }
 
         if (term instanceof Recursion) {
             Recursion rec = (Recursion) term;
-            return new Recursion(rec.getName(), desugar(rec.getBody()));
+            return new Recursion(rec.getName(), desugar(rec.getBody(), nativeConstructors));
         }
 
         if (term instanceof Match) {
             Match match = (Match) term;
-            return encodeMatch(match);
+            return encodeMatch(match, nativeConstructors);
         }
 
         if (term instanceof Conditional) {
             Conditional c = (Conditional) term;
             return new Conditional(
-                desugar(c.getCondition()),
-                desugar(c.getTrueBranch()),
-                desugar(c.getFalseBranch())
+                desugar(c.getCondition(), nativeConstructors),
+                desugar(c.getTrueBranch(), nativeConstructors),
+                desugar(c.getFalseBranch(), nativeConstructors)
             );
         }
 
         if (term instanceof Addition) {
             Addition a = (Addition) term;
-            return new Addition(desugar(a.getLeft()), desugar(a.getRight()));
+            return new Addition(desugar(a.getLeft(), nativeConstructors), desugar(a.getRight(), nativeConstructors));
         }
 
         if (term instanceof Subtraction) {
             Subtraction s = (Subtraction) term;
-            return new Subtraction(desugar(s.getLeft()), desugar(s.getRight()));
+            return new Subtraction(desugar(s.getLeft(), nativeConstructors), desugar(s.getRight(), nativeConstructors));
         }
 
         if (term instanceof Multiplication) {
             Multiplication m = (Multiplication) term;
-            return new Multiplication(desugar(m.getLeft()), desugar(m.getRight()));
+            return new Multiplication(desugar(m.getLeft(), nativeConstructors), desugar(m.getRight(), nativeConstructors));
         }
 
         if (term instanceof Division) {
             Division d = (Division) term;
-            return new Division(desugar(d.getLeft()), desugar(d.getRight()));
+            return new Division(desugar(d.getLeft(), nativeConstructors), desugar(d.getRight(), nativeConstructors));
         }
 
         if (term instanceof Equal) {
             Equal e = (Equal) term;
-            return new Equal(desugar(e.getLeft()), desugar(e.getRight()));
+            return new Equal(desugar(e.getLeft(), nativeConstructors), desugar(e.getRight(), nativeConstructors));
         }
 
         if (term instanceof LEqual) {
             LEqual le = (LEqual) term;
-            return new LEqual(desugar(le.getLeft()), desugar(le.getRight()));
+            return new LEqual(desugar(le.getLeft(), nativeConstructors), desugar(le.getRight(), nativeConstructors));
         }
 
         if (term instanceof And) {
             And a = (And) term;
-            return new And(desugar(a.getLeft()), desugar(a.getRight()));
+            return new And(desugar(a.getLeft(), nativeConstructors), desugar(a.getRight(), nativeConstructors));
         }
 
         if (term instanceof Or) {
             Or o = (Or) term;
-            return new Or(desugar(o.getLeft()), desugar(o.getRight()));
+            return new Or(desugar(o.getLeft(), nativeConstructors), desugar(o.getRight(), nativeConstructors));
         }
 
         if (term instanceof Not) {
             Not n = (Not) term;
-            return new Not(desugar(n.getOperand()));
+            return new Not(desugar(n.getOperand(), nativeConstructors));
         }
 
         throw new IllegalArgumentException(
@@ -159,7 +181,11 @@ public final class ScottEncoding {
     }
 
     public static Term encodeMatch(Match match) {
-        Term scrutinee = desugar(match.getInputTerm());
+        return encodeMatch(match, false);
+    }
+
+    private static Term encodeMatch(Match match, boolean nativeConstructors) {
+        Term scrutinee = desugar(match.getInputTerm(), nativeConstructors);
         String typeName = inferMatchedTypeName(match);
         List<ConstructorRegistry.ConstructorInfo> infos = ConstructorRegistry.getConstructorsForType(typeName);
 
@@ -167,18 +193,24 @@ public final class ScottEncoding {
             throw new IllegalStateException("No constructor metadata registered for type " + typeName);
         }
 
-        Term result = scrutinee;
+        Term result = nativeConstructors
+            ? new Application(new Constant(NATIVE_MATCH_PREFIX + typeName), scrutinee)
+            : scrutinee;
         for (ConstructorRegistry.ConstructorInfo info : infos) {
             Match.Case matchingCase = findCaseForConstructor(match.getCases(), info.getConstructorName());
             if (matchingCase == null) {
                 throw new IllegalStateException("Missing Scott-encoded branch for constructor " + info.getConstructorName());
             }
-            result = new Application(result, encodeBranch(matchingCase, info));
+            result = new Application(result, encodeBranch(matchingCase, info, nativeConstructors));
         }
         return result;
     }
 
-    private static Term encodeBranch(Match.Case matchCase, ConstructorRegistry.ConstructorInfo info) {
+    private static Term encodeBranch(
+        Match.Case matchCase,
+        ConstructorRegistry.ConstructorInfo info,
+        boolean nativeConstructors
+    ) {
         List<String> params = new ArrayList<>();
         collectPatternVariablesLeftToRight(matchCase.getPattern(), params);
 
@@ -189,7 +221,7 @@ public final class ScottEncoding {
             );
         }
 
-        Term body = desugar(matchCase.getResult());
+        Term body = desugar(matchCase.getResult(), nativeConstructors);
         for (int i = params.size() - 1; i >= 0; i--) {
             body = new Abstraction(params.get(i), body);
         }
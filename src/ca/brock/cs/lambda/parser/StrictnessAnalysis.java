@@ -0,0 +1,346 @@
+package ca.brock.cs.lambda.parser;
+
+import ca.brock.cs.lambda.types.DefinedValue;
+import ca.brock.cs.lambda.types.FunctionDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * First-order strictness analysis over the desugared core terms.
+ *
+ * A parameter of a top-level function is strict when evaluating a saturated call
+ * to weak head normal form always evaluates that parameter. Strict arguments that
+ * would otherwise be passed as unevaluated graphs are wrapped in the
+ * {@code %strict} primitive: {@code %strict f a} evaluates {@code a} first and then
+ * continues with {@code f a}, so loops such as {@code mod (x - y) y} never build a
+ * chain of suspended subtractions.
+ *
+ * The analysis runs after {@link ScottEncoding}, so it only has to understand the
+ * core language plus the native {@code %match:} primitive.
+ */
+public final class StrictnessAnalysis {
+    public static final String STRICT_APPLY = "%strict";
+
+    private static final Set<String> STRICT_BINARY_OPERATORS = Set.of("+", "-", "*", "/", "=", "<=");
+
+    private StrictnessAnalysis() {}
+
+    /**
+     * The leading parameters of a definition and which of them are strict.
+     */
+    private static final class Signature {
+        final List<String> parameters;
+        final boolean[] strict;
+
+        Signature(List<String> parameters) {
+            this.parameters = parameters;
+            this.strict = new boolean[parameters.size()];
+            Arrays.fill(strict, true);
+        }
+
+        boolean any() {
+            for (boolean s : strict) {
+                if (s) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static Map<String, DefinedValue> transformProgram(Map<String, DefinedValue> symbolMap) {
+        Map<String, Signature> signatures = analyze(symbolMap);
+
+        Map<String, DefinedValue> result = new HashMap<>();
+        for (Map.Entry<String, DefinedValue> entry : symbolMap.entrySet()) {
+            DefinedValue value = entry.getValue();
+            if (value instanceof FunctionDefinition) {
+                FunctionDefinition functionDefinition = (FunctionDefinition) value;
+                result.put(
+                    entry.getKey(),
+                    new FunctionDefinition(
+                        functionDefinition.getName(),
+                        functionDefinition.getType(),
+                        transformDefinition(functionDefinition.getTerm(), scopeFor(entry.getKey(), functionDefinition.getTerm(), signatures))
+                    )
+                );
+            } else {
+                result.put(entry.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    // Iterates from "every parameter is strict" downwards until no signature changes
+    private static Map<String, Signature> analyze(Map<String, DefinedValue> symbolMap) {
+        Map<String, Signature> signatures = new HashMap<>();
+        for (Map.Entry<String, DefinedValue> entry : symbolMap.entrySet()) {
+            if (entry.getValue() instanceof FunctionDefinition) {
+                List<String> parameters = new ArrayList<>();
+                Term body = functionBody(((FunctionDefinition) entry.getValue()).getTerm(), parameters);
+                if (body != null && !parameters.isEmpty()) {
+                    signatures.put(entry.getKey(), new Signature(parameters));
+                }
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, Signature> entry : signatures.entrySet()) {
+                FunctionDefinition definition = (FunctionDefinition) symbolMap.get(entry.getKey());
+                Term body = functionBody(definition.getTerm(), new ArrayList<>());
+                Signature signature = entry.getValue();
+                Set<String> forced = demand(body, scopeFor(entry.getKey(), definition.getTerm(), signatures));
+
+                for (int i = 0; i < signature.strict.length; i++) {
+                    if (signature.strict[i] && !forced.contains(signature.parameters.get(i))) {
+                        signature.strict[i] = false;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return signatures;
+    }
+
+    // Strips an optional "rec f." and the leading lambdas, collecting the parameter names
+    private static Term functionBody(Term term, List<String> parameters) {
+        if (term instanceof Recursion) {
+            term = ((Recursion) term).getBody();
+        }
+        while (term instanceof Abstraction) {
+            Abstraction abs = (Abstraction) term;
+            if (parameters.contains(abs.getParameter())) {
+                return null; // Shadowed parameter; leave the definition alone
+            }
+            parameters.add(abs.getParameter());
+            term = abs.getBody();
+        }
+        return term;
+    }
+
+    // Globals plus the definition's own recursion variable, minus names its parameters shadow
+    private static Map<String, Signature> scopeFor(String name, Term term, Map<String, Signature> signatures) {
+        Map<String, Signature> scope = new HashMap<>(signatures);
+        if (term instanceof Recursion) {
+            String recursiveName = ((Recursion) term).getName();
+            Signature own = signatures.get(name);
+            if (own != null) {
+                scope.put(recursiveName, own);
+            } else {
+                scope.remove(recursiveName);
+            }
+            term = ((Recursion) term).getBody();
+        }
+        while (term instanceof Abstraction) {
+            scope.remove(((Abstraction) term).getParameter());
+            term = ((Abstraction) term).getBody();
+        }
+        return scope;
+    }
+
+    /**
+     * Variables that are certainly evaluated when {@code term} is evaluated to weak head normal form.
+     */
+    private static Set<String> demand(Term term, Map<String, Signature> scope) {
+        Set<String> result = new HashSet<>();
+
+        if (term instanceof Variable) {
+            result.add(((Variable) term).getName());
+        } else if (term instanceof Addition) {
+            result.addAll(demand(((Addition) term).getLeft(), scope));
+            result.addAll(demand(((Addition) term).getRight(), scope));
+        } else if (term instanceof Subtraction) {
+            result.addAll(demand(((Subtraction) term).getLeft(), scope));
+            result.addAll(demand(((Subtraction) term).getRight(), scope));
+        } else if (term instanceof Multiplication) {
+            result.addAll(demand(((Multiplication) term).getLeft(), scope));
+            result.addAll(demand(((Multiplication) term).getRight(), scope));
+        } else if (term instanceof Division) {
+            result.addAll(demand(((Division) term).getLeft(), scope));
+            result.addAll(demand(((Division) term).getRight(), scope));
+        } else if (term instanceof Equal) {
+            result.addAll(demand(((Equal) term).getLeft(), scope));
+            result.addAll(demand(((Equal) term).getRight(), scope));
+        } else if (term instanceof LEqual) {
+            result.addAll(demand(((LEqual) term).getLeft(), scope));
+            result.addAll(demand(((LEqual) term).getRight(), scope));
+        } else if (term instanceof And) {
+            result.addAll(demand(((And) term).getLeft(), scope));
+        } else if (term instanceof Or) {
+            result.addAll(demand(((Or) term).getLeft(), scope));
+        } else if (term instanceof Not) {
+            result.addAll(demand(((Not) term).getOperand(), scope));
+        } else if (term instanceof Conditional) {
+            Conditional c = (Conditional) term;
+            Set<String> both = demand(c.getTrueBranch(), scope);
+            both.retainAll(demand(c.getFalseBranch(), scope));
+            result.addAll(demand(c.getCondition(), scope));
+            result.addAll(both);
+        } else if (term instanceof Application) {
+            List<Term> args = new ArrayList<>();
+            Term head = spine(term, args);
+
+            if (head instanceof Variable) {
+                String name = ((Variable) head).getName();
+                result.add(name);
+                Signature signature = scope.get(name);
+                if (signature != null && args.size() >= signature.strict.length) {
+                    for (int i = 0; i < signature.strict.length; i++) {
+                        if (signature.strict[i]) {
+                            result.addAll(demand(args.get(i), scope));
+                        }
+                    }
+                }
+            } else if (head instanceof Constant) {
+                String op = ((Constant) head).getValue();
+                if (STRICT_BINARY_OPERATORS.contains(op) && args.size() >= 2) {
+                    result.addAll(demand(args.get(0), scope));
+                    result.addAll(demand(args.get(1), scope));
+                } else if (("and".equals(op) || "or".equals(op) || "not".equals(op)
+                    || op.startsWith(ScottEncoding.NATIVE_MATCH_PREFIX)) && args.size() >= 1) {
+                    // The first argument is evaluated before anything else happens
+                    result.addAll(demand(args.get(0), scope));
+                }
+            }
+        }
+        // Literals, constants, abstractions and nested recursions are already values
+
+        return result;
+    }
+
+    // The scope already binds the recursion variable and drops the parameters
+    private static Term transformDefinition(Term term, Map<String, Signature> scope) {
+        if (term instanceof Recursion) {
+            Recursion rec = (Recursion) term;
+            return new Recursion(rec.getName(), transformDefinition(rec.getBody(), scope));
+        }
+        if (term instanceof Abstraction) {
+            Abstraction abs = (Abstraction) term;
+            return new Abstraction(abs.getParameter(), transformDefinition(abs.getBody(), scope));
+        }
+        return transform(term, scope);
+    }
+
+    /**
+     * Wraps non-trivial strict arguments of saturated calls to known functions.
+     */
+    private static Term transform(Term term, Map<String, Signature> scope) {
+        if (term instanceof Application) {
+            List<Term> args = new ArrayList<>();
+            Term head = spine(term, args);
+            Signature signature = head instanceof Variable ? scope.get(((Variable) head).getName()) : null;
+            boolean saturated = signature != null && args.size() >= signature.strict.length && signature.any();
+
+            Term result = saturated ? head : transform(head, scope);
+            for (int i = 0; i < args.size(); i++) {
+                Term arg = transform(args.get(i), scope);
+                if (saturated && i < signature.strict.length && signature.strict[i] && needsEvaluation(arg)) {
+                    result = new Application(new Application(new Constant(STRICT_APPLY), result), arg);
+                } else {
+                    result = new Application(result, arg);
+                }
+            }
+            return result;
+        }
+
+        if (term instanceof Abstraction) {
+            Abstraction abs = (Abstraction) term;
+            return new Abstraction(abs.getParameter(), transform(abs.getBody(), without(scope, abs.getParameter())));
+        }
+
+        if (term instanceof Recursion) {
+            Recursion rec = (Recursion) term;
+            return new Recursion(rec.getName(), transform(rec.getBody(), without(scope, rec.getName())));
+        }
+
+        if (term instanceof Conditional) {
+            Conditional c = (Conditional) term;
+            return new Conditional(
+                transform(c.getCondition(), scope),
+                transform(c.getTrueBranch(), scope),
+                transform(c.getFalseBranch(), scope)
+            );
+        }
+
+        if (term instanceof Addition) {
+            Addition a = (Addition) term;
+            return new Addition(transform(a.getLeft(), scope), transform(a.getRight(), scope));
+        }
+
+        if (term instanceof Subtraction) {
+            Subtraction s = (Subtraction) term;
+            return new Subtraction(transform(s.getLeft(), scope), transform(s.getRight(), scope));
+        }
+
+        if (term instanceof Multiplication) {
+            Multiplication m = (Multiplication) term;
+            return new Multiplication(transform(m.getLeft(), scope), transform(m.getRight(), scope));
+        }
+
+        if (term instanceof Division) {
+            Division d = (Division) term;
+            return new Division(transform(d.getLeft(), scope), transform(d.getRight(), scope));
+        }
+
+        if (term instanceof Equal) {
+            Equal e = (Equal) term;
+            return new Equal(transform(e.getLeft(), scope), transform(e.getRight(), scope));
+        }
+
+        if (term instanceof LEqual) {
+            LEqual le = (LEqual) term;
+            return new LEqual(transform(le.getLeft(), scope), transform(le.getRight(), scope));
+        }
+
+        if (term instanceof And) {
+            And a = (And) term;
+            return new And(transform(a.getLeft(), scope), transform(a.getRight(), scope));
+        }
+
+        if (term instanceof Or) {
+            Or o = (Or) term;
+            return new Or(transform(o.getLeft(), scope), transform(o.getRight(), scope));
+        }
+
+        if (term instanceof Not) {
+            return new Not(transform(((Not) term).getOperand(), scope));
+        }
+
+        return term;
+    }
+
+    // Variables may already be evaluated and literals, constants and lambdas are values
+    private static boolean needsEvaluation(Term arg) {
+        return !(arg instanceof Variable
+            || arg instanceof Constant
+            || arg instanceof IntegerLiteral
+            || arg instanceof BooleanLiteral
+            || arg instanceof Abstraction);
+    }
+
+    private static Term spine(Term term, List<Term> args) {
+        while (term instanceof Application) {
+            Application app = (Application) term;
+            args.add(0, app.getArgument());
+            term = app.getFunction();
+        }
+        return term;
+    }
+
+    private static Map<String, Signature> without(Map<String, Signature> scope, String name) {
+        if (!scope.containsKey(name)) {
+            return scope;
+        }
+        Map<String, Signature> narrowed = new HashMap<>(scope);
+        narrowed.remove(name);
+        return narrowed;
+    }
+}
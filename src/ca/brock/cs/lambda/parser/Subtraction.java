@@ -1,8 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorApplication;
-import ca.brock.cs.lambda.combinators.CombinatorConstant;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateApplication;
 import ca.brock.cs.lambda.intermediate.IntermediateConstant;
 import ca.brock.cs.lambda.intermediate.IntermediateSubtraction;
@@ -13,9 +12,7 @@ import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.TypeError;
 import ca.brock.cs.lambda.types.Unifier;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Subtraction extends Term {
     private Term left;
@@ -97,11 +94,8 @@ public class Subtraction extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.addAll(left.getFreeVariables());
-        freeVars.addAll(right.getFreeVariables());
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return left.getFreeVariables().union(right.getFreeVariables());
     }
 
     /**
@@ -112,12 +106,12 @@ public class Subtraction extends Term {
     @Override
     public Combinator translate() {
         // Create a CombinatorConstant for the subtraction operator "-"
-        Combinator minusOp = new CombinatorConstant("-");
+        Combinator minusOp = Combinators.constant("-");
         // Translate the left and right operands
         Combinator translatedLeft = left.translate();
         Combinator translatedRight = right.translate();
         // Apply the operator to the translated left and then the result to the translated right
-        return new CombinatorApplication(new CombinatorApplication(minusOp, translatedLeft), translatedRight);
+        return Combinators.apply(Combinators.apply(minusOp, translatedLeft), translatedRight);
     }
 
 //    /**
@@ -6,10 +6,10 @@ import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.Unifier;
 
 import java.util.Map;
-import java.util.Set;
 
 public abstract class Term {
     protected Type type; // Stores the computed type
+    private VariableSet freeVariables;
 
     public abstract String toStringPrec(int prec);
 
@@ -45,7 +45,18 @@ public abstract class Term {
     public abstract Term eval(Map<String, Term> env);
     public abstract Term substitute(String varName, Term value);
 
-    public abstract Set<String> getFreeVariables();
+    public final VariableSet getFreeVariables() {
+        if (freeVariables == null) {
+            freeVariables = computeFreeVariables();
+        }
+        return freeVariables;
+    }
+
+    /**
+     * Computes the free variables from those of the subterms. Called once per node: terms do
+     * not change after construction, so {@link #getFreeVariables()} caches the result.
+     */
+    protected abstract VariableSet computeFreeVariables();
 
     /**
      * Translates this lambda calculus term into a combinator calculus term.
@@ -1,7 +1,7 @@
 package ca.brock.cs.lambda.parser;
 
 import ca.brock.cs.lambda.combinators.Combinator;
-import ca.brock.cs.lambda.combinators.CombinatorVariable;
+import ca.brock.cs.lambda.combinators.Combinators;
 import ca.brock.cs.lambda.intermediate.IntermediateTerm;
 import ca.brock.cs.lambda.intermediate.IntermediateVariable;
 import ca.brock.cs.lambda.types.AlgebraicDataType;
@@ -11,10 +11,8 @@ import ca.brock.cs.lambda.types.Type;
 import ca.brock.cs.lambda.types.Unifier;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class Variable extends Term {
     private String name;
@@ -59,16 +57,14 @@ public class Variable extends Term {
     }
 
     @Override
-    public Set<String> getFreeVariables() {
-        Set<String> freeVars = new HashSet<>();
-        freeVars.add(name); // A variable itself is a free variable
-        return freeVars;
+    protected VariableSet computeFreeVariables() {
+        return VariableSet.of(name); // A variable itself is a free variable
     }
 
     @Override
     public Combinator translate() {
         // Translate a variable to a CombinatorVariable
-        return new CombinatorVariable(name);
+        return Combinators.variable(name);
     }
 
     /**
@@ -0,0 +1,119 @@
+package ca.brock.cs.lambda.parser;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of variable names, stored as a bitset over interned variable ids.
+ *
+ * Terms cache their free variables as a VariableSet, so membership is a table lookup and a bit
+ * test, and the set of a node is the union of its children's bitsets rather than a fresh hash
+ * set rebuilt on every query. The id table lives for the whole compilation.
+ */
+public final class VariableSet extends AbstractSet<String> {
+
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static final List<String> names = new ArrayList<>();
+
+    public static final VariableSet EMPTY = new VariableSet(new BitSet());
+
+    private final BitSet bits;
+    private final int size;
+
+    private VariableSet(BitSet bits) {
+        this.bits = bits;
+        this.size = bits.cardinality();
+    }
+
+    private static int id(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    public static VariableSet of(String name) {
+        BitSet bits = new BitSet();
+        bits.set(id(name));
+        return new VariableSet(bits);
+    }
+
+    public VariableSet union(VariableSet other) {
+        if (other.size == 0 || other == this) {
+            return this;
+        }
+        if (size == 0) {
+            return other;
+        }
+        BitSet added = (BitSet) other.bits.clone();
+        added.andNot(bits);
+        if (added.isEmpty()) {
+            return this;
+        }
+        added.or(bits);
+        return new VariableSet(added);
+    }
+
+    public VariableSet without(String name) {
+        if (!contains(name)) {
+            return this;
+        }
+        BitSet removed = (BitSet) bits.clone();
+        removed.clear(ids.get(name));
+        return new VariableSet(removed);
+    }
+
+    public VariableSet withoutAll(Iterable<String> names) {
+        VariableSet result = this;
+        for (String name : names) {
+            result = result.without(name);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        // Most terms are closed, and Collections.disjoint probes a set once per scope entry
+        if (size == 0) {
+            return false;
+        }
+        Integer id = o instanceof String ? ids.get(o) : null;
+        return id != null && bits.get(id);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next = bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                String name = names.get(next);
+                next = bits.nextSetBit(next + 1);
+                return name;
+            }
+        };
+    }
+}
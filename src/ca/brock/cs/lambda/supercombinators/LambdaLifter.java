@@ -0,0 +1,370 @@
+package ca.brock.cs.lambda.supercombinators;
+
+import ca.brock.cs.lambda.parser.Abstraction;
+import ca.brock.cs.lambda.parser.Addition;
+import ca.brock.cs.lambda.parser.And;
+import ca.brock.cs.lambda.parser.Application;
+import ca.brock.cs.lambda.parser.BooleanLiteral;
+import ca.brock.cs.lambda.parser.Conditional;
+import ca.brock.cs.lambda.parser.Constant;
+import ca.brock.cs.lambda.parser.ConstructorRegistry;
+import ca.brock.cs.lambda.parser.Division;
+import ca.brock.cs.lambda.parser.Equal;
+import ca.brock.cs.lambda.parser.IntegerLiteral;
+import ca.brock.cs.lambda.parser.LEqual;
+import ca.brock.cs.lambda.parser.Multiplication;
+import ca.brock.cs.lambda.parser.Not;
+import ca.brock.cs.lambda.parser.Or;
+import ca.brock.cs.lambda.parser.Recursion;
+import ca.brock.cs.lambda.parser.ScottEncoding;
+import ca.brock.cs.lambda.parser.StrictnessAnalysis;
+import ca.brock.cs.lambda.parser.Subtraction;
+import ca.brock.cs.lambda.parser.Term;
+import ca.brock.cs.lambda.parser.Variable;
+import ca.brock.cs.lambda.types.DefinedValue;
+import ca.brock.cs.lambda.types.FunctionDefinition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Lambda lifting of the desugared program into {@link Supercombinator}s.
+ *
+ * Every top-level definition becomes a supercombinator whose parameters are its leading
+ * lambdas. Inner lambdas and inner recursions become new supercombinators that take their
+ * free variables as extra leading parameters, and are replaced by a partial application
+ * of the new name to those variables.
+ *
+ * The code generator compiles strict positions (the body itself, conditions and branches,
+ * operands of primitives, match scrutinees and alternatives) in place, so conditionals,
+ * lets and matches stay where they are there. In a lazy position (an argument that is only
+ * built as a graph) they are lifted into a supercombinator of their free variables, which
+ * makes the argument an ordinary application that the evaluator updates when forced.
+ */
+public final class LambdaLifter {
+    /**
+     * {@code %fix f} is the fixed point of {@code f}; it ties recursive values that are not functions.
+     */
+    public static final String FIX = "%fix";
+
+    private final Set<String> globals;
+    private final List<Supercombinator> supercombinators = new ArrayList<>();
+
+    // Per definition: name prefix for lifted supercombinators and the binders already in use
+    private String owner;
+    private int counter;
+    private Set<String> binders;
+
+    private LambdaLifter(Set<String> globals) {
+        this.globals = globals;
+    }
+
+    public static List<Supercombinator> liftProgram(Map<String, DefinedValue> symbolMap) {
+        Map<String, Term> definitions = new TreeMap<>();
+        for (Map.Entry<String, DefinedValue> entry : symbolMap.entrySet()) {
+            if (entry.getValue() instanceof FunctionDefinition) {
+                Term term = ((FunctionDefinition) entry.getValue()).getTerm();
+                if (term != null) {
+                    definitions.put(entry.getKey(), term);
+                }
+            }
+        }
+
+        LambdaLifter lifter = new LambdaLifter(definitions.keySet());
+        for (Map.Entry<String, Term> entry : definitions.entrySet()) {
+            lifter.liftDefinition(entry.getKey(), entry.getValue());
+        }
+        return lifter.supercombinators;
+    }
+
+    private void liftDefinition(String name, Term term) {
+        owner = name;
+        counter = 0;
+        binders = new HashSet<>();
+
+        // With unique binders no replacement below can be captured
+        term = rename(term, new HashMap<>());
+
+        Map<String, Term> scope = new HashMap<>();
+        if (term instanceof Recursion) {
+            Recursion rec = (Recursion) term;
+            scope.put(rec.getName(), new Constant(name));
+            term = rec.getBody();
+        }
+        List<String> parameters = new ArrayList<>();
+        Term body = parameters(term, parameters, scope);
+        supercombinators.add(new Supercombinator(name, parameters, lift(body, scope, true)));
+    }
+
+    // Strips the leading lambdas, binding each parameter to itself in the scope
+    private static Term parameters(Term term, List<String> parameters, Map<String, Term> scope) {
+        while (term instanceof Abstraction) {
+            Abstraction abs = (Abstraction) term;
+            parameters.add(abs.getParameter());
+            scope.put(abs.getParameter(), new Variable(abs.getParameter()));
+            term = abs.getBody();
+        }
+        return term;
+    }
+
+    private Term rename(Term term, Map<String, String> renames) {
+        if (term instanceof Variable) {
+            String renamed = renames.get(((Variable) term).getName());
+            return renamed == null ? term : new Variable(renamed);
+        }
+        if (term instanceof Abstraction) {
+            Abstraction abs = (Abstraction) term;
+            String fresh = freshBinder(abs.getParameter());
+            return new Abstraction(fresh, rename(abs.getBody(), with(renames, abs.getParameter(), fresh)));
+        }
+        if (term instanceof Recursion) {
+            Recursion rec = (Recursion) term;
+            String fresh = freshBinder(rec.getName());
+            return new Recursion(fresh, rename(rec.getBody(), with(renames, rec.getName(), fresh)));
+        }
+        return mapChildren(term, child -> rename(child, renames));
+    }
+
+    private String freshBinder(String name) {
+        String candidate = name;
+        for (int i = 1; binders.contains(candidate) || globals.contains(candidate); i++) {
+            candidate = name + "_" + i;
+        }
+        binders.add(candidate);
+        return candidate;
+    }
+
+    /**
+     * Lifts the inner functions of {@code term}. In a strict position the result is evaluated
+     * in place; otherwise it is only built as a graph.
+     */
+    private Term lift(Term term, Map<String, Term> scope, boolean strict) {
+        if (term instanceof Variable) {
+            Term replacement = scope.get(((Variable) term).getName());
+            return replacement != null ? replacement : term;
+        }
+
+        if (term instanceof Abstraction) {
+            return liftAbstraction((Abstraction) term, scope);
+        }
+
+        if (term instanceof Recursion) {
+            return liftRecursion((Recursion) term, scope);
+        }
+
+        if (term instanceof Application) {
+            Application app = (Application) term;
+
+            // (λx. b) a is a let binding
+            if (app.getFunction() instanceof Abstraction) {
+                if (!strict) {
+                    return liftThunk(term, scope);
+                }
+                Abstraction let = (Abstraction) app.getFunction();
+                Map<String, Term> inner = with(scope, let.getParameter(), new Variable(let.getParameter()));
+                return new Application(
+                    new Abstraction(let.getParameter(), lift(let.getBody(), inner, true)),
+                    lift(app.getArgument(), scope, false)
+                );
+            }
+
+            List<Term> args = new ArrayList<>();
+            Term head = spine(term, args);
+
+            List<ConstructorRegistry.ConstructorInfo> constructors = matchedConstructors(head, args.size());
+            if (constructors != null) {
+                if (!strict) {
+                    return liftThunk(term, scope);
+                }
+                Term result = new Application(head, lift(args.get(0), scope, true));
+                for (ConstructorRegistry.ConstructorInfo info : constructors) {
+                    result = new Application(result, liftAlternative(args.get(1 + info.getIndex()), info.getArity(), scope));
+                }
+                return result;
+            }
+
+            if (strict && isStrictApply(head, args.size())) {
+                return new Application(
+                    new Application(head, lift(args.get(0), scope, false)),
+                    lift(args.get(1), scope, true)
+                );
+            }
+
+            return new Application(lift(app.getFunction(), scope, false), lift(app.getArgument(), scope, false));
+        }
+
+        if (term instanceof Conditional && !strict) {
+            return liftThunk(term, scope);
+        }
+
+        // Primitive operators keep the strictness of their context
+        return mapChildren(term, child -> lift(child, scope, strict));
+    }
+
+    // The leading lambdas of an alternative bind the constructor fields in place
+    private Term liftAlternative(Term alternative, int arity, Map<String, Term> scope) {
+        Map<String, Term> inner = new HashMap<>(scope);
+        List<String> fields = new ArrayList<>();
+        Term body = alternative;
+        while (fields.size() < arity && body instanceof Abstraction) {
+            Abstraction abs = (Abstraction) body;
+            fields.add(abs.getParameter());
+            inner.put(abs.getParameter(), new Variable(abs.getParameter()));
+            body = abs.getBody();
+        }
+
+        // A body still expecting fields is applied to them as a graph
+        Term result = lift(body, inner, fields.size() == arity);
+        for (int i = fields.size() - 1; i >= 0; i--) {
+            result = new Abstraction(fields.get(i), result);
+        }
+        return result;
+    }
+
+    private Term liftAbstraction(Abstraction abs, Map<String, Term> scope) {
+        List<String> free = freeLocals(abs, scope);
+        List<String> parameters = new ArrayList<>(free);
+        Map<String, Term> inner = new HashMap<>(scope);
+        Term body = parameters(abs, parameters, inner);
+
+        String name = freshName("lam");
+        supercombinators.add(new Supercombinator(name, parameters, lift(body, inner, true)));
+        return applyTo(new Constant(name), free);
+    }
+
+    private Term liftRecursion(Recursion rec, Map<String, Term> scope) {
+        List<String> free = freeLocals(rec, scope);
+        String name = freshName(rec.getName());
+        Term self = applyTo(new Constant(name), free);
+        List<String> parameters = new ArrayList<>(free);
+        Map<String, Term> inner = new HashMap<>(scope);
+
+        // A recursive function calls itself directly
+        if (rec.getBody() instanceof Abstraction) {
+            inner.put(rec.getName(), self);
+            Term body = parameters(rec.getBody(), parameters, inner);
+            supercombinators.add(new Supercombinator(name, parameters, lift(body, inner, true)));
+            return self;
+        }
+
+        // Any other recursive value is tied through the fixed point of its generator
+        parameters.add(rec.getName());
+        inner.put(rec.getName(), new Variable(rec.getName()));
+        supercombinators.add(new Supercombinator(name, parameters, lift(rec.getBody(), inner, true)));
+        return new Application(new Constant(FIX), self);
+    }
+
+    private Term liftThunk(Term term, Map<String, Term> scope) {
+        List<String> free = freeLocals(term, scope);
+        String name = freshName("thunk");
+        supercombinators.add(new Supercombinator(name, new ArrayList<>(free), lift(term, scope, true)));
+        return applyTo(new Constant(name), free);
+    }
+
+    // Local variables the lifted term needs, after replacing lifted recursive names
+    private static List<String> freeLocals(Term term, Map<String, Term> scope) {
+        Set<String> result = new TreeSet<>();
+        for (String name : term.getFreeVariables()) {
+            Term replacement = scope.get(name);
+            if (replacement != null) {
+                result.addAll(replacement.getFreeVariables());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private String freshName(String hint) {
+        return owner + "$" + hint + (++counter);
+    }
+
+    private static List<ConstructorRegistry.ConstructorInfo> matchedConstructors(Term head, int argumentCount) {
+        if (!(head instanceof Constant)
+            || !((Constant) head).getValue().startsWith(ScottEncoding.NATIVE_MATCH_PREFIX)) {
+            return null;
+        }
+        String typeName = ((Constant) head).getValue().substring(ScottEncoding.NATIVE_MATCH_PREFIX.length());
+        List<ConstructorRegistry.ConstructorInfo> constructors = ConstructorRegistry.getConstructorsForType(typeName);
+        return argumentCount == constructors.size() + 1 ? constructors : null;
+    }
+
+    private static boolean isStrictApply(Term head, int argumentCount) {
+        return argumentCount == 2
+            && head instanceof Constant
+            && StrictnessAnalysis.STRICT_APPLY.equals(((Constant) head).getValue());
+    }
+
+    private static Term applyTo(Term head, List<String> variables) {
+        for (String variable : variables) {
+            head = new Application(head, new Variable(variable));
+        }
+        return head;
+    }
+
+    private static Term spine(Term term, List<Term> args) {
+        while (term instanceof Application) {
+            Application app = (Application) term;
+            args.add(0, app.getArgument());
+            term = app.getFunction();
+        }
+        return term;
+    }
+
+    private static <V> Map<String, V> with(Map<String, V> map, String key, V value) {
+        Map<String, V> extended = new HashMap<>(map);
+        extended.put(key, value);
+        return extended;
+    }
+
+    /**
+     * Rebuilds a binder-free node from its transformed children.
+     */
+    private static Term mapChildren(Term term, UnaryOperator<Term> f) {
+        if (term instanceof Variable || term instanceof Constant
+            || term instanceof IntegerLiteral || term instanceof BooleanLiteral) {
+            return term;
+        }
+        if (term instanceof Application) {
+            Application app = (Application) term;
+            return new Application(f.apply(app.getFunction()), f.apply(app.getArgument()));
+        }
+        if (term instanceof Conditional) {
+            Conditional c = (Conditional) term;
+            return new Conditional(f.apply(c.getCondition()), f.apply(c.getTrueBranch()), f.apply(c.getFalseBranch()));
+        }
+        if (term instanceof Addition) {
+            return new Addition(f.apply(((Addition) term).getLeft()), f.apply(((Addition) term).getRight()));
+        }
+        if (term instanceof Subtraction) {
+            return new Subtraction(f.apply(((Subtraction) term).getLeft()), f.apply(((Subtraction) term).getRight()));
+        }
+        if (term instanceof Multiplication) {
+            return new Multiplication(f.apply(((Multiplication) term).getLeft()), f.apply(((Multiplication) term).getRight()));
+        }
+        if (term instanceof Division) {
+            return new Division(f.apply(((Division) term).getLeft()), f.apply(((Division) term).getRight()));
+        }
+        if (term instanceof Equal) {
+            return new Equal(f.apply(((Equal) term).getLeft()), f.apply(((Equal) term).getRight()));
+        }
+        if (term instanceof LEqual) {
+            return new LEqual(f.apply(((LEqual) term).getLeft()), f.apply(((LEqual) term).getRight()));
+        }
+        if (term instanceof And) {
+            return new And(f.apply(((And) term).getLeft()), f.apply(((And) term).getRight()));
+        }
+        if (term instanceof Or) {
+            return new Or(f.apply(((Or) term).getLeft()), f.apply(((Or) term).getRight()));
+        }
+        if (term instanceof Not) {
+            return new Not(f.apply(((Not) term).getOperand()));
+        }
+        throw new IllegalArgumentException("Unexpected term after desugaring: " + term);
+    }
+}
@@ -0,0 +1,50 @@
+package ca.brock.cs.lambda.supercombinators;
+
+import ca.brock.cs.lambda.parser.Term;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A closed top-level function {@code name p1 .. pn = body}.
+ *
+ * The body only refers to the parameters, to other supercombinators and to globals.
+ * Abstractions survive only as let bindings {@code (λx. b) a} and as the leading
+ * lambdas of the alternatives of a strict {@code %match:} (see {@link LambdaLifter}).
+ */
+public final class Supercombinator {
+    private final String name;
+    private final List<String> parameters;
+    private final Term body;
+
+    public Supercombinator(String name, List<String> parameters, Term body) {
+        this.name = name;
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.body = body;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    public int getArity() {
+        return parameters.size();
+    }
+
+    public Term getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(name);
+        for (String parameter : parameters) {
+            sb.append(' ').append(parameter);
+        }
+        return sb.append(" = ").append(body).toString();
+    }
+}